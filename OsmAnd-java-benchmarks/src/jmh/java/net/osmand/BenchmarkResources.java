@@ -0,0 +1,56 @@
+package net.osmand;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.util.Algorithms;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Test resources of OsmAnd-java (src/test/resources) used by benchmarks
+ */
+public class BenchmarkResources {
+
+	public static File getResourcesDir() {
+		String dir = System.getProperty("osmand.test.resources", "../OsmAnd-java/src/test/resources");
+		return new File(dir);
+	}
+
+	public static File getFile(String name) throws IOException {
+		File f = new File(getResourcesDir(), name);
+		if (!f.exists()) {
+			throw new IOException("Test resource is missing (run OsmAnd-java:collectTestResources): " + f.getAbsolutePath());
+		}
+		return f;
+	}
+
+	public static BinaryMapIndexReader openReader(File obf) throws IOException {
+		return openReader(obf, false);
+	}
+
+	public static BinaryMapIndexReader openReader(File obf, boolean memoryMapped) throws IOException {
+		if (memoryMapped) {
+			return new BinaryMapIndexReader(BinaryMapIndexReader.mapFile(obf), obf);
+		}
+		return new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+	}
+
+	// unpacks *.obf.gz to temporary file deleted on exit
+	public static File unzipObf(File obfGz) throws IOException {
+		File obf = File.createTempFile(obfGz.getName().replace(".obf.gz", ""), ".obf");
+		obf.deleteOnExit();
+		GZIPInputStream gzin = new GZIPInputStream(new FileInputStream(obfGz));
+		FileOutputStream fous = new FileOutputStream(obf);
+		try {
+			Algorithms.streamCopy(gzin, fous);
+		} finally {
+			fous.close();
+			gzin.close();
+		}
+		return obf;
+	}
+}
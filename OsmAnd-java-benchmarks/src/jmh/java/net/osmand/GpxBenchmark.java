@@ -0,0 +1,76 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and parsing of generated track (points with time, elevation and speed)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GpxBenchmark {
+
+	@Param({"10000", "100000"})
+	public int points;
+
+	private GPXFile gpx;
+	private byte[] gpxBytes;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random r = new Random(points);
+		gpx = new GPXFile("benchmark");
+		Track track = new Track();
+		TrkSegment segment = new TrkSegment();
+		double lat = 52.37;
+		double lon = 4.89;
+		long time = 1600000000000L;
+		for (int i = 0; i < points; i++) {
+			lat += (r.nextDouble() - 0.5) * 1e-4;
+			lon += (r.nextDouble() - 0.5) * 1e-4;
+			time += 1000;
+			segment.points.add(new WptPt(lat, lon, time, 10 + r.nextDouble() * 5, r.nextDouble() * 10, 5));
+		}
+		track.segments.add(segment);
+		gpx.tracks.add(track);
+		StringWriter writer = new StringWriter();
+		GPXUtilities.writeGpx(writer, gpx, null);
+		gpxBytes = writer.toString().getBytes(Charset.forName("UTF-8"));
+	}
+
+	@Benchmark
+	public int writeGpx() {
+		StringWriter writer = new StringWriter();
+		GPXUtilities.writeGpx(writer, gpx, null);
+		return writer.getBuffer().length();
+	}
+
+	@Benchmark
+	public int loadGpx() {
+		GPXFile res = GPXUtilities.loadGPXFile(new ByteArrayInputStream(gpxBytes));
+		int size = 0;
+		for (TrkSegment s : res.getNonEmptyTrkSegments(false)) {
+			size += s.points.size();
+		}
+		return size;
+	}
+}
@@ -0,0 +1,88 @@
+package net.osmand.binary;
+
+import net.osmand.BenchmarkResources;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.MapRoot;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.data.Amenity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of map and poi data of the whole obf file (bounding box of its indexes)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ObfDecodingBenchmark {
+
+	@Param({"Routing_test.obf"})
+	public String obf;
+
+	@Param({"15"})
+	public int zoom;
+
+	@Param({"false", "true"})
+	public boolean memoryMapped;
+
+	private BinaryMapIndexReader reader;
+	private int left = Integer.MAX_VALUE;
+	private int right = 0;
+	private int top = Integer.MAX_VALUE;
+	private int bottom = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		reader = BenchmarkResources.openReader(BenchmarkResources.getFile(obf), memoryMapped);
+		for (MapIndex mi : reader.getMapIndexes()) {
+			for (MapRoot root : mi.getRoots()) {
+				extend(root.getLeft(), root.getRight(), root.getTop(), root.getBottom());
+			}
+		}
+		for (PoiRegion poi : reader.getPoiIndexes()) {
+			extend(poi.left31, poi.right31, poi.top31, poi.bottom31);
+		}
+	}
+
+	private void extend(int l, int r, int t, int b) {
+		left = Math.min(left, l);
+		right = Math.max(right, r);
+		top = Math.min(top, t);
+		bottom = Math.max(bottom, b);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Benchmark
+	public int searchMapIndex() throws IOException {
+		SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(left, right, top, bottom,
+				zoom, null);
+		List<BinaryMapDataObject> res = reader.searchMapIndex(req);
+		return res.size();
+	}
+
+	@Benchmark
+	public int searchPoi() throws IOException {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(left, right, top, bottom, zoom,
+				BinaryMapIndexReader.ACCEPT_ALL_POI_TYPE_FILTER, null);
+		List<Amenity> res = reader.searchPoi(req);
+		return res.size();
+	}
+}
@@ -0,0 +1,106 @@
+package net.osmand.render;
+
+import net.osmand.PlatformUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Style rules evaluation of typical tag / value pairs on all zooms with default.render.xml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RenderingRuleSearchBenchmark {
+
+	@Param({"default"})
+	public String style;
+
+	private static final String[][] LINES = {
+			{"highway", "motorway"}, {"highway", "primary"}, {"highway", "residential"}, {"highway", "footway"},
+			{"highway", "track"}, {"railway", "rail"}, {"waterway", "river"}, {"admin_level", "2"}
+	};
+	private static final String[][] POLYGONS = {
+			{"building", "yes"}, {"landuse", "residential"}, {"natural", "water"}, {"landuse", "forest"},
+			{"leisure", "park"}, {"amenity", "parking"}
+	};
+	private static final String[][] POINTS = {
+			{"amenity", "restaurant"}, {"shop", "supermarket"}, {"place", "city"}, {"highway", "bus_stop"},
+			{"tourism", "hotel"}
+	};
+
+	private RenderingRulesStorage storage;
+
+	@Setup(Level.Trial)
+	public void setUp() throws XmlPullParserException, IOException {
+		final Map<String, String> renderingConstants = new LinkedHashMap<>();
+		InputStream pis = RenderingRulesStorage.class.getResourceAsStream(style + ".render.xml");
+		try {
+			XmlPullParser parser = PlatformUtil.newXMLPullParser();
+			parser.setInput(pis, "UTF-8");
+			int tok;
+			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if (tok == XmlPullParser.START_TAG && parser.getName().equals("renderingConstant")) {
+					if (!renderingConstants.containsKey(parser.getAttributeValue("", "name"))) {
+						renderingConstants.put(parser.getAttributeValue("", "name"),
+								parser.getAttributeValue("", "value"));
+					}
+				}
+			}
+		} finally {
+			pis.close();
+		}
+		storage = new RenderingRulesStorage(style, renderingConstants);
+		storage.parseRulesFromXmlInputStream(RenderingRulesStorage.class.getResourceAsStream(style + ".render.xml"),
+				new RenderingRulesStorage.RenderingRulesStorageResolver() {
+					@Override
+					public RenderingRulesStorage resolve(String name, RenderingRulesStorage.RenderingRulesStorageResolver ref)
+							throws XmlPullParserException, IOException {
+						RenderingRulesStorage depends = new RenderingRulesStorage(name, renderingConstants);
+						depends.parseRulesFromXmlInputStream(
+								RenderingRulesStorage.class.getResourceAsStream(name + ".render.xml"), ref);
+						return depends;
+					}
+				});
+	}
+
+	@Benchmark
+	public int search() {
+		RenderingRuleSearchRequest req = new RenderingRuleSearchRequest(storage);
+		int found = 0;
+		for (int zoom = 3; zoom <= 19; zoom++) {
+			found += search(req, RenderingRulesStorage.LINE_RULES, LINES, zoom);
+			found += search(req, RenderingRulesStorage.POLYGON_RULES, POLYGONS, zoom);
+			found += search(req, RenderingRulesStorage.POINT_RULES, POINTS, zoom);
+			found += search(req, RenderingRulesStorage.ORDER_RULES, LINES, zoom);
+			found += search(req, RenderingRulesStorage.TEXT_RULES, POINTS, zoom);
+		}
+		return found;
+	}
+
+	private static int search(RenderingRuleSearchRequest req, int state, String[][] tags, int zoom) {
+		int found = 0;
+		for (String[] tv : tags) {
+			req.setInitialTagValueZoom(tv[0], tv[1], zoom, null);
+			if (req.search(state)) {
+				found++;
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,132 @@
+package net.osmand.router;
+
+import net.osmand.BenchmarkResources;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.Algorithms;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route searches of test_routing.json over Routing_test.obf, routing tiles are decoded in every invocation
+ * (tile lookups seek a lot, so file and memory mapped readers are compared)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RoutingBenchmark {
+
+	@Param({"false", "true"})
+	public boolean memoryMapped;
+
+	private final List<RouteEntry> entries = new ArrayList<>();
+	private final List<BinaryMapIndexReader> openedReaders = new ArrayList<>();
+
+	private static class RouteEntry {
+		String name;
+		LatLon start;
+		LatLon end;
+		List<LatLon> intermediates = new ArrayList<>();
+		Map<String, String> params = new LinkedHashMap<>();
+		BinaryMapIndexReader[] readers;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = false;
+		BinaryMapIndexReader routingTest = open("Routing_test.obf");
+		String json = Algorithms.readFromInputStream(
+				new FileInputStream(BenchmarkResources.getFile("test_routing.json"))).toString();
+		JSONArray tests = new JSONArray(json);
+		for (int i = 0; i < tests.length(); i++) {
+			JSONObject t = tests.getJSONObject(i);
+			if (t.optBoolean("ignore")) {
+				continue;
+			}
+			RouteEntry e = new RouteEntry();
+			e.name = t.optString("testName");
+			e.start = parseLatLon(t.getJSONObject("startPoint"));
+			e.end = parseLatLon(t.getJSONObject("endPoint"));
+			for (int k = 1; k <= 3; k++) {
+				if (t.has("transitPoint" + k)) {
+					e.intermediates.add(parseLatLon(t.getJSONObject("transitPoint" + k)));
+				}
+			}
+			JSONObject params = t.optJSONObject("params");
+			if (params != null) {
+				Iterator<String> it = params.keys();
+				while (it.hasNext()) {
+					String k = it.next();
+					e.params.put(k, params.get(k).toString());
+				}
+			}
+			if (e.params.containsKey("map")) {
+				e.readers = new BinaryMapIndexReader[] { open(e.params.get("map")), routingTest };
+			} else {
+				e.readers = new BinaryMapIndexReader[] { routingTest };
+			}
+			entries.add(e);
+		}
+	}
+
+	private BinaryMapIndexReader open(String name) throws IOException {
+		File f = BenchmarkResources.getFile(name);
+		BinaryMapIndexReader reader = BenchmarkResources.openReader(f, memoryMapped);
+		openedReaders.add(reader);
+		return reader;
+	}
+
+	private static LatLon parseLatLon(JSONObject o) {
+		return new LatLon(o.getDouble("latitude"), o.getDouble("longitude"));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		for (BinaryMapIndexReader r : openedReaders) {
+			r.close();
+		}
+	}
+
+	@Benchmark
+	public int searchTestRoutes() throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+		RoutingConfiguration.Builder builder = RoutingConfiguration.getDefault();
+		int segments = 0;
+		for (RouteEntry e : entries) {
+			RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+					RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+			RoutingConfiguration config = builder.build(e.params.containsKey("vehicle") ? e.params.get("vehicle") : "car",
+					memoryLimits, e.params);
+			RoutingContext ctx = fe.buildRoutingContext(config, null, e.readers,
+					RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+			ctx.leftSideNavigation = false;
+			List<RouteSegmentResult> res = fe.searchRoute(ctx, e.start, e.end, e.intermediates);
+			if (res != null) {
+				segments += res.size();
+			}
+		}
+		return segments;
+	}
+}
@@ -0,0 +1,125 @@
+package net.osmand.search;
+
+import net.osmand.BenchmarkResources;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.SearchUICore.SearchResultCollection;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchResult;
+import net.osmand.search.core.SearchSettings;
+import net.osmand.util.Algorithms;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Phrases of search tests (search/*.json) over their obf files, as in SearchUICoreTest
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchUICoreBenchmark {
+
+	private final List<SearchTest> tests = new ArrayList<>();
+	private SearchUICore core;
+
+	private static class SearchTest {
+		List<String> phrases = new ArrayList<>();
+		SearchSettings settings;
+		BinaryMapIndexReader reader;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		MapPoiTypes.setDefault(new MapPoiTypes(BenchmarkResources.getFile("poi_types.xml").getAbsolutePath()));
+		core = new SearchUICore(MapPoiTypes.getDefault(), "en", false);
+		core.init();
+		File[] files = BenchmarkResources.getFile("search").listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files);
+		for (File f : files) {
+			if (!f.getName().endsWith(".json")) {
+				continue;
+			}
+			JSONObject json = new JSONObject(Algorithms.getFileAsString(f));
+			JSONObject settingsJson = json.getJSONObject("settings");
+			if (settingsJson.optBoolean("disabled", false)) {
+				continue;
+			}
+			SearchTest t = new SearchTest();
+			if (json.has("phrase")) {
+				t.phrases.add(json.getString("phrase"));
+			}
+			JSONArray phrases = json.optJSONArray("phrases");
+			for (int i = 0; phrases != null && i < phrases.length(); i++) {
+				t.phrases.add(phrases.getString(i));
+			}
+			t.settings = SearchSettings.parseJSON(settingsJson);
+			File obfGz = new File(f.getParentFile(), f.getName().replace(".json", ".obf.gz"));
+			if (settingsJson.optBoolean("useData", true) && obfGz.exists()) {
+				t.reader = BenchmarkResources.openReader(BenchmarkResources.unzipObf(obfGz));
+				t.settings.setOfflineIndexes(Collections.singletonList(t.reader));
+			}
+			tests.add(t);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		for (SearchTest t : tests) {
+			if (t.reader != null) {
+				t.reader.close();
+			}
+		}
+	}
+
+	@Benchmark
+	public int searchTestPhrases() {
+		ResultMatcher<SearchResult> rm = new ResultMatcher<SearchResult>() {
+			@Override
+			public boolean publish(SearchResult object) {
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		};
+		int results = 0;
+		for (SearchTest t : tests) {
+			SearchPhrase emptyPhrase = SearchPhrase.emptyPhrase(t.settings);
+			for (String text : t.phrases) {
+				SearchPhrase phrase = emptyPhrase.generateNewPhrase(text, t.settings);
+				SearchResultMatcher matcher = new SearchResultMatcher(rm, phrase, 1, new AtomicInteger(1), -1);
+				core.searchInternal(phrase, matcher);
+				SearchResultCollection collection = new SearchResultCollection(phrase);
+				collection.addSearchResults(matcher.getRequestResults(), true, true);
+				results += collection.getCurrentSearchResults().size();
+			}
+		}
+		return results;
+	}
+}
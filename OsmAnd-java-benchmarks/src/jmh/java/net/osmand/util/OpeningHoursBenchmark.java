@@ -0,0 +1,46 @@
+package net.osmand.util;
+
+import net.osmand.util.OpeningHoursParser.OpeningHours;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of typical opening_hours values (from OpeningHoursParserTest)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OpeningHoursBenchmark {
+
+	private final String[] values = {
+			"24/7",
+			"09:00-17:00",
+			"Mo-Fr 08:30-20:00; Sa 09:00-18:00; Su off",
+			"Mo-Fr 08:00-12:00, 13:00-17:30; Sa 08:00-12:00; PH off",
+			"Apr-Sep 8:00-22:00; Oct-Mar 10:00-18:00",
+			"Apr 05-Oct 24: Fr 08:00-16:00",
+			"2019 Apr 15 - 2019 Sep 1: Mo-Fr 00:00-24:00",
+			"Mo-Sa 10:00-20:00; Su,PH 12:00-18:00; Dec 24 10:00-14:00; Dec 25,Jan 1 off",
+			"sunrise-sunset",
+			"Mo-Th 11:00-03:00, Fr-Sa 11:00-05:00, Su 11:00-03:00"
+	};
+
+	@Benchmark
+	public int parseOpenedHours() {
+		int parsed = 0;
+		for (String v : values) {
+			OpeningHours oh = OpeningHoursParser.parseOpenedHours(v);
+			if (oh != null) {
+				parsed++;
+			}
+		}
+		return parsed;
+	}
+}
@@ -33,6 +33,7 @@ package com.google.protobuf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,6 +69,17 @@ public final class CodedInputStream {
     return new CodedInputStream(raf);
   }
 
+  /**
+   * Create a new CodedInputStream over a (memory mapped) byte buffer.
+   * Stream keeps its own duplicate of the buffer, so position of the given buffer
+   * is not changed and many streams could read the same mapping concurrently.
+   * Bytes are read from the mapping directly, without intermediate buffer,
+   * and seek only changes position.
+   */
+  public static CodedInputStream newInstance(ByteBuffer mapped) {
+    return new CodedInputStream(mapped.duplicate());
+  }
+
   /**
    * Create a new CodedInputStream wrapping the given byte array slice.
    */
@@ -222,7 +234,10 @@ public final class CodedInputStream {
   /** Read a {@code string} field value from the stream. */
   public String readString() throws IOException {
     final int size = readRawVarint32();
-    if (size <= (bufferSize - bufferPos) && size > 0) {
+    if (mapped != null) {
+      // osmand change
+      return new String(readRawBytes(size), "UTF-8");
+    } else if (size <= (bufferSize - bufferPos) && size > 0) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final String result = new String(buffer, bufferPos, size, "UTF-8");
@@ -324,6 +339,9 @@ public final class CodedInputStream {
     final int size = readRawVarint32();
     if (size == 0) {
       return ByteString.EMPTY;
+    } else if (mapped != null) {
+      // osmand change
+      return ByteString.copyFrom(readRawBytes(size));
     } else if (size <= (bufferSize - bufferPos) && size > 0) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
@@ -539,6 +557,7 @@ public final class CodedInputStream {
 
   private final byte[] buffer;
   private RandomAccessFile raf;
+  private ByteBuffer mapped;
   private int bufferSize;
   private int bufferSizeAfterLimit;
   private int bufferPos;
@@ -586,6 +605,20 @@ public final class CodedInputStream {
 		input = null;
 	}
 
+	// osmand change: buffer is a window of mapping [totalBytesRetired, end of mapping),
+	// bytes are read with absolute get and never copied to intermediate buffer
+	private CodedInputStream(final ByteBuffer mapped) {
+		buffer = null;
+		this.bufferSize = 0;
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		this.mapped = mapped;
+		this.mapped.position(0);
+		// whole mapping is available at once, size of it is limited by int offsets
+		sizeLimit = Integer.MAX_VALUE;
+		input = null;
+	}
+
   private CodedInputStream(final InputStream input) {
     buffer = new byte[BUFFER_SIZE];
     bufferSize = 0;
@@ -761,6 +794,12 @@ public final class CodedInputStream {
     	} else {
     		bufferSize = -1;
     	}
+    } else if (mapped != null) {
+    	// osmand change: rest of mapping is available (window is cut by limit)
+    	bufferSize = mapped.limit() - totalBytesRetired;
+    	if (bufferSize <= 0) {
+    		bufferSize = -1;
+    	}
     } else {
     	bufferSize = (input == null) ? -1 : input.read(buffer);
     }
@@ -797,6 +836,10 @@ public final class CodedInputStream {
     if (bufferPos == bufferSize) {
       refillBuffer(true);
     }
+    if (mapped != null) {
+      // osmand change
+      return mapped.get(totalBytesRetired + bufferPos++);
+    }
     return buffer[bufferPos++];
   }
 
@@ -818,7 +861,20 @@ public final class CodedInputStream {
       throw InvalidProtocolBufferException.truncatedMessage();
     }
 
-    if (size <= bufferSize - bufferPos) {
+    if (mapped != null) {
+      // osmand change: window contains all bytes until limit or end of mapping
+      if (bufferPos == bufferSize && size > 0) {
+        refillBuffer(true);
+      }
+      if (size > bufferSize - bufferPos) {
+        throw InvalidProtocolBufferException.truncatedMessage();
+      }
+      final byte[] bytes = new byte[size];
+      mapped.position(totalBytesRetired + bufferPos);
+      mapped.get(bytes, 0, size);
+      bufferPos += size;
+      return bytes;
+    } else if (size <= bufferSize - bufferPos) {
       // We have all the bytes we need already.
       final byte[] bytes = new byte[size];
       System.arraycopy(buffer, bufferPos, bytes, 0, size);
@@ -975,7 +1031,10 @@ public final class CodedInputStream {
 	  } else {
 		  totalBytesRetired = (int) pointer;
 		  bufferSizeAfterLimit = 0;
-		  raf.seek(pointer);
+		  // osmand change: window of mapping is set on next read
+		  if (mapped == null) {
+			  raf.seek(pointer);
+		  }
 		  bufferPos = 0;
 		  bufferSize = 0;
 	  }
@@ -0,0 +1,190 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+
+import org.apache.commons.logging.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads and analyses gpx files of folder in parallel on fork join pool. Each file is processed as
+ * GPXUtilities.loadGPXFile and GPXFile.getAnalysis(file.lastModified()) (or read from binary cache if cache
+ * folder is set), so results are the same as of sequential processing. Results are passed to listener as soon
+ * as file is analysed (from worker threads, not in order of files).
+ */
+public class GPXBatchAnalyzer {
+
+	private static final Log log = PlatformUtil.getLog(GPXBatchAnalyzer.class);
+
+	public static final String GPX_FILE_EXT = ".gpx";
+
+	private final ForkJoinPool pool;
+	private File cacheDir;
+	private boolean compactTracks = false;
+
+	public interface GPXAnalysisListener {
+
+		/**
+		 * Called from worker thread, could be called concurrently. Exception thrown by listener stops analysis
+		 * and is rethrown by analyze.
+		 * @param gpxFile loaded file, it's not kept by analyzer
+		 * @param analysis null if file couldn't be read (error of gpx file is set)
+		 * @param processed number of processed files including this one
+		 */
+		void onFileAnalyzed(File file, GPXFile gpxFile, GPXTrackAnalysis analysis, int processed, int total);
+
+		/**
+		 * Not started files are skipped if cancelled
+		 */
+		boolean isCancelled();
+	}
+
+	public GPXBatchAnalyzer() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public GPXBatchAnalyzer(int parallelism) {
+		this(new ForkJoinPool(Math.max(1, parallelism)));
+	}
+
+	public GPXBatchAnalyzer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @param cacheDir folder for binary cache of files (see GPXBinaryCache) or null to always parse files
+	 */
+	public void setCacheDir(File cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+	/**
+	 * @param compactTracks load track points in columnar lists (false by default), see GPXUtilities.loadGPXFile
+	 */
+	public void setCompactTracks(boolean compactTracks) {
+		this.compactTracks = compactTracks;
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * @return gpx files of folder and its subfolders
+	 */
+	public static List<File> collectGpxFiles(File dir) {
+		List<File> files = new ArrayList<>();
+		collectGpxFiles(dir, files);
+		return files;
+	}
+
+	private static void collectGpxFiles(File dir, List<File> files) {
+		File[] listFiles = dir.listFiles();
+		if (listFiles != null) {
+			for (File f : listFiles) {
+				if (f.isDirectory()) {
+					collectGpxFiles(f, files);
+				} else if (f.getName().toLowerCase().endsWith(GPX_FILE_EXT)) {
+					files.add(f);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Analyses gpx files of folder and its subfolders, returns when all files are processed or cancelled.
+	 * @return number of processed files
+	 */
+	public int analyze(File dir, GPXAnalysisListener listener) {
+		return analyze(collectGpxFiles(dir), listener);
+	}
+
+	/**
+	 * Analyses files, returns when all files are processed or cancelled.
+	 * @return number of processed files
+	 */
+	public int analyze(List<File> files, GPXAnalysisListener listener) {
+		List<File> sorted = new ArrayList<>(files);
+		final Map<File, Long> sizes = new HashMap<>();
+		for (File f : sorted) {
+			sizes.put(f, f.length());
+		}
+		// largest files first, so small files fill up threads at the end
+		Collections.sort(sorted, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(sizes.get(f2), sizes.get(f1));
+			}
+		});
+		AtomicInteger processed = new AtomicInteger();
+		if (!sorted.isEmpty()) {
+			pool.invoke(new AnalyzeTask(sorted, 0, sorted.size(), listener, processed));
+		}
+		return processed.get();
+	}
+
+	private void analyzeFile(File file, GPXAnalysisListener listener, AtomicInteger processed, int total) {
+		GPXFile gpxFile;
+		GPXTrackAnalysis analysis = null;
+		try {
+			if (cacheDir != null) {
+				GPXBinaryCache.CachedGPX cached = GPXBinaryCache.loadGPXFile(file,
+						GPXBinaryCache.getCacheFile(cacheDir, file), compactTracks);
+				gpxFile = cached.gpxFile;
+				analysis = cached.analysis;
+			} else {
+				gpxFile = GPXUtilities.loadGPXFile(file, null, compactTracks);
+				if (gpxFile.error == null) {
+					analysis = gpxFile.getAnalysis(file.lastModified());
+				}
+			}
+		} catch (RuntimeException e) {
+			// one broken file shouldn't stop others
+			log.error("Error analysing " + file.getAbsolutePath(), e);
+			gpxFile = new GPXFile(null);
+			gpxFile.path = file.getAbsolutePath();
+			gpxFile.error = e;
+			analysis = null;
+		}
+		listener.onFileAnalyzed(file, gpxFile, analysis, processed.incrementAndGet(), total);
+	}
+
+	private class AnalyzeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<File> files;
+		private final int from;
+		private final int to;
+		private final GPXAnalysisListener listener;
+		private final AtomicInteger processed;
+
+		AnalyzeTask(List<File> files, int from, int to, GPXAnalysisListener listener, AtomicInteger processed) {
+			this.files = files;
+			this.from = from;
+			this.to = to;
+			this.listener = listener;
+			this.processed = processed;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new AnalyzeTask(files, from, mid, listener, processed),
+						new AnalyzeTask(files, mid, to, listener, processed));
+			} else if (!listener.isCancelled()) {
+				analyzeFile(files.get(from), listener, processed, files.size());
+			}
+		}
+	}
+}
@@ -0,0 +1,1239 @@
+package net.osmand;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.GPXUtilities.Author;
+import net.osmand.GPXUtilities.Bounds;
+import net.osmand.GPXUtilities.CompactTrkPoints;
+import net.osmand.GPXUtilities.Copyright;
+import net.osmand.GPXUtilities.Elevation;
+import net.osmand.GPXUtilities.GPXExtensions;
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.Metadata;
+import net.osmand.GPXUtilities.Route;
+import net.osmand.GPXUtilities.RouteSegment;
+import net.osmand.GPXUtilities.RouteType;
+import net.osmand.GPXUtilities.Speed;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+import net.osmand.util.Algorithms;
+
+import org.apache.commons.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Binary cache of parsed gpx file with its analysis, so track could be opened again without xml parsing and
+ * analysis. Cache is valid while size and modification time of source file are the same.
+ * Format uses protobuf wire format (fields could be added later, unknown fields are skipped):
+ * <pre>
+ * GpxCache { 1 version, 2 sourceSize, 3 sourceModified, 4 author, 5 Metadata, 6 waypoints: Point*,
+ *            7 tracks: Track*, 8 routes: Route*, 9 Analysis, 15 extensions: Extension* }
+ * Track { 1 name, 2 desc, 3 segments: Segment*, 15 extensions }
+ * Point { 1..7 lat, lon, time, ele, speed, hdop, heading, 8..12 name, link, category, desc, comment, 13 index, 14 distance, 15 extensions }
+ * Segment { 1 name, 2 count, 3..9 columns (lat, lon, time, ele, speed, hdop, heading),
+ *           11 attributes: Point* (index and not columnar fields of point), 12 routeSegments, 13 routeTypes, 15 extensions }
+ * Column { 1 encoding (delta of scaled values, float or double), 2 packed values }
+ * </pre>
+ * Points of general track are not stored, general track is created after reading as in loadGPXFile.
+ */
+public class GPXBinaryCache {
+
+	private static final Log log = PlatformUtil.getLog(GPXBinaryCache.class);
+
+	public static final int VERSION = 1;
+	public static final String CACHE_EXT = ".gpxcache";
+
+	private static final int FILE_VERSION = 1;
+	private static final int FILE_SOURCE_SIZE = 2;
+	private static final int FILE_SOURCE_MODIFIED = 3;
+	private static final int FILE_AUTHOR = 4;
+	private static final int FILE_METADATA = 5;
+	private static final int FILE_WAYPOINT = 6;
+	private static final int FILE_TRACK = 7;
+	private static final int FILE_ROUTE = 8;
+	private static final int FILE_ANALYSIS = 9;
+
+	private static final int EXTENSION = 15;
+	private static final int EXTENSION_KEY = 1;
+	private static final int EXTENSION_VALUE = 2;
+
+	private static final int METADATA_NAME = 1;
+	private static final int METADATA_DESC = 2;
+	private static final int METADATA_LINK = 3;
+	private static final int METADATA_KEYWORDS = 4;
+	private static final int METADATA_TIME = 5;
+	private static final int METADATA_AUTHOR = 6;
+	private static final int METADATA_COPYRIGHT = 7;
+	private static final int METADATA_BOUNDS = 8;
+
+	private static final int POINT_LAT = 1;
+	private static final int POINT_LON = 2;
+	private static final int POINT_TIME = 3;
+	private static final int POINT_ELE = 4;
+	private static final int POINT_SPEED = 5;
+	private static final int POINT_HDOP = 6;
+	private static final int POINT_HEADING = 7;
+	private static final int POINT_NAME = 8;
+	private static final int POINT_LINK = 9;
+	private static final int POINT_CATEGORY = 10;
+	private static final int POINT_DESC = 11;
+	private static final int POINT_COMMENT = 12;
+	private static final int POINT_INDEX = 13;
+	private static final int POINT_DISTANCE = 14;
+
+	private static final int TRACK_NAME = 1;
+	private static final int TRACK_DESC = 2;
+	private static final int TRACK_SEGMENT = 3;
+	private static final int ROUTE_POINT = 3;
+
+	private static final int SEGMENT_NAME = 1;
+	private static final int SEGMENT_COUNT = 2;
+	private static final int SEGMENT_LAT = 3;
+	private static final int SEGMENT_LON = 4;
+	private static final int SEGMENT_TIME = 5;
+	private static final int SEGMENT_ELE = 6;
+	private static final int SEGMENT_SPEED = 7;
+	private static final int SEGMENT_HDOP = 8;
+	private static final int SEGMENT_HEADING = 9;
+	private static final int SEGMENT_ATTRIBUTES = 11;
+	private static final int SEGMENT_ROUTE_SEGMENT = 12;
+	private static final int SEGMENT_ROUTE_TYPE = 13;
+
+	private static final int COLUMN_ENCODING = 1;
+	private static final int COLUMN_VALUES = 2;
+	private static final int ENCODING_DELTA = 1;
+	private static final int ENCODING_FLOAT = 2;
+	private static final int ENCODING_DOUBLE = 3;
+	private static final double COORDINATES_SCALE = 1e7;
+	private static final double VALUES_SCALE = 1e3;
+
+	private static final int ANALYSIS_FILE_TIMESTAMP = 1;
+	private static final int ANALYSIS_FLOATS = 2;
+	private static final int ANALYSIS_LONGS = 3;
+	private static final int ANALYSIS_DOUBLES = 4;
+	private static final int ANALYSIS_INTS = 5;
+	private static final int ANALYSIS_FLAGS = 6;
+	private static final int ANALYSIS_CATEGORY = 7;
+	private static final int ANALYSIS_START = 8;
+	private static final int ANALYSIS_END = 9;
+	private static final int ANALYSIS_CHART_COUNT = 10;
+	private static final int ANALYSIS_CHART_DISTANCE = 11;
+	private static final int ANALYSIS_CHART_TIME = 12;
+	private static final int ANALYSIS_CHART_ELEVATION = 13;
+	private static final int ANALYSIS_CHART_SPEED = 14;
+	private static final int ANALYSIS_CHART_FIRST = 15;
+	private static final int ANALYSIS_CHART_LAST = 16;
+
+	public static class CachedGPX {
+		public final GPXFile gpxFile;
+		public final GPXTrackAnalysis analysis;
+
+		public CachedGPX(GPXFile gpxFile, GPXTrackAnalysis analysis) {
+			this.gpxFile = gpxFile;
+			this.analysis = analysis;
+		}
+	}
+
+	public static File getCacheFile(File cacheDir, File source) {
+		// path hash distinguishes files with the same name in different folders
+		String name = source.getName() + "_" + Integer.toHexString(source.getAbsolutePath().hashCode());
+		return new File(cacheDir, name + CACHE_EXT);
+	}
+
+	/**
+	 * Reads gpx file and analysis (for file timestamp as modification time of source) from cache if it's valid,
+	 * otherwise loads source and writes cache.
+	 * @return gpx file (with error if source couldn't be read) and its analysis
+	 */
+	public static CachedGPX loadGPXFile(File source, File cacheFile, boolean compactTracks) {
+		if (cacheFile.exists()) {
+			try {
+				CachedGPX cached = readCache(source, cacheFile, compactTracks);
+				if (cached != null) {
+					return cached;
+				}
+			} catch (IOException e) {
+				log.error("Error reading gpx cache " + cacheFile.getAbsolutePath(), e);
+			}
+		}
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(source, null, compactTracks);
+		if (gpxFile.error != null) {
+			return new CachedGPX(gpxFile, null);
+		}
+		GPXTrackAnalysis analysis = gpxFile.getAnalysis(source.lastModified());
+		try {
+			writeCache(gpxFile, analysis, source, cacheFile);
+		} catch (IOException e) {
+			log.error("Error writing gpx cache " + cacheFile.getAbsolutePath(), e);
+		}
+		return new CachedGPX(gpxFile, analysis);
+	}
+
+	/**
+	 * @return null if cache is written for other version of source or older format
+	 */
+	public static CachedGPX readCache(File source, File cacheFile, boolean compactTracks) throws IOException {
+		byte[] data = new byte[(int) cacheFile.length()];
+		DataInputStream in = new DataInputStream(new FileInputStream(cacheFile));
+		try {
+			in.readFully(data);
+		} finally {
+			Algorithms.closeStream(in);
+		}
+		CodedInputStream codedIS = CodedInputStream.newInstance(data);
+		codedIS.setSizeLimit(Integer.MAX_VALUE);
+		return new Reader(codedIS, compactTracks).readFile(source);
+	}
+
+	public static void writeCache(GPXFile gpxFile, GPXTrackAnalysis analysis, File source, File cacheFile) throws IOException {
+		Writer w = new Writer();
+		w.out.writeUInt32(FILE_VERSION, VERSION);
+		w.out.writeUInt64(FILE_SOURCE_SIZE, source.length());
+		w.out.writeUInt64(FILE_SOURCE_MODIFIED, source.lastModified());
+		w.writeString(FILE_AUTHOR, gpxFile.author);
+		w.writeMessage(FILE_METADATA, writeMetadata(gpxFile.metadata));
+		for (WptPt p : gpxFile.getPoints()) {
+			w.writeMessage(FILE_WAYPOINT, writePoint(p, -1));
+		}
+		for (Track t : gpxFile.tracks) {
+			if (!t.generalTrack) {
+				w.writeMessage(FILE_TRACK, writeTrack(t));
+			}
+		}
+		for (Route r : gpxFile.routes) {
+			Writer rw = new Writer();
+			rw.writeString(TRACK_NAME, r.name);
+			rw.writeString(TRACK_DESC, r.desc);
+			for (WptPt p : r.points) {
+				rw.writeMessage(ROUTE_POINT, writePoint(p, -1));
+			}
+			rw.writeExtensions(r);
+			w.writeMessage(FILE_ROUTE, rw);
+		}
+		if (analysis != null) {
+			w.writeMessage(FILE_ANALYSIS, writeAnalysis(analysis, source.lastModified()));
+		}
+		w.writeExtensions(gpxFile);
+
+		File tmp = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+		FileOutputStream fout = new FileOutputStream(tmp);
+		try {
+			fout.write(w.toByteArray());
+		} finally {
+			Algorithms.closeStream(fout);
+		}
+		if (!tmp.renameTo(cacheFile)) {
+			cacheFile.delete();
+			if (!tmp.renameTo(cacheFile)) {
+				tmp.delete();
+				throw new IOException("Couldn't rename " + tmp.getAbsolutePath());
+			}
+		}
+	}
+
+	private static Writer writeMetadata(Metadata m) throws IOException {
+		Writer w = new Writer();
+		w.writeString(METADATA_NAME, m.name);
+		w.writeString(METADATA_DESC, m.desc);
+		w.writeString(METADATA_LINK, m.link);
+		w.writeString(METADATA_KEYWORDS, m.keywords);
+		w.out.writeSInt64(METADATA_TIME, m.time);
+		if (m.author != null) {
+			Writer aw = new Writer();
+			aw.writeString(1, m.author.name);
+			aw.writeString(2, m.author.email);
+			aw.writeString(3, m.author.link);
+			aw.writeExtensions(m.author);
+			w.writeMessage(METADATA_AUTHOR, aw);
+		}
+		if (m.copyright != null) {
+			Writer cw = new Writer();
+			cw.writeString(1, m.copyright.author);
+			cw.writeString(2, m.copyright.year);
+			cw.writeString(3, m.copyright.license);
+			cw.writeExtensions(m.copyright);
+			w.writeMessage(METADATA_COPYRIGHT, cw);
+		}
+		if (m.bounds != null) {
+			Writer bw = new Writer();
+			bw.out.writeDouble(1, m.bounds.minlat);
+			bw.out.writeDouble(2, m.bounds.minlon);
+			bw.out.writeDouble(3, m.bounds.maxlat);
+			bw.out.writeDouble(4, m.bounds.maxlon);
+			bw.writeExtensions(m.bounds);
+			w.writeMessage(METADATA_BOUNDS, bw);
+		}
+		w.writeExtensions(m);
+		return w;
+	}
+
+	private static Writer writePoint(WptPt p, int index) throws IOException {
+		Writer w = new Writer();
+		if (index >= 0) {
+			// attributes of track point, other values are in columns
+			w.out.writeUInt32(POINT_INDEX, index);
+		} else {
+			w.out.writeDouble(POINT_LAT, p.lat);
+			w.out.writeDouble(POINT_LON, p.lon);
+			if (p.time != 0) {
+				w.out.writeSInt64(POINT_TIME, p.time);
+			}
+			if (!Double.isNaN(p.ele)) {
+				w.out.writeDouble(POINT_ELE, p.ele);
+			}
+			if (p.speed != 0) {
+				w.out.writeDouble(POINT_SPEED, p.speed);
+			}
+			if (!Double.isNaN(p.hdop)) {
+				w.out.writeDouble(POINT_HDOP, p.hdop);
+			}
+			if (!Float.isNaN(p.heading)) {
+				w.out.writeFloat(POINT_HEADING, p.heading);
+			}
+			if (p.distance != 0) {
+				w.out.writeDouble(POINT_DISTANCE, p.distance);
+			}
+		}
+		w.writeString(POINT_NAME, p.name);
+		w.writeString(POINT_LINK, p.link);
+		w.writeString(POINT_CATEGORY, p.category);
+		w.writeString(POINT_DESC, p.desc);
+		w.writeString(POINT_COMMENT, p.comment);
+		w.writeExtensions(p);
+		return w;
+	}
+
+	private static boolean hasAttributes(WptPt p) {
+		return p.name != null || p.link != null || p.category != null || p.desc != null || p.comment != null
+				|| !p.getExtensionsToRead().isEmpty();
+	}
+
+	private static Writer writeTrack(Track t) throws IOException {
+		Writer w = new Writer();
+		w.writeString(TRACK_NAME, t.name);
+		w.writeString(TRACK_DESC, t.desc);
+		for (TrkSegment s : t.segments) {
+			w.writeMessage(TRACK_SEGMENT, writeSegment(s));
+		}
+		w.writeExtensions(t);
+		return w;
+	}
+
+	private static Writer writeSegment(TrkSegment s) throws IOException {
+		int count = s.points.size();
+		double[] lat = new double[count];
+		double[] lon = new double[count];
+		long[] time = new long[count];
+		double[] ele = new double[count];
+		double[] speed = new double[count];
+		double[] hdop = new double[count];
+		double[] heading = new double[count];
+		Writer w = new Writer();
+		w.writeString(SEGMENT_NAME, s.name);
+		w.out.writeUInt32(SEGMENT_COUNT, count);
+		CompactTrkPoints compactPoints = s.isCompact() ? (CompactTrkPoints) s.points : null;
+		WptPt loaded = new WptPt();
+		List<Writer> attributes = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			WptPt p = compactPoints != null ? compactPoints.load(i, loaded) : s.points.get(i);
+			lat[i] = p.lat;
+			lon[i] = p.lon;
+			time[i] = p.time;
+			ele[i] = p.ele;
+			speed[i] = p.speed;
+			hdop[i] = p.hdop;
+			heading[i] = p.heading;
+			if (hasAttributes(p)) {
+				attributes.add(writePoint(p, i));
+			}
+		}
+		w.writeColumn(SEGMENT_LAT, lat, 0, COORDINATES_SCALE);
+		w.writeColumn(SEGMENT_LON, lon, 0, COORDINATES_SCALE);
+		w.writeTimeColumn(SEGMENT_TIME, time);
+		w.writeColumn(SEGMENT_ELE, ele, Double.NaN, VALUES_SCALE);
+		w.writeColumn(SEGMENT_SPEED, speed, 0, VALUES_SCALE);
+		w.writeColumn(SEGMENT_HDOP, hdop, Double.NaN, VALUES_SCALE);
+		w.writeColumn(SEGMENT_HEADING, heading, Double.NaN, VALUES_SCALE);
+		for (Writer aw : attributes) {
+			w.writeMessage(SEGMENT_ATTRIBUTES, aw);
+		}
+		for (RouteSegment rs : s.routeSegments) {
+			Writer rw = new Writer();
+			String[] values = {rs.id, rs.length, rs.segmentTime, rs.speed, rs.turnType, rs.turnAngle, rs.types,
+					rs.pointTypes, rs.names};
+			for (int i = 0; i < values.length; i++) {
+				rw.writeString(i + 1, values[i]);
+			}
+			w.writeMessage(SEGMENT_ROUTE_SEGMENT, rw);
+		}
+		for (RouteType rt : s.routeTypes) {
+			Writer rw = new Writer();
+			rw.writeString(1, rt.tag);
+			rw.writeString(2, rt.value);
+			w.writeMessage(SEGMENT_ROUTE_TYPE, rw);
+		}
+		w.writeExtensions(s);
+		return w;
+	}
+
+	private static Writer writeAnalysis(GPXTrackAnalysis a, long fileTimestamp) throws IOException {
+		Writer w = new Writer();
+		w.out.writeSInt64(ANALYSIS_FILE_TIMESTAMP, fileTimestamp);
+		Writer floats = new Writer();
+		for (float f : new float[] {a.totalDistance, a.totalDistanceWithoutGaps, a.totalDistanceMoving,
+				a.totalDistanceMovingWithoutGaps, a.minSpeed, a.maxSpeed, a.avgSpeed}) {
+			floats.out.writeFloatNoTag(f);
+		}
+		w.writeMessage(ANALYSIS_FLOATS, floats);
+		Writer longs = new Writer();
+		for (long l : new long[] {a.startTime, a.endTime, a.timeSpan, a.timeSpanWithoutGaps, a.timeMoving,
+				a.timeMovingWithoutGaps}) {
+			longs.out.writeSInt64NoTag(l);
+		}
+		w.writeMessage(ANALYSIS_LONGS, longs);
+		Writer doubles = new Writer();
+		for (double d : new double[] {a.diffElevationUp, a.diffElevationDown, a.avgElevation, a.minElevation,
+				a.maxElevation, a.minHdop, a.maxHdop, a.metricEnd, a.secondaryMetricEnd, a.left, a.right, a.top,
+				a.bottom}) {
+			doubles.out.writeDoubleNoTag(d);
+		}
+		w.writeMessage(ANALYSIS_DOUBLES, doubles);
+		Writer ints = new Writer();
+		for (int i : new int[] {a.totalTracks, a.points, a.wptPoints}) {
+			ints.out.writeSInt32NoTag(i);
+		}
+		w.writeMessage(ANALYSIS_INTS, ints);
+		w.out.writeUInt32(ANALYSIS_FLAGS, (a.hasElevationData ? 1 : 0) | (a.hasSpeedData ? 2 : 0)
+				| (a.hasSpeedInTrack ? 4 : 0) | (a.wptCategoryNames != null ? 8 : 0));
+		if (a.wptCategoryNames != null) {
+			for (String category : a.wptCategoryNames) {
+				w.out.writeString(ANALYSIS_CATEGORY, category);
+			}
+		}
+		if (a.locationStart != null) {
+			w.writeMessage(ANALYSIS_START, writePoint(a.locationStart, -1));
+		}
+		if (a.locationEnd != null) {
+			w.writeMessage(ANALYSIS_END, writePoint(a.locationEnd, -1));
+		}
+		// elevation and speed data are collected together for each point
+		int count = a.elevationData == null ? 0 : a.elevationData.size();
+		if (count > 0 && a.speedData != null && a.speedData.size() == count) {
+			w.out.writeUInt32(ANALYSIS_CHART_COUNT, count);
+			Writer distances = new Writer();
+			Writer times = new Writer();
+			Writer elevations = new Writer();
+			Writer speeds = new Writer();
+			Writer first = new Writer();
+			Writer last = new Writer();
+			for (int i = 0; i < count; i++) {
+				Elevation e = a.elevationData.get(i);
+				Speed s = a.speedData.get(i);
+				distances.out.writeFloatNoTag(e.distance);
+				times.out.writeSInt32NoTag(e.time);
+				elevations.out.writeFloatNoTag(e.elevation);
+				speeds.out.writeFloatNoTag(s.speed);
+				if (e.firstPoint) {
+					first.out.writeUInt32NoTag(i);
+				}
+				if (e.lastPoint) {
+					last.out.writeUInt32NoTag(i);
+				}
+			}
+			w.writeMessage(ANALYSIS_CHART_DISTANCE, distances);
+			w.writeMessage(ANALYSIS_CHART_TIME, times);
+			w.writeMessage(ANALYSIS_CHART_ELEVATION, elevations);
+			w.writeMessage(ANALYSIS_CHART_SPEED, speeds);
+			w.writeMessage(ANALYSIS_CHART_FIRST, first);
+			w.writeMessage(ANALYSIS_CHART_LAST, last);
+		}
+		return w;
+	}
+
+	private static class Writer {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+
+		byte[] toByteArray() throws IOException {
+			out.flush();
+			return bytes.toByteArray();
+		}
+
+		void writeString(int field, String value) throws IOException {
+			if (value != null) {
+				out.writeString(field, value);
+			}
+		}
+
+		void writeMessage(int field, Writer message) throws IOException {
+			byte[] data = message.toByteArray();
+			out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			out.writeRawVarint32(data.length);
+			out.writeRawBytes(data);
+		}
+
+		void writeExtension(String key, String value) throws IOException {
+			Writer ew = new Writer();
+			ew.writeString(EXTENSION_KEY, key);
+			ew.writeString(EXTENSION_VALUE, value);
+			writeMessage(EXTENSION, ew);
+		}
+
+		void writeExtensions(GPXExtensions e) throws IOException {
+			for (Map.Entry<String, String> entry : e.getExtensionsToRead().entrySet()) {
+				writeExtension(entry.getKey(), entry.getValue());
+			}
+		}
+
+		/**
+		 * Column isn't written if all values are default. Values are stored as deltas of values multiplied by scale
+		 * if it doesn't change them, otherwise as floats or doubles.
+		 */
+		void writeColumn(int field, double[] values, double defaultValue, double scale) throws IOException {
+			boolean allDefault = true;
+			boolean scaled = true;
+			boolean floats = true;
+			for (double v : values) {
+				if (Double.isNaN(defaultValue) ? !Double.isNaN(v) : v != defaultValue) {
+					allDefault = false;
+				}
+				if (scaled && (Double.isNaN(v) || Math.abs(v) > Integer.MAX_VALUE || Math.round(v * scale) / scale != v)) {
+					scaled = false;
+				}
+				if (floats && (double) (float) v != v && !Double.isNaN(v)) {
+					floats = false;
+				}
+			}
+			if (allDefault) {
+				return;
+			}
+			Writer cw = new Writer();
+			Writer vw = new Writer();
+			long prev = 0;
+			for (double v : values) {
+				if (scaled) {
+					long l = Math.round(v * scale);
+					vw.out.writeSInt64NoTag(l - prev);
+					prev = l;
+				} else if (floats) {
+					vw.out.writeFloatNoTag((float) v);
+				} else {
+					vw.out.writeDoubleNoTag(v);
+				}
+			}
+			cw.out.writeUInt32(COLUMN_ENCODING, scaled ? ENCODING_DELTA : (floats ? ENCODING_FLOAT : ENCODING_DOUBLE));
+			cw.writeMessage(COLUMN_VALUES, vw);
+			writeMessage(field, cw);
+		}
+
+		void writeTimeColumn(int field, long[] values) throws IOException {
+			boolean allDefault = true;
+			for (long v : values) {
+				if (v != 0) {
+					allDefault = false;
+					break;
+				}
+			}
+			if (allDefault) {
+				return;
+			}
+			Writer cw = new Writer();
+			Writer vw = new Writer();
+			long prev = 0;
+			for (long v : values) {
+				vw.out.writeSInt64NoTag(v - prev);
+				prev = v;
+			}
+			cw.out.writeUInt32(COLUMN_ENCODING, ENCODING_DELTA);
+			cw.writeMessage(COLUMN_VALUES, vw);
+			writeMessage(field, cw);
+		}
+	}
+
+	private static class Reader {
+		private final CodedInputStream codedIS;
+		private final boolean compactTracks;
+
+		Reader(CodedInputStream codedIS, boolean compactTracks) {
+			this.codedIS = codedIS;
+			this.compactTracks = compactTracks;
+		}
+
+		private int pushMessage() throws IOException {
+			int length = codedIS.readRawVarint32();
+			return codedIS.pushLimit(length);
+		}
+
+		CachedGPX readFile(File source) throws IOException {
+			GPXFile gpxFile = new GPXFile(null);
+			GPXTrackAnalysis analysis = null;
+			int version = 0;
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				switch (tag) {
+				case 0:
+					gpxFile.path = source.getAbsolutePath();
+					gpxFile.modifiedTime = source.lastModified();
+					gpxFile.addGeneralTrack();
+					// points on prime meridian are stored in segments, general segment misses points between segments
+					TrkSegment generalSegment = gpxFile.getGeneralSegment();
+					if (generalSegment != null) {
+						GPXUtilities.createArtificialPrimeMeridianPoints(generalSegment.points, true);
+					}
+					if (analysis != null) {
+						analysis.name = gpxFile.path;
+					}
+					return new CachedGPX(gpxFile, analysis);
+				case FILE_VERSION:
+					version = codedIS.readRawVarint32();
+					if (version != VERSION) {
+						return null;
+					}
+					break;
+				case FILE_SOURCE_SIZE:
+					if (version != VERSION || codedIS.readRawVarint64() != source.length()) {
+						return null;
+					}
+					break;
+				case FILE_SOURCE_MODIFIED:
+					if (version != VERSION || codedIS.readRawVarint64() != source.lastModified()) {
+						return null;
+					}
+					break;
+				case FILE_AUTHOR:
+					gpxFile.author = codedIS.readString();
+					break;
+				case FILE_METADATA:
+					int oldLimit = pushMessage();
+					gpxFile.metadata = readMetadata();
+					codedIS.popLimit(oldLimit);
+					break;
+				case FILE_WAYPOINT:
+					oldLimit = pushMessage();
+					WptPt p = new WptPt();
+					readPoint(p);
+					gpxFile.addPoint(p);
+					codedIS.popLimit(oldLimit);
+					break;
+				case FILE_TRACK:
+					oldLimit = pushMessage();
+					gpxFile.tracks.add(readTrack());
+					codedIS.popLimit(oldLimit);
+					break;
+				case FILE_ROUTE:
+					oldLimit = pushMessage();
+					gpxFile.routes.add(readRoute());
+					codedIS.popLimit(oldLimit);
+					break;
+				case FILE_ANALYSIS:
+					oldLimit = pushMessage();
+					analysis = readAnalysis();
+					codedIS.popLimit(oldLimit);
+					break;
+				case EXTENSION:
+					readExtension(gpxFile);
+					break;
+				default:
+					codedIS.skipField(t);
+					break;
+				}
+			}
+		}
+
+		private void readExtension(GPXExtensions e) throws IOException {
+			int oldLimit = pushMessage();
+			String key = null;
+			String value = null;
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				if (tag == 0) {
+					break;
+				} else if (tag == EXTENSION_KEY) {
+					key = codedIS.readString();
+				} else if (tag == EXTENSION_VALUE) {
+					value = codedIS.readString();
+				} else {
+					codedIS.skipField(t);
+				}
+			}
+			codedIS.popLimit(oldLimit);
+			e.getExtensionsToWrite().put(key, value);
+		}
+
+		private Metadata readMetadata() throws IOException {
+			Metadata m = new Metadata();
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				switch (tag) {
+				case 0:
+					return m;
+				case METADATA_NAME:
+					m.name = codedIS.readString();
+					break;
+				case METADATA_DESC:
+					m.desc = codedIS.readString();
+					break;
+				case METADATA_LINK:
+					m.link = codedIS.readString();
+					break;
+				case METADATA_KEYWORDS:
+					m.keywords = codedIS.readString();
+					break;
+				case METADATA_TIME:
+					m.time = codedIS.readSInt64();
+					break;
+				case METADATA_AUTHOR:
+					int oldLimit = pushMessage();
+					m.author = new Author();
+					String[] author = readStrings(new String[3], m.author);
+					m.author.name = author[0];
+					m.author.email = author[1];
+					m.author.link = author[2];
+					codedIS.popLimit(oldLimit);
+					break;
+				case METADATA_COPYRIGHT:
+					oldLimit = pushMessage();
+					m.copyright = new Copyright();
+					String[] copyright = readStrings(new String[3], m.copyright);
+					m.copyright.author = copyright[0];
+					m.copyright.year = copyright[1];
+					m.copyright.license = copyright[2];
+					codedIS.popLimit(oldLimit);
+					break;
+				case METADATA_BOUNDS:
+					oldLimit = pushMessage();
+					m.bounds = readBounds();
+					codedIS.popLimit(oldLimit);
+					break;
+				case EXTENSION:
+					readExtension(m);
+					break;
+				default:
+					codedIS.skipField(t);
+					break;
+				}
+			}
+		}
+
+		// strings of fields 1..values.length and extensions
+		private String[] readStrings(String[] values, GPXExtensions e) throws IOException {
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				if (tag == 0) {
+					return values;
+				} else if (tag <= values.length) {
+					values[tag - 1] = codedIS.readString();
+				} else if (tag == EXTENSION && e != null) {
+					readExtension(e);
+				} else {
+					codedIS.skipField(t);
+				}
+			}
+		}
+
+		private Bounds readBounds() throws IOException {
+			Bounds b = new Bounds();
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				switch (tag) {
+				case 0:
+					return b;
+				case 1:
+					b.minlat = codedIS.readDouble();
+					break;
+				case 2:
+					b.minlon = codedIS.readDouble();
+					break;
+				case 3:
+					b.maxlat = codedIS.readDouble();
+					break;
+				case 4:
+					b.maxlon = codedIS.readDouble();
+					break;
+				case EXTENSION:
+					readExtension(b);
+					break;
+				default:
+					codedIS.skipField(t);
+					break;
+				}
+			}
+		}
+
+		/**
+		 * @return index of track point for attributes or -1
+		 */
+		private int readPoint(WptPt p) throws IOException {
+			int index = -1;
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				switch (tag) {
+				case 0:
+					return index;
+				case POINT_LAT:
+					p.lat = codedIS.readDouble();
+					break;
+				case POINT_LON:
+					p.lon = codedIS.readDouble();
+					break;
+				case POINT_TIME:
+					p.time = codedIS.readSInt64();
+					break;
+				case POINT_ELE:
+					p.ele = codedIS.readDouble();
+					break;
+				case POINT_SPEED:
+					p.speed = codedIS.readDouble();
+					break;
+				case POINT_HDOP:
+					p.hdop = codedIS.readDouble();
+					break;
+				case POINT_HEADING:
+					p.heading = codedIS.readFloat();
+					break;
+				case POINT_NAME:
+					p.name = codedIS.readString();
+					break;
+				case POINT_LINK:
+					p.link = codedIS.readString();
+					break;
+				case POINT_CATEGORY:
+					p.category = codedIS.readString();
+					break;
+				case POINT_DESC:
+					p.desc = codedIS.readString();
+					break;
+				case POINT_COMMENT:
+					p.comment = codedIS.readString();
+					break;
+				case POINT_INDEX:
+					index = codedIS.readRawVarint32();
+					break;
+				case POINT_DISTANCE:
+					p.distance = codedIS.readDouble();
+					break;
+				case EXTENSION:
+					readExtension(p);
+					break;
+				default:
+					codedIS.skipField(t);
+					break;
+				}
+			}
+		}
+
+		private Track readTrack() throws IOException {
+			Track track = new Track();
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				switch (tag) {
+				case 0:
+					return track;
+				case TRACK_NAME:
+					track.name = codedIS.readString();
+					break;
+				case TRACK_DESC:
+					track.desc = codedIS.readString();
+					break;
+				case TRACK_SEGMENT:
+					int oldLimit = pushMessage();
+					track.segments.add(readSegment());
+					codedIS.popLimit(oldLimit);
+					break;
+				case EXTENSION:
+					readExtension(track);
+					break;
+				default:
+					codedIS.skipField(t);
+					break;
+				}
+			}
+		}
+
+		private Route readRoute() throws IOException {
+			Route route = new Route();
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				switch (tag) {
+				case 0:
+					return route;
+				case TRACK_NAME:
+					route.name = codedIS.readString();
+					break;
+				case TRACK_DESC:
+					route.desc = codedIS.readString();
+					break;
+				case ROUTE_POINT:
+					int oldLimit = pushMessage();
+					WptPt p = new WptPt();
+					readPoint(p);
+					route.points.add(p);
+					codedIS.popLimit(oldLimit);
+					break;
+				case EXTENSION:
+					readExtension(route);
+					break;
+				default:
+					codedIS.skipField(t);
+					break;
+				}
+			}
+		}
+
+		private TrkSegment readSegment() throws IOException {
+			TrkSegment segment = new TrkSegment();
+			int count = 0;
+			double[] lat = null;
+			double[] lon = null;
+			long[] time = null;
+			double[] ele = null;
+			double[] speed = null;
+			double[] hdop = null;
+			double[] heading = null;
+			TIntObjectHashMap<WptPt> attributes = new TIntObjectHashMap<>();
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				switch (tag) {
+				case 0:
+					segment.points = compactTracks ? new CompactTrkPoints(count) : new ArrayList<WptPt>(count);
+					WptPt loaded = new WptPt();
+					for (int i = 0; i < count; i++) {
+						WptPt p = compactTracks ? loaded : new WptPt();
+						WptPt a = attributes.get(i);
+						if (a != null) {
+							p.name = a.name;
+							p.link = a.link;
+							p.category = a.category;
+							p.desc = a.desc;
+							p.comment = a.comment;
+							p.extensions = a.extensions;
+						} else if (compactTracks) {
+							p.name = p.link = p.category = p.desc = p.comment = null;
+							p.extensions = null;
+						}
+						p.lat = lat != null ? lat[i] : 0;
+						p.lon = lon != null ? lon[i] : 0;
+						p.time = time != null ? time[i] : 0;
+						p.ele = ele != null ? ele[i] : Double.NaN;
+						p.speed = speed != null ? speed[i] : 0;
+						p.hdop = hdop != null ? hdop[i] : Double.NaN;
+						p.heading = heading != null ? (float) heading[i] : Float.NaN;
+						p.distance = 0;
+						segment.points.add(p);
+					}
+					return segment;
+				case SEGMENT_NAME:
+					segment.name = codedIS.readString();
+					break;
+				case SEGMENT_COUNT:
+					count = codedIS.readRawVarint32();
+					break;
+				case SEGMENT_LAT:
+					lat = readColumn(count, COORDINATES_SCALE);
+					break;
+				case SEGMENT_LON:
+					lon = readColumn(count, COORDINATES_SCALE);
+					break;
+				case SEGMENT_TIME:
+					time = readTimeColumn(count);
+					break;
+				case SEGMENT_ELE:
+					ele = readColumn(count, VALUES_SCALE);
+					break;
+				case SEGMENT_SPEED:
+					speed = readColumn(count, VALUES_SCALE);
+					break;
+				case SEGMENT_HDOP:
+					hdop = readColumn(count, VALUES_SCALE);
+					break;
+				case SEGMENT_HEADING:
+					heading = readColumn(count, VALUES_SCALE);
+					break;
+				case SEGMENT_ATTRIBUTES:
+					int oldLimit = pushMessage();
+					WptPt a = new WptPt();
+					int index = readPoint(a);
+					if (index >= 0) {
+						attributes.put(index, a);
+					}
+					codedIS.popLimit(oldLimit);
+					break;
+				case SEGMENT_ROUTE_SEGMENT:
+					oldLimit = pushMessage();
+					String[] values = readStrings(new String[9], null);
+					RouteSegment rs = new RouteSegment();
+					rs.id = values[0];
+					rs.length = values[1];
+					rs.segmentTime = values[2];
+					rs.speed = values[3];
+					rs.turnType = values[4];
+					rs.turnAngle = values[5];
+					rs.types = values[6];
+					rs.pointTypes = values[7];
+					rs.names = values[8];
+					segment.routeSegments.add(rs);
+					codedIS.popLimit(oldLimit);
+					break;
+				case SEGMENT_ROUTE_TYPE:
+					oldLimit = pushMessage();
+					String[] type = readStrings(new String[2], null);
+					RouteType routeType = new RouteType();
+					routeType.tag = type[0];
+					routeType.value = type[1];
+					segment.routeTypes.add(routeType);
+					codedIS.popLimit(oldLimit);
+					break;
+				case EXTENSION:
+					readExtension(segment);
+					break;
+				default:
+					codedIS.skipField(t);
+					break;
+				}
+			}
+		}
+
+		private double[] readColumn(int count, double scale) throws IOException {
+			int oldLimit = pushMessage();
+			double[] values = new double[count];
+			int encoding = 0;
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				if (tag == 0) {
+					break;
+				} else if (tag == COLUMN_ENCODING) {
+					encoding = codedIS.readRawVarint32();
+				} else if (tag == COLUMN_VALUES) {
+					int valuesLimit = pushMessage();
+					long prev = 0;
+					for (int i = 0; i < count; i++) {
+						if (encoding == ENCODING_DELTA) {
+							prev += codedIS.readSInt64();
+							values[i] = prev / scale;
+						} else if (encoding == ENCODING_FLOAT) {
+							values[i] = codedIS.readFloat();
+						} else if (encoding == ENCODING_DOUBLE) {
+							values[i] = codedIS.readDouble();
+						} else {
+							throw new IOException("Unknown column encoding " + encoding);
+						}
+					}
+					codedIS.popLimit(valuesLimit);
+				} else {
+					codedIS.skipField(t);
+				}
+			}
+			codedIS.popLimit(oldLimit);
+			return values;
+		}
+
+		private long[] readTimeColumn(int count) throws IOException {
+			int oldLimit = pushMessage();
+			long[] values = new long[count];
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				if (tag == 0) {
+					break;
+				} else if (tag == COLUMN_VALUES) {
+					int valuesLimit = pushMessage();
+					long prev = 0;
+					for (int i = 0; i < count; i++) {
+						prev += codedIS.readSInt64();
+						values[i] = prev;
+					}
+					codedIS.popLimit(valuesLimit);
+				} else {
+					codedIS.skipField(t);
+				}
+			}
+			codedIS.popLimit(oldLimit);
+			return values;
+		}
+
+		private GPXTrackAnalysis readAnalysis() throws IOException {
+			GPXTrackAnalysis a = new GPXTrackAnalysis();
+			a.elevationData = new ArrayList<>();
+			a.speedData = new ArrayList<>();
+			int count = 0;
+			float[] distances = null;
+			int[] times = null;
+			float[] elevations = null;
+			float[] speeds = null;
+			TIntArrayList first = new TIntArrayList();
+			TIntArrayList last = new TIntArrayList();
+			while (true) {
+				int t = codedIS.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				switch (tag) {
+				case 0:
+					for (int i = 0; i < count; i++) {
+						Elevation e = new Elevation();
+						Speed s = new Speed();
+						e.distance = s.distance = distances != null ? distances[i] : 0;
+						e.time = s.time = times != null ? times[i] : 0;
+						e.elevation = elevations != null ? elevations[i] : Float.NaN;
+						s.speed = speeds != null ? speeds[i] : 0;
+						a.elevationData.add(e);
+						a.speedData.add(s);
+					}
+					for (int i = 0; i < first.size(); i++) {
+						a.elevationData.get(first.get(i)).firstPoint = true;
+						a.speedData.get(first.get(i)).firstPoint = true;
+					}
+					for (int i = 0; i < last.size(); i++) {
+						a.elevationData.get(last.get(i)).lastPoint = true;
+						a.speedData.get(last.get(i)).lastPoint = true;
+					}
+					return a;
+				case ANALYSIS_FLOATS:
+					int oldLimit = pushMessage();
+					a.totalDistance = codedIS.readFloat();
+					a.totalDistanceWithoutGaps = codedIS.readFloat();
+					a.totalDistanceMoving = codedIS.readFloat();
+					a.totalDistanceMovingWithoutGaps = codedIS.readFloat();
+					a.minSpeed = codedIS.readFloat();
+					a.maxSpeed = codedIS.readFloat();
+					a.avgSpeed = codedIS.readFloat();
+					codedIS.popLimit(oldLimit);
+					break;
+				case ANALYSIS_LONGS:
+					oldLimit = pushMessage();
+					a.startTime = codedIS.readSInt64();
+					a.endTime = codedIS.readSInt64();
+					a.timeSpan = codedIS.readSInt64();
+					a.timeSpanWithoutGaps = codedIS.readSInt64();
+					a.timeMoving = codedIS.readSInt64();
+					a.timeMovingWithoutGaps = codedIS.readSInt64();
+					codedIS.popLimit(oldLimit);
+					break;
+				case ANALYSIS_DOUBLES:
+					oldLimit = pushMessage();
+					a.diffElevationUp = codedIS.readDouble();
+					a.diffElevationDown = codedIS.readDouble();
+					a.avgElevation = codedIS.readDouble();
+					a.minElevation = codedIS.readDouble();
+					a.maxElevation = codedIS.readDouble();
+					a.minHdop = codedIS.readDouble();
+					a.maxHdop = codedIS.readDouble();
+					a.metricEnd = codedIS.readDouble();
+					a.secondaryMetricEnd = codedIS.readDouble();
+					a.left = codedIS.readDouble();
+					a.right = codedIS.readDouble();
+					a.top = codedIS.readDouble();
+					a.bottom = codedIS.readDouble();
+					codedIS.popLimit(oldLimit);
+					break;
+				case ANALYSIS_INTS:
+					oldLimit = pushMessage();
+					a.totalTracks = codedIS.readSInt32();
+					a.points = codedIS.readSInt32();
+					a.wptPoints = codedIS.readSInt32();
+					codedIS.popLimit(oldLimit);
+					break;
+				case ANALYSIS_FLAGS:
+					int flags = codedIS.readRawVarint32();
+					a.hasElevationData = (flags & 1) != 0;
+					a.hasSpeedData = (flags & 2) != 0;
+					a.hasSpeedInTrack = (flags & 4) != 0;
+					if ((flags & 8) != 0 && a.wptCategoryNames == null) {
+						a.wptCategoryNames = new LinkedHashSet<>();
+					}
+					break;
+				case ANALYSIS_CATEGORY:
+					if (a.wptCategoryNames == null) {
+						a.wptCategoryNames = new LinkedHashSet<>();
+					}
+					a.wptCategoryNames.add(codedIS.readString());
+					break;
+				case ANALYSIS_START:
+					oldLimit = pushMessage();
+					a.locationStart = new WptPt();
+					readPoint(a.locationStart);
+					codedIS.popLimit(oldLimit);
+					break;
+				case ANALYSIS_END:
+					oldLimit = pushMessage();
+					a.locationEnd = new WptPt();
+					readPoint(a.locationEnd);
+					codedIS.popLimit(oldLimit);
+					break;
+				case ANALYSIS_CHART_COUNT:
+					count = codedIS.readRawVarint32();
+					break;
+				case ANALYSIS_CHART_DISTANCE:
+					distances = readFloats(count);
+					break;
+				case ANALYSIS_CHART_TIME:
+					oldLimit = pushMessage();
+					times = new int[count];
+					for (int i = 0; i < count; i++) {
+						times[i] = codedIS.readSInt32();
+					}
+					codedIS.popLimit(oldLimit);
+					break;
+				case ANALYSIS_CHART_ELEVATION:
+					elevations = readFloats(count);
+					break;
+				case ANALYSIS_CHART_SPEED:
+					speeds = readFloats(count);
+					break;
+				case ANALYSIS_CHART_FIRST:
+					readIndexes(first);
+					break;
+				case ANALYSIS_CHART_LAST:
+					readIndexes(last);
+					break;
+				default:
+					codedIS.skipField(t);
+					break;
+				}
+			}
+		}
+
+		private float[] readFloats(int count) throws IOException {
+			int oldLimit = pushMessage();
+			float[] values = new float[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = codedIS.readFloat();
+			}
+			codedIS.popLimit(oldLimit);
+			return values;
+		}
+
+		private void readIndexes(TIntArrayList indexes) throws IOException {
+			int oldLimit = pushMessage();
+			while (codedIS.getBytesUntilLimit() > 0) {
+				indexes.add(codedIS.readRawVarint32());
+			}
+			codedIS.popLimit(oldLimit);
+		}
+	}
+}
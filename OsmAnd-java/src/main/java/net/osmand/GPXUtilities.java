@@ -10,12 +10,17 @@ import net.osmand.router.RouteColorize.ColorizationType;
 import net.osmand.util.Algorithms;
 import net.osmand.util.MapUtils;
 
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
 import org.apache.commons.logging.Log;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlSerializer;
 
 import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -31,6 +36,7 @@ import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -43,6 +49,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TimeZone;
@@ -64,13 +71,23 @@ public class GPXUtilities {
 	public static final int TRAVEL_GPX_CONVERT_MULT_1 = 2;
 	public static final int TRAVEL_GPX_CONVERT_MULT_2 = 5;
 
-	private static final SimpleDateFormat GPX_TIME_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
-	private static final SimpleDateFormat GPX_TIME_FORMAT_MILLIS = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
-
-	static {
-		GPX_TIME_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
-		GPX_TIME_FORMAT_MILLIS.setTimeZone(TimeZone.getTimeZone("UTC"));
-	}
+	private static final String GPX_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+	private static final String GPX_TIME_PATTERN_MILLIS = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+	// SimpleDateFormat is not thread safe, formats are used only for times which are not handled by fast parser
+	private static final ThreadLocal<SimpleDateFormat[]> GPX_TIME_FORMATS = new ThreadLocal<SimpleDateFormat[]>() {
+		@Override
+		protected SimpleDateFormat[] initialValue() {
+			SimpleDateFormat format = new SimpleDateFormat(GPX_TIME_PATTERN, Locale.US);
+			SimpleDateFormat formatMillis = new SimpleDateFormat(GPX_TIME_PATTERN_MILLIS, Locale.US);
+			format.setTimeZone(TimeZone.getTimeZone("UTC"));
+			formatMillis.setTimeZone(TimeZone.getTimeZone("UTC"));
+			return new SimpleDateFormat[] {format, formatMillis};
+		}
+	};
+	private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+	// Gregorian calendar only (SimpleDateFormat switches to Julian before 1582) and 4 digits years
+	private static final long FAST_TIME_MIN = daysFromCivil(1583, 1, 1) * DAY_MILLIS;
+	private static final long FAST_TIME_MAX = daysFromCivil(10000, 1, 1) * DAY_MILLIS;
 
 	private final static NumberFormat LAT_LON_FORMAT = new DecimalFormat("0.00#####", new DecimalFormatSymbols(Locale.US));
 	// speed, ele, hdop
@@ -453,6 +470,19 @@ public class GPXUtilities {
 			return !routeSegments.isEmpty() && !routeTypes.isEmpty();
 		}
 
+		public boolean isCompact() {
+			return points instanceof CompactTrkPoints;
+		}
+
+		/**
+		 * Replaces points with columnar list (see CompactTrkPoints), so segment doesn't hold point objects anymore
+		 */
+		public void compactPoints() {
+			if (!isCompact()) {
+				points = new CompactTrkPoints(points);
+			}
+		}
+
 		public List<GPXTrackAnalysis> splitByDistance(double meters, boolean joinSegments) {
 			return split(getDistanceMetric(), getTimeSplit(), meters, joinSegments);
 		}
@@ -468,6 +498,325 @@ public class GPXUtilities {
 		}
 	}
 
+	/**
+	 * Track points stored by columns: coordinates, time, elevation etc. are kept in primitive arrays (arrays of
+	 * optional values are created with first specified value), names, descriptions and extensions are kept only
+	 * for points which have them. List returns copies of points, so changed point should be stored back with set.
+	 */
+	public static class CompactTrkPoints extends AbstractList<WptPt> implements RandomAccess {
+
+		private static final int DEFAULT_CAPACITY = 16;
+		private static final byte FIRST_POINT = 1;
+		private static final byte LAST_POINT = 2;
+		private static final byte DELETED = 4;
+		// speed, altitude, slope and point colours
+		private static final int COLORS = 4;
+
+		private int size;
+		private double[] lat;
+		private double[] lon;
+		private double[] distance;
+		private long[] time;
+		private double[] ele;
+		private double[] speed;
+		private double[] hdop;
+		private float[] heading;
+		private byte[] flags;
+		private int[] colors;
+		// point objects hold only name, link, category, desc, comment and extensions
+		private TIntObjectHashMap<WptPt> attributes = new TIntObjectHashMap<>();
+
+		public CompactTrkPoints() {
+			this(DEFAULT_CAPACITY);
+		}
+
+		public CompactTrkPoints(int capacity) {
+			capacity = Math.max(capacity, 1);
+			lat = new double[capacity];
+			lon = new double[capacity];
+			distance = new double[capacity];
+		}
+
+		public CompactTrkPoints(Collection<WptPt> points) {
+			this(points.size());
+			addAll(points);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public WptPt get(int index) {
+			return load(index, new WptPt());
+		}
+
+		/**
+		 * Loads point to given object (all fields are overwritten), so points could be iterated without allocations
+		 */
+		public WptPt load(int index, WptPt point) {
+			checkIndex(index);
+			point.lat = lat[index];
+			point.lon = lon[index];
+			point.distance = distance[index];
+			point.time = time == null ? 0 : time[index];
+			point.ele = ele == null ? Double.NaN : ele[index];
+			point.speed = speed == null ? 0 : speed[index];
+			point.hdop = hdop == null ? Double.NaN : hdop[index];
+			point.heading = heading == null ? Float.NaN : heading[index];
+			byte f = flags == null ? 0 : flags[index];
+			point.firstPoint = (f & FIRST_POINT) != 0;
+			point.lastPoint = (f & LAST_POINT) != 0;
+			point.deleted = (f & DELETED) != 0;
+			int c = index * COLORS;
+			point.speedColor = colors == null ? 0 : colors[c];
+			point.altitudeColor = colors == null ? 0 : colors[c + 1];
+			point.slopeColor = colors == null ? 0 : colors[c + 2];
+			point.colourARGB = colors == null ? 0 : colors[c + 3];
+			WptPt a = attributes.get(index);
+			point.name = a == null ? null : a.name;
+			point.link = a == null ? null : a.link;
+			point.category = a == null ? null : a.category;
+			point.desc = a == null ? null : a.desc;
+			point.comment = a == null ? null : a.comment;
+			point.extensions = a == null ? null : a.extensions;
+			point.extensionsWriter = a == null ? null : a.extensionsWriter;
+			return point;
+		}
+
+		@Override
+		public WptPt set(int index, WptPt point) {
+			WptPt old = get(index);
+			store(index, point);
+			return old;
+		}
+
+		@Override
+		public void add(int index, WptPt point) {
+			if (index < 0 || index > size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			if (size == lat.length) {
+				grow(size + 1);
+			}
+			if (index < size) {
+				move(index, index + 1, size - index);
+				shiftAttributes(index, 1);
+			}
+			size++;
+			modCount++;
+			store(index, point);
+		}
+
+		@Override
+		public WptPt remove(int index) {
+			WptPt old = get(index);
+			attributes.remove(index);
+			move(index + 1, index, size - index - 1);
+			shiftAttributes(index + 1, -1);
+			size--;
+			modCount++;
+			return old;
+		}
+
+		@Override
+		public void clear() {
+			size = 0;
+			attributes.clear();
+			modCount++;
+		}
+
+		public double getLatitude(int index) {
+			checkIndex(index);
+			return lat[index];
+		}
+
+		public double getLongitude(int index) {
+			checkIndex(index);
+			return lon[index];
+		}
+
+		public double getDistance(int index) {
+			checkIndex(index);
+			return distance[index];
+		}
+
+		public void setDistance(int index, double dist) {
+			checkIndex(index);
+			distance[index] = dist;
+		}
+
+		public long getTime(int index) {
+			checkIndex(index);
+			return time == null ? 0 : time[index];
+		}
+
+		public double getElevation(int index) {
+			checkIndex(index);
+			return ele == null ? Double.NaN : ele[index];
+		}
+
+		public double getSpeed(int index) {
+			checkIndex(index);
+			return speed == null ? 0 : speed[index];
+		}
+
+		public double getHdop(int index) {
+			checkIndex(index);
+			return hdop == null ? Double.NaN : hdop[index];
+		}
+
+		public boolean isFirstPoint(int index) {
+			checkIndex(index);
+			return flags != null && (flags[index] & FIRST_POINT) != 0;
+		}
+
+		public boolean isLastPoint(int index) {
+			checkIndex(index);
+			return flags != null && (flags[index] & LAST_POINT) != 0;
+		}
+
+		private void store(int i, WptPt p) {
+			lat[i] = p.lat;
+			lon[i] = p.lon;
+			distance[i] = p.distance;
+			if (time != null || p.time != 0) {
+				if (time == null) {
+					time = new long[lat.length];
+				}
+				time[i] = p.time;
+			}
+			if (ele != null || !Double.isNaN(p.ele)) {
+				ele = column(ele, Double.NaN);
+				ele[i] = p.ele;
+			}
+			if (speed != null || p.speed != 0) {
+				speed = column(speed, 0);
+				speed[i] = p.speed;
+			}
+			if (hdop != null || !Double.isNaN(p.hdop)) {
+				hdop = column(hdop, Double.NaN);
+				hdop[i] = p.hdop;
+			}
+			if (heading != null || !Float.isNaN(p.heading)) {
+				if (heading == null) {
+					heading = new float[lat.length];
+					Arrays.fill(heading, Float.NaN);
+				}
+				heading[i] = p.heading;
+			}
+			byte f = (byte) ((p.firstPoint ? FIRST_POINT : 0) | (p.lastPoint ? LAST_POINT : 0) | (p.deleted ? DELETED : 0));
+			if (flags != null || f != 0) {
+				if (flags == null) {
+					flags = new byte[lat.length];
+				}
+				flags[i] = f;
+			}
+			if (colors != null || p.speedColor != 0 || p.altitudeColor != 0 || p.slopeColor != 0 || p.colourARGB != 0) {
+				if (colors == null) {
+					colors = new int[lat.length * COLORS];
+				}
+				int c = i * COLORS;
+				colors[c] = p.speedColor;
+				colors[c + 1] = p.altitudeColor;
+				colors[c + 2] = p.slopeColor;
+				colors[c + 3] = p.colourARGB;
+			}
+			if (p.name != null || p.link != null || p.category != null || p.desc != null || p.comment != null
+					|| !p.getExtensionsToRead().isEmpty() || p.extensionsWriter != null) {
+				WptPt a = new WptPt();
+				a.name = p.name;
+				a.link = p.link;
+				a.category = p.category;
+				a.desc = p.desc;
+				a.comment = p.comment;
+				a.extensions = p.extensions;
+				a.extensionsWriter = p.extensionsWriter;
+				attributes.put(i, a);
+			} else {
+				attributes.remove(i);
+			}
+		}
+
+		private double[] column(double[] column, double defaultValue) {
+			if (column == null) {
+				column = new double[lat.length];
+				if (defaultValue != 0) {
+					Arrays.fill(column, defaultValue);
+				}
+			}
+			return column;
+		}
+
+		private void grow(int minCapacity) {
+			int oldCapacity = lat.length;
+			int capacity = Math.max(minCapacity, oldCapacity + (oldCapacity >> 1));
+			lat = Arrays.copyOf(lat, capacity);
+			lon = Arrays.copyOf(lon, capacity);
+			distance = Arrays.copyOf(distance, capacity);
+			time = time == null ? null : Arrays.copyOf(time, capacity);
+			ele = grow(ele, oldCapacity, capacity, Double.NaN);
+			speed = grow(speed, oldCapacity, capacity, 0);
+			hdop = grow(hdop, oldCapacity, capacity, Double.NaN);
+			if (heading != null) {
+				heading = Arrays.copyOf(heading, capacity);
+				Arrays.fill(heading, oldCapacity, capacity, Float.NaN);
+			}
+			flags = flags == null ? null : Arrays.copyOf(flags, capacity);
+			colors = colors == null ? null : Arrays.copyOf(colors, capacity * COLORS);
+		}
+
+		private static double[] grow(double[] column, int oldCapacity, int capacity, double defaultValue) {
+			if (column == null) {
+				return null;
+			}
+			column = Arrays.copyOf(column, capacity);
+			if (defaultValue != 0) {
+				Arrays.fill(column, oldCapacity, capacity, defaultValue);
+			}
+			return column;
+		}
+
+		private void move(int from, int to, int length) {
+			System.arraycopy(lat, from, lat, to, length);
+			System.arraycopy(lon, from, lon, to, length);
+			System.arraycopy(distance, from, distance, to, length);
+			move(time, from, to, length, 1);
+			move(ele, from, to, length, 1);
+			move(speed, from, to, length, 1);
+			move(hdop, from, to, length, 1);
+			move(heading, from, to, length, 1);
+			move(flags, from, to, length, 1);
+			move(colors, from, to, length, COLORS);
+		}
+
+		private static void move(Object column, int from, int to, int length, int width) {
+			if (column != null) {
+				System.arraycopy(column, from * width, column, to * width, length * width);
+			}
+		}
+
+		private void shiftAttributes(int from, int delta) {
+			if (attributes.isEmpty()) {
+				return;
+			}
+			TIntObjectHashMap<WptPt> shifted = new TIntObjectHashMap<>();
+			TIntObjectIterator<WptPt> it = attributes.iterator();
+			while (it.hasNext()) {
+				it.advance();
+				shifted.put(it.key() >= from ? it.key() + delta : it.key(), it.value());
+			}
+			attributes = shifted;
+		}
+
+		private void checkIndex(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+		}
+	}
+
 	public static class Track extends GPXExtensions {
 		public String name = null;
 		public String desc = null;
@@ -735,238 +1084,35 @@ public class GPXUtilities {
 		}
 
 		public GPXTrackAnalysis prepareInformation(long filestamp, SplitSegment... splitSegments) {
-			float[] calculations = new float[1];
-
-			long startTimeOfSingleSegment = 0;
-			long endTimeOfSingleSegment = 0;
-
-			float distanceOfSingleSegment = 0;
-			float distanceMovingOfSingleSegment = 0;
-			long timeMovingOfSingleSegment = 0;
-
-			float totalElevation = 0;
-			int elevationPoints = 0;
-			int speedCount = 0;
-			int timeDiff = 0;
-			double totalSpeedSum = 0;
-			points = 0;
-
-			elevationData = new ArrayList<>();
-			speedData = new ArrayList<>();
-
+			PointsAnalyser analyser = new PointsAnalyser(this, true);
 			for (final SplitSegment s : splitSegments) {
 				final int numberOfPoints = s.getNumberOfPoints();
-				float segmentDistance = 0f;
-				metricEnd += s.metricEnd;
-				secondaryMetricEnd += s.secondaryMetricEnd;
-				points += numberOfPoints;
+				final boolean compact = s.segment.isCompact();
+				analyser.startSegment(s.metricEnd, s.secondaryMetricEnd, s.segment.generalSegment);
+				// points of compact segment are loaded to 2 objects by turns (analyser keeps previous point),
+				// first and last points are kept by analysis
+				WptPt[] loaded = compact ? new WptPt[] {new WptPt(), new WptPt()} : null;
 				for (int j = 0; j < numberOfPoints; j++) {
-					WptPt point = s.get(j);
-					if (j == 0 && locationStart == null) {
-						locationStart = point;
-					}
-					if (j == numberOfPoints - 1) {
-						locationEnd = point;
-					}
-					long time = point.time;
-					if (time != 0) {
-						if (s.metricEnd == 0) {
-							if (s.segment.generalSegment) {
-								if (point.firstPoint) {
-									startTimeOfSingleSegment = time;
-								} else if (point.lastPoint) {
-									endTimeOfSingleSegment = time;
-								}
-								if (startTimeOfSingleSegment != 0 && endTimeOfSingleSegment != 0) {
-									timeSpanWithoutGaps += endTimeOfSingleSegment - startTimeOfSingleSegment;
-									startTimeOfSingleSegment = 0;
-									endTimeOfSingleSegment = 0;
-								}
-							}
-						}
-						startTime = Math.min(startTime, time);
-						endTime = Math.max(endTime, time);
-					}
-
-					if (left == 0 && right == 0) {
-						left = point.getLongitude();
-						right = point.getLongitude();
-						top = point.getLatitude();
-						bottom = point.getLatitude();
-					} else {
-						left = Math.min(left, point.getLongitude());
-						right = Math.max(right, point.getLongitude());
-						top = Math.max(top, point.getLatitude());
-						bottom = Math.min(bottom, point.getLatitude());
-					}
-
-					double elevation = point.ele;
-					Elevation elevation1 = new Elevation();
-					if (!Double.isNaN(elevation)) {
-						totalElevation += elevation;
-						elevationPoints++;
-						minElevation = Math.min(elevation, minElevation);
-						maxElevation = Math.max(elevation, maxElevation);
-
-						elevation1.elevation = (float) elevation;
-					} else {
-						elevation1.elevation = Float.NaN;
-					}
-
-					float speed = (float) point.speed;
-					if (speed > 0) {
-						hasSpeedInTrack = true;
-					}
-
-					double hdop = point.hdop;
-					if (hdop > 0) {
-						if (Double.isNaN(minHdop) || hdop < minHdop) {
-							minHdop = hdop;
-						}
-						if (Double.isNaN(maxHdop) || hdop > maxHdop) {
-							maxHdop = hdop;
-						}
-					}
-
-					if (j > 0) {
-						WptPt prev = s.get(j - 1);
-
-						// Old complete summation approach for elevation gain/loss
-						//if (!Double.isNaN(point.ele) && !Double.isNaN(prev.ele)) {
-						//	double diff = point.ele - prev.ele;
-						//	if (diff > 0) {
-						//		diffElevationUp += diff;
-						//	} else {
-						//		diffElevationDown -= diff;
-						//	}
-						//}
-
-						// totalDistance += MapUtils.getDistance(prev.lat, prev.lon, point.lat, point.lon);
-						// using ellipsoidal 'distanceBetween' instead of spherical haversine (MapUtils.getDistance) is
-						// a little more exact, also seems slightly faster:
-						net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
-						totalDistance += calculations[0];
-						segmentDistance += calculations[0];
-						point.distance = segmentDistance;
-
-						// In case points are reversed and => time is decreasing
-						long timeDiffMillis = Math.max(0, point.time - prev.time);
-						timeDiff = (int) ((timeDiffMillis) / 1000);
-
-						//Last resort: Derive speed values from displacement if track does not originally contain speed
-						if (!hasSpeedInTrack && speed == 0 && timeDiff > 0) {
-							speed = calculations[0] / timeDiff;
-						}
-
-						// Motion detection:
-						//   speed > 0  uses GPS chipset's motion detection
-						//   calculations[0] > minDisplacment * time  is heuristic needed because tracks may be filtered at recording time, so points at rest may not be present in file at all
-						boolean timeSpecified = point.time != 0 && prev.time != 0;
-						if (speed > 0 && timeSpecified && calculations[0] > timeDiffMillis / 10000f) {
-							timeMoving = timeMoving + timeDiffMillis;
-							totalDistanceMoving += calculations[0];
-							if (s.segment.generalSegment && !point.firstPoint) {
-								timeMovingOfSingleSegment += timeDiffMillis;
-								distanceMovingOfSingleSegment += calculations[0];
-							}
-						}
-
-						//Next few lines for Issue 3222 heuristic testing only
-						//	if (speed > 0 && point.time != 0 && prev.time != 0) {
-						//		timeMoving0 = timeMoving0 + (point.time - prev.time);
-						//		totalDistanceMoving0 += calculations[0];
-						//	}
-					}
-
-					elevation1.time = timeDiff;
-					elevation1.distance = (j > 0) ? calculations[0] : 0;
-					elevationData.add(elevation1);
-					if (!hasElevationData && !Float.isNaN(elevation1.elevation) && totalDistance > 0) {
-						hasElevationData = true;
-					}
-
-					minSpeed = Math.min(speed, minSpeed);
-					if (speed > 0) {
-						totalSpeedSum += speed;
-						maxSpeed = Math.max(speed, maxSpeed);
-						speedCount++;
-					}
-
-					Speed speed1 = new Speed();
-					speed1.speed = speed;
-					speed1.time = timeDiff;
-					speed1.distance = elevation1.distance;
-					speedData.add(speed1);
-					if (!hasSpeedData && speed1.speed > 0 && totalDistance > 0) {
-						hasSpeedData = true;
-					}
-					if (s.segment.generalSegment) {
-						distanceOfSingleSegment += calculations[0];
-						if (point.firstPoint) {
-							distanceOfSingleSegment = 0;
-							timeMovingOfSingleSegment = 0;
-							distanceMovingOfSingleSegment = 0;
-							if (j > 0) {
-								elevation1.firstPoint = true;
-								speed1.firstPoint = true;
-							}
-						}
-						if (point.lastPoint) {
-							totalDistanceWithoutGaps += distanceOfSingleSegment;
-							timeMovingWithoutGaps += timeMovingOfSingleSegment;
-							totalDistanceMovingWithoutGaps += distanceMovingOfSingleSegment;
-							if (j < numberOfPoints - 1) {
-								elevation1.lastPoint = true;
-								speed1.lastPoint = true;
-							}
-						}
+					boolean last = j == numberOfPoints - 1;
+					WptPt point = compact && j > 0 && !last ? s.get(j, loaded[j % 2]) : s.get(j);
+					analyser.addPoint(point, last);
+					if (compact) {
+						s.setDistance(j, point.distance);
 					}
 				}
 
+				final WptPt elevationPoint = compact ? new WptPt() : null;
 				ElevationDiffsCalculator elevationDiffsCalc = new ElevationDiffsCalculator(0, numberOfPoints) {
 					@Override
 					public WptPt getPoint(int index) {
-						return s.get(index);
+						return s.get(index, elevationPoint);
 					}
 				};
 				elevationDiffsCalc.calculateElevationDiffs();
 				diffElevationUp += elevationDiffsCalc.diffElevationUp;
 				diffElevationDown += elevationDiffsCalc.diffElevationDown;
 			}
-			if (totalDistance < 0) {
-				hasElevationData = false;
-				hasSpeedData = false;
-			}
-			if (!isTimeSpecified()) {
-				startTime = filestamp;
-				endTime = filestamp;
-			}
-
-			// OUTPUT:
-			// 1. Total distance, Start time, End time
-			// 2. Time span
-			if (timeSpan == 0) {
-				timeSpan = endTime - startTime;
-			}
-
-			// 3. Time moving, if any
-			// 4. Elevation, eleUp, eleDown, if recorded
-			if (elevationPoints > 0) {
-				avgElevation = totalElevation / elevationPoints;
-			}
-
-
-			// 5. Max speed and Average speed, if any. Average speed is NOT overall (effective) speed, but only calculated for "moving" periods.
-			//    Averaging speed values is less precise than totalDistanceMoving/timeMoving
-			if (speedCount > 0) {
-				if (timeMoving > 0) {
-					avgSpeed = (float) totalDistanceMoving / (float) timeMoving * 1000f;
-				} else {
-					avgSpeed = (float) totalSpeedSum / (float) speedCount;
-				}
-			} else {
-				avgSpeed = -1;
-			}
+			analyser.finish(filestamp);
 			return this;
 		}
 
@@ -981,11 +1127,22 @@ public class GPXUtilities {
 			private double diffElevationUp = 0;
 			private double diffElevationDown = 0;
 
+			// state of calculation, it could be continued for appended points
+			private double eleSumm;
+			private double prevEle;
+			private int pointsCount;
+			private double eleAvg;
+			private double nextWindowPos;
+			private int pointIndex;
+
 			public ElevationDiffsCalculator(int startIndex, int numberOfPoints) {
 				this.startIndex = startIndex;
 				this.numberOfPoints = numberOfPoints;
-				WptPt lastPoint = getPoint(startIndex + numberOfPoints - 1);
-				this.windowLength = lastPoint.time == 0 ? CALCULATED_GPX_WINDOW_LENGTH : Math.max(20d, lastPoint.distance / numberOfPoints * 4);
+				this.windowLength = getWindowLength(getPoint(startIndex + numberOfPoints - 1), numberOfPoints);
+			}
+
+			static double getWindowLength(WptPt lastPoint, int numberOfPoints) {
+				return lastPoint.time == 0 ? CALCULATED_GPX_WINDOW_LENGTH : Math.max(20d, lastPoint.distance / numberOfPoints * 4);
 			}
 
 			public ElevationDiffsCalculator(double windowLength, int startIndex, int numberOfPoints) {
@@ -1004,14 +1161,26 @@ public class GPXUtilities {
 			}
 
 			public void calculateElevationDiffs() {
+				startCalculation();
+				continueCalculation(numberOfPoints + startIndex);
+				finishCalculation();
+			}
+
+			void startCalculation() {
 				WptPt initialPoint = getPoint(startIndex);
-				double eleSumm = initialPoint.ele;
-				double prevEle = initialPoint.ele;
-				int pointsCount = Double.isNaN(eleSumm) ? 0 : 1;
-				double eleAvg = Double.NaN;
-				double nextWindowPos = initialPoint.distance + windowLength;
-				int pointIndex = startIndex + 1;
-				while (pointIndex < numberOfPoints + startIndex) {
+				eleSumm = initialPoint.ele;
+				prevEle = initialPoint.ele;
+				pointsCount = Double.isNaN(eleSumm) ? 0 : 1;
+				eleAvg = Double.NaN;
+				nextWindowPos = initialPoint.distance + windowLength;
+				pointIndex = startIndex + 1;
+			}
+
+			/**
+			 * Processes points up to endIndex (exclusive), could be called again for appended points
+			 */
+			void continueCalculation(int endIndex) {
+				while (pointIndex < endIndex) {
 					WptPt point = getPoint(pointIndex);
 					if (point.distance > nextWindowPos) {
 						eleAvg = calcAvg(eleSumm, pointsCount, eleAvg);
@@ -1041,12 +1210,28 @@ public class GPXUtilities {
 					}
 					pointIndex++;
 				}
+			}
+
+			void finishCalculation() {
 				if (pointsCount > 1) {
 					calcAvg(eleSumm, pointsCount, eleAvg);
 				}
 				diffElevationUp = Math.round(diffElevationUp + 0.3f);
 			}
 
+			/**
+			 * @return diffs up and down as if calculation is finished, calculation could be continued
+			 */
+			double[] getCurrentDiffs() {
+				double up = diffElevationUp;
+				double down = diffElevationDown;
+				finishCalculation();
+				double[] diffs = {diffElevationUp, diffElevationDown};
+				diffElevationUp = up;
+				diffElevationDown = down;
+				return diffs;
+			}
+
 			private double calcAvg(double eleSumm, int pointsCount, double eleAvg) {
 				if (Double.isNaN(eleSumm) || pointsCount == 0) {
 					return Double.NaN;
@@ -1065,6 +1250,481 @@ public class GPXUtilities {
 		}
 	}
 
+	/**
+	 * Point by point part of GPXTrackAnalysis.prepareInformation: segments are started one after another and
+	 * their points are added in order, so analysis could be made without holding points (see analyzeGPXStream).
+	 * Elevation diffs are calculated by caller as they need whole segment.
+	 */
+	private static class PointsAnalyser {
+		private final GPXTrackAnalysis a;
+		private final boolean chartData;
+		private final float[] calculations = new float[1];
+
+		private long startTimeOfSingleSegment = 0;
+		private long endTimeOfSingleSegment = 0;
+
+		private float distanceOfSingleSegment = 0;
+		private float distanceMovingOfSingleSegment = 0;
+		private long timeMovingOfSingleSegment = 0;
+
+		private float totalElevation = 0;
+		private int elevationPoints = 0;
+		private int speedCount = 0;
+		private int timeDiff = 0;
+		private double totalSpeedSum = 0;
+
+		// current segment
+		private boolean generalSegment;
+		private boolean timeMetric;
+		private float segmentDistance;
+		private WptPt prev;
+
+		PointsAnalyser(GPXTrackAnalysis a, boolean chartData) {
+			this.a = a;
+			this.chartData = chartData;
+			a.points = 0;
+			a.elevationData = new ArrayList<>();
+			a.speedData = new ArrayList<>();
+		}
+
+		void startSegment(double metricEnd, double secondaryMetricEnd, boolean generalSegment) {
+			a.metricEnd += metricEnd;
+			a.secondaryMetricEnd += secondaryMetricEnd;
+			this.generalSegment = generalSegment;
+			this.timeMetric = metricEnd == 0;
+			segmentDistance = 0f;
+			prev = null;
+		}
+
+		void addPoint(WptPt point, boolean last) {
+			boolean first = prev == null;
+			a.points++;
+			if (first && a.locationStart == null) {
+				a.locationStart = point;
+			}
+			if (last) {
+				a.locationEnd = point;
+			}
+			long time = point.time;
+			if (time != 0) {
+				if (timeMetric) {
+					if (generalSegment) {
+						if (point.firstPoint) {
+							startTimeOfSingleSegment = time;
+						} else if (point.lastPoint) {
+							endTimeOfSingleSegment = time;
+						}
+						if (startTimeOfSingleSegment != 0 && endTimeOfSingleSegment != 0) {
+							a.timeSpanWithoutGaps += endTimeOfSingleSegment - startTimeOfSingleSegment;
+							startTimeOfSingleSegment = 0;
+							endTimeOfSingleSegment = 0;
+						}
+					}
+				}
+				a.startTime = Math.min(a.startTime, time);
+				a.endTime = Math.max(a.endTime, time);
+			}
+
+			if (a.left == 0 && a.right == 0) {
+				a.left = point.getLongitude();
+				a.right = point.getLongitude();
+				a.top = point.getLatitude();
+				a.bottom = point.getLatitude();
+			} else {
+				a.left = Math.min(a.left, point.getLongitude());
+				a.right = Math.max(a.right, point.getLongitude());
+				a.top = Math.max(a.top, point.getLatitude());
+				a.bottom = Math.min(a.bottom, point.getLatitude());
+			}
+
+			double elevation = point.ele;
+			Elevation elevation1 = new Elevation();
+			if (!Double.isNaN(elevation)) {
+				totalElevation += elevation;
+				elevationPoints++;
+				a.minElevation = Math.min(elevation, a.minElevation);
+				a.maxElevation = Math.max(elevation, a.maxElevation);
+
+				elevation1.elevation = (float) elevation;
+			} else {
+				elevation1.elevation = Float.NaN;
+			}
+
+			float speed = (float) point.speed;
+			if (speed > 0) {
+				a.hasSpeedInTrack = true;
+			}
+
+			double hdop = point.hdop;
+			if (hdop > 0) {
+				if (Double.isNaN(a.minHdop) || hdop < a.minHdop) {
+					a.minHdop = hdop;
+				}
+				if (Double.isNaN(a.maxHdop) || hdop > a.maxHdop) {
+					a.maxHdop = hdop;
+				}
+			}
+
+			if (!first) {
+				// using ellipsoidal 'distanceBetween' instead of spherical haversine (MapUtils.getDistance) is
+				// a little more exact, also seems slightly faster:
+				net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
+				a.totalDistance += calculations[0];
+				segmentDistance += calculations[0];
+				point.distance = segmentDistance;
+
+				// In case points are reversed and => time is decreasing
+				long timeDiffMillis = Math.max(0, point.time - prev.time);
+				timeDiff = (int) ((timeDiffMillis) / 1000);
+
+				//Last resort: Derive speed values from displacement if track does not originally contain speed
+				if (!a.hasSpeedInTrack && speed == 0 && timeDiff > 0) {
+					speed = calculations[0] / timeDiff;
+				}
+
+				// Motion detection:
+				//   speed > 0  uses GPS chipset's motion detection
+				//   calculations[0] > minDisplacment * time  is heuristic needed because tracks may be filtered at recording time, so points at rest may not be present in file at all
+				boolean timeSpecified = point.time != 0 && prev.time != 0;
+				if (speed > 0 && timeSpecified && calculations[0] > timeDiffMillis / 10000f) {
+					a.timeMoving = a.timeMoving + timeDiffMillis;
+					a.totalDistanceMoving += calculations[0];
+					if (generalSegment && !point.firstPoint) {
+						timeMovingOfSingleSegment += timeDiffMillis;
+						distanceMovingOfSingleSegment += calculations[0];
+					}
+				}
+			}
+
+			elevation1.time = timeDiff;
+			elevation1.distance = !first ? calculations[0] : 0;
+			if (chartData) {
+				a.elevationData.add(elevation1);
+			}
+			if (!a.hasElevationData && !Float.isNaN(elevation1.elevation) && a.totalDistance > 0) {
+				a.hasElevationData = true;
+			}
+
+			a.minSpeed = Math.min(speed, a.minSpeed);
+			if (speed > 0) {
+				totalSpeedSum += speed;
+				a.maxSpeed = Math.max(speed, a.maxSpeed);
+				speedCount++;
+			}
+
+			Speed speed1 = new Speed();
+			speed1.speed = speed;
+			speed1.time = timeDiff;
+			speed1.distance = elevation1.distance;
+			if (chartData) {
+				a.speedData.add(speed1);
+			}
+			if (!a.hasSpeedData && speed1.speed > 0 && a.totalDistance > 0) {
+				a.hasSpeedData = true;
+			}
+			if (generalSegment) {
+				distanceOfSingleSegment += calculations[0];
+				if (point.firstPoint) {
+					distanceOfSingleSegment = 0;
+					timeMovingOfSingleSegment = 0;
+					distanceMovingOfSingleSegment = 0;
+					if (!first) {
+						elevation1.firstPoint = true;
+						speed1.firstPoint = true;
+					}
+				}
+				if (point.lastPoint) {
+					a.totalDistanceWithoutGaps += distanceOfSingleSegment;
+					a.timeMovingWithoutGaps += timeMovingOfSingleSegment;
+					a.totalDistanceMovingWithoutGaps += distanceMovingOfSingleSegment;
+					if (!last) {
+						elevation1.lastPoint = true;
+						speed1.lastPoint = true;
+					}
+				}
+			}
+			prev = point;
+		}
+
+		void finish(long filestamp) {
+			finish(a, filestamp);
+		}
+
+		/**
+		 * Writes totals to given analysis (copy of analysed values), so points could be added after it
+		 */
+		void finish(GPXTrackAnalysis a, long filestamp) {
+			if (a.totalDistance < 0) {
+				a.hasElevationData = false;
+				a.hasSpeedData = false;
+			}
+			if (!a.isTimeSpecified()) {
+				a.startTime = filestamp;
+				a.endTime = filestamp;
+			}
+
+			// OUTPUT:
+			// 1. Total distance, Start time, End time
+			// 2. Time span
+			if (a.timeSpan == 0) {
+				a.timeSpan = a.endTime - a.startTime;
+			}
+
+			// 3. Time moving, if any
+			// 4. Elevation, eleUp, eleDown, if recorded
+			if (elevationPoints > 0) {
+				a.avgElevation = totalElevation / elevationPoints;
+			}
+
+
+			// 5. Max speed and Average speed, if any. Average speed is NOT overall (effective) speed, but only calculated for "moving" periods.
+			//    Averaging speed values is less precise than totalDistanceMoving/timeMoving
+			if (speedCount > 0) {
+				if (a.timeMoving > 0) {
+					a.avgSpeed = (float) a.totalDistanceMoving / (float) a.timeMoving * 1000f;
+				} else {
+					a.avgSpeed = (float) totalSpeedSum / (float) speedCount;
+				}
+			} else {
+				a.avgSpeed = -1;
+			}
+		}
+	}
+
+	/**
+	 * Analysis of growing segment (e.g. recording track). Appended points are analysed once, getAnalysis returns
+	 * the same result as GPXTrackAnalysis.segment for all points of segment. Elevation diffs are continued while
+	 * window length of full analysis stays the same (minimal 20 m for points closer than 5 meters on average),
+	 * otherwise they're calculated again with new window.
+	 * Chart data of analysis isn't copied, it's read-only view of points analysed so far.
+	 * Points of segment shouldn't be changed or removed.
+	 */
+	public static class IncrementalTrackAnalysis {
+		private final TrkSegment segment;
+		private final GPXTrackAnalysis analysis = new GPXTrackAnalysis();
+		private final AppendOnlyList<Elevation> elevationData = new AppendOnlyList<>();
+		private final AppendOnlyList<Speed> speedData = new AppendOnlyList<>();
+		private final PointsAnalyser analyser;
+		private final WptPt elevationPoint = new WptPt();
+		private GPXTrackAnalysis.ElevationDiffsCalculator elevationDiffsCalc;
+		private int analysedPoints;
+		private WptPt lastPoint;
+
+		public IncrementalTrackAnalysis(TrkSegment segment) {
+			this.segment = segment;
+			analyser = new PointsAnalyser(analysis, true);
+			analysis.elevationData = elevationData;
+			analysis.speedData = speedData;
+			analyser.startSegment(0, 0, segment.generalSegment);
+		}
+
+		public TrkSegment getSegment() {
+			return segment;
+		}
+
+		public void addPoint(WptPt point) {
+			segment.points.add(point);
+			update();
+		}
+
+		/**
+		 * Analyses points appended to segment since last update
+		 */
+		public void update() {
+			List<WptPt> points = segment.points;
+			CompactTrkPoints compactPoints = segment.isCompact() ? (CompactTrkPoints) points : null;
+			int size = points.size();
+			for (int i = analysedPoints; i < size; i++) {
+				WptPt point = points.get(i);
+				analyser.addPoint(point, false);
+				if (compactPoints != null) {
+					compactPoints.setDistance(i, point.distance);
+				}
+				lastPoint = point;
+			}
+			analysedPoints = size;
+		}
+
+		public GPXTrackAnalysis getAnalysis(long fileTimestamp) {
+			update();
+			GPXTrackAnalysis a = copyOf(analysis);
+			int size = analysedPoints;
+			Elevation lastElevation = null;
+			Speed lastSpeed = null;
+			if (size > 0) {
+				a.locationEnd = lastPoint;
+				if (segment.generalSegment && lastPoint.lastPoint) {
+					// points are added as not last, flags of last point are not set in chart data
+					lastElevation = copyOf(elevationData.get(size - 1));
+					lastSpeed = copyOf(speedData.get(size - 1));
+				}
+				double[] diffs = getElevationDiffs(size);
+				a.diffElevationUp += diffs[0];
+				a.diffElevationDown += diffs[1];
+			}
+			a.elevationData = elevationData.snapshot(lastElevation);
+			a.speedData = speedData.snapshot(lastSpeed);
+			analyser.finish(a, fileTimestamp);
+			return a;
+		}
+
+		private double[] getElevationDiffs(int size) {
+			double windowLength = GPXTrackAnalysis.ElevationDiffsCalculator.getWindowLength(lastPoint, size);
+			if (elevationDiffsCalc == null || elevationDiffsCalc.windowLength != windowLength) {
+				elevationDiffsCalc = new GPXTrackAnalysis.ElevationDiffsCalculator(windowLength, 0, size) {
+					@Override
+					public WptPt getPoint(int index) {
+						if (segment.isCompact()) {
+							return ((CompactTrkPoints) segment.points).load(index, elevationPoint);
+						}
+						return segment.points.get(index);
+					}
+				};
+				elevationDiffsCalc.startCalculation();
+			}
+			elevationDiffsCalc.continueCalculation(size);
+			return elevationDiffsCalc.getCurrentDiffs();
+		}
+
+		// chart data is set separately
+		private static GPXTrackAnalysis copyOf(GPXTrackAnalysis a) {
+			GPXTrackAnalysis c = new GPXTrackAnalysis();
+			c.name = a.name;
+			c.totalDistance = a.totalDistance;
+			c.totalDistanceWithoutGaps = a.totalDistanceWithoutGaps;
+			c.totalTracks = a.totalTracks;
+			c.startTime = a.startTime;
+			c.endTime = a.endTime;
+			c.timeSpan = a.timeSpan;
+			c.timeSpanWithoutGaps = a.timeSpanWithoutGaps;
+			c.timeMoving = a.timeMoving;
+			c.timeMovingWithoutGaps = a.timeMovingWithoutGaps;
+			c.totalDistanceMoving = a.totalDistanceMoving;
+			c.totalDistanceMovingWithoutGaps = a.totalDistanceMovingWithoutGaps;
+			c.diffElevationUp = a.diffElevationUp;
+			c.diffElevationDown = a.diffElevationDown;
+			c.avgElevation = a.avgElevation;
+			c.minElevation = a.minElevation;
+			c.maxElevation = a.maxElevation;
+			c.minSpeed = a.minSpeed;
+			c.maxSpeed = a.maxSpeed;
+			c.avgSpeed = a.avgSpeed;
+			c.minHdop = a.minHdop;
+			c.maxHdop = a.maxHdop;
+			c.points = a.points;
+			c.wptPoints = a.wptPoints;
+			c.wptCategoryNames = a.wptCategoryNames;
+			c.metricEnd = a.metricEnd;
+			c.secondaryMetricEnd = a.secondaryMetricEnd;
+			c.locationStart = a.locationStart;
+			c.locationEnd = a.locationEnd;
+			c.left = a.left;
+			c.right = a.right;
+			c.top = a.top;
+			c.bottom = a.bottom;
+			c.hasElevationData = a.hasElevationData;
+			c.hasSpeedData = a.hasSpeedData;
+			c.hasSpeedInTrack = a.hasSpeedInTrack;
+			return c;
+		}
+
+		private static Elevation copyOf(Elevation e) {
+			Elevation c = new Elevation();
+			c.distance = e.distance;
+			c.time = e.time;
+			c.elevation = e.elevation;
+			c.firstPoint = e.firstPoint;
+			return c;
+		}
+
+		private static Speed copyOf(Speed s) {
+			Speed c = new Speed();
+			c.distance = s.distance;
+			c.time = s.time;
+			c.speed = s.speed;
+			c.firstPoint = s.firstPoint;
+			return c;
+		}
+	}
+
+	/**
+	 * List for chart data of growing segment. Elements are only appended, so snapshot of list shares stored
+	 * elements and doesn't change when new elements are added.
+	 */
+	private static class AppendOnlyList<T> extends AbstractList<T> implements RandomAccess {
+		private static final int CHUNK_SIZE = 1024;
+
+		// filled chunks are never changed, array of chunks is replaced when it grows
+		private Object[][] chunks = new Object[4][];
+		private int size;
+
+		@Override
+		public boolean add(T element) {
+			int chunk = size / CHUNK_SIZE;
+			if (chunk == chunks.length) {
+				chunks = Arrays.copyOf(chunks, chunks.length * 2);
+			}
+			if (chunks[chunk] == null) {
+				chunks[chunk] = new Object[CHUNK_SIZE];
+			}
+			chunks[chunk][size % CHUNK_SIZE] = element;
+			size++;
+			modCount++;
+			return true;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return (T) chunks[index / CHUNK_SIZE][index % CHUNK_SIZE];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @param last replacement of last element or null
+		 * @return read-only list of current elements
+		 */
+		List<T> snapshot(T last) {
+			return new Snapshot<>(chunks, size, last);
+		}
+
+		private static class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+			private final Object[][] chunks;
+			private final int size;
+			private final T last;
+
+			Snapshot(Object[][] chunks, int size, T last) {
+				this.chunks = chunks;
+				this.size = size;
+				this.last = last;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public T get(int index) {
+				if (index < 0 || index >= size) {
+					throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+				}
+				if (last != null && index == size - 1) {
+					return last;
+				}
+				return (T) chunks[index / CHUNK_SIZE][index % CHUNK_SIZE];
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		}
+	}
+
 	private static class SplitSegment {
 		TrkSegment segment;
 		double startCoeff = 0;
@@ -1102,20 +1762,40 @@ public class GPXUtilities {
 		}
 
 		public WptPt get(int j) {
+			return get(j, null);
+		}
+
+		/**
+		 * Same as get(j), but point of compact segment is loaded to given object (if it's not null)
+		 */
+		public WptPt get(int j, WptPt point) {
 			final int ind = j + startPointInd;
-			if (j == 0) {
-				if (startCoeff == 0) {
-					return segment.points.get(ind);
+			if (!isApproximated(j)) {
+				if (point != null && segment.isCompact()) {
+					return ((CompactTrkPoints) segment.points).load(ind, point);
 				}
+				return segment.points.get(ind);
+			}
+			if (j == 0) {
 				return approx(segment.points.get(ind), segment.points.get(ind + 1), startCoeff);
 			}
-			if (j == getNumberOfPoints() - 1) {
-				if (endCoeff == 1) {
-					return segment.points.get(ind);
-				}
-				return approx(segment.points.get(ind - 1), segment.points.get(ind), endCoeff);
+			return approx(segment.points.get(ind - 1), segment.points.get(ind), endCoeff);
+		}
+
+		private boolean isApproximated(int j) {
+			if (j == 0) {
+				return startCoeff != 0;
+			}
+			return j == getNumberOfPoints() - 1 && endCoeff != 1;
+		}
+
+		/**
+		 * Stores distance of point of compact segment (other points are changed directly)
+		 */
+		void setDistance(int j, double distance) {
+			if (segment.isCompact() && !isApproximated(j)) {
+				((CompactTrkPoints) segment.points).setDistance(j + startPointInd, distance);
 			}
-			return segment.points.get(ind);
 		}
 
 
@@ -1196,8 +1876,10 @@ public class GPXUtilities {
 		SplitSegment sp = new SplitSegment(segment, 0, 0);
 		double total = 0;
 		WptPt prev = null;
+		CompactTrkPoints compactPoints = segment.isCompact() ? (CompactTrkPoints) segment.points : null;
+		WptPt[] loaded = compactPoints != null ? new WptPt[] {new WptPt(), new WptPt()} : null;
 		for (int k = 0; k < segment.points.size(); k++) {
-			WptPt point = segment.points.get(k);
+			WptPt point = compactPoints != null ? compactPoints.load(k, loaded[k % 2]) : segment.points.get(k);
 			if (k > 0) {
 				double currentSegment = 0;
 				if (!(segment.generalSegment && !joinSegments && point.firstPoint)) {
@@ -1256,6 +1938,18 @@ public class GPXUtilities {
 	}
 
 	public static void updateBounds(QuadRect trackBounds, List<WptPt> pts, int startIndex) {
+		if (pts instanceof CompactTrkPoints) {
+			CompactTrkPoints compactPoints = (CompactTrkPoints) pts;
+			for (int i = startIndex; i < compactPoints.size(); i++) {
+				double lat = compactPoints.getLatitude(i);
+				double lon = compactPoints.getLongitude(i);
+				trackBounds.right = Math.max(trackBounds.right, lon);
+				trackBounds.left = Math.min(trackBounds.left, lon);
+				trackBounds.top = Math.max(trackBounds.top, lat);
+				trackBounds.bottom = Math.min(trackBounds.bottom, lat);
+			}
+			return;
+		}
 		for (int i = startIndex; i < pts.size(); i++) {
 			WptPt pt = pts.get(i);
 			trackBounds.right = Math.max(trackBounds.right, pt.lon);
@@ -1405,14 +2099,15 @@ public class GPXUtilities {
 			TrkSegment segment = new TrkSegment();
 			for (Track track : tracks) {
 				for (TrkSegment s : track.segments) {
-					if (s.points.size() > 0) {
-						List<WptPt> waypoints = new ArrayList<>(s.points.size());
-						for (WptPt wptPt : s.points) {
-							waypoints.add(new WptPt(wptPt));
-						}
-						waypoints.get(0).firstPoint = true;
-						waypoints.get(waypoints.size() - 1).lastPoint = true;
-						segment.points.addAll(waypoints);
+					if (s.isCompact() && !segment.isCompact()) {
+						segment.points = new CompactTrkPoints(segment.points);
+					}
+					int last = s.points.size() - 1;
+					for (int i = 0; i <= last; i++) {
+						WptPt wptPt = new WptPt(s.points.get(i));
+						wptPt.firstPoint = i == 0;
+						wptPt.lastPoint = i == last;
+						segment.points.add(wptPt);
 					}
 				}
 			}
@@ -2104,7 +2799,7 @@ public class GPXUtilities {
 		}
 		writeNotNullTextWithAttribute(serializer, "link", "href", file.metadata.link);
 		if (file.metadata.time != 0) {
-			writeNotNullText(serializer, "time", GPX_TIME_FORMAT.format(new Date(file.metadata.time)));
+			writeNotNullText(serializer, "time", formatTime(file.metadata.time));
 		}
 		writeNotNullText(serializer, "keywords", file.metadata.keywords);
 		if (file.metadata.bounds != null) {
@@ -2255,7 +2950,7 @@ public class GPXUtilities {
 			writeNotNullText(serializer, "ele", DECIMAL_FORMAT.format(p.ele));
 		}
 		if (p.time != 0) {
-			writeNotNullText(serializer, "time", GPX_TIME_FORMAT.format(new Date(p.time)));
+			writeNotNullText(serializer, "time", formatTime(p.time));
 		}
 		writeNotNullText(serializer, "name", p.name);
 		writeNotNullText(serializer, "desc", p.desc);
@@ -2387,12 +3082,126 @@ public class GPXUtilities {
 		return result;
 	}
 
+	/**
+	 * Formats time as yyyy-MM-dd'T'HH:mm:ss'Z' in UTC, thread safe
+	 */
 	public static String formatTime(long time) {
-		return GPX_TIME_FORMAT.format(new Date(time));
+		if (time < FAST_TIME_MIN || time >= FAST_TIME_MAX) {
+			return GPX_TIME_FORMATS.get()[0].format(new Date(time));
+		}
+		long days = time / DAY_MILLIS;
+		int millisOfDay = (int) (time % DAY_MILLIS);
+		if (millisOfDay < 0) {
+			millisOfDay += DAY_MILLIS;
+			days--;
+		}
+		// civil date from days since epoch (proleptic Gregorian calendar)
+		long z = days + 719468;
+		long era = z / 146097;
+		int dayOfEra = (int) (z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+		int seconds = millisOfDay / 1000;
+
+		char[] buf = new char[20];
+		writeDigits(buf, 0, year, 4);
+		buf[4] = '-';
+		writeDigits(buf, 5, month, 2);
+		buf[7] = '-';
+		writeDigits(buf, 8, day, 2);
+		buf[10] = 'T';
+		writeDigits(buf, 11, seconds / 3600, 2);
+		buf[13] = ':';
+		writeDigits(buf, 14, seconds / 60 % 60, 2);
+		buf[16] = ':';
+		writeDigits(buf, 17, seconds % 60, 2);
+		buf[19] = 'Z';
+		return new String(buf);
 	}
 
+	/**
+	 * Parses yyyy-MM-dd'T'HH:mm:ss'Z' or yyyy-MM-dd'T'HH:mm:ss.SSS'Z' time in UTC, thread safe
+	 * @return time or 0 if text couldn't be parsed
+	 */
 	public static long parseTime(String text) {
-		return parseTime(text, GPX_TIME_FORMAT, GPX_TIME_FORMAT_MILLIS);
+		if (text == null) {
+			return 0;
+		}
+		long time = parseTimeFast(text);
+		if (time != Long.MIN_VALUE) {
+			return time;
+		}
+		SimpleDateFormat[] formats = GPX_TIME_FORMATS.get();
+		return parseTime(text, formats[0], formats[1]);
+	}
+
+	/**
+	 * Parses exact GPX formats without allocations, other texts (which SimpleDateFormat could parse leniently)
+	 * are not handled.
+	 * @return time or Long.MIN_VALUE
+	 */
+	private static long parseTimeFast(String text) {
+		int length = text.length();
+		if ((length != 20 && length != 24) || text.charAt(4) != '-' || text.charAt(7) != '-'
+				|| text.charAt(10) != 'T' || text.charAt(13) != ':' || text.charAt(16) != ':'
+				|| text.charAt(length - 1) != 'Z') {
+			return Long.MIN_VALUE;
+		}
+		int year = readDigits(text, 0, 4);
+		int month = readDigits(text, 5, 2);
+		int day = readDigits(text, 8, 2);
+		int hour = readDigits(text, 11, 2);
+		int minute = readDigits(text, 14, 2);
+		int second = readDigits(text, 17, 2);
+		int millis = 0;
+		if (length == 24) {
+			if (text.charAt(19) != '.') {
+				return Long.MIN_VALUE;
+			}
+			millis = readDigits(text, 20, 3);
+		}
+		if (year < 1583 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+				|| minute < 0 || minute > 59 || second < 0 || second > 59 || millis < 0) {
+			// day of month is checked by calendar leniently, so 31 of February is 2 or 3 of March
+			return Long.MIN_VALUE;
+		}
+		return daysFromCivil(year, month, day) * DAY_MILLIS + ((hour * 60 + minute) * 60 + second) * 1000L + millis;
+	}
+
+	// days since epoch for date of proleptic Gregorian calendar, day could be out of month
+	private static long daysFromCivil(int year, int month, int day) {
+		if (month <= 2) {
+			year--;
+		}
+		int era = year / 400;
+		int yearOfEra = year - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	// -1 if not digits
+	private static int readDigits(String text, int start, int count) {
+		int value = 0;
+		for (int i = start; i < start + count; i++) {
+			int digit = text.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private static void writeDigits(char[] buf, int start, int value, int count) {
+		for (int i = start + count - 1; i >= start; i--) {
+			buf[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
 	}
 
 	public static long parseTime(String text, SimpleDateFormat format, SimpleDateFormat formatMillis) {
@@ -2416,10 +3225,17 @@ public class GPXUtilities {
 	}
 
 	public static GPXFile loadGPXFile(File file, GPXExtensionsReader extensionsReader) {
+		return loadGPXFile(file, extensionsReader, false);
+	}
+
+	/**
+	 * @param compactTracks store points of track segments by columns (see CompactTrkPoints) to reduce memory
+	 */
+	public static GPXFile loadGPXFile(File file, GPXExtensionsReader extensionsReader, boolean compactTracks) {
 		FileInputStream fis = null;
 		try {
 			fis = new FileInputStream(file);
-			GPXFile gpxFile = loadGPXFile(fis, extensionsReader);
+			GPXFile gpxFile = loadGPXFile(fis, extensionsReader, compactTracks);
 			gpxFile.path = file.getAbsolutePath();
 			gpxFile.modifiedTime = file.lastModified();
 
@@ -2441,6 +3257,10 @@ public class GPXUtilities {
 	}
 
 	public static GPXFile loadGPXFile(InputStream stream, GPXExtensionsReader extensionsReader) {
+		return loadGPXFile(stream, extensionsReader, false);
+	}
+
+	public static GPXFile loadGPXFile(InputStream stream, GPXExtensionsReader extensionsReader, boolean compactTracks) {
 		GPXFile gpxFile = new GPXFile(null);
 		try {
 			XmlPullParser parser = PlatformUtil.newXMLPullParser();
@@ -2753,6 +3573,12 @@ public class GPXUtilities {
 					} else if (tag.equals("trk")) {
 						Object pop = parserState.pop();
 						assert pop instanceof Track;
+						if (compactTracks && pop instanceof Track) {
+							// points are complete at the end of track
+							for (TrkSegment segment : ((Track) pop).segments) {
+								segment.compactPoints();
+							}
+						}
 					} else if (tag.equals("rte")) {
 						Object pop = parserState.pop();
 						assert pop instanceof Route;
@@ -2776,6 +3602,9 @@ public class GPXUtilities {
 				}
 			}
 			if (!routeTrackSegment.points.isEmpty()) {
+				if (compactTracks) {
+					routeTrackSegment.compactPoints();
+				}
 				gpxFile.tracks.add(routeTrack);
 			}
 			if (!routeSegments.isEmpty() && !routeTypes.isEmpty() && firstSegment != null) {
@@ -2793,6 +3622,544 @@ public class GPXUtilities {
 		return gpxFile;
 	}
 
+	public enum GPXPointType {
+		WAYPOINT,
+		TRACK_POINT,
+		ROUTE_POINT,
+		// points of osmand route extension (rpt), loadGPXFile puts them to additional last track
+		ROUTE_TRACK_POINT
+	}
+
+	public interface GPXPointsListener {
+		/**
+		 * @param track index of track (route for route points, -1 for waypoints and route track points)
+		 * @param segment index of track segment in file (-1 for points not in track segments)
+		 * @return false to stop reading
+		 */
+		boolean onPoint(GPXPointType type, int track, int segment, WptPt point);
+	}
+
+	/**
+	 * Reads points of gpx one by one without building GPXFile, so memory doesn't depend on size of file.
+	 * @return error or null
+	 */
+	public static Exception readGPXPoints(InputStream stream, GPXPointsListener listener) {
+		try {
+			GPXPointsReader reader = new GPXPointsReader(stream);
+			WptPt point;
+			while ((point = reader.next()) != null) {
+				if (!listener.onPoint(reader.getPointType(), reader.getTrackIndex(), reader.getSegmentIndex(), point)) {
+					break;
+				}
+			}
+			return null;
+		} catch (Exception e) {
+			log.error("Error reading gpx", e); //$NON-NLS-1$
+			return e;
+		}
+	}
+
+	/**
+	 * Pull reader of gpx points (wpt, rtept, trkpt and rpt). Points have the same values as loaded by loadGPXFile
+	 * (artificial points on prime meridian crossing are added to track segments) except extensions: only speed
+	 * is read from them. Track segments are numbered in file order including empty ones, so segment indexes
+	 * match segments of GPXFile.tracks (without general track).
+	 */
+	public static class GPXPointsReader implements Closeable {
+
+		private static final int GPX = 0;
+		private static final int METADATA = 1;
+		private static final int AUTHOR = 2;
+		private static final int COPYRIGHT = 3;
+		private static final int BOUNDS = 4;
+		private static final int TRACK = 5;
+		private static final int SEGMENT = 6;
+		private static final int ROUTE = 7;
+		private static final int POINT = 8;
+
+		private final InputStream stream;
+		private final XmlPullParser parser;
+		// parser state (as in loadGPXFile), objects are reused by depth
+		private final List<ParserState> states = new ArrayList<>();
+		private int depth;
+		private boolean extensionReadMode;
+		private boolean routePointExtension;
+		private boolean finished;
+
+		private int tracks;
+		private int routes;
+		private int segments;
+		private int trackLastSegment = -1;
+		private int routeTrackPoints;
+		private WptPt lastTrackPoint;
+		private int lastTrackPointSegment = -1;
+		private WptPt lastRouteTrackPoint;
+
+		// points ready to return and their type, track and segment
+		private final List<WptPt> ready = new ArrayList<>();
+		private final List<GPXPointType> readyTypes = new ArrayList<>();
+		private final TIntArrayList readyTracks = new TIntArrayList();
+		private final TIntArrayList readySegments = new TIntArrayList();
+		private int readyIndex;
+
+		private GPXPointType pointType;
+		private int trackIndex = -1;
+		private int segmentIndex = -1;
+
+		public GPXPointsReader(InputStream stream) throws IOException, XmlPullParserException {
+			this.stream = stream;
+			parser = PlatformUtil.newXMLPullParser();
+			parser.setInput(getUTF8Reader(stream));
+			push(GPX);
+		}
+
+		/**
+		 * @return next point or null if there are no more points
+		 */
+		public WptPt next() throws IOException, XmlPullParserException {
+			while (readyIndex >= ready.size()) {
+				ready.clear();
+				readyTypes.clear();
+				readyTracks.resetQuick();
+				readySegments.resetQuick();
+				readyIndex = 0;
+				if (finished) {
+					pointType = null;
+					return null;
+				}
+				readToken();
+			}
+			pointType = readyTypes.get(readyIndex);
+			trackIndex = readyTracks.get(readyIndex);
+			segmentIndex = readySegments.get(readyIndex);
+			return ready.get(readyIndex++);
+		}
+
+		public GPXPointType getPointType() {
+			return pointType;
+		}
+
+		public int getTrackIndex() {
+			return trackIndex;
+		}
+
+		public int getSegmentIndex() {
+			return segmentIndex;
+		}
+
+		/**
+		 * @return number of track segments read so far (including empty ones)
+		 */
+		public int getSegmentsCount() {
+			return segments;
+		}
+
+		public boolean hasRouteTrack() {
+			return routeTrackPoints > 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			stream.close();
+		}
+
+		private void readToken() throws IOException, XmlPullParserException {
+			int tok = parser.next();
+			if (tok == XmlPullParser.END_DOCUMENT) {
+				finished = true;
+			} else if (tok == XmlPullParser.START_TAG) {
+				startTag(parser.getName());
+			} else if (tok == XmlPullParser.END_TAG) {
+				endTag(parser.getName());
+			}
+		}
+
+		private void startTag(String tag) throws IOException, XmlPullParserException {
+			ParserState parse = states.get(depth - 1);
+			if (extensionReadMode && !routePointExtension) {
+				String tagName = tag.toLowerCase();
+				if (tagName.equals("routepointextension")) {
+					routePointExtension = true;
+				} else if (!tagName.equals("route") && !tagName.equals("types")) {
+					if (tag.equals("speed") && parse.kind == POINT) {
+						for (String value : readTextMap(parser, tag).values()) {
+							try {
+								parse.point.speed = Float.parseFloat(value);
+							} catch (NumberFormatException e) {
+								log.debug(e.getMessage(), e);
+							}
+						}
+					} else {
+						skipTag(tag);
+					}
+				}
+			} else if (tag.equals("extensions")) {
+				extensionReadMode = true;
+			} else if (routePointExtension) {
+				if (tag.equals("rpt")) {
+					routeTrackPoints++;
+					pushPoint(GPXPointType.ROUTE_TRACK_POINT, -1, -1);
+				}
+			} else if (parse.kind == GPX) {
+				if (tag.equals("metadata")) {
+					push(METADATA);
+				} else if (tag.equals("trk")) {
+					tracks++;
+					trackLastSegment = -1;
+					push(TRACK);
+				} else if (tag.equals("rte")) {
+					routes++;
+					push(ROUTE);
+				} else if (tag.equals("wpt")) {
+					pushPoint(GPXPointType.WAYPOINT, -1, -1);
+				}
+			} else if (parse.kind == METADATA) {
+				if (tag.equals("name") || tag.equals("desc") || tag.equals("time") || tag.equals("keywords")) {
+					skipTag(tag);
+				} else if (tag.equals("author")) {
+					push(AUTHOR);
+				} else if (tag.equals("copyright")) {
+					push(COPYRIGHT);
+				} else if (tag.equals("bounds")) {
+					push(BOUNDS);
+				}
+			} else if (parse.kind == AUTHOR) {
+				if (tag.equals("name")) {
+					skipTag(tag);
+				}
+			} else if (parse.kind == COPYRIGHT) {
+				if (tag.equals("year") || tag.equals("license")) {
+					skipTag(tag);
+				}
+			} else if (parse.kind == ROUTE) {
+				if (tag.equals("name") || tag.equals("desc")) {
+					skipTag(tag);
+				} else if (tag.equals("rtept")) {
+					pushPoint(GPXPointType.ROUTE_POINT, routes - 1, -1);
+				}
+			} else if (parse.kind == TRACK) {
+				if (tag.equals("name") || tag.equals("desc")) {
+					skipTag(tag);
+				} else if (tag.equals("trkseg")) {
+					trackLastSegment = segments++;
+					push(SEGMENT).segment = trackLastSegment;
+				} else if (tag.equals("trkpt") || tag.equals("rpt")) {
+					if (trackLastSegment == -1) {
+						trackLastSegment = segments++;
+					}
+					pushPoint(GPXPointType.TRACK_POINT, tracks - 1, trackLastSegment);
+				}
+			} else if (parse.kind == SEGMENT) {
+				if (tag.equals("name")) {
+					skipTag(tag);
+				} else if (tag.equals("trkpt") || tag.equals("rpt")) {
+					pushPoint(GPXPointType.TRACK_POINT, tracks - 1, parse.segment);
+				}
+				if (tag.equals("csvattributes")) {
+					readCsvAttributes(parse.segment);
+				}
+			} else if (parse.kind == POINT) {
+				readPointTag(parse.point, tag);
+			}
+		}
+
+		private void readPointTag(WptPt point, String tag) throws IOException, XmlPullParserException {
+			if (tag.equals("name")) {
+				point.name = readText(parser, "name");
+			} else if (tag.equals("desc")) {
+				point.desc = readText(parser, "desc");
+			} else if (tag.equals("cmt")) {
+				point.comment = readText(parser, "cmt");
+			} else if (tag.equals("speed")) {
+				try {
+					String value = readText(parser, "speed");
+					if (!Algorithms.isEmpty(value)) {
+						point.speed = Float.parseFloat(value);
+					}
+				} catch (NumberFormatException e) {
+				}
+			} else if (tag.equals("link")) {
+				point.link = parser.getAttributeValue("", "href");
+			} else if (tag.equals("category")) {
+				point.category = readText(parser, "category");
+			} else if (tag.equals("type")) {
+				if (point.category == null) {
+					point.category = readText(parser, "type");
+				}
+			} else if (tag.equals("ele")) {
+				String text = readText(parser, "ele");
+				if (text != null) {
+					try {
+						point.ele = Float.parseFloat(text);
+					} catch (NumberFormatException e) {
+					}
+				}
+			} else if (tag.equals("hdop")) {
+				String text = readText(parser, "hdop");
+				if (text != null) {
+					try {
+						point.hdop = Float.parseFloat(text);
+					} catch (NumberFormatException e) {
+					}
+				}
+			} else if (tag.equals("time")) {
+				point.time = parseTime(readText(parser, "time"));
+			}
+		}
+
+		private void readCsvAttributes(int segment) throws IOException, XmlPullParserException {
+			String segmentPoints = readText(parser, "csvattributes");
+			String[] pointsArr = segmentPoints.split("\n");
+			for (int i = 0; i < pointsArr.length; i++) {
+				String[] pointAttrs = pointsArr[i].split(",");
+				try {
+					int arrLength = pointsArr.length;
+					if (arrLength > 1) {
+						WptPt wptPt = new WptPt();
+						wptPt.lon = Double.parseDouble(pointAttrs[0]);
+						wptPt.lat = Double.parseDouble(pointAttrs[1]);
+						if (arrLength > 2) {
+							wptPt.ele = Double.parseDouble(pointAttrs[2]);
+						}
+						addReady(GPXPointType.TRACK_POINT, tracks - 1, segment, wptPt);
+					}
+				} catch (NumberFormatException e) {
+				}
+			}
+		}
+
+		private void endTag(String tag) throws XmlPullParserException {
+			if (tag.toLowerCase().equals("routepointextension")) {
+				routePointExtension = false;
+			}
+			if (tag.equals("extensions")) {
+				extensionReadMode = false;
+			}
+			if (extensionReadMode && (tag.equals("route") || tag.equals("types"))) {
+				return;
+			}
+			int kind = states.get(depth - 1).kind;
+			if (tag.equals("metadata") || tag.equals("trk") || tag.equals("rte") || tag.equals("trkseg")) {
+				pop();
+			} else if ((tag.equals("author") && kind == AUTHOR) || (tag.equals("copyright") && kind == COPYRIGHT)
+					|| (tag.equals("bounds") && kind == BOUNDS)) {
+				pop();
+			} else if (tag.equals("trkpt") || tag.equals("wpt") || tag.equals("rtept") || tag.equals("rpt")) {
+				ParserState state = pop();
+				if (state.kind == POINT) {
+					addReady(state.type, state.track, state.segment, state.point);
+					state.point = null;
+				}
+			}
+		}
+
+		private void addReady(GPXPointType type, int track, int segment, WptPt point) {
+			if (type == GPXPointType.TRACK_POINT) {
+				WptPt previous = lastTrackPointSegment == segment ? lastTrackPoint : null;
+				addPrimeMeridianPoints(type, track, segment, previous, point);
+				lastTrackPoint = point;
+				lastTrackPointSegment = segment;
+			} else if (type == GPXPointType.ROUTE_TRACK_POINT) {
+				addPrimeMeridianPoints(type, track, segment, lastRouteTrackPoint, point);
+				lastRouteTrackPoint = point;
+			}
+			ready.add(point);
+			readyTypes.add(type);
+			readyTracks.add(track);
+			readySegments.add(segment);
+		}
+
+		private void addPrimeMeridianPoints(GPXPointType type, int track, int segment, WptPt previous, WptPt current) {
+			if (previous != null && Math.abs(current.lon - previous.lon) >= 180) {
+				WptPt projection = projectionOnPrimeMeridian(previous, current);
+				WptPt oppositeSideProjection = new WptPt(projection);
+				oppositeSideProjection.lon = -oppositeSideProjection.lon;
+				for (WptPt p : Arrays.asList(projection, oppositeSideProjection)) {
+					ready.add(p);
+					readyTypes.add(type);
+					readyTracks.add(track);
+					readySegments.add(segment);
+				}
+			}
+		}
+
+		private void skipTag(String key) throws IOException, XmlPullParserException {
+			int tok;
+			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if (tok == XmlPullParser.END_TAG && parser.getName().equals(key)) {
+					break;
+				}
+			}
+		}
+
+		private ParserState push(int kind) {
+			if (depth == states.size()) {
+				states.add(new ParserState());
+			}
+			ParserState state = states.get(depth++);
+			state.kind = kind;
+			state.segment = -1;
+			state.track = -1;
+			state.type = null;
+			state.point = null;
+			return state;
+		}
+
+		private void pushPoint(GPXPointType type, int track, int segment) {
+			ParserState state = push(POINT);
+			state.type = type;
+			state.track = track;
+			state.segment = segment;
+			state.point = parseWptAttributes(parser);
+		}
+
+		private ParserState pop() throws XmlPullParserException {
+			if (depth <= 1) {
+				throw new XmlPullParserException("Unexpected end tag " + parser.getName(), parser, null);
+			}
+			return states.get(--depth);
+		}
+
+		private static class ParserState {
+			int kind;
+			int track;
+			int segment;
+			GPXPointType type;
+			WptPt point;
+		}
+	}
+
+	public static GPXTrackAnalysis analyzeGPXFile(File file, long fileTimestamp, boolean chartData) {
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(file);
+			GPXTrackAnalysis analysis = analyzeGPXStream(fis, fileTimestamp, chartData);
+			analysis.name = file.getAbsolutePath();
+			return analysis;
+		} catch (IOException e) {
+			log.error("Error reading gpx " + file.getAbsolutePath(), e); //$NON-NLS-1$
+			return null;
+		} finally {
+			Algorithms.closeStream(fis);
+		}
+	}
+
+	/**
+	 * Same analysis as GPXFile.getAnalysis(fileTimestamp) of loaded file but made in one pass over points of
+	 * stream. Only elevations and distances of current segment (and points of route track) are kept in memory.
+	 * @param chartData collect elevationData and speedData (object per point)
+	 */
+	public static GPXTrackAnalysis analyzeGPXStream(InputStream stream, long fileTimestamp, boolean chartData) {
+		GPXTrackAnalysis analysis = new GPXTrackAnalysis();
+		// path of GPXFile loaded from stream
+		analysis.name = "";
+		analysis.wptCategoryNames = new HashSet<>();
+		StreamAnalyser analyser = new StreamAnalyser(analysis, chartData);
+		int segments = 0;
+		boolean routeTrack = false;
+		try {
+			GPXPointsReader reader = new GPXPointsReader(stream);
+			WptPt point;
+			while ((point = reader.next()) != null) {
+				GPXPointType type = reader.getPointType();
+				if (type == GPXPointType.WAYPOINT) {
+					analysis.wptPoints++;
+					analysis.wptCategoryNames.add(point.category == null ? "" : point.category);
+				} else if (type == GPXPointType.TRACK_POINT) {
+					analyser.addPoint(reader.getSegmentIndex(), point);
+				} else if (type == GPXPointType.ROUTE_TRACK_POINT) {
+					analyser.routeTrackPoints.add(point);
+				}
+			}
+			segments = reader.getSegmentsCount();
+			routeTrack = reader.hasRouteTrack();
+		} catch (Exception e) {
+			log.error("Error reading gpx", e); //$NON-NLS-1$
+		}
+		analyser.finishSegment();
+		// route track is the last track of loaded file
+		for (WptPt p : analyser.routeTrackPoints) {
+			analyser.addPoint(-2, p);
+		}
+		analyser.finishSegment();
+		analysis.totalTracks = segments + (routeTrack ? 1 : 0);
+		analyser.points.finish(fileTimestamp);
+		return analysis;
+	}
+
+	/**
+	 * Feeds points of track segments to PointsAnalyser with one point lookahead (to know last point and skip
+	 * segments of 1 point) and calculates elevation diffs of segment from kept elevations and distances.
+	 */
+	private static class StreamAnalyser {
+		final GPXTrackAnalysis analysis;
+		final PointsAnalyser points;
+		final List<WptPt> routeTrackPoints = new ArrayList<>();
+		private int segment = -1;
+		private WptPt pending;
+		private boolean started;
+		private double[] elevations = new double[256];
+		private double[] distances = new double[256];
+		private int count;
+		private long lastTime;
+
+		StreamAnalyser(GPXTrackAnalysis analysis, boolean chartData) {
+			this.analysis = analysis;
+			this.points = new PointsAnalyser(analysis, chartData);
+		}
+
+		void addPoint(int segment, WptPt point) {
+			if (segment != this.segment) {
+				finishSegment();
+				this.segment = segment;
+				pending = point;
+				return;
+			}
+			if (!started) {
+				points.startSegment(0, 0, false);
+				started = true;
+			}
+			addSegmentPoint(pending, false);
+			pending = point;
+		}
+
+		void finishSegment() {
+			if (started) {
+				addSegmentPoint(pending, true);
+				final WptPt p = new WptPt();
+				GPXTrackAnalysis.ElevationDiffsCalculator elevationDiffsCalc = new GPXTrackAnalysis.ElevationDiffsCalculator(0, count) {
+					@Override
+					public WptPt getPoint(int index) {
+						p.ele = elevations[index];
+						p.distance = distances[index];
+						// only time of last point is used
+						p.time = index == count - 1 ? lastTime : 0;
+						return p;
+					}
+				};
+				elevationDiffsCalc.calculateElevationDiffs();
+				analysis.diffElevationUp += elevationDiffsCalc.getDiffElevationUp();
+				analysis.diffElevationDown += elevationDiffsCalc.getDiffElevationDown();
+			}
+			segment = -1;
+			pending = null;
+			started = false;
+			count = 0;
+		}
+
+		private void addSegmentPoint(WptPt point, boolean last) {
+			points.addPoint(point, last);
+			if (count == elevations.length) {
+				elevations = Arrays.copyOf(elevations, count * 2);
+				distances = Arrays.copyOf(distances, count * 2);
+			}
+			elevations[count] = point.ele;
+			distances[count] = point.distance;
+			lastTime = point.time;
+			count++;
+		}
+	}
+
 	private static Reader getUTF8Reader(InputStream f) throws IOException {
 		BufferedInputStream bis = new BufferedInputStream(f);
 		assert bis.markSupported();
@@ -2916,10 +4283,25 @@ public class GPXUtilities {
 	}
 
 	private static void createArtificialPrimeMeridianPoints(List<WptPt> points) {
+		createArtificialPrimeMeridianPoints(points, false);
+	}
+
+	/**
+	 * @param skipCreated don't create points again between already created pair of points (for general segment of
+	 *                    cached file)
+	 */
+	static void createArtificialPrimeMeridianPoints(List<WptPt> points, boolean skipCreated) {
+		CompactTrkPoints compactPoints = points instanceof CompactTrkPoints ? (CompactTrkPoints) points : null;
 		for (int i = 1; i < points.size(); ) {
+			if (compactPoints != null
+					&& Math.abs(compactPoints.getLongitude(i) - compactPoints.getLongitude(i - 1)) < 180) {
+				i++;
+				continue;
+			}
 			WptPt previous = points.get(i - 1);
 			WptPt current = points.get(i);
-			if (Math.abs(current.lon - previous.lon) >= 180) {
+			boolean created = skipCreated && Math.abs(previous.lon) == PRIME_MERIDIAN && current.lon == -previous.lon;
+			if (Math.abs(current.lon - previous.lon) >= 180 && !created) {
 				WptPt projection = projectionOnPrimeMeridian(previous, current);
 				WptPt oppositeSideProjection = new WptPt(projection);
 				oppositeSideProjection.lon = -oppositeSideProjection.lon;
@@ -1,20 +1,27 @@
 package net.osmand;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
 
 import org.apache.commons.logging.Log;
 
+/**
+ * Geoid heights of WW15MGH grid (EGM96, 15' cells, rows from 90 to -90 latitude, columns from 0 to 360 longitude,
+ * big endian shorts in cm). Grid file is memory mapped once, heights are interpolated between 4 nearest nodes.
+ * Could be used concurrently.
+ */
 public class GeoidAltitudeCorrection {
 
+	private static final int CELLS_PER_DEGREE = 4;
+	private static final int COLUMNS = 360 * CELLS_PER_DEGREE;
+
 	private final Log log = PlatformUtil.getLog(GeoidAltitudeCorrection.class);
 	private File f;
-	private RandomAccessFile rf;
-	
-	private int cachedPointer = -1;
-	private short cachedValue = 0;
+	private ShortBuffer grid;
+	private int rows;
 
 	public GeoidAltitudeCorrection(File dir) {
 		String[] fnames = dir.list();
@@ -29,48 +36,85 @@ public class GeoidAltitudeCorrection {
 			if (fn != null) {
 				this.f = new File(dir, fn);
 				if (f.exists()) {
-					try {
-						rf = new RandomAccessFile(f.getPath(), "r");
-					} catch (FileNotFoundException e) {
-						log.error("Error", e);
-					}
+					loadGrid();
+				}
+			}
+		}
+
+	}
+
+	private void loadGrid() {
+		RandomAccessFile rf = null;
+		try {
+			rf = new RandomAccessFile(f.getPath(), "r");
+			FileChannel channel = rf.getChannel();
+			rows = (int) (channel.size() / (COLUMNS * 2));
+			if (rows > 0) {
+				// mapping stays valid after file is closed, absolute reads of buffer are thread safe
+				grid = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) rows * COLUMNS * 2).asShortBuffer();
+			}
+		} catch (IOException e) {
+			log.error("Error", e);
+		} finally {
+			if (rf != null) {
+				try {
+					rf.close();
+				} catch (IOException e) {
+					log.error("Error", e);
 				}
 			}
 		}
-		
 	}
-	
+
 	public boolean isGeoidInformationAvailable(){
-		return rf != null;
+		return grid != null;
 	}
-	
+
 	public float getGeoidHeight(double lat, double lon) {
 		if (!isGeoidInformationAvailable()) {
 			return 0;
 		}
-		int shy = (int) Math.floor((90 - lat) * 4);
-		int shx = (int) Math.floor((lon >= 0 ? lon : lon + 360) * 4);
-		int pointer = ((shy * 1440) + shx) * 2;
-		short res = 0;
-		if (pointer != cachedPointer) {
-			try {
-				rf.seek(pointer);
-				// read short
-				cachedValue = readShort();
-				cachedPointer = pointer;
-			} catch (IOException e) {
-				log.error("Geoid info error", e);
-			}
+		double y = (90 - lat) * CELLS_PER_DEGREE;
+		double x = (lon >= 0 ? lon : lon + 360) * CELLS_PER_DEGREE;
+		int y0 = Math.max(0, Math.min(rows - 1, (int) Math.floor(y)));
+		int y1 = Math.min(rows - 1, y0 + 1);
+		int x0 = ((int) Math.floor(x)) % COLUMNS;
+		if (x0 < 0) {
+			x0 += COLUMNS;
+		}
+		// longitude 360 is the same as 0
+		int x1 = (x0 + 1) % COLUMNS;
+		double dy = Math.max(0, Math.min(1, y - y0));
+		double dx = x - Math.floor(x);
+		double top = getValue(y0, x0) * (1 - dx) + getValue(y0, x1) * dx;
+		double bottom = getValue(y1, x0) * (1 - dx) + getValue(y1, x1) * dx;
+		return (float) ((top * (1 - dy) + bottom * dy) / 100);
+	}
+
+	private short getValue(int row, int column) {
+		return grid.get(row * COLUMNS + column);
+	}
+
+	/**
+	 * Fills geoid heights for arrays of coordinates (0 if geoid information is not available)
+	 */
+	public void getGeoidHeights(double[] lats, double[] lons, float[] heights) {
+		for (int i = 0; i < heights.length; i++) {
+			heights[i] = getGeoidHeight(lats[i], lons[i]);
 		}
-		res = cachedValue;
-		return res / 100f;
 	}
 
-	private short readShort() throws IOException {
-		byte[] b = new byte[2];
-		rf.read(b);
-		int ch1 = b[0] < 0 ? b[0] + 256 : b[0];
-		int ch2 = b[1] < 0 ? b[1] + 256 : b[1];
-		return (short)((ch1 << 8) + ch2);
+	/**
+	 * Converts ellipsoid altitudes (GPS) to altitudes above geoid in place, NaN altitudes are skipped
+	 */
+	public void correctAltitudes(double[] lats, double[] lons, double[] altitudes) {
+		if (!isGeoidInformationAvailable()) {
+			return;
+		}
+		for (int i = 0; i < altitudes.length; i++) {
+			if (!Double.isNaN(altitudes[i])) {
+				altitudes[i] -= getGeoidHeight(lats[i], lons[i]);
+			}
+		}
 	}
 }
@@ -115,14 +115,52 @@ public class TspAnt {
         if (keepEndPoint) {
             l.add(end);
         }
-        n = l.size() ;
+        double[][] costs = new double[l.size()][l.size()];
+        for (int i = 0; i < l.size(); i++) {
+            for (int j = 0; j < l.size(); j++) {
+                costs[i][j] = Math.rint(MapUtils.getDistance(l.get(i), l.get(j)));
+            }
+        }
+        return readGraph(costs, keepEndPoint);
+    }
+
+    // Copy of costs where not reachable (infinite or NaN) costs are replaced by value bigger than any tour
+    // of reachable costs, so such edges are used only if there is no other way.
+    static double[][] replaceNotReachableCosts(double[][] costs) {
+        int n = costs.length;
+        double maxCost = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (!Double.isInfinite(costs[i][j]) && !Double.isNaN(costs[i][j])) {
+                    maxCost = Math.max(maxCost, costs[i][j]);
+                }
+            }
+        }
+        double notReachable = Math.rint(maxCost * n) + 1;
+        double[][] res = new double[n][];
+        for (int i = 0; i < n; i++) {
+            res[i] = costs[i].clone();
+            for (int j = 0; j < n; j++) {
+                if (Double.isInfinite(res[i][j]) || Double.isNaN(res[i][j])) {
+                    res[i][j] = notReachable;
+                }
+            }
+        }
+        return res;
+    }
+
+    // Costs between all points (i.e. RoutePlannerFrontEnd.RouteMatrix times), first point is start,
+    // last point is end if keepEndPoint. Not reachable (infinite) costs are replaced by big value.
+    public TspAnt readGraph(double[][] costs, boolean keepEndPoint) {
+        n = costs.length;
+        costs = replaceNotReachableCosts(costs);
 //        System.out.println("Cost");
         graph = new double[n][n];
         double maxSum = 0;
 		for (int i = 0; i < n ; i++) {
 			double maxIWeight = 0;
 			for (int j = 1; j < n ; j++) {
-				double d = Math.rint(MapUtils.getDistance(l.get(i), l.get(j))) + 0.1;
+				double d = costs[i][j] + 0.1;
 				maxIWeight = Math.max(d, maxIWeight);
 				graph[i][j] = d;
 			}
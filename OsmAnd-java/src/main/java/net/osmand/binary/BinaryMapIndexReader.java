@@ -21,6 +21,7 @@ import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiSubType;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
 import net.osmand.binary.BinaryMapTransportReaderAdapter.TransportIndex;
+import net.osmand.binary.IndexedStringTableCache.StringTableLevel;
 import net.osmand.binary.OsmandOdb.MapDataBlock;
 import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapDataBox;
 import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapEncodingRule;
@@ -56,6 +57,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -102,6 +105,7 @@ public class BinaryMapIndexReader {
 	
 	
 	private final RandomAccessFile raf;
+	private final ByteBuffer mappedFile;
 	protected final File file;
 	/*private*/ int version;
 	/*private*/ long dateCreated;
@@ -116,6 +120,7 @@ public class BinaryMapIndexReader {
 	TLongObjectHashMap<IncompleteTransportRoute> incompleteTransportRoutes = null;
 	
 	protected CodedInputStream codedIS;
+	private volatile IndexedStringTableCache nameIndexCache;
 
 	private final BinaryMapTransportReaderAdapter transportAdapter;
 	private final BinaryMapPoiReaderAdapter poiAdapter;
@@ -126,21 +131,30 @@ public class BinaryMapIndexReader {
 
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file) throws IOException {
-		this.raf = raf;
-		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
-		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
-		transportAdapter = new BinaryMapTransportReaderAdapter(this);
-		addressAdapter = new BinaryMapAddressReaderAdapter(this);
-		poiAdapter = new BinaryMapPoiReaderAdapter(this);
-		routeAdapter = new BinaryMapRouteReaderAdapter(this);
-		init();
+		this(raf, null, file, true);
 	}
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init) throws IOException {
+		this(raf, null, file, init);
+	}
+
+	/**
+	 * Reader over memory mapped file (see {@link #mapFile(File)}). Reading doesn't seek file,
+	 * and copies of that reader (see {@link #BinaryMapIndexReader(BinaryMapIndexReader)}) share same mapping.
+	 */
+	public BinaryMapIndexReader(final ByteBuffer mappedFile, File file) throws IOException {
+		this(null, mappedFile, file, true);
+	}
+
+	public BinaryMapIndexReader(final ByteBuffer mappedFile, File file, boolean init) throws IOException {
+		this(null, mappedFile, file, init);
+	}
+
+	private BinaryMapIndexReader(final RandomAccessFile raf, final ByteBuffer mappedFile, File file, boolean init) throws IOException {
 		this.raf = raf;
+		this.mappedFile = mappedFile;
 		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
+		codedIS = mappedFile != null ? CodedInputStream.newInstance(mappedFile) : CodedInputStream.newInstance(raf);
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
@@ -152,9 +166,24 @@ public class BinaryMapIndexReader {
 	}
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, BinaryMapIndexReader referenceToSameFile) throws IOException {
+		this(raf, null, referenceToSameFile);
+	}
+
+	/**
+	 * Creates reader with own read position over the same file. Memory mapped readers share mapping,
+	 * otherwise new random access file is opened.
+	 */
+	public BinaryMapIndexReader(BinaryMapIndexReader referenceToSameFile) throws IOException {
+		this(referenceToSameFile.mappedFile == null ? new RandomAccessFile(referenceToSameFile.file, "r") : null,
+				referenceToSameFile.mappedFile, referenceToSameFile);
+	}
+
+	private BinaryMapIndexReader(final RandomAccessFile raf, final ByteBuffer mappedFile,
+	                             BinaryMapIndexReader referenceToSameFile) throws IOException {
 		this.raf = raf;
+		this.mappedFile = mappedFile;
 		this.file = referenceToSameFile.file;
-		codedIS = CodedInputStream.newInstance(raf);
+		codedIS = mappedFile != null ? CodedInputStream.newInstance(mappedFile) : CodedInputStream.newInstance(raf);
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		version = referenceToSameFile.version;
 		dateCreated = referenceToSameFile.dateCreated;
@@ -172,6 +201,27 @@ public class BinaryMapIndexReader {
 		calculateCenterPointForRegions();
 	}
 
+	/**
+	 * Maps whole file read-only into memory, returns null if file is too big to be mapped (>2GB).
+	 * Mapping stays valid after file is closed.
+	 */
+	public static ByteBuffer mapFile(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				return null;
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			raf.close();
+		}
+	}
+
+	public boolean isMemoryMapped() {
+		return mappedFile != null;
+	}
+
 
 	public long getDateCreated() {
 		return dateCreated;
@@ -1619,8 +1669,11 @@ public class BinaryMapIndexReader {
 
 	public void close() throws IOException {
 		if (codedIS != null) {
-			raf.close();
+			if (raf != null) {
+				raf.close();
+			}
 			codedIS = null;
+			nameIndexCache = null;
 			mapIndexes.clear();
 			addressIndexes.clear();
 			transportIndexes.clear();
@@ -2402,7 +2455,22 @@ public class BinaryMapIndexReader {
 
 	}
 
+	/**
+	 * Enables cache of decoded name indexes (address and poi search by name) of that reader, 0 disables it
+	 */
+	public void setNameIndexCacheSize(long maxSizeBytes) {
+		nameIndexCache = maxSizeBytes > 0 ? new IndexedStringTableCache(maxSizeBytes) : null;
+	}
+
 	void readIndexedStringTable(Collator instance, List<String> queries, String prefix, List<TIntArrayList> listOffsets, TIntArrayList matchedCharacters) throws IOException {
+		IndexedStringTableCache cache = nameIndexCache;
+		if (cache != null && prefix.length() == 0 && codedIS.getBytesUntilLimit() > 0) {
+			int pointer = codedIS.getTotalBytesRead();
+			int length = codedIS.getBytesUntilLimit();
+			matchIndexedStringTable(cache, instance, queries, pointer, length, prefix, listOffsets, matchedCharacters);
+			codedIS.seek(pointer + length);
+			return;
+		}
 		String key = null;
 		boolean[] matched = new boolean[matchedCharacters.size()];
 		boolean shouldWeReadSubtable = false;
@@ -2417,36 +2485,7 @@ public class BinaryMapIndexReader {
 				if (prefix.length() > 0) {
 					key = prefix + key;
 				}
-				shouldWeReadSubtable = false;
-				for (int i = 0; i < queries.size(); i++) {
-					int charMatches = matchedCharacters.get(i);
-					String query = queries.get(i);
-					matched[i] = false;
-					if (query == null) {
-						continue;
-					}
-					
-					// check query is part of key (the best matching)
-					if (CollatorStringMatcher.cmatches(instance, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
-						if (query.length() >= charMatches) {
-							if (query.length() > charMatches) {
-								matchedCharacters.set(i, query.length());
-								listOffsets.get(i).clear();
-							}
-							matched[i] = true;
-						}
-						// check key is part of query
-					} else if (CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
-						if (key.length() >= charMatches) {
-							if (key.length() > charMatches) {
-								matchedCharacters.set(i, key.length());
-								listOffsets.get(i).clear();
-							}
-							matched[i] = true;
-						}
-					}
-					shouldWeReadSubtable |= matched[i];
-				}
+				shouldWeReadSubtable = matchIndexedStringKey(instance, queries, key, matched, listOffsets, matchedCharacters);
 				break;
 			case OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER :
 				int val = readInt();
@@ -2460,14 +2499,7 @@ public class BinaryMapIndexReader {
 				int len = codedIS.readRawVarint32();
 				int oldLim = codedIS.pushLimit(len);
 				if (shouldWeReadSubtable && key != null) {
-					List<String> subqueries = new ArrayList<>(queries);
-					// reset query so we don't search what was not matched
-					for(int i = 0; i < queries.size(); i++) {
-						if(!matched[i]) {
-							subqueries.set(i, null);
-						}
-					}
-					readIndexedStringTable(instance, subqueries, key, listOffsets, matchedCharacters);
+					readIndexedStringTable(instance, getSubqueries(queries, matched), key, listOffsets, matchedCharacters);
 				} else {
 					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 				}
@@ -2480,6 +2512,126 @@ public class BinaryMapIndexReader {
 		}
 	}
 
+	private boolean matchIndexedStringKey(Collator instance, List<String> queries, String key, boolean[] matched,
+			List<TIntArrayList> listOffsets, TIntArrayList matchedCharacters) {
+		boolean shouldWeReadSubtable = false;
+		for (int i = 0; i < queries.size(); i++) {
+			int charMatches = matchedCharacters.get(i);
+			String query = queries.get(i);
+			matched[i] = false;
+			if (query == null) {
+				continue;
+			}
+			
+			// check query is part of key (the best matching)
+			if (CollatorStringMatcher.cmatches(instance, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+				if (query.length() >= charMatches) {
+					if (query.length() > charMatches) {
+						matchedCharacters.set(i, query.length());
+						listOffsets.get(i).clear();
+					}
+					matched[i] = true;
+				}
+				// check key is part of query
+			} else if (CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+				if (key.length() >= charMatches) {
+					if (key.length() > charMatches) {
+						matchedCharacters.set(i, key.length());
+						listOffsets.get(i).clear();
+					}
+					matched[i] = true;
+				}
+			}
+			shouldWeReadSubtable |= matched[i];
+		}
+		return shouldWeReadSubtable;
+	}
+
+	private static List<String> getSubqueries(List<String> queries, boolean[] matched) {
+		List<String> subqueries = new ArrayList<>(queries);
+		// reset query so we don't search what was not matched
+		for (int i = 0; i < queries.size(); i++) {
+			if (!matched[i]) {
+				subqueries.set(i, null);
+			}
+		}
+		return subqueries;
+	}
+
+	// same as readIndexedStringTable but over cached levels, not decoded levels are read from file
+	private void matchIndexedStringTable(IndexedStringTableCache cache, Collator instance, List<String> queries,
+			int pointer, int length, String prefix, List<TIntArrayList> listOffsets, TIntArrayList matchedCharacters) throws IOException {
+		StringTableLevel level = cache.get(pointer);
+		if (level == null) {
+			level = readStringTableLevel(pointer, length, prefix);
+			cache.put(pointer, level);
+		}
+		String key = null;
+		boolean[] matched = new boolean[matchedCharacters.size()];
+		boolean shouldWeReadSubtable = false;
+		int[] events = level.events;
+		for (int e = 0; e < events.length; ) {
+			switch (events[e]) {
+			case IndexedStringTableCache.KEY:
+				key = level.keys[events[e + 1]];
+				shouldWeReadSubtable = matchIndexedStringKey(instance, queries, key, matched, listOffsets, matchedCharacters);
+				e += 2;
+				break;
+			case IndexedStringTableCache.VAL:
+				for (int i = 0; i < queries.size(); i++) {
+					if (matched[i]) {
+						listOffsets.get(i).add(events[e + 1]);
+					}
+				}
+				e += 2;
+				break;
+			default:
+				if (shouldWeReadSubtable && key != null) {
+					matchIndexedStringTable(cache, instance, getSubqueries(queries, matched), events[e + 1], events[e + 2],
+							key, listOffsets, matchedCharacters);
+				}
+				e += 3;
+				break;
+			}
+		}
+	}
+
+	private StringTableLevel readStringTableLevel(int pointer, int length, String prefix) throws IOException {
+		codedIS.seek(pointer);
+		int oldLimit = codedIS.pushLimit(length);
+		List<String> keys = new ArrayList<>();
+		TIntArrayList events = new TIntArrayList();
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				codedIS.popLimit(oldLimit);
+				return new StringTableLevel(keys.toArray(new String[keys.size()]), events.toArray());
+			case OsmandOdb.IndexedStringTable.KEY_FIELD_NUMBER :
+				String key = codedIS.readString();
+				events.add(IndexedStringTableCache.KEY);
+				events.add(keys.size());
+				keys.add(prefix.length() > 0 ? prefix + key : key);
+				break;
+			case OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER :
+				events.add(IndexedStringTableCache.VAL);
+				events.add(readInt());
+				break;
+			case OsmandOdb.IndexedStringTable.SUBTABLES_FIELD_NUMBER :
+				int len = codedIS.readRawVarint32();
+				events.add(IndexedStringTableCache.SUBTABLE);
+				events.add(codedIS.getTotalBytesRead());
+				events.add(len);
+				codedIS.skipRawBytes(len);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
 	private static void testAddressSearchByName(BinaryMapIndexReader reader) throws IOException {
 		SearchRequest<MapObject> req = buildAddressByNameRequest(new ResultMatcher<MapObject>() {
 			@Override
@@ -1,5 +1,9 @@
 package net.osmand.binary;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+
 import net.osmand.PlatformUtil;
 import net.osmand.binary.BinaryMapAddressReaderAdapter.AddressRegion;
 import net.osmand.binary.BinaryMapAddressReaderAdapter.CitiesBlock;
@@ -28,31 +32,46 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Cache of obf file headers. Readers could be opened concurrently, cache file is written incrementally:
+ * new file indexes are appended to the stored file (concatenated protobuf messages are merged on read,
+ * the last entry of the file wins) and whole file is rewritten only when obsolete entries prevail.
+ * Stored file indexes are read lazily: only file name of each entry is decoded on startup,
+ * the entry itself is parsed when reader of that file is requested.
+ */
 public class CachedOsmandIndexes {
 
-	private OsmAndStoredIndex storedIndex;
-	private OsmAndStoredIndex.Builder storedIndexBuilder;
+	private final Map<String, FileIndex> fileIndexes = new LinkedHashMap<String, FileIndex>();
+	// stored indexes which are not parsed yet
+	private final Map<String, ByteString> storedIndexes = new LinkedHashMap<String, ByteString>();
+	// indexes added after cache was read or written
+	private final List<FileIndex> addedIndexes = new ArrayList<FileIndex>();
+	// entries of the stored file replaced by newer ones
+	private int obsoleteIndexes;
+	// stored file is absent, broken or has different version
+	private boolean rewrite = true;
+	private long dateCreated = System.currentTimeMillis();
 	private Log log = PlatformUtil.getLog(CachedOsmandIndexes.class);
 	private boolean hasChanged = true;
+	private boolean memoryMapped = false;
 
 	public static final int VERSION = 2;
 
-	public void addToCache(BinaryMapIndexReader reader, File f) {
-		hasChanged = true;
-		if (storedIndexBuilder == null) {
-			storedIndexBuilder = OsmandIndex.OsmAndStoredIndex.newBuilder();
-			storedIndexBuilder.setVersion(VERSION);
-			storedIndexBuilder.setDateCreated(System.currentTimeMillis());
-			if (storedIndex != null) {
-				for (FileIndex ex : storedIndex.getFileIndexList()) {
-					if (!ex.getFileName().equals(f.getName())) {
-						storedIndexBuilder.addFileIndex(ex);
-					}
-				}
-			}
-		}
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
 
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	public void addToCache(BinaryMapIndexReader reader, File f) {
 		FileIndex.Builder fileIndex = OsmandIndex.FileIndex.newBuilder();
 		long d = reader.getDateCreated();
 		fileIndex.setDateModified(d == 0 ? f.lastModified() : d);
@@ -157,8 +176,53 @@ public class CachedOsmandIndexes {
 			fileIndex.addRoutingIndex(routing);
 		}
 
-		storedIndexBuilder.addFileIndex(fileIndex);
+		addFileIndex(fileIndex.build());
+	}
+
+	private synchronized void addFileIndex(FileIndex fileIndex) {
+		String fileName = fileIndex.getFileName();
+		boolean replaced = fileIndexes.put(fileName, fileIndex) != null;
+		if (storedIndexes.remove(fileName) != null || replaced) {
+			obsoleteIndexes++;
+		}
+		addedIndexes.add(fileIndex);
+		hasChanged = true;
+	}
 
+	private synchronized FileIndex getFileIndex(String fileName) throws IOException {
+		FileIndex fi = fileIndexes.get(fileName);
+		if (fi == null) {
+			ByteString stored = storedIndexes.remove(fileName);
+			if (stored != null) {
+				fi = FileIndex.parseFrom(stored);
+				fileIndexes.put(fileName, fi);
+			}
+		}
+		return fi;
+	}
+
+	private void parseStoredIndexes() throws IOException {
+		for (ByteString stored : storedIndexes.values()) {
+			FileIndex fi = FileIndex.parseFrom(stored);
+			fileIndexes.put(fi.getFileName(), fi);
+		}
+		storedIndexes.clear();
+	}
+
+	private static String readFileName(ByteString fileIndex) throws IOException {
+		CodedInputStream codedIS = fileIndex.newCodedInput();
+		while (true) {
+			int tag = codedIS.readTag();
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case 0:
+				return null;
+			case FileIndex.FILENAME_FIELD_NUMBER:
+				return codedIS.readString();
+			default:
+				codedIS.skipField(tag);
+				break;
+			}
+		}
 	}
 
 	private void addRouteSubregion(RoutingPart.Builder routing, RouteSubregion sub, boolean base) {
@@ -175,34 +239,32 @@ public class CachedOsmandIndexes {
 	}
 
 	public BinaryMapIndexReader getReader(File f, boolean useStoredIndex) throws IOException {
-		RandomAccessFile mf = new RandomAccessFile(f.getPath(), "r");
+		ByteBuffer mapped = memoryMapped ? BinaryMapIndexReader.mapFile(f) : null;
+		RandomAccessFile mf = mapped == null ? new RandomAccessFile(f.getPath(), "r") : null;
 		FileIndex found = null;
-		if (storedIndex != null && useStoredIndex) {
-			for (int i = 0; i < storedIndex.getFileIndexCount(); i++) {
-				FileIndex fi = storedIndex.getFileIndex(i);
-				if (f.length() == fi.getSize() && f.getName().equals(fi.getFileName())) {
-					// f.lastModified() == fi.getDateModified()
-					found = fi;
-					break;
-				}
+		if (useStoredIndex) {
+			FileIndex fi = getFileIndex(f.getName());
+			// f.lastModified() == fi.getDateModified()
+			if (fi != null && f.length() == fi.getSize()) {
+				found = fi;
 			}
 		}
 		BinaryMapIndexReader reader = null;
 		if (found == null) {
 			long val = System.currentTimeMillis();
-			reader = new BinaryMapIndexReader(mf, f);
+			reader = mapped != null ? new BinaryMapIndexReader(mapped, f) : new BinaryMapIndexReader(mf, f);
 			addToCache(reader, f);
 			if (log.isDebugEnabled()) {
 				log.debug("Initializing db " + f.getAbsolutePath() + " " + (System.currentTimeMillis() - val) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			}
 		} else {
-			reader = initFileIndex(found, mf, f);
+			reader = initFileIndex(found, mapped != null ? new BinaryMapIndexReader(mapped, f, false)
+					: new BinaryMapIndexReader(mf, f, false));
 		}
 		return reader;
 	}
 
-	private BinaryMapIndexReader initFileIndex(FileIndex found, RandomAccessFile mf, File f) throws IOException {
-		BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, f, false);
+	private BinaryMapIndexReader initFileIndex(FileIndex found, BinaryMapIndexReader reader) throws IOException {
 		reader.version = found.getVersion();
 		reader.dateCreated = found.getDateModified();
 
@@ -309,30 +371,82 @@ public class CachedOsmandIndexes {
 		return reader;
 	}
 
-	public void readFromFile(File f, int version) throws IOException {
+	public synchronized void readFromFile(File f, int version) throws IOException {
 		long time = System.currentTimeMillis();
 		FileInputStream is = new FileInputStream(f);
 		try {
-			storedIndex = OsmandIndex.OsmAndStoredIndex.newBuilder().mergeFrom(is).build();
-			hasChanged = false;
-			if (storedIndex.getVersion() != version) {
-				storedIndex = null;
+			fileIndexes.clear();
+			storedIndexes.clear();
+			addedIndexes.clear();
+			obsoleteIndexes = 0;
+			// concatenated messages: last value of scalar fields wins
+			int storedVersion = 0;
+			long storedDateCreated = 0;
+			CodedInputStream codedIS = CodedInputStream.newInstance(is);
+			codedIS.setSizeLimit(Integer.MAX_VALUE);
+			boolean end = false;
+			while (!end) {
+				int tag = codedIS.readTag();
+				switch (WireFormat.getTagFieldNumber(tag)) {
+				case 0:
+					end = true;
+					break;
+				case OsmAndStoredIndex.VERSION_FIELD_NUMBER:
+					storedVersion = codedIS.readInt32();
+					break;
+				case OsmAndStoredIndex.DATECREATED_FIELD_NUMBER:
+					storedDateCreated = codedIS.readInt64();
+					break;
+				case OsmAndStoredIndex.FILEINDEX_FIELD_NUMBER:
+					ByteString fi = codedIS.readBytes();
+					String fileName = readFileName(fi);
+					if (fileName != null && storedIndexes.put(fileName, fi) != null) {
+						obsoleteIndexes++;
+					}
+					break;
+				default:
+					codedIS.skipField(tag);
+					break;
+				}
+			}
+			if (storedVersion == version) {
+				dateCreated = storedDateCreated;
+				rewrite = false;
+				hasChanged = false;
+			} else {
+				storedIndexes.clear();
+				obsoleteIndexes = 0;
 			}
 		} finally {
 			is.close();
 		}
-		log.info("Initialize cache " + (System.currentTimeMillis() - time));
+		log.info("Initialize cache " + (System.currentTimeMillis() - time) + " ms, " + storedIndexes.size() + " files");
 	}
 
-	public void writeToFile(File f) throws IOException {
-		if (hasChanged) {
-			FileOutputStream outputStream = new FileOutputStream(f);
-			try {
-				storedIndexBuilder.build().writeTo(outputStream);
-			} finally {
-				outputStream.close();
-			}
+	public synchronized void writeToFile(File f) throws IOException {
+		if (!hasChanged) {
+			return;
+		}
+		boolean append = !rewrite && f.exists() && obsoleteIndexes <= fileIndexes.size() + storedIndexes.size();
+		if (!append) {
+			parseStoredIndexes();
+		}
+		OsmAndStoredIndex.Builder storedIndexBuilder = OsmandIndex.OsmAndStoredIndex.newBuilder();
+		storedIndexBuilder.setVersion(VERSION);
+		storedIndexBuilder.setDateCreated(dateCreated);
+		storedIndexBuilder.addAllFileIndex(append ? addedIndexes : fileIndexes.values());
+		FileOutputStream outputStream = new FileOutputStream(f, append);
+		try {
+			storedIndexBuilder.build().writeTo(outputStream);
+		} finally {
+			outputStream.close();
+		}
+		if (!append) {
+			obsoleteIndexes = 0;
+			rewrite = false;
 		}
+		addedIndexes.clear();
+		hasChanged = false;
 	}
 
 }
@@ -0,0 +1,76 @@
+package net.osmand.binary;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decoded levels of indexed string tables (name indexes of address and poi sections) of one reader.
+ * Level is keyed by its file pointer and keeps sequence of keys, values and pointers to subtables,
+ * so repeated searches (next typed character) match in memory and read only subtables not decoded yet.
+ * Levels are evicted in LRU order when estimated size exceeds the limit.
+ */
+class IndexedStringTableCache {
+
+	static final int KEY = 0;
+	static final int VAL = 1;
+	static final int SUBTABLE = 2;
+
+	private final long maxSize;
+	private long size;
+	private final LinkedHashMap<Integer, StringTableLevel> levels = new LinkedHashMap<Integer, StringTableLevel>(64, 0.75f, true);
+
+	IndexedStringTableCache(long maxSizeBytes) {
+		this.maxSize = maxSizeBytes;
+	}
+
+	synchronized StringTableLevel get(int pointer) {
+		return levels.get(pointer);
+	}
+
+	synchronized void put(int pointer, StringTableLevel level) {
+		StringTableLevel prev = levels.put(pointer, level);
+		if (prev != null) {
+			size -= prev.size;
+		}
+		size += level.size;
+		Iterator<Map.Entry<Integer, StringTableLevel>> it = levels.entrySet().iterator();
+		while (size > maxSize && levels.size() > 1 && it.hasNext()) {
+			Map.Entry<Integer, StringTableLevel> eldest = it.next();
+			// added level is kept even if it is bigger than limit
+			if (eldest.getKey() == pointer) {
+				continue;
+			}
+			size -= eldest.getValue().size;
+			it.remove();
+		}
+	}
+
+	synchronized void clear() {
+		levels.clear();
+		size = 0;
+	}
+
+	synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Events of one level in file order: KEY (index of key), VAL (value), SUBTABLE (pointer, length)
+	 */
+	static class StringTableLevel {
+		final String[] keys;
+		final int[] events;
+		final int size;
+
+		StringTableLevel(String[] keys, int[] events) {
+			this.keys = keys;
+			this.events = events;
+			int sz = 32 + events.length * 4;
+			for (String k : keys) {
+				sz += 40 + k.length() * 2;
+			}
+			this.size = sz;
+		}
+	}
+}
@@ -89,16 +89,24 @@ public class Multipolygon {
 		}
 		// keep sorted
 		Collections.sort(outerRings);
+		QuadTree<Integer> outersIndex = null;
+		List<Integer> candidates = new ArrayList<Integer>();
 		for (Ring inner : innerRings) {
 			HashSet<Ring> outContainingRings = new HashSet<Ring>();
 			if (checkedIsIn && outerRings.size() == 1) {
 				outContainingRings.add(outerRings.get(0));
 			} else {
-				for (Ring out : outerRings) {
+				if (outersIndex == null) {
+					outersIndex = MultipolygonBuilder.createIndex(outerRings);
+				}
+				// only outer rings with intersecting bbox could contain inner ring
+				outersIndex.queryInBox(inner.getBBox(), candidates);
+				for (int i : candidates) {
+					Ring out = outerRings.get(i);
 					if (inner.isIn(out)) {
 						outContainingRings.add(out);
 					}
-				}				
+				}
 			}
 			containedInnerInOuter.put(inner, outContainingRings);
 		}
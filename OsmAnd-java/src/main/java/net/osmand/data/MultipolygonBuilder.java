@@ -1,9 +1,8 @@
 package net.osmand.data;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
-import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.apache.commons.logging.Log;
@@ -79,110 +78,138 @@ public class MultipolygonBuilder {
 	 * @return a list with multipolygons which have exactly one outer ring
 	 */
 	public List<Multipolygon> splitPerOuterRing(Log log) {
-		SortedSet<Ring> inners = new TreeSet<Ring>(combineToRings(innerWays));
+		// sorted by area (rings with the same area are merged as before)
+		List<Ring> inners = new ArrayList<Ring>(new TreeSet<Ring>(combineToRings(innerWays)));
 		ArrayList<Ring> outers = combineToRings(outerWays);
 		ArrayList<Multipolygon> multipolygons = new ArrayList<Multipolygon>();
+		QuadTree<Integer> innersIndex = createIndex(inners);
+		boolean[] assigned = new boolean[inners.size()];
+		int assignedCount = 0;
+		List<Integer> candidates = new ArrayList<Integer>();
 		// loop; start with the smallest outer ring
 		for (Ring outer : outers) {
 			ArrayList<Ring> innersInsideOuter = new ArrayList<Ring>();
-			Iterator<Ring> innerIt = inners.iterator();
-			while (innerIt.hasNext()) {
-				Ring inner = innerIt.next();
-				if (inner.isIn(outer)) {
+			innersIndex.queryInBox(outer.getBBox(), candidates);
+			Collections.sort(candidates);
+			for (int i : candidates) {
+				Ring inner = inners.get(i);
+				if (!assigned[i] && inner.isIn(outer)) {
 					innersInsideOuter.add(inner);
-					innerIt.remove();
+					assigned[i] = true;
+					assignedCount++;
 				}
 			}
 			multipolygons.add(new Multipolygon(outer, innersInsideOuter, id, true));
 		}
 
-		if (inners.size() != 0 && log != null) {
+		if (assignedCount != inners.size() && log != null) {
 			log.warn("Multipolygon " + getId() + " has a mismatch in outer and inner rings");
 		}
 
 		return multipolygons;
 	}
 
+	/**
+	 * @return index of rings bboxes (values are indexes of rings)
+	 */
+	static QuadTree<Integer> createIndex(List<Ring> rings) {
+		QuadRect bbox = null;
+		for (Ring r : rings) {
+			QuadRect rb = r.getBBox();
+			if (bbox == null) {
+				bbox = rb;
+			} else {
+				bbox = new QuadRect(Math.min(bbox.left, rb.left), Math.max(bbox.top, rb.top),
+						Math.max(bbox.right, rb.right), Math.min(bbox.bottom, rb.bottom));
+			}
+		}
+		QuadTree<Integer> index = new QuadTree<Integer>(bbox == null ? new QuadRect() : bbox, 8, 0.55f);
+		for (int i = 0; i < rings.size(); i++) {
+			index.insert(i, rings.get(i).getBBox());
+		}
+		return index;
+	}
+
 	public Multipolygon build() {
 		return new Multipolygon(combineToRings(outerWays), combineToRings(innerWays), id);
 	}
 
 	public ArrayList<Ring> combineToRings(List<Way> ways) {
 		// make a list of multiLines (connecter pieces of way)
-		TLongObjectHashMap<List<Way>> multilineStartPoint = new TLongObjectHashMap<List<Way>>();
-		TLongObjectHashMap<List<Way>> multilineEndPoint = new TLongObjectHashMap<List<Way>>();
+		TLongObjectHashMap<List<WayChain>> multilineStartPoint = new TLongObjectHashMap<List<WayChain>>();
+		TLongObjectHashMap<List<WayChain>> multilineEndPoint = new TLongObjectHashMap<List<WayChain>>();
 		for (Way toAdd : ways) {
 			if (toAdd.getNodeIds().size() < 2) {
 				continue;
 			}
 			// iterate over the multiLines, and add the way to the correct one
-			Way changedWay = toAdd;
-			Way newWay;
+			WayChain changedWay = new WayChain(toAdd);
+			WayChain newWay;
 			do {
-				newWay = merge(multilineStartPoint, getLastId(changedWay), changedWay, 
-						multilineEndPoint, getFirstId(changedWay));
+				newWay = merge(multilineStartPoint, changedWay.lastId, changedWay,
+						multilineEndPoint, changedWay.firstId);
 				if(newWay == null) {
-					newWay = merge(multilineEndPoint, getFirstId(changedWay), changedWay, 
-							multilineStartPoint, getLastId(changedWay));
+					newWay = merge(multilineEndPoint, changedWay.firstId, changedWay,
+							multilineStartPoint, changedWay.lastId);
 				}
 				if(newWay == null) {
-					newWay = merge(multilineStartPoint, getFirstId(changedWay), changedWay, 
-							multilineEndPoint, getLastId(changedWay));
+					newWay = merge(multilineStartPoint, changedWay.firstId, changedWay,
+							multilineEndPoint, changedWay.lastId);
 				}
 				if(newWay == null) {
-					newWay = merge(multilineEndPoint, getLastId(changedWay), changedWay, 
-							multilineStartPoint, getFirstId(changedWay));
+					newWay = merge(multilineEndPoint, changedWay.lastId, changedWay,
+							multilineStartPoint, changedWay.firstId);
 				}
 				if(newWay != null) {
 					changedWay = newWay;
 				}
 			} while (newWay != null);
-			
-			addToMap(multilineStartPoint, getFirstId(changedWay), changedWay);
-			addToMap(multilineEndPoint, getLastId(changedWay), changedWay);
+
+			addToMap(multilineStartPoint, changedWay.firstId, changedWay);
+			addToMap(multilineEndPoint, changedWay.lastId, changedWay);
 
 		}
-		
-		List<Way> multiLines = new ArrayList<Way>();
-		for(List<Way> lst : multilineStartPoint.valueCollection()) {
+
+		List<WayChain> multiLines = new ArrayList<WayChain>();
+		for(List<WayChain> lst : multilineStartPoint.valueCollection()) {
 			multiLines.addAll(lst);
 		}
 		ArrayList<Ring> result = new ArrayList<Ring>();
-		for (Way multiLine : multiLines) {
-			Ring r = new Ring(multiLine);
+		for (WayChain multiLine : multiLines) {
+			Ring r = new Ring(multiLine.toWay());
 			result.add(r);
 		}
 		return result;
 	}
 
-	private Way merge(TLongObjectHashMap<List<Way>> endMap, long stNodeId, Way changedWay,
-			TLongObjectHashMap<List<Way>> startMap, long endNodeId) {
-		List<Way> lst = endMap.get(stNodeId);
+	private WayChain merge(TLongObjectHashMap<List<WayChain>> endMap, long stNodeId, WayChain changedWay,
+			TLongObjectHashMap<List<WayChain>> startMap, long endNodeId) {
+		List<WayChain> lst = endMap.get(stNodeId);
 		if(lst != null && lst.size() > 0) {
-			Way candToMerge = lst.get(0);
-			Way newWay = combineTwoWaysIfHasPoints(candToMerge, changedWay);
-			List<Way> otherLst = startMap.get(
-					getLastId(candToMerge) == stNodeId ? getFirstId(candToMerge) : getLastId(candToMerge));
+			WayChain candToMerge = lst.get(0);
+			List<WayChain> otherLst = startMap.get(
+					candToMerge.lastId == stNodeId ? candToMerge.firstId : candToMerge.lastId);
 			boolean removed1 = lst.remove(candToMerge) ;
 			boolean removed2 = otherLst != null && otherLst.remove(candToMerge);
+			WayChain newWay = combineTwoWaysIfHasPoints(candToMerge, changedWay);
 			if(newWay == null || !removed1 || !removed2) {
 				throw new UnsupportedOperationException("Can't merge way: " + changedWay.getId() + " " + stNodeId + " -> " + endNodeId);
 			}
 			return newWay;
 		}
-		
+
 		return null;
 	}
 
-	private void addToMap(TLongObjectHashMap<List<Way>> mp, long id, Way changedWay) {
-		List<Way> lst = mp.get(id);
+	private void addToMap(TLongObjectHashMap<List<WayChain>> mp, long id, WayChain changedWay) {
+		List<WayChain> lst = mp.get(id);
 		if(lst == null) {
 			lst = new ArrayList<>();
 			mp.put(id, lst);
 		}
 		lst.add(changedWay);
 	}
-	
+
 
 	private long getId(Node n) {
 		if(n == null ) {
@@ -194,60 +221,53 @@ public class MultipolygonBuilder {
 	}
 	
 	/**
-	 * make a new Way with the nodes from two other ways
+	 * join nodes of two ways (chains) into the longer one
 	 *
 	 * @param w1 the first way
 	 * @param w2 the second way
 	 * @return null if it is not possible
 	 */
-	private Way combineTwoWaysIfHasPoints(Way w1, Way w2) {
-		boolean combine = true;
-		boolean firstReverse = false;
-		boolean secondReverse = false;
-		long w1f = getFirstId(w1);
-		long w2f = getFirstId(w2);
-		long w1l = getLastId(w1);
-		long w2l = getLastId(w2);
-		if (w1f == w2f) {
+	private WayChain combineTwoWaysIfHasPoints(WayChain w1, WayChain w2) {
+		boolean firstReverse;
+		boolean secondReverse;
+		if (w1.firstId == w2.firstId) {
 			firstReverse = true;
 			secondReverse = false;
-		} else if (w1l == w2f) {
+		} else if (w1.lastId == w2.firstId) {
 			firstReverse = false;
 			secondReverse = false;
-		} else if (w1l  == w2l) {
+		} else if (w1.lastId == w2.lastId) {
 			firstReverse = false;
 			secondReverse = true;
-		} else if (w1f == w2l) {
+		} else if (w1.firstId == w2.lastId) {
 			firstReverse = true;
 			secondReverse = true;
 		} else {
-			combine = false;
+			return null;
 		}
-		if (combine) {
-			Way newWay = new Way(nextRandId());
-			boolean nodePresent = w1.getNodes() != null || w1.getNodes().size() != 0;
-			int w1size = nodePresent ? w1.getNodes().size() : w1.getNodeIds().size();
-			for (int i = 0; i < w1size; i++) {
-				int ind = firstReverse ? (w1size - 1 - i) : i;
-				if (nodePresent) {
-					newWay.addNode(w1.getNodes().get(ind));
-				} else {
-					newWay.addNode(w1.getNodeIds().get(ind));
-				}
+		// result is w1 and w2 (without first node) in chosen directions,
+		// nodes of shorter way are added to the longer one so merging of long chains is not quadratic
+		if (firstReverse) {
+			w1.reverse();
+		}
+		if (secondReverse) {
+			w2.reverse();
+		}
+		if (w1.size() >= w2.size()) {
+			for (int i = 1; i < w2.size(); i++) {
+				w1.addLast(w2.get(i));
 			}
-			int w2size = nodePresent ? w2.getNodes().size() : w2.getNodeIds().size();
-			for (int i = 1; i < w2size; i++) {
-				int ind = secondReverse ? (w2size - 1 - i) : i;
-				if (nodePresent) {
-					newWay.addNode(w2.getNodes().get(ind));
-				} else {
-					newWay.addNode(w2.getNodeIds().get(ind));
-				}
+			w1.updateIds();
+			return w1;
+		}
+		if (w1.size() > 0) {
+			w2.setFirst(w1.get(w1.size() - 1));
+			for (int i = w1.size() - 2; i >= 0; i--) {
+				w2.addFirst(w1.get(i));
 			}
-			return newWay;
 		}
-		return null;
-
+		w2.updateIds();
+		return w2;
 	}
 
 	private long getLastId(Way w1) {
@@ -275,4 +295,94 @@ public class MultipolygonBuilder {
 		return val;
 	}
 
+	/**
+	 * Way or merged ways as list of nodes: reversed head and tail, so nodes could be added to both ends
+	 * and direction could be changed in constant time
+	 */
+	private class WayChain {
+		// original way until it's changed
+		private Way way;
+		private ArrayList<Node> head;
+		private ArrayList<Node> tail;
+		long firstId;
+		long lastId;
+
+		WayChain(Way way) {
+			this.way = way;
+			firstId = getFirstId(way);
+			lastId = getLastId(way);
+		}
+
+		private void copyNodes() {
+			if (way != null) {
+				head = new ArrayList<Node>();
+				tail = new ArrayList<Node>(way.getNodes());
+				way = null;
+			}
+		}
+
+		long getId() {
+			return way != null ? way.getId() : 0;
+		}
+
+		int size() {
+			return way != null ? way.getNodes().size() : head.size() + tail.size();
+		}
+
+		Node get(int i) {
+			if (way != null) {
+				return way.getNodes().get(i);
+			}
+			return i < head.size() ? head.get(head.size() - 1 - i) : tail.get(i - head.size());
+		}
+
+		void reverse() {
+			copyNodes();
+			ArrayList<Node> t = head;
+			head = tail;
+			tail = t;
+			long id = firstId;
+			firstId = lastId;
+			lastId = id;
+		}
+
+		void addLast(Node n) {
+			copyNodes();
+			tail.add(n);
+		}
+
+		void addFirst(Node n) {
+			copyNodes();
+			head.add(n);
+		}
+
+		void setFirst(Node n) {
+			copyNodes();
+			if (head.isEmpty()) {
+				tail.set(0, n);
+			} else {
+				head.set(head.size() - 1, n);
+			}
+		}
+
+		void updateIds() {
+			firstId = getNodeId(size() == 0 ? null : get(0));
+			lastId = getNodeId(size() == 0 ? null : get(size() - 1));
+		}
+
+		private long getNodeId(Node n) {
+			return n != null && n.getId() > 0 ? n.getId() : MultipolygonBuilder.this.getId(n);
+		}
+
+		Way toWay() {
+			if (way != null) {
+				return way;
+			}
+			Way newWay = new Way(nextRandId());
+			for (int i = 0; i < size(); i++) {
+				newWay.addNode(get(i));
+			}
+			return newWay;
+		}
+	}
 }
@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.CoordinateList;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -28,8 +30,19 @@ public class Ring implements Comparable<Ring> {
 	
 	private static final int INDEX_RING_NODES_FAST_CHECK = 100;
 	private static final int INDEX_SIZE = 100;
+	// big rings (coastlines) have more intervals
+	private static final int INDEX_NODES_PER_INTERVAL = 16;
 	private double[] indexedRingIntervals = null;
-	private List<Node>[] indexedRingNodes = null;
+	// end indexes of border segments crossing latitude interval (segment starts at previous point)
+	private int[][] indexedRingSegments = null;
+
+	// coordinates of border nodes (without missing nodes) and bbox
+	private double[] lats;
+	private double[] lons;
+	private double minLat = Double.MAX_VALUE;
+	private double maxLat = -Double.MAX_VALUE;
+	private double minLon = Double.MAX_VALUE;
+	private double maxLon = -Double.MAX_VALUE;
 
 	/**
 	 * a concatenation of the ways to form the border
@@ -54,59 +67,66 @@ public class Ring implements Comparable<Ring> {
 		indexForFastCheck();
 	}
 
-	@SuppressWarnings("unchecked")
 	private void indexForFastCheck() {
-		if(border.getNodes().size() > INDEX_RING_NODES_FAST_CHECK) {
-			// calculate min/max lat
-			double maxLat = Double.MIN_VALUE;
-			double minLat = Double.MAX_VALUE;
-			Node lastNode = null;
-			for(Node n : border.getNodes()) {
-				if(n == null) {
-					continue;
-				}
-				lastNode = n;
-				if(n.getLatitude() > maxLat) {
-					maxLat = n.getLatitude();
-				} else if(n.getLatitude() < minLat) {
-					minLat = n.getLatitude();
-				}
+		List<Node> nodes = border.getNodes();
+		int size = 0;
+		for (Node n : nodes) {
+			if (n != null) {
+				size++;
+			}
+		}
+		lats = new double[size];
+		lons = new double[size];
+		int ind = 0;
+		for (Node n : nodes) {
+			if (n != null) {
+				lats[ind] = n.getLatitude();
+				lons[ind++] = n.getLongitude();
+			}
+		}
+		for (int i = 0; i < lats.length; i++) {
+			minLat = Math.min(minLat, lats[i]);
+			maxLat = Math.max(maxLat, lats[i]);
+			minLon = Math.min(minLon, lons[i]);
+			maxLon = Math.max(maxLon, lons[i]);
+		}
+		if (lats.length > INDEX_RING_NODES_FAST_CHECK) {
+			double max = maxLat + 0.0001;
+			double min = minLat - 0.0001;
+			// segments are added to all intervals they cross, so number of intervals is limited by length of segments
+			double segmentsLatSum = 0;
+			for (int i = 0; i < lats.length; i++) {
+				segmentsLatSum += Math.abs(lats[i] - lats[i == 0 ? lats.length - 1 : i - 1]);
 			}
-			maxLat += 0.0001;
-			minLat -= 0.0001;
+			int indexSize = lats.length / INDEX_NODES_PER_INTERVAL;
+			if (segmentsLatSum > 0) {
+				// not more than 2 intervals per segment in average
+				indexSize = (int) Math.min(indexSize, (max - min) * 2 * lats.length / segmentsLatSum);
+			}
+			indexSize = Math.max(INDEX_SIZE, indexSize);
 			// create interval array [minLat, minLat+interval, ..., maxLat]
-			double interval = (maxLat - minLat) / (INDEX_SIZE - 1);
-			indexedRingIntervals = new double[INDEX_SIZE];
-			indexedRingNodes = new List[INDEX_SIZE];
-			for(int i = 0; i < INDEX_SIZE; i++) {
-				indexedRingIntervals[i] = minLat + i * interval;		
-				indexedRingNodes[i] = new ArrayList<Node>();
+			double interval = (max - min) / (indexSize - 1);
+			indexedRingIntervals = new double[indexSize];
+			TIntArrayList[] segments = new TIntArrayList[indexSize];
+			for (int i = 0; i < indexSize; i++) {
+				indexedRingIntervals[i] = min + i * interval;
+				segments[i] = new TIntArrayList();
 			}
-			// split nodes by intervals
-			Node prev = lastNode;
-			for(int i = 0; i < border.getNodes().size(); i++) {
-				Node current = border.getNodes().get(i);
-				if(current == null) {
-					continue;
-				}
-				int i1 = getIndexedLessOrEq(current.getLatitude());
-				int i2 = getIndexedLessOrEq(prev.getLatitude());
-				int min, max;
-				if(i1 > i2) {
-					min = i2;
-					max = i1;
-				} else {
-					min = i1;
-					max = i2;
+			// split segments by intervals
+			int prev = lats.length - 1;
+			for (int i = 0; i < lats.length; i++) {
+				int i1 = getIndexedLessOrEq(lats[i]);
+				int i2 = getIndexedLessOrEq(lats[prev]);
+				for (int j = Math.min(i1, i2); j <= Math.max(i1, i2); j++) {
+					segments[j].add(i);
 				}
-				for (int j = min; j <= max; j++) {
-					indexedRingNodes[j].add(prev);
-					indexedRingNodes[j].add(current);
-				}
-				prev = current;
+				prev = i;
+			}
+			indexedRingSegments = new int[indexSize][];
+			for (int i = 0; i < indexSize; i++) {
+				indexedRingSegments[i] = segments[i].toArray();
 			}
 		}
-		
 	}
 
 	private int getIndexedLessOrEq(double latitude) {
@@ -149,25 +169,53 @@ public class Ring implements Comparable<Ring> {
 	 * @return yes if the point is inside the ring
 	 */
 	public boolean containsPoint(double latitude, double longitude) {
-		if(indexedRingIntervals != null) {
-			int intersections = 0;
+		if (latitude < minLat || latitude > maxLat || longitude < minLon || longitude > maxLon) {
+			// ray crosses closed border even number of times
+			return false;
+		}
+		int intersections = 0;
+		if (indexedRingIntervals != null) {
 			int indx = getIndexedLessOrEq(latitude);
-			if(indx == 0 || indx >= indexedRingNodes.length) {
+			if (indx == 0 || indx >= indexedRingSegments.length) {
 				return false;
 			}
-			List<Node> lst = indexedRingNodes[indx];
-			for (int k = 0; k < lst.size(); k += 2) {
-				Node first = lst.get(k);
-				Node last = lst.get(k + 1);
-				if (OsmMapUtils.ray_intersect_lon(first, last, latitude, longitude) != -360.0d) {
+			for (int i : indexedRingSegments[indx]) {
+				if (rayIntersects(i == 0 ? lats.length - 1 : i - 1, i, latitude, longitude)) {
+					intersections++;
+				}
+			}
+		} else if (lats.length > 1) {
+			// border is treated as closed (see MapAlgorithms.countIntersections)
+			for (int i = 1; i < lats.length; i++) {
+				if (rayIntersects(i - 1, i, latitude, longitude)) {
 					intersections++;
 				}
 			}
-			return intersections  % 2 == 1;
+			if (rayIntersects(0, lats.length - 1, latitude, longitude)) {
+				intersections++;
+			}
 		}
-		return MapAlgorithms.containsPoint(getBorder(), latitude, longitude);
+		return intersections % 2 == 1;
 	}
-	
+
+	private boolean rayIntersects(int i1, int i2, double latitude, double longitude) {
+		return OsmMapUtils.ray_intersect_lon(lats[i1], lons[i1], lats[i2], lons[i2], latitude, longitude) != -360.0d;
+	}
+
+	/**
+	 * @return true if bbox of this ring is inside of bbox of ring r
+	 */
+	public boolean isInBBox(Ring r) {
+		return minLat >= r.minLat && maxLat <= r.maxLat && minLon >= r.minLon && maxLon <= r.maxLon;
+	}
+
+	/**
+	 * @return bbox (left, top - longitude, latitude)
+	 */
+	public QuadRect getBBox() {
+		return new QuadRect(minLon, maxLat, maxLon, minLat);
+	}
+
 	/**
 	 * Check if this is in Ring r
 	 * @param r the ring to check
@@ -178,41 +226,25 @@ public class Ring implements Comparable<Ring> {
 		 * bi-directional check is needed because some concave rings can intersect
 		 * and would only fail on one of the checks
 		 */
-		List<Node> points = this.getBorder();
-		if(points.size() < 2) {
+		if (lats.length < 2) {
 			return false;
 		}
-		double minlat = points.get(0).getLatitude();
-		double maxlat = points.get(0).getLatitude();
-		double minlon = points.get(0).getLongitude();
-		double maxlon = points.get(0).getLongitude();
 		// r should contain all nodes of this
-		for (Node n : points) {
-			minlat = Math.min(n.getLatitude(), minlat);
-			maxlat = Math.max(n.getLatitude(), maxlat);
-			minlon = Math.min(n.getLongitude(), minlon);
-			maxlon = Math.max(n.getLongitude(), maxlon);
-		}
-		
-		// r should contain all nodes of this
-		if (!r.containsPoint(minlat, minlon)) {
+		if (!r.containsPoint(minLat, minLon)) {
 			return false;
 		}
-		if (!r.containsPoint(maxlat, minlon)) {
+		if (!r.containsPoint(maxLat, minLon)) {
 			return false;
 		}
-		if (!r.containsPoint(minlat, maxlon)) {
+		if (!r.containsPoint(minLat, maxLon)) {
 			return false;
 		}
-		if (!r.containsPoint(maxlat, maxlon)) {
+		if (!r.containsPoint(maxLat, maxLon)) {
 			return false;
 		}
 		// this should not contain a node from r
-		for (Node n : r.getBorder()) {
-			if(n.getLatitude() > minlat && n.getLatitude() < maxlat && 
-					n.getLongitude() > minlon && n.getLongitude() < maxlon) {
-				return false;
-			}
+		if (containsNodeOf(r, true)) {
+			return false;
 		}
 
 		return true;
@@ -226,6 +258,10 @@ public class Ring implements Comparable<Ring> {
 	 * @return true if this Ring is inside Ring r
 	 */
 	public boolean isIn(Ring r) {
+		// all nodes of this should be inside of r
+		if (!isInBBox(r)) {
+			return false;
+		}
 		if(speedIsIn(r)) {
 			return true;
 		}
@@ -233,22 +269,17 @@ public class Ring implements Comparable<Ring> {
 		 * bi-directional check is needed because some concave rings can intersect
 		 * and would only fail on one of the checks
 		 */
-		List<Node> points = this.getBorder();
 
 		// r should contain all nodes of this
-		for (Node n : points) {
-			if (!r.containsNode(n)) {
+		for (int i = 0; i < lats.length; i++) {
+			if (!r.containsPoint(lats[i], lons[i])) {
 				return false;
 			}
 		}
 
-		points = r.getBorder();
-
 		// this should not contain a node from r
-		for (Node n : points) {
-			if (this.containsNode(n)) {
-				return false;
-			}
+		if (containsNodeOf(r, false)) {
+			return false;
 		}
 
 		return true;
@@ -256,6 +287,41 @@ public class Ring implements Comparable<Ring> {
 	}
 
 
+	/**
+	 * Checks only nodes of r in latitude range of this ring (by index of r if it is indexed)
+	 * @param bboxOnly check that node is strictly inside of bbox instead of ring
+	 */
+	private boolean containsNodeOf(Ring r, boolean bboxOnly) {
+		if (r.indexedRingSegments == null) {
+			for (int i = 0; i < r.lats.length; i++) {
+				if (containsNodeOf(r, i, bboxOnly)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		int from = r.getIndexedLessOrEq(minLat);
+		int to = Math.min(r.getIndexedLessOrEq(maxLat), r.indexedRingSegments.length - 1);
+		for (int j = from; j <= to; j++) {
+			// every node is end of segment in interval of its latitude
+			for (int i : r.indexedRingSegments[j]) {
+				if (containsNodeOf(r, i, bboxOnly)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean containsNodeOf(Ring r, int i, boolean bboxOnly) {
+		double lat = r.lats[i];
+		double lon = r.lons[i];
+		if (bboxOnly) {
+			return lat > minLat && lat < maxLat && lon > minLon && lon < maxLon;
+		}
+		return containsPoint(lat, lon);
+	}
+
 	/**
 	 * If this Ring is not complete
 	 * (some ways are not initialized
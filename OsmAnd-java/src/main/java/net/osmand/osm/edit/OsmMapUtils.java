@@ -445,26 +445,40 @@ public class OsmMapUtils {
 
 	// try to intersect from left to right
 	public static double ray_intersect_lon(Node node, Node node2, double latitude, double longitude) {
+		return ray_intersect_lon(node.getLatitude(), node.getLongitude(), node2.getLatitude(), node2.getLongitude(),
+				latitude, longitude);
+	}
+
+	public static double ray_intersect_lon(double lat1, double lon1, double lat2, double lon2,
+			double latitude, double longitude) {
 		// a node below
-		Node a = node.getLatitude() < node2.getLatitude() ? node : node2;
-		// b node above
-		Node b = a == node2 ? node : node2;
-		if (latitude == a.getLatitude() || latitude == b.getLatitude()) {
+		double aLat, aLon, bLat, bLon;
+		if (lat1 < lat2) {
+			aLat = lat1;
+			aLon = lon1;
+			bLat = lat2;
+			bLon = lon2;
+		} else {
+			aLat = lat2;
+			aLon = lon2;
+			bLat = lat1;
+			bLon = lon1;
+		}
+		if (latitude == aLat || latitude == bLat) {
 			latitude += 0.00000001d;
 		}
-		if (latitude < a.getLatitude() || latitude > b.getLatitude()) {
+		if (latitude < aLat || latitude > bLat) {
 			return -360d;
 		} else {
-			if (longitude < Math.min(a.getLongitude(), b.getLongitude())) {
+			if (longitude < Math.min(aLon, bLon)) {
 				return -360d;
 			} else {
-				if (a.getLongitude() == b.getLongitude() && longitude == a.getLongitude()) {
+				if (aLon == bLon && longitude == aLon) {
 					// the node on the boundary !!!
 					return longitude;
 				}
 				// that tested on all cases (left/right)
-				double lon = b.getLongitude() - (b.getLatitude() - latitude) * (b.getLongitude() - a.getLongitude())
-						/ (b.getLatitude() - a.getLatitude());
+				double lon = bLon - (bLat - latitude) * (bLon - aLon) / (bLat - aLat);
 				if (lon <= longitude) {
 					return lon;
 				} else {
@@ -0,0 +1,217 @@
+package net.osmand.render;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapDataObject;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.TagValuePair;
+
+/**
+ * Results of rendering rules search for object types. Result depends only on map index, type, additional types,
+ * zoom (layer for order and line rules, area/point/cycle flags for order rules) and custom rule inputs (saved state of request),
+ * so objects of same types are styled with one lookup which restores output values of the request.
+ * Cache could outlive requests, it is cleared when rules, storage or custom inputs are changed (see validate).
+ * Not thread safe (as renderer).
+ */
+public class RenderingObjectStyleCache {
+
+	private static final int ORDER_AREA = 1;
+	private static final int ORDER_POINT = 2;
+	private static final int ORDER_CYCLE = 4;
+
+	private final Map<StyleKey, StyleResult> results;
+	private final StyleKey probe = new StyleKey();
+
+	private RenderingRulesStorage storage;
+	private int rulesVersion = -1;
+	private int[] savedValues;
+	private float[] savedFvalues;
+
+	public RenderingObjectStyleCache(final int maxSize) {
+		results = new LinkedHashMap<StyleKey, StyleResult>(256, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<StyleKey, StyleResult> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Clears cache if request has different storage, rules or custom inputs than cached results
+	 */
+	public void validate(RenderingRuleSearchRequest req) {
+		int version = req.getStorage().getRulesVersion();
+		if (storage != req.getStorage() || rulesVersion != version || !Arrays.equals(savedValues, req.savedValues)
+				|| !Arrays.equals(savedFvalues, req.savedFvalues)) {
+			results.clear();
+			storage = req.getStorage();
+			rulesVersion = version;
+			savedValues = req.savedValues.clone();
+			savedFvalues = req.savedFvalues.clone();
+		}
+	}
+
+	public void clear() {
+		results.clear();
+		storage = null;
+	}
+
+	public int size() {
+		return results.size();
+	}
+
+	/**
+	 * Same as setInitialTagValueZoom and search for type of object (order and line rules additionally get layer,
+	 * order rules get area/point/cycle flags of object), request should be validated before.
+	 * Request state is always reset before search, so cached results don't depend on previous searches
+	 * (order rules were searched with setTagValueZoomLayer which kept output values of previous object).
+	 */
+	public boolean search(RenderingRuleSearchRequest req, int state, BinaryMapDataObject obj, int typeInd, int zoom) {
+		MapIndex mapIndex = obj.getMapIndex();
+		int type = obj.getTypes()[typeInd];
+		boolean setLayer = state == RenderingRulesStorage.ORDER_RULES || state == RenderingRulesStorage.LINE_RULES;
+		int layer = setLayer && obj.getPointsLength() > 1 ? obj.getSimpleLayer() : 0;
+		int flags = 0;
+		if (state == RenderingRulesStorage.ORDER_RULES) {
+			flags = (obj.isArea() ? ORDER_AREA : 0) | (obj.getPointsLength() == 1 ? ORDER_POINT : 0)
+					| (obj.isCycle() ? ORDER_CYCLE : 0);
+		}
+		probe.set(mapIndex, state, zoom, type, layer, flags, obj.getAdditionalTypes());
+		StyleResult res = results.get(probe);
+		if (res != null) {
+			req.clearState();
+			req.object = obj;
+			res.apply(req);
+			return res.found;
+		}
+		TagValuePair pair = mapIndex.decodeType(type);
+		if (pair == null) {
+			req.clearState();
+			req.searchResult = false;
+			return false;
+		}
+		req.setInitialTagValueZoom(pair.tag, pair.value, zoom, obj);
+		if (setLayer) {
+			req.setIntFilter(req.ALL.R_LAYER, layer);
+		}
+		if (state == RenderingRulesStorage.ORDER_RULES) {
+			req.setBooleanFilter(req.ALL.R_AREA, (flags & ORDER_AREA) != 0);
+			req.setBooleanFilter(req.ALL.R_POINT, (flags & ORDER_POINT) != 0);
+			req.setBooleanFilter(req.ALL.R_CYCLE, (flags & ORDER_CYCLE) != 0);
+		}
+		boolean found = req.search(state);
+		results.put(probe.copy(), new StyleResult(req, found));
+		return found;
+	}
+
+	private static class StyleKey {
+		MapIndex mapIndex;
+		int[] key = new int[8];
+		int length;
+		int hash;
+
+		void set(MapIndex mapIndex, int state, int zoom, int type, int layer, int flags, int[] additionalTypes) {
+			this.mapIndex = mapIndex;
+			int additional = additionalTypes == null ? 0 : additionalTypes.length;
+			length = 5 + additional;
+			if (key.length < length) {
+				key = new int[length * 2];
+			}
+			key[0] = state;
+			key[1] = zoom;
+			key[2] = type;
+			key[3] = layer;
+			key[4] = flags;
+			if (additional > 0) {
+				System.arraycopy(additionalTypes, 0, key, 5, additional);
+			}
+			int h = System.identityHashCode(mapIndex);
+			for (int i = 0; i < length; i++) {
+				h = h * 31 + key[i];
+			}
+			hash = h;
+		}
+
+		StyleKey copy() {
+			StyleKey k = new StyleKey();
+			k.mapIndex = mapIndex;
+			k.key = Arrays.copyOf(key, length);
+			k.length = length;
+			k.hash = hash;
+			return k;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof StyleKey)) {
+				return false;
+			}
+			StyleKey o = (StyleKey) obj;
+			if (o.mapIndex != mapIndex || o.length != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (o.key[i] != key[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Found flag and values of request which differ from its saved state
+	 */
+	private static class StyleResult {
+		final boolean found;
+		final int[] ids;
+		final int[] ivalues;
+		final int[] floatIds;
+		final float[] fvalues;
+
+		StyleResult(RenderingRuleSearchRequest req, boolean found) {
+			this.found = found;
+			TIntArrayList changed = new TIntArrayList();
+			TIntArrayList changedFloats = new TIntArrayList();
+			for (int i = 0; i < req.values.length; i++) {
+				if (req.values[i] != req.savedValues[i]) {
+					changed.add(i);
+				}
+				if (Float.floatToRawIntBits(req.fvalues[i]) != Float.floatToRawIntBits(req.savedFvalues[i])) {
+					changedFloats.add(i);
+				}
+			}
+			ids = changed.toArray();
+			ivalues = new int[ids.length];
+			for (int i = 0; i < ids.length; i++) {
+				ivalues[i] = req.values[ids[i]];
+			}
+			floatIds = changedFloats.toArray();
+			fvalues = new float[floatIds.length];
+			for (int i = 0; i < floatIds.length; i++) {
+				fvalues[i] = req.fvalues[floatIds[i]];
+			}
+		}
+
+		void apply(RenderingRuleSearchRequest req) {
+			for (int i = 0; i < ids.length; i++) {
+				req.values[ids[i]] = ivalues[i];
+			}
+			for (int i = 0; i < floatIds.length; i++) {
+				req.fvalues[floatIds[i]] = fvalues[i];
+			}
+			req.searchResult = found;
+		}
+	}
+}
@@ -0,0 +1,339 @@
+package net.osmand.render;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rule tree (top level tag/value rule or rendering attribute) compiled to flat arrays of nodes, input checks and
+ * output assignments. Evaluation is the same as RenderingRuleSearchRequest.visitRule but without lists,
+ * property type checks and virtual calls for plain equality checks. Referenced rendering attributes are
+ * compiled into the same program. Program also knows which values it reads (input signature) to memoise results.
+ * Immutable after creation, could be shared between requests.
+ */
+class RenderingRuleProgram {
+
+	private static final byte CHECK_INT = 0;
+	private static final byte CHECK_FLOAT = 1;
+	private static final byte CHECK_ACCEPT_INT = 2;
+	private static final byte CHECK_ACCEPT_FLOAT = 3;
+	private static final byte SET_DISABLE = 4;
+
+	private static final byte OUT_INT = 0;
+	private static final byte OUT_FLOAT = 1;
+	private static final byte OUT_ATTR = 2;
+
+	private final RenderingRuleStorageProperties props;
+	private final int root;
+	private final boolean[] group;
+	// node n has checks [checkStart[n], checkStart[n + 1])
+	private final int[] checkStart;
+	private final byte[] checkKind;
+	private final int[] checkId;
+	private final int[] checkInt;
+	private final float[] checkFloat;
+	private final RenderingRuleProperty[] checkProp;
+	// node n has outputs [outStart[n], outStart[n + 1])
+	private final int[] outStart;
+	private final byte[] outKind;
+	private final int[] outId;
+	private final int[] outInt;
+	private final float[] outFloat;
+	private final RenderingRuleProperty[] outProp;
+	// node n has if-else children [childStart[n], ifStart[n]) and if children [ifStart[n], childStart[n + 1])
+	private final int[] childStart;
+	private final int[] ifStart;
+	private final int[] children;
+
+	final int[] readInts;
+	final int[] readFloats;
+	final boolean objectDependent;
+
+	private RenderingRuleProgram(Builder b) {
+		props = b.props;
+		root = 0;
+		group = new boolean[b.group.size()];
+		for (int i = 0; i < group.length; i++) {
+			group[i] = b.group.get(i);
+		}
+		checkStart = b.checkStart.toArray();
+		checkKind = toBytes(b.checkKind);
+		checkId = b.checkId.toArray();
+		checkInt = b.checkInt.toArray();
+		checkFloat = toFloats(b.checkFloat);
+		checkProp = b.checkProp.toArray(new RenderingRuleProperty[0]);
+		outStart = b.outStart.toArray();
+		outKind = toBytes(b.outKind);
+		outId = b.outId.toArray();
+		outInt = b.outInt.toArray();
+		outFloat = toFloats(b.outFloat);
+		outProp = b.outProp.toArray(new RenderingRuleProperty[0]);
+		childStart = b.childStart.toArray();
+		ifStart = b.ifStart.toArray();
+		children = b.children.toArray();
+		readInts = b.readInts.toArray();
+		readFloats = b.readFloats.toArray();
+		objectDependent = b.objectDependent;
+	}
+
+	private static byte[] toBytes(TIntArrayList l) {
+		byte[] b = new byte[l.size()];
+		for (int i = 0; i < b.length; i++) {
+			b[i] = (byte) l.get(i);
+		}
+		return b;
+	}
+
+	private static float[] toFloats(TIntArrayList bits) {
+		float[] f = new float[bits.size()];
+		for (int i = 0; i < f.length; i++) {
+			f[i] = Float.intBitsToFloat(bits.get(i));
+		}
+		return f;
+	}
+
+	static RenderingRuleProgram compile(RenderingRule rule, RenderingRuleStorageProperties props) {
+		Builder b = new Builder(props);
+		b.compile(rule);
+		return new RenderingRuleProgram(b);
+	}
+
+	boolean visit(RenderingRuleSearchRequest req, boolean loadOutput) {
+		return visit(req, root, loadOutput);
+	}
+
+	private boolean visit(RenderingRuleSearchRequest req, int n, boolean loadOutput) {
+		if (!checkInput(req, n)) {
+			return false;
+		}
+		boolean isGroup = group[n];
+		if (!loadOutput && !isGroup) {
+			return true;
+		}
+		if (!isGroup) {
+			loadOutput(req, n, true);
+		}
+		boolean match = false;
+		for (int c = childStart[n]; c < ifStart[n]; c++) {
+			match = visit(req, children[c], loadOutput);
+			if (match) {
+				break;
+			}
+		}
+		boolean fit = match || !isGroup;
+		if (fit && loadOutput) {
+			if (isGroup) {
+				loadOutput(req, n, false);
+			}
+			for (int c = ifStart[n]; c < childStart[n + 1]; c++) {
+				visit(req, children[c], loadOutput);
+			}
+		}
+		return fit;
+	}
+
+	private boolean checkInput(RenderingRuleSearchRequest req, int n) {
+		int[] values = req.values;
+		float[] fvalues = req.fvalues;
+		for (int i = checkStart[n], end = checkStart[n + 1]; i < end; i++) {
+			switch (checkKind[i]) {
+			case CHECK_INT:
+				if (checkInt[i] != values[checkId[i]]) {
+					return false;
+				}
+				break;
+			case CHECK_FLOAT:
+				if (checkFloat[i] != fvalues[checkId[i]]) {
+					return false;
+				}
+				break;
+			case CHECK_ACCEPT_INT:
+				if (!checkProp[i].accept(checkInt[i], values[checkId[i]], req)) {
+					return false;
+				}
+				break;
+			case CHECK_ACCEPT_FLOAT:
+				if (!checkProp[i].accept(checkFloat[i], fvalues[checkId[i]], req)) {
+					return false;
+				}
+				break;
+			default:
+				// quick disable return even without load output
+				req.setOutputValue(checkId[i], checkInt[i]);
+				break;
+			}
+		}
+		return true;
+	}
+
+	private void loadOutput(RenderingRuleSearchRequest req, int n, boolean override) {
+		for (int i = outStart[n], end = outStart[n + 1]; i < end; i++) {
+			int id = outId[i];
+			if (!override && req.isSpecified(outProp[i])) {
+				continue;
+			}
+			switch (outKind[i]) {
+			case OUT_ATTR:
+				visit(req, outInt[i], true);
+				if (req.isSpecified(props.R_ATTR_COLOR_VALUE)) {
+					req.setOutputValue(id, req.values[props.R_ATTR_COLOR_VALUE.getId()]);
+				} else if (req.isSpecified(props.R_ATTR_INT_VALUE)) {
+					req.setOutputValue(id, req.values[props.R_ATTR_INT_VALUE.getId()]);
+					req.setOutputFloatValue(id, req.fvalues[props.R_ATTR_INT_VALUE.getId()]);
+				} else if (req.isSpecified(props.R_ATTR_BOOL_VALUE)) {
+					req.setOutputValue(id, req.values[props.R_ATTR_BOOL_VALUE.getId()]);
+				}
+				break;
+			case OUT_FLOAT:
+				req.setOutputFloatValue(id, outFloat[i]);
+				req.setOutputValue(id, outInt[i]);
+				break;
+			default:
+				req.setOutputValue(id, outInt[i]);
+				break;
+			}
+		}
+	}
+
+	private static class Builder {
+		final RenderingRuleStorageProperties props;
+		final List<Boolean> group = new ArrayList<Boolean>();
+		final TIntArrayList checkStart = new TIntArrayList();
+		final TIntArrayList checkKind = new TIntArrayList();
+		final TIntArrayList checkId = new TIntArrayList();
+		final TIntArrayList checkInt = new TIntArrayList();
+		// float values as raw int bits
+		final TIntArrayList checkFloat = new TIntArrayList();
+		final List<RenderingRuleProperty> checkProp = new ArrayList<RenderingRuleProperty>();
+		final TIntArrayList outStart = new TIntArrayList();
+		final TIntArrayList outKind = new TIntArrayList();
+		final TIntArrayList outId = new TIntArrayList();
+		final TIntArrayList outInt = new TIntArrayList();
+		final TIntArrayList outFloat = new TIntArrayList();
+		final List<RenderingRuleProperty> outProp = new ArrayList<RenderingRuleProperty>();
+		final TIntArrayList childStart = new TIntArrayList();
+		final TIntArrayList ifStart = new TIntArrayList();
+		final TIntArrayList children = new TIntArrayList();
+		final Map<RenderingRule, Integer> nodes = new IdentityHashMap<RenderingRule, Integer>();
+		final List<RenderingRule> queue = new ArrayList<RenderingRule>();
+		final TIntHashSet readIntSet = new TIntHashSet();
+		final TIntHashSet readFloatSet = new TIntHashSet();
+		final TIntArrayList readInts = new TIntArrayList();
+		final TIntArrayList readFloats = new TIntArrayList();
+		boolean objectDependent;
+
+		Builder(RenderingRuleStorageProperties props) {
+			this.props = props;
+		}
+
+		void compile(RenderingRule rule) {
+			node(rule);
+			// nodes are laid out in order of queue, children are referenced by index
+			for (int n = 0; n < queue.size(); n++) {
+				RenderingRule r = queue.get(n);
+				group.add(r.isGroup());
+				checkStart.add(checkId.size());
+				outStart.add(outId.size());
+				childStart.add(children.size());
+				RenderingRuleProperty[] properties = r.getProperties();
+				for (int i = 0; i < properties.length; i++) {
+					RenderingRuleProperty rp = properties[i];
+					if (rp.isInputProperty()) {
+						addCheck(r, i, rp);
+					} else {
+						if (rp == props.R_DISABLE) {
+							addCheckValue(SET_DISABLE, rp, r.getIntProp(i), 0);
+						}
+						addOutput(r, i, rp);
+					}
+				}
+				for (RenderingRule c : r.getIfElseChildren()) {
+					children.add(node(c));
+				}
+				ifStart.add(children.size());
+				for (RenderingRule c : r.getIfChildren()) {
+					children.add(node(c));
+				}
+			}
+			checkStart.add(checkId.size());
+			outStart.add(outId.size());
+			childStart.add(children.size());
+		}
+
+		private int node(RenderingRule r) {
+			Integer n = nodes.get(r);
+			if (n == null) {
+				n = queue.size();
+				nodes.put(r, n);
+				queue.add(r);
+			}
+			return n;
+		}
+
+		private void addCheck(RenderingRule r, int i, RenderingRuleProperty rp) {
+			boolean plain = rp.getClass() == RenderingRuleProperty.class;
+			if (rp.dependsOnObject()) {
+				objectDependent = true;
+			}
+			if (rp.isFloat()) {
+				addCheckValue(plain ? CHECK_FLOAT : CHECK_ACCEPT_FLOAT, rp, r.getIntProp(i), r.getFloatProp(i));
+				read(readFloatSet, readFloats, rp.getId());
+			} else {
+				addCheckValue(plain ? CHECK_INT : CHECK_ACCEPT_INT, rp, r.getIntProp(i), r.getFloatProp(i));
+				read(readIntSet, readInts, rp.getId());
+			}
+		}
+
+		private void addCheckValue(byte kind, RenderingRuleProperty rp, int intValue, float floatValue) {
+			checkKind.add(kind);
+			checkId.add(rp.getId());
+			checkInt.add(intValue);
+			checkFloat.add(Float.floatToRawIntBits(floatValue));
+			checkProp.add(rp);
+		}
+
+		private void addOutput(RenderingRule r, int i, RenderingRuleProperty rp) {
+			RenderingRule attr = r.getAttrProp(i);
+			if (attr != null) {
+				outKind.add(OUT_ATTR);
+				outInt.add(node(attr));
+				outFloat.add(0);
+				readSpecified(props.R_ATTR_COLOR_VALUE);
+				readSpecified(props.R_ATTR_INT_VALUE);
+				readSpecified(props.R_ATTR_BOOL_VALUE);
+				read(readFloatSet, readFloats, props.R_ATTR_INT_VALUE.getId());
+			} else if (rp.isFloat()) {
+				outKind.add(OUT_FLOAT);
+				outInt.add(r.getIntProp(i));
+				outFloat.add(Float.floatToRawIntBits(r.getFloatProp(i)));
+			} else {
+				outKind.add(OUT_INT);
+				outInt.add(r.getIntProp(i));
+				outFloat.add(0);
+			}
+			outId.add(rp.getId());
+			outProp.add(rp);
+			if (r.isGroup()) {
+				// group outputs are not overridden if already specified
+				readSpecified(rp);
+			}
+		}
+
+		private void readSpecified(RenderingRuleProperty rp) {
+			read(readIntSet, readInts, rp.getId());
+			if (rp.isFloat()) {
+				read(readFloatSet, readFloats, rp.getId());
+			}
+		}
+
+		private static void read(TIntHashSet set, TIntArrayList list, int id) {
+			if (set.add(id)) {
+				list.add(id);
+			}
+		}
+	}
+}
@@ -144,6 +144,11 @@ public class RenderingRuleProperty {
 		return ruleValue == renderingProperty;
 	}
 	
+	// accept reads object of the request, not only values
+	protected boolean dependsOnObject() {
+		return false;
+	}
+
 	@Override
 	public String toString() {
 		return "#RenderingRuleProperty " + getAttrName();
@@ -280,6 +285,11 @@ public class RenderingRuleProperty {
 	
 	public static RenderingRuleProperty createAdditionalStringProperty(String name) {
 		return new RenderingRuleProperty(name, STRING_TYPE, true) {
+			@Override
+			protected boolean dependsOnObject() {
+				return true;
+			}
+
 			@Override
 			public boolean accept(int ruleValue, int renderingProperty, RenderingRuleSearchRequest req) {
 				BinaryMapDataObject obj = req.getObject();
@@ -1,11 +1,23 @@
 package net.osmand.render;
 
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
 import net.osmand.binary.BinaryMapDataObject;
 import net.osmand.util.Algorithms;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 
 public class RenderingRuleSearchRequest {
 
+	// evaluate compiled rules (see RenderingRuleProgram) and memoise results by values read by rules
+	public static boolean USE_COMPILED_RULES = true;
+	private static final int MAX_PLANS = 4096;
+	private static final int MAX_RESULTS_PER_PLAN = 128;
+
 	private final RenderingRulesStorage storage;
 	RenderingRuleProperty[] props;
 	int[] values;
@@ -16,6 +28,16 @@ public class RenderingRuleSearchRequest {
 	float[] savedFvalues;
 	
 	boolean searchResult = false;
+
+	private final TLongObjectHashMap<SearchPlan> plans = new TLongObjectHashMap<SearchPlan>();
+	private int plansVersion = -1;
+	// properties written during search, tracked to memoise results
+	private boolean trackWrites;
+	private int[] writeStamps;
+	private int[] floatWriteStamps;
+	private int writeStamp;
+	private final TIntArrayList written = new TIntArrayList();
+	private final TIntArrayList floatWritten = new TIntArrayList();
 	
 	
 	public final RenderingRuleStorageProperties ALL;
@@ -118,6 +140,11 @@ public class RenderingRuleSearchRequest {
 	
 	public boolean searchRenderingAttribute(String attribute) {
 		searchResult = false;
+		if (USE_COMPILED_RULES) {
+			RenderingRuleProgram program = storage.getAttributeProgram(attribute);
+			searchResult = program != null && program.visit(this, true);
+			return searchResult;
+		}
 		RenderingRule rule = storage.getRenderingAttributeRule(attribute);
 		if(rule == null){
 			return false;
@@ -135,6 +162,10 @@ public class RenderingRuleSearchRequest {
 		searchResult = false;
 		int tagKey = values[storage.PROPS.R_TAG.getId()];
 		int valueKey = values[storage.PROPS.R_VALUE.getId()];
+		if (USE_COMPILED_RULES) {
+			searchResult = searchCompiled(state, tagKey, valueKey, loadOutput);
+			return searchResult;
+		}
 		boolean result = searchInternal(state, tagKey, valueKey, loadOutput);
 		if (result) {
 			searchResult = true;
@@ -170,6 +201,85 @@ public class RenderingRuleSearchRequest {
 		return match;
 	}
 
+	private boolean searchCompiled(int state, int tagKey, int valueKey, boolean loadOutput) {
+		SearchPlan plan = getSearchPlan(state, tagKey, valueKey);
+		if (plan.objectDependent && object != null) {
+			return searchPlan(plan, loadOutput);
+		}
+		SearchResultKey key = plan.fillKey(this, loadOutput);
+		SearchPlanResult res = plan.results.get(key);
+		if (res != null) {
+			res.apply(this);
+			return res.found;
+		}
+		if (writeStamps == null) {
+			writeStamps = new int[values.length];
+			floatWriteStamps = new int[fvalues.length];
+		}
+		writeStamp++;
+		written.resetQuick();
+		floatWritten.resetQuick();
+		trackWrites = true;
+		boolean found;
+		try {
+			found = searchPlan(plan, loadOutput);
+		} finally {
+			trackWrites = false;
+		}
+		if (plan.results.size() >= MAX_RESULTS_PER_PLAN) {
+			plan.results.clear();
+		}
+		plan.results.put(key.copy(), new SearchPlanResult(this, found));
+		return found;
+	}
+
+	private boolean searchPlan(SearchPlan plan, boolean loadOutput) {
+		int tagId = storage.PROPS.R_TAG.getId();
+		int valueId = storage.PROPS.R_VALUE.getId();
+		int disableId = storage.PROPS.R_DISABLE.getId();
+		for (int i = 0; i < plan.programs.length; i++) {
+			setOutputValue(tagId, plan.tagKeys[i]);
+			setOutputValue(valueId, plan.valueKeys[i]);
+			setOutputValue(disableId, 0);
+			RenderingRuleProgram program = plan.programs[i];
+			if (program != null && program.visit(this, loadOutput) && values[disableId] == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private SearchPlan getSearchPlan(int state, int tagKey, int valueKey) {
+		int version = storage.getRulesVersion();
+		if (plansVersion != version || plans.size() >= MAX_PLANS) {
+			plans.clear();
+			plansVersion = version;
+		}
+		long key = ((long) state << 56) | ((long) tagKey << 28) | valueKey;
+		SearchPlan plan = plans.get(key);
+		if (plan == null) {
+			plan = new SearchPlan(storage, state, tagKey, valueKey);
+			plans.put(key, plan);
+		}
+		return plan;
+	}
+
+	void setOutputValue(int id, int value) {
+		values[id] = value;
+		if (trackWrites && writeStamps[id] != writeStamp) {
+			writeStamps[id] = writeStamp;
+			written.add(id);
+		}
+	}
+
+	void setOutputFloatValue(int id, float value) {
+		fvalues[id] = value;
+		if (trackWrites && floatWriteStamps[id] != writeStamp) {
+			floatWriteStamps[id] = writeStamp;
+			floatWritten.add(id);
+		}
+	}
+
 	private boolean visitRule(RenderingRule rule, boolean loadOutput) {
 		boolean input = checkInputProperties(rule);
 		if(!input) {
@@ -311,4 +421,119 @@ public class RenderingRuleSearchRequest {
 	RenderingRulesStorage getStorage() {
 		return storage;
 	}
+
+	/**
+	 * Programs of tag/value, tag/0 and 0/0 rules with union of values they read
+	 */
+	private static class SearchPlan {
+		final RenderingRuleProgram[] programs = new RenderingRuleProgram[3];
+		final int[] tagKeys;
+		final int[] valueKeys;
+		final int[] readInts;
+		final int[] readFloats;
+		final boolean objectDependent;
+		final Map<SearchResultKey, SearchPlanResult> results = new HashMap<SearchResultKey, SearchPlanResult>();
+		private final SearchResultKey probe;
+
+		SearchPlan(RenderingRulesStorage storage, int state, int tagKey, int valueKey) {
+			tagKeys = new int[] { tagKey, tagKey, 0 };
+			valueKeys = new int[] { valueKey, 0, 0 };
+			TIntArrayList ints = new TIntArrayList();
+			TIntArrayList floats = new TIntArrayList();
+			boolean objectDependent = false;
+			for (int i = 0; i < programs.length; i++) {
+				programs[i] = storage.getProgram(state, tagKeys[i], valueKeys[i]);
+				if (programs[i] != null) {
+					addAll(ints, programs[i].readInts);
+					addAll(floats, programs[i].readFloats);
+					objectDependent |= programs[i].objectDependent;
+				}
+			}
+			readInts = ints.toArray();
+			readFloats = floats.toArray();
+			this.objectDependent = objectDependent;
+			probe = new SearchResultKey(new int[readInts.length + readFloats.length + 1]);
+		}
+
+		private static void addAll(TIntArrayList list, int[] ids) {
+			for (int id : ids) {
+				if (!list.contains(id)) {
+					list.add(id);
+				}
+			}
+		}
+
+		SearchResultKey fillKey(RenderingRuleSearchRequest req, boolean loadOutput) {
+			int[] k = probe.key;
+			int i = 0;
+			for (int id : readInts) {
+				k[i++] = req.values[id];
+			}
+			for (int id : readFloats) {
+				k[i++] = Float.floatToRawIntBits(req.fvalues[id]);
+			}
+			k[i] = loadOutput ? 1 : 0;
+			probe.hash = Arrays.hashCode(k);
+			return probe;
+		}
+	}
+
+	private static class SearchResultKey {
+		final int[] key;
+		int hash;
+
+		SearchResultKey(int[] key) {
+			this.key = key;
+		}
+
+		SearchResultKey copy() {
+			SearchResultKey k = new SearchResultKey(key.clone());
+			k.hash = hash;
+			return k;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof SearchResultKey && Arrays.equals(key, ((SearchResultKey) obj).key);
+		}
+	}
+
+	/**
+	 * Found flag and final values of properties written by search
+	 */
+	private static class SearchPlanResult {
+		final boolean found;
+		final int[] ids;
+		final int[] ivalues;
+		final int[] floatIds;
+		final float[] fvalues;
+
+		SearchPlanResult(RenderingRuleSearchRequest req, boolean found) {
+			this.found = found;
+			ids = req.written.toArray();
+			ivalues = new int[ids.length];
+			for (int i = 0; i < ids.length; i++) {
+				ivalues[i] = req.values[ids[i]];
+			}
+			floatIds = req.floatWritten.toArray();
+			fvalues = new float[floatIds.length];
+			for (int i = 0; i < floatIds.length; i++) {
+				fvalues[i] = req.fvalues[floatIds[i]];
+			}
+		}
+
+		void apply(RenderingRuleSearchRequest req) {
+			for (int i = 0; i < ids.length; i++) {
+				req.values[ids[i]] = ivalues[i];
+			}
+			for (int i = 0; i < floatIds.length; i++) {
+				req.fvalues[floatIds[i]] = fvalues[i];
+			}
+		}
+	}
 }
\ No newline at end of file
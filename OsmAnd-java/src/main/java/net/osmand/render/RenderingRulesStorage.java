@@ -20,8 +20,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
 
 public class RenderingRulesStorage {
 
@@ -60,6 +62,13 @@ public class RenderingRulesStorage {
 
 	protected int internalVersion = 1;
 
+	// rules are shared between copies of storage and storages depending on each other,
+	// such storages share the counter, so change of rules invalidates compiled programs of all of them
+	private AtomicInteger rulesVersion = new AtomicInteger();
+	private final TLongObjectHashMap<RenderingRuleProgram> programs = new TLongObjectHashMap<RenderingRuleProgram>();
+	private final Map<String, RenderingRuleProgram> attributePrograms = new HashMap<String, RenderingRuleProgram>();
+	private int programsVersion = -1;
+
 	public interface RenderingRulesStorageResolver {
 		RenderingRulesStorage resolve(String name, RenderingRulesStorageResolver ref) throws XmlPullParserException, IOException;
 	}
@@ -90,6 +99,7 @@ public class RenderingRulesStorage {
 			}
 		}
 		storage.renderingAttributes.putAll(renderingAttributes);
+		storage.rulesVersion = rulesVersion;
 		return storage;
 	}
 
@@ -97,6 +107,52 @@ public class RenderingRulesStorage {
 		return internalVersion;
 	}
 
+	void rulesChanged() {
+		rulesVersion.incrementAndGet();
+	}
+
+	int getRulesVersion() {
+		return rulesVersion.get();
+	}
+
+	synchronized RenderingRuleProgram getProgram(int state, int tagKey, int valueKey) {
+		RenderingRule rule = getRule(state, tagKey, valueKey);
+		if (rule == null) {
+			return null;
+		}
+		checkProgramsVersion();
+		long key = ((long) state << 56) | ((long) tagKey << 28) | valueKey;
+		RenderingRuleProgram program = programs.get(key);
+		if (program == null) {
+			program = RenderingRuleProgram.compile(rule, PROPS);
+			programs.put(key, program);
+		}
+		return program;
+	}
+
+	synchronized RenderingRuleProgram getAttributeProgram(String attribute) {
+		RenderingRule rule = getRenderingAttributeRule(attribute);
+		if (rule == null) {
+			return null;
+		}
+		checkProgramsVersion();
+		RenderingRuleProgram program = attributePrograms.get(attribute);
+		if (program == null) {
+			program = RenderingRuleProgram.compile(rule, PROPS);
+			attributePrograms.put(attribute, program);
+		}
+		return program;
+	}
+
+	private void checkProgramsVersion() {
+		int version = getRulesVersion();
+		if (programsVersion != version) {
+			programs.clear();
+			attributePrograms.clear();
+			programsVersion = version;
+		}
+	}
+
 	public int getDictionaryValue(String val) {
 		if (dictionaryMap.containsKey(val)) {
 			return dictionaryMap.get(val);
@@ -127,6 +183,7 @@ public class RenderingRulesStorage {
 		handler.parse(is);
 		RenderingRulesStorage depends = handler.getDependsStorage();
 		if (depends != null) {
+			rulesVersion = depends.rulesVersion;
 			// merge results
 			// dictionary and props are already merged
 			Iterator<Entry<String, RenderingRule>> it = depends.renderingAttributes.entrySet().iterator();
@@ -167,6 +224,7 @@ public class RenderingRulesStorage {
 				}
 			}
 		}
+		rulesChanged();
 	}
 
 	public static String colorToString(int color) {
@@ -195,6 +253,7 @@ public class RenderingRulesStorage {
 			insert = rr;
 		}
 		tagValueGlobalRules[state].put(key, insert);
+		rulesChanged();
 	}
 
 	private RenderingRule createTagValueRootWrapperRule(int tagValueKey, RenderingRule previous) {
@@ -350,6 +409,7 @@ public class RenderingRulesStorage {
 				String attr = attrsMap.get("name");
 				RenderingRule root = new RenderingRule(new HashMap<String, String>(), false, RenderingRulesStorage.this);
 				renderingAttributes.put(attr, root);
+				rulesChanged();
 				stack.push(root);
 			} else if("renderingProperty".equals(name)){ //$NON-NLS-1$
 				String attr = attrsMap.get("attr");
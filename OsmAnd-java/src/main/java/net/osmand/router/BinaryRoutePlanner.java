@@ -7,7 +7,13 @@ import java.text.MessageFormat;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 import net.osmand.PlatformUtil;
 import net.osmand.binary.RouteDataObject;
@@ -34,25 +40,17 @@ public class BinaryRoutePlanner {
 	private static final boolean TEST_SPECIFIC = true;
 
 
+	// not null only during parallel bidirectional search
+	private ParallelSearchState parallelSearch;
+	// runs reverse searches if executor isn't set in configuration
+	private static ExecutorService sharedExecutor;
+
 	public static double squareRootDist(int x1, int y1, int x2, int y2) {
 		return MapUtils.squareRootDist31(x1, y1, x2, y2);
 //		return MapUtils.measuredDist31(x1, y1, x2, y2);
 	}
 
 
-	private static class SegmentsComparator implements Comparator<RouteSegment> {
-		final RoutingContext ctx;
-
-		public SegmentsComparator(RoutingContext ctx) {
-			this.ctx = ctx;
-		}
-
-		@Override
-		public int compare(RouteSegment o1, RouteSegment o2) {
-			return ctx.roadPriorityComparator(o1.distanceFromStart, o1.distanceToEnd, o2.distanceFromStart, o2.distanceToEnd);
-		}
-	}
-
 	private static class NonHeuristicSegmentsComparator implements Comparator<RouteSegment> {
 		public NonHeuristicSegmentsComparator() {
 		}
@@ -74,8 +72,8 @@ public class BinaryRoutePlanner {
 
 		// Initializing priority queue to visit way segments 
 		Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
-		PriorityQueue<RouteSegment> graphDirectSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
-		PriorityQueue<RouteSegment> graphReverseSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
+		RouteSegmentHeap graphDirectSegments = new RouteSegmentHeap(50, ctx.config.heuristicCoefficient);
+		RouteSegmentHeap graphReverseSegments = new RouteSegmentHeap(50, ctx.config.heuristicCoefficient);
 
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
 		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
@@ -83,11 +81,17 @@ public class BinaryRoutePlanner {
 
 		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments, 
 				visitedDirectSegments, visitedOppositeSegments);
+		if (ctx.config.parallelBidirectionalSearch && ctx.planRouteIn2Directions()
+				&& ctx.precalculatedRouteDirection == null) {
+			// precalculated route direction is not thread safe
+			return searchRouteInParallel(ctx, start, end, graphDirectSegments, graphReverseSegments,
+					visitedDirectSegments, visitedOppositeSegments);
+		}
 
 		// Extract & analyze segment with min(f(x)) from queue while final segment is not found
 		boolean forwardSearch = true;
 
-		PriorityQueue<RouteSegment> graphSegments = graphDirectSegments;
+		RouteSegmentHeap graphSegments = graphDirectSegments;
 
 		FinalRouteSegment finalSegment = null;
 		boolean onlyBackward = ctx.getPlanRoadDirection() < 0;
@@ -181,8 +185,209 @@ public class BinaryRoutePlanner {
 		return finalSegment;
 	}
 
+	/**
+	 * Forward search runs in current thread and reverse search in a task of executor
+	 * ({@link RoutingConfiguration#parallelSearchExecutor} or shared pool). Searches meet through visited segments
+	 * of each other (written only by owner thread under the visited map monitor).
+	 * Search stops when the best found route is not longer than f(x) of the head of any of the queues,
+	 * i.e. all not yet found routes would pass through that queue and can't be shorter.
+	 * Direction with empty queue doesn't stop the opposite one, it still could meet visited segments.
+	 */
+	private FinalRouteSegment searchRouteInParallel(final RoutingContext ctx, final RouteSegmentPoint start,
+			final RouteSegmentPoint end, final RouteSegmentHeap graphDirectSegments,
+			final RouteSegmentHeap graphReverseSegments,
+			final TLongObjectHashMap<RouteSegment> visitedDirectSegments,
+			final TLongObjectHashMap<RouteSegment> visitedOppositeSegments) throws InterruptedException {
+		if (graphDirectSegments.isEmpty() || graphReverseSegments.isEmpty()) {
+			return null;
+		}
+		final ParallelSearchState state = new ParallelSearchState(ctx.config.router, ctx.memoryOverhead);
+		parallelSearch = state;
+		FutureTask<Void> reverseSearch = new FutureTask<Void>(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					searchInOneDirection(ctx, state, true, graphReverseSegments, visitedOppositeSegments,
+							visitedDirectSegments, end);
+				} finally {
+					state.reverseSearchDone.countDown();
+				}
+			}
+		}, null);
+		try {
+			Executor executor = ctx.config.parallelSearchExecutor;
+			(executor != null ? executor : getSharedExecutor()).execute(reverseSearch);
+			searchInOneDirection(ctx, state, false, graphDirectSegments, visitedDirectSegments,
+					visitedOppositeSegments, start);
+			state.reverseSearchDone.await();
+		} catch (InterruptedException e) {
+			state.finish(e);
+			if (!reverseSearch.cancel(false)) {
+				// reverse search uses context and visited segments until it's stopped
+				awaitUninterruptibly(state.reverseSearchDone);
+			}
+			throw e;
+		} finally {
+			parallelSearch = null;
+			ctx.memoryOverhead = (int) state.getMemoryOverhead();
+		}
+		if (state.error instanceof InterruptedException) {
+			throw (InterruptedException) state.error;
+		} else if (state.error instanceof RuntimeException) {
+			throw (RuntimeException) state.error;
+		} else if (state.error instanceof Error) {
+			throw (Error) state.error;
+		}
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.visitedSegments += state.visitedSegments;
+			ctx.calculationProgress.visitedDirectSegments += visitedDirectSegments.size();
+			ctx.calculationProgress.visitedOppositeSegments += visitedOppositeSegments.size();
+			ctx.calculationProgress.directQueueSize += graphDirectSegments.size();
+			ctx.calculationProgress.oppositeQueueSize += graphReverseSegments.size();
+		}
+		FinalRouteSegment finalSegment = state.getFinalSegment();
+		if (finalSegment == null && state.notFound != null) {
+			throw state.notFound;
+		}
+		if (finalSegment != null && RoutingContext.SHOW_GC_SIZE) {
+			log.warn("Estimated overhead " + (ctx.memoryOverhead / (1 << 20)) + " mb");
+			printMemoryConsumption("Memory occupied after calculation : ");
+		}
+		return finalSegment;
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				latch.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static synchronized Executor getSharedExecutor() {
+		if (sharedExecutor == null) {
+			sharedExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Reverse route search");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return sharedExecutor;
+	}
+
+	private void searchInOneDirection(RoutingContext ctx, ParallelSearchState state, boolean reverseWaySearch,
+			RouteSegmentHeap graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments,
+			TLongObjectHashMap<RouteSegment> oppositeSegments, RouteSegmentPoint pnt) {
+		try {
+			int visited = 0;
+			IllegalArgumentException notFound = null;
+			boolean shortestFound = false;
+			while (!state.finished) {
+				if (graphSegments.isEmpty()) {
+					// can't proceed in this direction
+					break;
+				}
+				RouteSegment top = graphSegments.peek();
+				if (state.isShortestFound(top.distanceFromStart + ctx.config.heuristicCoefficient * top.distanceToEnd)) {
+					shortestFound = true;
+					break;
+				}
+				RouteSegment segment = graphSegments.poll();
+				long memoryOverhead = state.updateMemoryOverhead(reverseWaySearch,
+						visitedSegments.size() * STANDARD_ROAD_VISITED_OVERHEAD
+						+ graphSegments.size() * STANDARD_ROAD_IN_QUEUE_OVERHEAD);
+				if (TRACE_ROUTING) {
+					printRoad(">", segment, reverseWaySearch);
+				}
+				if (segment instanceof FinalRouteSegment) {
+					// it is already registered as found route
+					shortestFound = true;
+					break;
+				}
+				if (memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+					throw new IllegalStateException("There is not enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+				}
+				visited++;
+				processRouteSegment(ctx, reverseWaySearch, graphSegments, visitedSegments, segment, oppositeSegments, false);
+				updateCalculationProgress(ctx, reverseWaySearch, graphSegments);
+				try {
+					checkIfGraphIsEmpty(ctx, true, reverseWaySearch, graphSegments, pnt, visitedSegments,
+							reverseWaySearch ? "Route is not found to selected target point."
+									: "Route is not found from selected start point.");
+				} catch (IllegalArgumentException e) {
+					// opposite search could still meet visited segments
+					notFound = e;
+					break;
+				}
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					throw new InterruptedException("Route calculation interrupted");
+				}
+			}
+			state.addVisitedSegments(visited);
+			if (shortestFound) {
+				state.finish(null);
+			} else {
+				state.finishDirection(notFound);
+			}
+		} catch (Throwable e) {
+			state.finish(e);
+		}
+	}
+
+	private void updateCalculationProgress(final RoutingContext ctx, boolean reverseWaySearch,
+			RouteSegmentHeap graphSegments) {
+		RouteCalculationProgress progress = ctx.calculationProgress;
+		if (progress != null && graphSegments.size() > 0) {
+			RouteSegment peek = graphSegments.peek();
+			// both search threads update progress
+			synchronized (progress) {
+				if (reverseWaySearch) {
+					progress.reverseSegmentQueueSize = graphSegments.size();
+					progress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
+							progress.distanceFromEnd);
+					progress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
+				} else {
+					progress.directSegmentQueueSize = graphSegments.size();
+					progress.distanceFromBegin = Math.max(peek.distanceFromStart, progress.distanceFromBegin);
+					progress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
+				}
+			}
+		}
+	}
+
+	private long getMemoryOverhead(RoutingContext ctx) {
+		ParallelSearchState ps = parallelSearch;
+		return ps != null ? ps.getMemoryOverhead() : ctx.memoryOverhead;
+	}
+
+	private VehicleRouter getRouter(RoutingContext ctx) {
+		ParallelSearchState ps = parallelSearch;
+		return ps != null ? ps.router : ctx.getRouter();
+	}
+
+	private RouteSegment loadRouteSegment(RoutingContext ctx, int x31, int y31, long memoryLimit, boolean reverseWaySearch) {
+		ParallelSearchState ps = parallelSearch;
+		if (ps != null) {
+			// tiles & router caches are not thread safe
+			synchronized (ps.lock) {
+				return ctx.loadRouteSegment(x31, y31, memoryLimit, reverseWaySearch);
+			}
+		}
+		return ctx.loadRouteSegment(x31, y31, memoryLimit, reverseWaySearch);
+	}
+
 	protected void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			boolean reverseWaySearch, PriorityQueue<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
+			boolean reverseWaySearch, RouteSegmentHeap graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -239,7 +444,7 @@ public class BinaryRoutePlanner {
 	protected RouteSegment loadSameSegment(final RoutingContext ctx, RouteSegment segment, int ind, boolean reverseSearchWay) {
 		int x31 = segment.getRoad().getPoint31XTile(ind);
 		int y31 = segment.getRoad().getPoint31YTile(ind);
-		RouteSegment s = ctx.loadRouteSegment(x31, y31, 0, reverseSearchWay);
+		RouteSegment s = loadRouteSegment(ctx, x31, y31, 0, reverseSearchWay);
 		while (s != null) {
 			if (s.getRoad().getId() == segment.getRoad().getId()) {
 				segment = s;
@@ -252,7 +457,7 @@ public class BinaryRoutePlanner {
 
 
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegment start, RouteSegment end,
-			RouteSegment recalculationEnd, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
+			RouteSegment recalculationEnd, RouteSegmentHeap graphDirectSegments, RouteSegmentHeap graphReverseSegments, 
 			TLongObjectHashMap<RouteSegment> visitedDirectSegments, TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
 		RouteSegment startPos = initRouteSegment(ctx, start, true, false);
 		RouteSegment startNeg = initRouteSegment(ctx, start, false, false);
@@ -318,8 +523,8 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
-			PriorityQueue<RouteSegment> graphReverseSegments) {
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentHeap graphDirectSegments,
+			RouteSegmentHeap graphReverseSegments) {
 		if (ctx.calculationProgress != null) {
 			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
 			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
@@ -413,22 +618,23 @@ public class BinaryRoutePlanner {
 
 		// calculate point and try to load neighbor ways if they are not loaded
 		double distOnRoadToPass = squareRootDist(x, y, prevX, prevY);
-		float priority = ctx.getRouter().defineSpeedPriority(road);
-		float speed = (ctx.getRouter().defineRoutingSpeed(road) * priority);
+		VehicleRouter router = getRouter(ctx);
+		float priority = router.defineSpeedPriority(road);
+		float speed = (router.defineRoutingSpeed(road) * priority);
 		if (speed == 0) {
-			speed = (ctx.getRouter().getDefaultSpeed() * priority);
+			speed = (router.getDefaultSpeed() * priority);
 		}
 		// speed can not exceed max default speed according to A*
-		if (speed > ctx.getRouter().getMaxSpeed()) {
-			speed = ctx.getRouter().getMaxSpeed();
+		if (speed > router.getMaxSpeed()) {
+			speed = router.getMaxSpeed();
 		}
 		
 		// calculate possible obstacle plus time
-		double obstacle = ctx.getRouter().defineRoutingObstacle(road, segmentInd, prevSegmentInd > segmentInd);
+		double obstacle = router.defineRoutingObstacle(road, segmentInd, prevSegmentInd > segmentInd);
 		if (obstacle < 0) {
 			return -1;
 		}
-		double heightObstacle = ctx.getRouter().defineHeightObstacle(road, segmentInd, prevSegmentInd);
+		double heightObstacle = router.defineHeightObstacle(road, segmentInd, prevSegmentInd);
 		if (heightObstacle < 0) {
 			return -1;
 		}
@@ -439,7 +645,7 @@ public class BinaryRoutePlanner {
 
 	@SuppressWarnings("unused")
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
+			RouteSegmentHeap graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
             RouteSegment startSegment, TLongObjectHashMap<RouteSegment> oppositeSegments, boolean doNotAddIntersections) {
 		if (ASSERT_CHECKS && !checkMovementAllowed(ctx, reverseWaySearch, startSegment)) {
 			throw new IllegalStateException();
@@ -469,21 +675,29 @@ public class BinaryRoutePlanner {
 			// 2. check if segment was already visited in opposite direction
 			// We check before we calculate segmentTime (to not calculate it twice with opposite and calculate turns
 			// onto each segment).
-			boolean alreadyVisited = checkIfOppositeSegmentWasVisited(reverseWaySearch, graphSegments, currentSegment,
-					oppositeSegments);
- 			if (alreadyVisited) {
- 				// we don't stop here in order to allow improve found *potential* final segment - test case on short route
-				// directionAllowed = false;
-				// break;
+			boolean parallel = parallelSearch != null;
+			if (!parallel) {
+				boolean alreadyVisited = checkIfOppositeSegmentWasVisited(reverseWaySearch, graphSegments, currentSegment,
+						currentSegment.distanceFromStart, oppositeSegments);
+				if (alreadyVisited) {
+					// we don't stop here in order to allow improve found *potential* final segment - test case on short route
+					// directionAllowed = false;
+					// break;
+				}
 			}
  			
 			// 3. upload segment itself to visited segments
 			long nextPntId = calculateRoutePointId(currentSegment);
-			RouteSegment existingSegment = visitedSegments.put(nextPntId, currentSegment);
+			float distanceFromStart = currentSegment.distanceFromStart;
+			if (parallel) {
+				// opposite thread reads distance of visited segment
+				currentSegment.distanceFromStart = distFromStartPlusSegmentTime;
+			}
+			RouteSegment existingSegment = putVisitedSegment(visitedSegments, nextPntId, currentSegment);
 			if (existingSegment != null) {
 				if (distFromStartPlusSegmentTime > existingSegment.distanceFromStart) {
 					// insert back original segment (test case with large area way)
-					visitedSegments.put(nextPntId, existingSegment);
+					putVisitedSegment(visitedSegments, nextPntId, existingSegment);
 					directionAllowed = false;
 					
 					if (TRACE_ROUTING) {
@@ -500,6 +714,11 @@ public class BinaryRoutePlanner {
 						
 			// reassign @distanceFromStart to make it correct for visited segment
 			currentSegment.distanceFromStart = distFromStartPlusSegmentTime;
+			if (parallel) {
+				// check after segment is visited: one of 2 threads sees the other segment in any order
+				checkIfOppositeSegmentWasVisited(reverseWaySearch, graphSegments, currentSegment, distanceFromStart,
+						oppositeSegments);
+			}
 			
 			// 4. load road connections at the end of segment    
 			nextCurrentSegment = processIntersections(ctx, graphSegments, visitedSegments, currentSegment, reverseWaySearch, doNotAddIntersections);
@@ -511,7 +730,7 @@ public class BinaryRoutePlanner {
 	
 	private boolean checkMovementAllowed(final RoutingContext ctx, boolean reverseWaySearch, RouteSegment segment) {
 		boolean directionAllowed;
-		int oneway = ctx.getRouter().isOneWay(segment.getRoad());
+		int oneway = getRouter(ctx).isOneWay(segment.getRoad());
 		// use positive direction as agreed
 		if (!reverseWaySearch) {
 			if (segment.isPositive()) {
@@ -561,13 +780,13 @@ public class BinaryRoutePlanner {
 		return s.getParentRoute();
 	}
 
-	private boolean checkIfOppositeSegmentWasVisited(boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegment currentSegment, TLongObjectHashMap<RouteSegment> oppositeSegments) {
+	private boolean checkIfOppositeSegmentWasVisited(boolean reverseWaySearch, RouteSegmentHeap graphSegments,
+			RouteSegment currentSegment, float distanceFromStart, TLongObjectHashMap<RouteSegment> oppositeSegments) {
 		// check inverse direction for opposite
 		long currPoint = calculateRoutePointInternalId(currentSegment.getRoad(), 
 				currentSegment.getSegmentEnd(), currentSegment.getSegmentStart());
-		if (oppositeSegments.containsKey(currPoint)) {
-			RouteSegment opposite = oppositeSegments.get(currPoint);
+		RouteSegment opposite = getOppositeSegment(oppositeSegments, currPoint);
+		if (opposite != null) {
 			RouteSegment curParent = getParentDiffId(currentSegment);
 			RouteSegment oppParent = getParentDiffId(opposite);
 			RouteSegment to = reverseWaySearch ? curParent : oppParent;
@@ -577,10 +796,13 @@ public class BinaryRoutePlanner {
 						currentSegment.getSegmentStart(), currentSegment.getSegmentEnd());
 				frs.setParentRoute(currentSegment.getParentRoute());
 				frs.reverseWaySearch = reverseWaySearch;
-				frs.distanceFromStart = opposite.distanceFromStart + currentSegment.distanceFromStart;
+				frs.distanceFromStart = opposite.distanceFromStart + distanceFromStart;
 				frs.distanceToEnd = 0;
 				frs.opposite = opposite;
 				graphSegments.add(frs);
+				if (parallelSearch != null) {
+					parallelSearch.registerFinalSegment(frs);
+				}
 				if (TRACE_ROUTING) {
 					printRoad("  >> Final segment : ", frs, reverseWaySearch);
 				}
@@ -590,6 +812,25 @@ public class BinaryRoutePlanner {
 		return false;
 	}
 
+	private RouteSegment putVisitedSegment(TLongObjectHashMap<RouteSegment> visitedSegments, long pntId, RouteSegment segment) {
+		if (parallelSearch != null) {
+			// only owner thread modifies visited segments, opposite thread reads them under lock
+			synchronized (visitedSegments) {
+				return visitedSegments.put(pntId, segment);
+			}
+		}
+		return visitedSegments.put(pntId, segment);
+	}
+
+	private RouteSegment getOppositeSegment(TLongObjectHashMap<RouteSegment> oppositeSegments, long pntId) {
+		if (parallelSearch != null) {
+			synchronized (oppositeSegments) {
+				return oppositeSegments.get(pntId);
+			}
+		}
+		return oppositeSegments.get(pntId);
+	}
+
 	private long calculateRoutePointInternalId(final RouteDataObject road, int pntId, int nextPntId) {
 		int positive = nextPntId - pntId;
 		int pntLen = road.getPointsLength();
@@ -608,7 +849,7 @@ public class BinaryRoutePlanner {
 
 
 	private boolean proccessRestrictions(RoutingContext ctx, RouteSegment segment, RouteSegment inputNext, boolean reverseWay) {
-		if (!ctx.getRouter().restrictionsAware()) {
+		if (!getRouter(ctx).restrictionsAware()) {
 			return false;
 		}
 		RouteDataObject road = segment.getRoad();
@@ -617,8 +858,8 @@ public class BinaryRoutePlanner {
 				(parent == null || parent.getRoad().getRestrictionLength() == 0)) {
 			return false;
 		}
-		ctx.segmentsToVisitPrescripted.clear();
-		ctx.segmentsToVisitNotForbidden.clear();
+		getSegmentsToVisitPrescripted(ctx, reverseWay).clear();
+		getSegmentsToVisitNotForbidden(ctx, reverseWay).clear();
 		processRestriction(ctx, inputNext, reverseWay, 0, road);
 		if (parent != null) {
 			processRestriction(ctx, inputNext, reverseWay, road.id, parent.getRoad());
@@ -630,6 +871,8 @@ public class BinaryRoutePlanner {
 	protected void processRestriction(RoutingContext ctx, RouteSegment inputNext, boolean reverseWay, long viaId,
 			RouteDataObject road) {
 		boolean via = viaId != 0;
+		List<RouteSegment> segmentsToVisitPrescripted = getSegmentsToVisitPrescripted(ctx, reverseWay);
+		List<RouteSegment> segmentsToVisitNotForbidden = getSegmentsToVisitNotForbidden(ctx, reverseWay);
 		RouteSegment next = inputNext;
 		boolean exclusiveRestriction = false;
 		while (next != null) {
@@ -691,11 +934,11 @@ public class BinaryRoutePlanner {
 					|| type == MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON || type == MapRenderingTypes.RESTRICTION_NO_U_TURN) {
 				// next = next.next; continue;
 				if (via) {
-					ctx.segmentsToVisitPrescripted.remove(next);
+					segmentsToVisitPrescripted.remove(next);
 				}
 			} else if (type == -1) {
 				// case no restriction
-				ctx.segmentsToVisitNotForbidden.add(next);
+				segmentsToVisitNotForbidden.add(next);
 			} else {
 				if (!via) {
 					// case exclusive restriction (only_right, only_straight, ...)
@@ -704,21 +947,29 @@ public class BinaryRoutePlanner {
 					// 2. in case we are going forward we have one "in" and many "out"
 					if (!reverseWay) {
 						exclusiveRestriction = true;
-						ctx.segmentsToVisitNotForbidden.clear();
-						ctx.segmentsToVisitPrescripted.add(next);
+						segmentsToVisitNotForbidden.clear();
+						segmentsToVisitPrescripted.add(next);
 					} else {
-						ctx.segmentsToVisitNotForbidden.add(next);
+						segmentsToVisitNotForbidden.add(next);
 					}
 				}
 			}
 			next = next.next;
 		}
 		if (!via) {
-			ctx.segmentsToVisitPrescripted.addAll(ctx.segmentsToVisitNotForbidden);
+			segmentsToVisitPrescripted.addAll(segmentsToVisitNotForbidden);
 		}
 	}
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
+	private List<RouteSegment> getSegmentsToVisitPrescripted(RoutingContext ctx, boolean reverseWay) {
+		return reverseWay ? ctx.reverseSegmentsToVisitPrescripted : ctx.segmentsToVisitPrescripted;
+	}
+
+	private List<RouteSegment> getSegmentsToVisitNotForbidden(RoutingContext ctx, boolean reverseWay) {
+		return reverseWay ? ctx.reverseSegmentsToVisitNotForbidden : ctx.segmentsToVisitNotForbidden;
+	}
+
+	private RouteSegment processIntersections(RoutingContext ctx, RouteSegmentHeap graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments,  RouteSegment currentSegment,
 			boolean reverseWaySearch, boolean doNotAddIntersections) {
 		RouteSegment nextCurrentSegment = null;
@@ -730,7 +981,7 @@ public class BinaryRoutePlanner {
 		// reassign @distanceToEnd to make it correct for visited segment
 		currentSegment.distanceToEnd = distanceToEnd; 
 		
-		final RouteSegment connectedNextSegment = ctx.loadRouteSegment(x, y, ctx.config.memoryLimitation - ctx.memoryOverhead, reverseWaySearch);
+		final RouteSegment connectedNextSegment = loadRouteSegment(ctx, x, y, ctx.config.memoryLimitation - getMemoryOverhead(ctx), reverseWaySearch);
 		RouteSegment roadIter = connectedNextSegment;
 		boolean directionAllowed = true;
 		boolean singleRoad = true;
@@ -770,7 +1021,7 @@ public class BinaryRoutePlanner {
 		Iterator<RouteSegment> nextIterator = null;
 		boolean thereAreRestrictions = proccessRestrictions(ctx, currentSegment, connectedNextSegment, reverseWaySearch);
 		if (thereAreRestrictions) {
-			nextIterator = ctx.segmentsToVisitPrescripted.iterator();
+			nextIterator = getSegmentsToVisitPrescripted(ctx, reverseWaySearch).iterator();
 			if (TRACE_ROUTING) {
 				println("  >> There are restrictions");
 			}
@@ -820,13 +1071,13 @@ public class BinaryRoutePlanner {
 		return nextCurrentSegment;
 	}
 
-	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, PriorityQueue<RouteSegment> graphSegments,
+	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, RouteSegmentHeap graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments, RouteSegment segment, RouteSegment next) {
 		if (next != null) {
 			if (!checkMovementAllowed(ctx, reverseWaySearch, next)) {
 				return false;
 			}
-			float obstaclesTime = (float) ctx.getRouter().calculateTurnTime(next, 
+			float obstaclesTime = (float) getRouter(ctx).calculateTurnTime(next, 
 					next.isPositive() ? next.getRoad().getPointsLength() - 1 : 0,    
 					segment, segment.getSegmentEnd());
 			if (obstaclesTime < 0) {
@@ -979,6 +1230,9 @@ public class BinaryRoutePlanner {
 		// VISITED: Approximated (h(x)) time from @segEnd of @this route segment to End [Start for reverse A*]
 		float distanceToEnd = 0;
 
+		// # Position in RouteSegmentHeap of A* search (-1 if segment is not queued)
+		int heapIndex = -1;
+
 		public RouteSegment(RouteDataObject road, int segmentStart, int segmentEnd) {
 			this.road = road;
 			this.segStart = (short) segmentStart;
@@ -1093,6 +1347,202 @@ public class BinaryRoutePlanner {
 		}
 	}
 
+	private static class ParallelSearchState {
+		final Object lock = new Object();
+		final VehicleRouter router;
+		final CountDownLatch reverseSearchDone = new CountDownLatch(1);
+		volatile boolean finished;
+		Throwable error;
+		IllegalArgumentException notFound;
+		int visitedSegments;
+		private int runningDirections = 2;
+		private long directMemoryOverhead;
+		private long reverseMemoryOverhead;
+		private FinalRouteSegment finalSegment;
+
+		ParallelSearchState(VehicleRouter router, long memoryOverhead) {
+			this.router = new SynchronizedRouter(router, lock);
+			this.directMemoryOverhead = memoryOverhead;
+		}
+
+		/**
+		 * @return overhead of both directions
+		 */
+		synchronized long updateMemoryOverhead(boolean reverseWaySearch, long memoryOverhead) {
+			if (reverseWaySearch) {
+				reverseMemoryOverhead = memoryOverhead;
+			} else {
+				directMemoryOverhead = memoryOverhead;
+			}
+			return directMemoryOverhead + reverseMemoryOverhead;
+		}
+
+		synchronized long getMemoryOverhead() {
+			return directMemoryOverhead + reverseMemoryOverhead;
+		}
+
+		synchronized void finishDirection(IllegalArgumentException notFound) {
+			if (this.notFound == null) {
+				this.notFound = notFound;
+			}
+			if (--runningDirections == 0) {
+				finished = true;
+			}
+		}
+
+		synchronized void registerFinalSegment(FinalRouteSegment frs) {
+			if (finalSegment == null || frs.distanceFromStart < finalSegment.distanceFromStart) {
+				finalSegment = frs;
+			}
+		}
+
+		synchronized boolean isShortestFound(double lowerBound) {
+			return finalSegment != null && finalSegment.distanceFromStart <= lowerBound;
+		}
+
+		synchronized FinalRouteSegment getFinalSegment() {
+			return finalSegment;
+		}
+
+		synchronized void addVisitedSegments(int visited) {
+			visitedSegments += visited;
+		}
+
+		synchronized void finish(Throwable e) {
+			if (error == null) {
+				error = e;
+			}
+			finished = true;
+		}
+	}
+
+	// Router caches are not thread safe, so 2 search threads evaluate roads under the same lock as tiles are loaded
+	private static class SynchronizedRouter implements VehicleRouter {
+		private final VehicleRouter router;
+		private final Object lock;
+
+		SynchronizedRouter(VehicleRouter router, Object lock) {
+			this.router = router;
+			this.lock = lock;
+		}
+
+		@Override
+		public boolean containsAttribute(String attribute) {
+			synchronized (lock) {
+				return router.containsAttribute(attribute);
+			}
+		}
+
+		@Override
+		public String getAttribute(String attribute) {
+			synchronized (lock) {
+				return router.getAttribute(attribute);
+			}
+		}
+
+		@Override
+		public boolean acceptLine(RouteDataObject way) {
+			synchronized (lock) {
+				return router.acceptLine(way);
+			}
+		}
+
+		@Override
+		public int isOneWay(RouteDataObject road) {
+			synchronized (lock) {
+				return router.isOneWay(road);
+			}
+		}
+
+		@Override
+		public float getPenaltyTransition(RouteDataObject road) {
+			synchronized (lock) {
+				return router.getPenaltyTransition(road);
+			}
+		}
+
+		@Override
+		public float defineObstacle(RouteDataObject road, int point, boolean dir) {
+			synchronized (lock) {
+				return router.defineObstacle(road, point, dir);
+			}
+		}
+
+		@Override
+		public double defineHeightObstacle(RouteDataObject road, short startIndex, short endIndex) {
+			synchronized (lock) {
+				return router.defineHeightObstacle(road, startIndex, endIndex);
+			}
+		}
+
+		@Override
+		public float defineRoutingObstacle(RouteDataObject road, int point, boolean dir) {
+			synchronized (lock) {
+				return router.defineRoutingObstacle(road, point, dir);
+			}
+		}
+
+		@Override
+		public float defineRoutingSpeed(RouteDataObject road) {
+			synchronized (lock) {
+				return router.defineRoutingSpeed(road);
+			}
+		}
+
+		@Override
+		public float defineVehicleSpeed(RouteDataObject road) {
+			synchronized (lock) {
+				return router.defineVehicleSpeed(road);
+			}
+		}
+
+		@Override
+		public float defineSpeedPriority(RouteDataObject road) {
+			synchronized (lock) {
+				return router.defineSpeedPriority(road);
+			}
+		}
+
+		@Override
+		public float getDefaultSpeed() {
+			return router.getDefaultSpeed();
+		}
+
+		@Override
+		public float getMinSpeed() {
+			return router.getMinSpeed();
+		}
+
+		@Override
+		public float getMaxSpeed() {
+			return router.getMaxSpeed();
+		}
+
+		@Override
+		public boolean restrictionsAware() {
+			return router.restrictionsAware();
+		}
+
+		@Override
+		public boolean isArea(RouteDataObject obj) {
+			synchronized (lock) {
+				return router.isArea(obj);
+			}
+		}
+
+		@Override
+		public double calculateTurnTime(RouteSegment segment, int segmentEnd, RouteSegment prev, int prevSegmentEnd) {
+			synchronized (lock) {
+				return router.calculateTurnTime(segment, segmentEnd, prev, prevSegmentEnd);
+			}
+		}
+
+		@Override
+		public VehicleRouter build(Map<String, String> params) {
+			return router.build(params);
+		}
+	}
+
 	static class FinalRouteSegment extends RouteSegment {
 
 		boolean reverseWaySearch;
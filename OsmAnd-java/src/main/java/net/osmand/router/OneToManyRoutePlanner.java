@@ -0,0 +1,364 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.osmand.binary.RouteDataObject;
+import net.osmand.osm.MapRenderingTypes;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.ReachableSegment;
+
+/**
+ * Dijkstra expansion from one start point to many targets (rows of the route matrix).
+ * Search state is kept outside of RouteSegment objects, so loaded tiles of the context are reused
+ * by consecutive searches from different origins. Search stops when all targets are settled.
+ * Time of segments, obstacles and turns is calculated as in BinaryRoutePlanner,
+ * only restrictions without via way are taken into account.
+ * Bounded mode expands all segments within time or distance budget (reachability / isochrones).
+ */
+class OneToManyRoutePlanner {
+
+	private static final int ROUTE_POINTS = 11;
+
+	private final RoutingContext ctx;
+	private final VehicleRouter router;
+	private final List<RouteSegmentPoint> targets;
+	// directed segment containing target -> indexes of targets
+	private final TLongObjectHashMap<TIntArrayList> targetsBySegment = new TLongObjectHashMap<TIntArrayList>();
+
+	OneToManyRoutePlanner(RoutingContext ctx, List<RouteSegmentPoint> targets) {
+		this.ctx = ctx;
+		this.router = ctx.getRouter();
+		this.targets = targets;
+		for (int i = 0; i < targets.size(); i++) {
+			RouteSegmentPoint t = targets.get(i);
+			if (t != null) {
+				int a = segmentFirstPoint(t);
+				registerTarget(segmentId(t.getRoad(), a, a + 1), i);
+				registerTarget(segmentId(t.getRoad(), a + 1, a), i);
+			}
+		}
+	}
+
+	private void registerTarget(long id, int target) {
+		TIntArrayList l = targetsBySegment.get(id);
+		if (l == null) {
+			l = new TIntArrayList(1);
+			targetsBySegment.put(id, l);
+		}
+		l.add(target);
+	}
+
+	// precise point is located between segStart - 1 and segStart
+	private static int segmentFirstPoint(RouteSegmentPoint p) {
+		return p.getSegmentStart() > 0 ? p.getSegmentStart() - 1 : 0;
+	}
+
+	private static long segmentId(RouteDataObject road, int from, int to) {
+		return (road.getId() << ROUTE_POINTS) + (from << 1) + (to > from ? 1 : 0);
+	}
+
+	/**
+	 * Fills times (seconds) and distances (meters) to all targets, not reachable targets get infinity
+	 */
+	void search(RouteSegmentPoint start, final float[] times, final float[] distances) throws InterruptedException {
+		Arrays.fill(times, Float.POSITIVE_INFINITY);
+		Arrays.fill(distances, Float.POSITIVE_INFINITY);
+		// time of the whole segment where target was reached (target time can't be improved after queue passes it)
+		final float[] slack = new float[targets.size()];
+		final boolean[] resolved = new boolean[targets.size()];
+		int unresolvedTargets = 0;
+		for (int i = 0; i < targets.size(); i++) {
+			if (targets.get(i) == null) {
+				resolved[i] = true;
+			} else {
+				unresolvedTargets++;
+			}
+		}
+		final int[] unresolved = new int[] { unresolvedTargets };
+		expand(start, false, new SettledSegmentListener() {
+			float resolveBound = Float.POSITIVE_INFINITY;
+
+			@Override
+			public boolean isFinished() {
+				return unresolved[0] == 0;
+			}
+
+			@Override
+			public boolean settled(Label l) {
+				if (l.time >= resolveBound) {
+					resolveBound = Float.POSITIVE_INFINITY;
+					for (int i = 0; i < targets.size(); i++) {
+						if (!resolved[i] && times[i] != Float.POSITIVE_INFINITY) {
+							if (times[i] + slack[i] <= l.time) {
+								resolved[i] = true;
+								unresolved[0]--;
+							} else {
+								resolveBound = Math.min(resolveBound, times[i] + slack[i]);
+							}
+						}
+					}
+				}
+				TIntArrayList onSegment = targetsBySegment.get(segmentId(l.road, l.from, l.to));
+				if (onSegment != null) {
+					for (int k = 0; k < onSegment.size(); k++) {
+						int ti = onSegment.get(k);
+						RouteSegmentPoint t = targets.get(ti);
+						double restDist = BinaryRoutePlanner.squareRootDist(t.preciseX, t.preciseY,
+								l.road.getPoint31XTile(l.to), l.road.getPoint31YTile(l.to));
+						float time = (float) (l.time - (l.segmentDistance > 0 ? l.segmentTime * restDist / l.segmentDistance : 0));
+						float dist = (float) (l.distance - restDist);
+						// negative values mean that target is behind the start point on the start segment
+						if (!resolved[ti] && time >= 0 && dist >= 0 && time < times[ti]) {
+							times[ti] = time;
+							distances[ti] = dist;
+							slack[ti] = l.segmentTime;
+							resolveBound = Math.min(resolveBound, time + slack[ti]);
+						}
+					}
+				}
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Bounded one-to-all search: all segments reachable within time (seconds) or distance (meters) budget,
+	 * the last segments of each branch are cut at the budget
+	 */
+	List<ReachableSegment> searchReachable(RouteSegmentPoint start, final float budget, final boolean byDistance)
+			throws InterruptedException {
+		final List<ReachableSegment> result = new ArrayList<ReachableSegment>();
+		expand(start, byDistance, new SettledSegmentListener() {
+
+			@Override
+			public boolean isFinished() {
+				return false;
+			}
+
+			@Override
+			public boolean settled(Label l) {
+				// segments in queue are always started within budget
+				float endValue = byDistance ? l.distance : l.time;
+				float length = byDistance ? l.segmentDistance : l.segmentTime;
+				float startValue = endValue - length;
+				float labelPart = endValue <= budget || length <= 0 ? 1 : (budget - startValue) / length;
+				result.add(new ReachableSegment(l.road, l.from, l.to, l.startPart,
+						l.startPart + (1 - l.startPart) * labelPart, l.time - l.segmentTime,
+						l.time - l.segmentTime * (1 - labelPart), l.distance - l.segmentDistance,
+						l.distance - l.segmentDistance * (1 - labelPart)));
+				return endValue < budget;
+			}
+		});
+		return result;
+	}
+
+	private interface SettledSegmentListener {
+
+		boolean isFinished();
+
+		// returns true if search should continue from this segment
+		boolean settled(Label l);
+	}
+
+	private void expand(RouteSegmentPoint start, final boolean byDistance, SettledSegmentListener listener)
+			throws InterruptedException {
+		PriorityQueue<Label> queue = new PriorityQueue<Label>(50, new Comparator<Label>() {
+			@Override
+			public int compare(Label o1, Label o2) {
+				return byDistance ? Float.compare(o1.distance, o2.distance) : Float.compare(o1.time, o2.time);
+			}
+		});
+		TLongObjectHashMap<Label> reached = new TLongObjectHashMap<Label>();
+		TLongHashSet settled = new TLongHashSet();
+		int a = segmentFirstPoint(start);
+		addStart(queue, reached, start, a, a + 1);
+		addStart(queue, reached, start, a + 1, a);
+		while (!queue.isEmpty() && !listener.isFinished()) {
+			Label l = queue.poll();
+			long id = segmentId(l.road, l.from, l.to);
+			if (!settled.add(id)) {
+				continue;
+			}
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException("Route calculation interrupted");
+			}
+			ctx.memoryOverhead = settled.size() * BinaryRoutePlanner.STANDARD_ROAD_VISITED_OVERHEAD
+					+ queue.size() * BinaryRoutePlanner.STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+				throw new IllegalStateException("There is not enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+			}
+			if (listener.settled(l)) {
+				expand(queue, reached, settled, l, byDistance);
+			}
+		}
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.visitedSegments += settled.size();
+		}
+	}
+
+	private void addStart(PriorityQueue<Label> queue, TLongObjectHashMap<Label> reached, RouteSegmentPoint start,
+			int from, int to) {
+		RouteDataObject road = start.getRoad();
+		if (to < 0 || to >= road.getPointsLength() || !isMovementAllowed(road, from, to)) {
+			return;
+		}
+		double time = segmentTime(road, from, to);
+		if (time < 0) {
+			return;
+		}
+		double segmentDist = BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(from), road.getPoint31YTile(from),
+				road.getPoint31XTile(to), road.getPoint31YTile(to));
+		double dist = BinaryRoutePlanner.squareRootDist(start.preciseX, start.preciseY, road.getPoint31XTile(to),
+				road.getPoint31YTile(to));
+		// start label covers only the part of segment from the start point
+		float partTime = (float) (segmentDist > 0 ? time * dist / segmentDist : 0);
+		float startPart = (float) (segmentDist > 0 ? Math.max(0, 1 - dist / segmentDist) : 0);
+		Label l = new Label(road, from, to, startPart, partTime, (float) dist, partTime, (float) dist);
+		reached.put(segmentId(road, from, to), l);
+		queue.add(l);
+	}
+
+	private void expand(PriorityQueue<Label> queue, TLongObjectHashMap<Label> reached, TLongHashSet settled, Label l,
+			boolean byDistance) {
+		RouteDataObject road = l.road;
+		int next = l.to + (l.to > l.from ? 1 : -1);
+		if (next >= 0 && next < road.getPointsLength()) {
+			relax(queue, reached, settled, l, road, l.to, next, false, byDistance);
+		}
+		int x = road.getPoint31XTile(l.to);
+		int y = road.getPoint31YTile(l.to);
+		RouteSegment connected = ctx.loadRouteSegment(x, y, ctx.config.memoryLimitation - ctx.memoryOverhead);
+		long onlyRoadId = -1;
+		if (router.restrictionsAware() && road.getRestrictionLength() > 0) {
+			// exclusive restriction applies only if its road is connected at this point
+			for (RouteSegment s = connected; s != null; s = s.getNext()) {
+				for (int i = 0; i < road.getRestrictionLength(); i++) {
+					if (road.getRestrictionVia(i) == 0 && road.getRestrictionId(i) == s.getRoad().getId()
+							&& road.getRestrictionType(i) >= MapRenderingTypes.RESTRICTION_ONLY_RIGHT_TURN) {
+						onlyRoadId = s.getRoad().getId();
+					}
+				}
+			}
+		}
+		for (RouteSegment s = connected; s != null; s = s.getNext()) {
+			RouteDataObject nextRoad = s.getRoad();
+			if (nextRoad.getId() == road.getId() || (onlyRoadId != -1 && nextRoad.getId() != onlyRoadId)
+					|| isForbiddenTurn(road, nextRoad)) {
+				continue;
+			}
+			int j = s.getSegmentStart();
+			if (j + 1 < nextRoad.getPointsLength()) {
+				relax(queue, reached, settled, l, nextRoad, j, j + 1, true, byDistance);
+			}
+			if (j > 0) {
+				relax(queue, reached, settled, l, nextRoad, j, j - 1, true, byDistance);
+			}
+		}
+	}
+
+	private boolean isForbiddenTurn(RouteDataObject road, RouteDataObject nextRoad) {
+		if (!router.restrictionsAware()) {
+			return false;
+		}
+		for (int i = 0; i < road.getRestrictionLength(); i++) {
+			if (road.getRestrictionVia(i) == 0 && road.getRestrictionId(i) == nextRoad.getId()) {
+				return road.getRestrictionType(i) <= MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON;
+			}
+		}
+		return false;
+	}
+
+	private void relax(PriorityQueue<Label> queue, TLongObjectHashMap<Label> reached, TLongHashSet settled,
+			Label prev, RouteDataObject road, int from, int to, boolean turn, boolean byDistance) {
+		long id = segmentId(road, from, to);
+		if (settled.contains(id) || !isMovementAllowed(road, from, to)) {
+			return;
+		}
+		double time = segmentTime(road, from, to);
+		if (time < 0) {
+			return;
+		}
+		double turnTime = 0;
+		if (turn) {
+			turnTime = router.calculateTurnTime(new RouteSegment(road, from, to),
+					to > from ? road.getPointsLength() - 1 : 0,
+					new RouteSegment(prev.road, prev.from, prev.to), prev.to);
+			if (turnTime < 0) {
+				return;
+			}
+		}
+		float t = (float) (prev.time + turnTime + time);
+		double segmentDist = BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(from),
+				road.getPoint31YTile(from), road.getPoint31XTile(to), road.getPoint31YTile(to));
+		float dist = (float) (prev.distance + segmentDist);
+		Label existing = reached.get(id);
+		if (existing != null && (byDistance ? existing.distance <= dist : existing.time <= t)) {
+			return;
+		}
+		Label l = new Label(road, from, to, 0, t, dist, (float) time, (float) segmentDist);
+		reached.put(id, l);
+		queue.add(l);
+	}
+
+	private boolean isMovementAllowed(RouteDataObject road, int from, int to) {
+		int oneway = router.isOneWay(road);
+		return to > from ? oneway >= 0 : oneway <= 0;
+	}
+
+	// same as BinaryRoutePlanner.calculateRouteSegmentTime for forward search
+	private double segmentTime(RouteDataObject road, int from, int to) {
+		double distOnRoadToPass = BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(from),
+				road.getPoint31YTile(from), road.getPoint31XTile(to), road.getPoint31YTile(to));
+		float priority = router.defineSpeedPriority(road);
+		float speed = router.defineRoutingSpeed(road) * priority;
+		if (speed == 0) {
+			speed = router.getDefaultSpeed() * priority;
+		}
+		if (speed > router.getMaxSpeed()) {
+			speed = router.getMaxSpeed();
+		}
+		double obstacle = router.defineRoutingObstacle(road, from, to > from);
+		if (obstacle < 0) {
+			return -1;
+		}
+		double heightObstacle = router.defineHeightObstacle(road, (short) from, (short) to);
+		if (heightObstacle < 0) {
+			return -1;
+		}
+		return obstacle + heightObstacle + distOnRoadToPass / speed;
+	}
+
+	// directed segment [from -> to] reached with time & distance at @to point,
+	// segment time & distance are measured from @startPart of segment (start point of the search)
+	private static class Label {
+		final RouteDataObject road;
+		final int from;
+		final int to;
+		final float startPart;
+		final float time;
+		final float distance;
+		final float segmentTime;
+		final float segmentDistance;
+
+		Label(RouteDataObject road, int from, int to, float startPart, float time, float distance, float segmentTime,
+				float segmentDistance) {
+			this.road = road;
+			this.from = from;
+			this.to = to;
+			this.startPart = startPart;
+			this.time = time;
+			this.distance = distance;
+			this.segmentTime = segmentTime;
+			this.segmentDistance = segmentDistance;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package net.osmand.router;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+/**
+ * Concave outline of reachable roads: roads are rasterized to the grid of cells, small gaps are closed
+ * (dilation + erosion), holes are filled and boundary of occupied cells is traced to the rings.
+ */
+class ReachabilityPolygonBuilder {
+
+	private final int cellSize;
+	private final TLongHashSet cells = new TLongHashSet();
+
+	ReachabilityPolygonBuilder(int cellSize31) {
+		this.cellSize = Math.max(cellSize31, 1);
+	}
+
+	static int getCellSize31(int x31, int y31, double cellSizeMeters) {
+		double m = BinaryRoutePlanner.squareRootDist(x31, y31, x31 + 1000, y31);
+		return (int) Math.max(1, cellSizeMeters * 1000 / Math.max(m, 1e-3));
+	}
+
+	void addLine(int x1, int y1, int x2, int y2) {
+		long dx = (long) x2 - x1;
+		long dy = (long) y2 - y1;
+		long steps = Math.max(Math.abs(dx), Math.abs(dy)) / Math.max(cellSize / 2, 1) + 1;
+		for (long i = 0; i <= steps; i++) {
+			addPoint((int) (x1 + dx * i / steps), (int) (y1 + dy * i / steps));
+		}
+	}
+
+	void addPoint(int x31, int y31) {
+		cells.add(cellKey(x31 / cellSize, y31 / cellSize));
+	}
+
+	private static long cellKey(int cx, int cy) {
+		return (((long) cx) << 32) | (cy & 0xffffffffL);
+	}
+
+	List<List<LatLon>> build() {
+		if (cells.isEmpty()) {
+			return Collections.emptyList();
+		}
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		TLongIterator it = cells.iterator();
+		while (it.hasNext()) {
+			long k = it.next();
+			int cx = (int) (k >> 32);
+			int cy = (int) k;
+			minX = Math.min(minX, cx);
+			minY = Math.min(minY, cy);
+			maxX = Math.max(maxX, cx);
+			maxY = Math.max(maxY, cy);
+		}
+		// margin of 2 cells: 1 for dilation and 1 for exterior
+		final int margin = 2;
+		int ox = minX - margin;
+		int oy = minY - margin;
+		int w = maxX - minX + 1 + 2 * margin;
+		int h = maxY - minY + 1 + 2 * margin;
+		boolean[] grid = new boolean[w * h];
+		it = cells.iterator();
+		while (it.hasNext()) {
+			long k = it.next();
+			grid[((int) k - oy) * w + ((int) (k >> 32) - ox)] = true;
+		}
+		grid = erode(dilate(grid, w, h), w, h);
+		boolean[] inside = fillHoles(grid, w, h);
+		List<List<LatLon>> rings = traceRings(inside, w, h, ox, oy);
+		Collections.sort(rings, new Comparator<List<LatLon>>() {
+			@Override
+			public int compare(List<LatLon> o1, List<LatLon> o2) {
+				return -Integer.compare(o1.size(), o2.size());
+			}
+		});
+		return rings;
+	}
+
+	private static boolean[] dilate(boolean[] grid, int w, int h) {
+		boolean[] res = new boolean[grid.length];
+		for (int y = 1; y < h - 1; y++) {
+			for (int x = 1; x < w - 1; x++) {
+				res[y * w + x] = grid[y * w + x] || grid[y * w + x - 1] || grid[y * w + x + 1]
+						|| grid[(y - 1) * w + x] || grid[(y + 1) * w + x] || grid[(y - 1) * w + x - 1]
+						|| grid[(y - 1) * w + x + 1] || grid[(y + 1) * w + x - 1] || grid[(y + 1) * w + x + 1];
+			}
+		}
+		return res;
+	}
+
+	private static boolean[] erode(boolean[] grid, int w, int h) {
+		boolean[] res = new boolean[grid.length];
+		for (int y = 1; y < h - 1; y++) {
+			for (int x = 1; x < w - 1; x++) {
+				res[y * w + x] = grid[y * w + x] && grid[y * w + x - 1] && grid[y * w + x + 1]
+						&& grid[(y - 1) * w + x] && grid[(y + 1) * w + x] && grid[(y - 1) * w + x - 1]
+						&& grid[(y - 1) * w + x + 1] && grid[(y + 1) * w + x - 1] && grid[(y + 1) * w + x + 1];
+			}
+		}
+		return res;
+	}
+
+	// cells not connected to the border of the grid are inside
+	private static boolean[] fillHoles(boolean[] grid, int w, int h) {
+		boolean[] outside = new boolean[grid.length];
+		TIntArrayList stack = new TIntArrayList();
+		for (int x = 0; x < w; x++) {
+			stack.add(x);
+			stack.add((h - 1) * w + x);
+		}
+		for (int y = 0; y < h; y++) {
+			stack.add(y * w);
+			stack.add(y * w + w - 1);
+		}
+		while (!stack.isEmpty()) {
+			int c = stack.removeAt(stack.size() - 1);
+			if (outside[c] || grid[c]) {
+				continue;
+			}
+			outside[c] = true;
+			int x = c % w;
+			int y = c / w;
+			if (x > 0) {
+				stack.add(c - 1);
+			}
+			if (x < w - 1) {
+				stack.add(c + 1);
+			}
+			if (y > 0) {
+				stack.add(c - w);
+			}
+			if (y < h - 1) {
+				stack.add(c + w);
+			}
+		}
+		boolean[] inside = new boolean[grid.length];
+		for (int i = 0; i < grid.length; i++) {
+			inside[i] = !outside[i];
+		}
+		return inside;
+	}
+
+	private List<List<LatLon>> traceRings(boolean[] inside, int w, int h, int ox, int oy) {
+		// directed boundary edges (inside is on the right), vertex can have 2 outgoing edges at pinch points
+		int vw = w + 1;
+		int[] next = new int[vw * (h + 1) * 2];
+		Arrays.fill(next, -1);
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				if (!inside[y * w + x]) {
+					continue;
+				}
+				int tl = y * vw + x;
+				int tr = tl + 1;
+				int bl = tl + vw;
+				int br = bl + 1;
+				if (y == 0 || !inside[(y - 1) * w + x]) {
+					addEdge(next, tl, tr);
+				}
+				if (x == w - 1 || !inside[y * w + x + 1]) {
+					addEdge(next, tr, br);
+				}
+				if (y == h - 1 || !inside[(y + 1) * w + x]) {
+					addEdge(next, br, bl);
+				}
+				if (x == 0 || !inside[y * w + x - 1]) {
+					addEdge(next, bl, tl);
+				}
+			}
+		}
+		List<List<LatLon>> rings = new ArrayList<List<LatLon>>();
+		for (int e = 0; e < next.length; e++) {
+			if (next[e] == -1) {
+				continue;
+			}
+			int start = e / 2;
+			TIntArrayList ring = new TIntArrayList();
+			int v = start;
+			do {
+				ring.add(v);
+				int k = next[v * 2] != -1 ? v * 2 : v * 2 + 1;
+				int n = next[k];
+				next[k] = -1;
+				v = n;
+			} while (v != start && v != -1);
+			rings.add(toLatLon(ring, vw, ox, oy));
+		}
+		return rings;
+	}
+
+	private static void addEdge(int[] next, int from, int to) {
+		next[next[from * 2] == -1 ? from * 2 : from * 2 + 1] = to;
+	}
+
+	private static int to31(long v) {
+		return (int) Math.max(0, Math.min(Integer.MAX_VALUE, v));
+	}
+
+	private List<LatLon> toLatLon(TIntArrayList ring, int vw, int ox, int oy) {
+		List<LatLon> res = new ArrayList<LatLon>();
+		int sz = ring.size();
+		for (int i = 0; i < sz; i++) {
+			int p = ring.get((i + sz - 1) % sz);
+			int c = ring.get(i);
+			int n = ring.get((i + 1) % sz);
+			// skip collinear vertices
+			if ((p % vw == c % vw && c % vw == n % vw) || (p / vw == c / vw && c / vw == n / vw)) {
+				continue;
+			}
+			int x31 = to31((long) (c % vw + ox) * cellSize);
+			int y31 = to31((long) (c / vw + oy) * cellSize);
+			res.add(new LatLon(MapUtils.get31LatitudeY(y31), MapUtils.get31LongitudeX(x31)));
+		}
+		if (!res.isEmpty()) {
+			res.add(res.get(0));
+		}
+		return res;
+	}
+}
@@ -1,5 +1,6 @@
 package net.osmand.router;
 
+import net.osmand.GPXUtilities.CompactTrkPoints;
 import net.osmand.GPXUtilities.GPXFile;
 import net.osmand.GPXUtilities.GPXTrackAnalysis;
 import net.osmand.GPXUtilities.Track;
@@ -105,9 +106,6 @@ public class RouteColorize {
             return;
         }
 
-        List<Double> latList = new ArrayList<>();
-        List<Double> lonList = new ArrayList<>();
-        List<Double> valList = new ArrayList<>();
         int wptIdx = 0;
 
         if (analysis == null) {
@@ -115,19 +113,37 @@ public class RouteColorize {
                     ? gpxFile.getAnalysis(System.currentTimeMillis())
                     : gpxFile.getAnalysis(gpxFile.modifiedTime);
         }
+        int pointsCount = 0;
+        for (Track t : gpxFile.tracks) {
+            for (TrkSegment ts : t.segments) {
+                if (!ts.generalSegment && ts.points.size() >= 2) {
+                    pointsCount += ts.points.size();
+                }
+            }
+        }
+        double[] lats = new double[pointsCount];
+        double[] lons = new double[pointsCount];
+        double[] vals = new double[pointsCount];
         for (Track t : gpxFile.tracks) {
             for (TrkSegment ts : t.segments) {
                 if (ts.generalSegment || ts.points.size() < 2) {
                     continue;
                 }
 
-                for (WptPt p : ts.points) {
-                    latList.add(p.lat);
-                    lonList.add(p.lon);
+                CompactTrkPoints compactPoints = ts.isCompact() ? (CompactTrkPoints) ts.points : null;
+                for (int i = 0; i < ts.points.size(); i++) {
+                    if (compactPoints != null) {
+                        lats[wptIdx] = compactPoints.getLatitude(i);
+                        lons[wptIdx] = compactPoints.getLongitude(i);
+                    } else {
+                        WptPt p = ts.points.get(i);
+                        lats[wptIdx] = p.lat;
+                        lons[wptIdx] = p.lon;
+                    }
                     if (type == ColorizationType.SPEED) {
-                        valList.add((double) analysis.speedData.get(wptIdx).speed);
+                        vals[wptIdx] = analysis.speedData.get(wptIdx).speed;
                     } else {
-                        valList.add((double) analysis.elevationData.get(wptIdx).elevation);
+                        vals[wptIdx] = analysis.elevationData.get(wptIdx).elevation;
                     }
                     wptIdx++;
                 }
@@ -136,13 +152,13 @@ public class RouteColorize {
 
         this.zoom = zoom;
         colorizationType = type;
-        latitudes = listToArray(latList);
-        longitudes = listToArray(lonList);
+        latitudes = lats;
+        longitudes = lons;
 
         if (type == ColorizationType.SLOPE) {
-            values = calculateSlopesByElevations(latitudes, longitudes, listToArray(valList), SLOPE_RANGE);
+            values = calculateSlopesByElevations(latitudes, longitudes, vals, SLOPE_RANGE);
         } else {
-            values = listToArray(valList);
+            values = vals;
         }
         calculateMinMaxValue(analysis, maxProfileSpeed);
         checkPalette();
@@ -537,14 +553,6 @@ public class RouteColorize {
         maxValue = getMaxValue(colorizationType, analysis, minValue, maxProfileSpeed);
     }
 
-    private double[] listToArray(List<Double> doubleList) {
-        double[] result = new double[doubleList.size()];
-        for (int i = 0; i < doubleList.size(); i++) {
-            result[i] = doubleList.get(i);
-        }
-        return result;
-    }
-
     private double[][] getDefaultPalette(ColorizationType colorizationType) {
         if (colorizationType == ColorizationType.SLOPE) {
             return SLOPE_PALETTE;
@@ -0,0 +1,803 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.GeneralRouter.RouteAttributeContext;
+import net.osmand.router.GeneralRouter.RouteDataObjectAttribute;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.router.RoutingContext.RoutingSubregionTile;
+import net.osmand.util.MapUtils;
+
+/**
+ * Shortcut overlay (contraction hierarchy) of the road graph precomputed offline for one routing profile.
+ * Graph nodes are road junctions and road ends, edge weights are routing times of the profile.
+ * The overlay finds a route skeleton in milliseconds which is used as {@link PrecalculatedRouteDirection}
+ * for the detailed A*, so it replaces BASE pre-calculation of long routes.
+ * Turn restrictions and turn costs are not part of the overlay, they are applied by the detailed search.
+ */
+public class RouteContractionHierarchy {
+
+	private static final Log log = PlatformUtil.getLog(RouteContractionHierarchy.class);
+
+	private static final int MAGIC = 0x4f434831; // OCH1
+	private static final int VERSION = 1;
+	// settled nodes of witness search, after that shortcut is added without proof
+	private static final int WITNESS_SEARCH_LIMIT = 500;
+	// grid to look up nearest node (zoom 15 ~ 1.2 km)
+	private static final int NODE_INDEX_ZOOM = 15;
+	private static final int NODE_INDEX_MAX_RADIUS = 3;
+	private static final int NO_EDGE = -1;
+
+	private final String profileSignature;
+	private final int nodesCount;
+	private final int[] nodeX;
+	private final int[] nodeY;
+	private final int[] nodeRank;
+
+	private final int edgesCount;
+	private final int[] edgeFrom;
+	private final int[] edgeTo;
+	private final float[] edgeCost;
+	// shortcut = childA + childB, original edges have NO_EDGE
+	private final int[] edgeChildA;
+	private final int[] edgeChildB;
+
+	// edges to higher rank nodes grouped by source (forward search) and by target (backward search)
+	private int[] upOffsets;
+	private int[] upEdges;
+	private int[] downOffsets;
+	private int[] downEdges;
+	private TLongObjectHashMap<TIntArrayList> nodeIndex;
+
+	// query buffers (guarded by this)
+	private float[] forwardDist;
+	private float[] backwardDist;
+	private int[] forwardEdge;
+	private int[] backwardEdge;
+	private TIntArrayList touched = new TIntArrayList();
+	private RouteNodeHeap forwardQueue;
+	private RouteNodeHeap backwardQueue;
+
+	private RouteContractionHierarchy(String profileSignature, int[] nodeX, int[] nodeY, int[] nodeRank,
+			int edgesCount, int[] edgeFrom, int[] edgeTo, float[] edgeCost, int[] edgeChildA, int[] edgeChildB) {
+		this.profileSignature = profileSignature;
+		this.nodesCount = nodeX.length;
+		this.nodeX = nodeX;
+		this.nodeY = nodeY;
+		this.nodeRank = nodeRank;
+		this.edgesCount = edgesCount;
+		this.edgeFrom = edgeFrom;
+		this.edgeTo = edgeTo;
+		this.edgeCost = edgeCost;
+		this.edgeChildA = edgeChildA;
+		this.edgeChildB = edgeChildB;
+		initQueryStructures();
+	}
+
+	public String getProfileSignature() {
+		return profileSignature;
+	}
+
+	public int getNodesCount() {
+		return nodesCount;
+	}
+
+	public int getEdgesCount() {
+		return edgesCount;
+	}
+
+	int getNodeX(int node) {
+		return nodeX[node];
+	}
+
+	int getNodeY(int node) {
+		return nodeY[node];
+	}
+
+	float getEdgeCost(int edge) {
+		return edgeCost[edge];
+	}
+
+	/**
+	 * Overlay could be used only with the same profile and parameters it was built for
+	 */
+	public static String getProfileSignature(RoutingConfiguration config) {
+		StringBuilder sb = new StringBuilder(config.routerName);
+		RouteAttributeContext ctx = config.router.getObjContext(RouteDataObjectAttribute.ROAD_SPEED);
+		String[] keys = ctx.getParamKeys();
+		String[] values = ctx.getParamValues();
+		Map<String, String> sorted = new TreeMap<String, String>();
+		for (int i = 0; i < keys.length; i++) {
+			sorted.put(keys[i], values[i]);
+		}
+		for (Map.Entry<String, String> e : sorted.entrySet()) {
+			sb.append(';').append(e.getKey()).append('=').append(e.getValue());
+		}
+		return sb.toString();
+	}
+
+	public boolean isApplicable(RoutingConfiguration config) {
+		long[] impassable = config.router.getImpassableRoadIds();
+		return (impassable == null || impassable.length == 0) && profileSignature.equals(getProfileSignature(config));
+	}
+
+	/**
+	 * @return route skeleton through all points or null if overlay is not applicable or route is not found
+	 */
+	public PrecalculatedRouteDirection buildRouteDirection(RoutingConfiguration config, List<LatLon> points, float maxSpeed) {
+		if (!isApplicable(config) || points.size() < 2) {
+			return null;
+		}
+		TIntArrayList px = new TIntArrayList();
+		TIntArrayList py = new TIntArrayList();
+		List<Float> speedSegments = new ArrayList<Float>();
+		int prevNode = -1;
+		for (LatLon l : points) {
+			int node = findNearestNode(MapUtils.get31TileNumberX(l.getLongitude()),
+					MapUtils.get31TileNumberY(l.getLatitude()));
+			if (node == -1) {
+				return null;
+			}
+			if (prevNode == -1) {
+				px.add(nodeX[node]);
+				py.add(nodeY[node]);
+				speedSegments.add(maxSpeed);
+			} else {
+				TIntArrayList edges = findPath(prevNode, node);
+				if (edges == null) {
+					return null;
+				}
+				for (int i = 0; i < edges.size(); i++) {
+					int e = edges.get(i);
+					int f = edgeFrom[e];
+					int t = edgeTo[e];
+					float dist = (float) MapUtils.measuredDist31(nodeX[f], nodeY[f], nodeX[t], nodeY[t]);
+					px.add(nodeX[t]);
+					py.add(nodeY[t]);
+					speedSegments.add(dist > 0 && edgeCost[e] > 0 ? dist / edgeCost[e] : maxSpeed);
+				}
+			}
+			prevNode = node;
+		}
+		if (px.size() < 2) {
+			return null;
+		}
+		return new PrecalculatedRouteDirection(px, py, speedSegments, maxSpeed);
+	}
+
+	public int findNearestNode(int x31, int y31) {
+		int tx = x31 >> (31 - NODE_INDEX_ZOOM);
+		int ty = y31 >> (31 - NODE_INDEX_ZOOM);
+		int nearest = -1;
+		double minDist = Double.POSITIVE_INFINITY;
+		for (int r = 0; r <= NODE_INDEX_MAX_RADIUS && nearest == -1; r++) {
+			// scan one more ring after first match, nearest node could be in neighbor tile
+			int radius = r + 1;
+			for (int i = tx - radius; i <= tx + radius; i++) {
+				for (int j = ty - radius; j <= ty + radius; j++) {
+					TIntArrayList l = nodeIndex.get(tileId(i, j));
+					if (l == null) {
+						continue;
+					}
+					for (int k = 0; k < l.size(); k++) {
+						int n = l.get(k);
+						double d = MapUtils.squareRootDist31(x31, y31, nodeX[n], nodeY[n]);
+						if (d < minDist) {
+							minDist = d;
+							nearest = n;
+						}
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Bidirectional upward Dijkstra
+	 * @return original (unpacked) edges from start to end or null if there is no route
+	 */
+	public synchronized TIntArrayList findPath(int start, int end) {
+		RouteNodeHeap forward = forwardQueue;
+		RouteNodeHeap backward = backwardQueue;
+		touch(start);
+		touch(end);
+		forwardDist[start] = 0;
+		backwardDist[end] = 0;
+		forward.add(start, 0);
+		backward.add(end, 0);
+		float best = Float.POSITIVE_INFINITY;
+		int meeting = -1;
+		try {
+			while (!forward.isEmpty() || !backward.isEmpty()) {
+				float fmin = forward.peekKey();
+				float bmin = backward.peekKey();
+				if (Math.min(fmin, bmin) >= best) {
+					break;
+				}
+				boolean fwd = fmin <= bmin;
+				int n = fwd ? forward.poll() : backward.poll();
+				float cost = fwd ? fmin : bmin;
+				float[] dist = fwd ? forwardDist : backwardDist;
+				float[] opposite = fwd ? backwardDist : forwardDist;
+				if (cost + opposite[n] < best) {
+					best = cost + opposite[n];
+					meeting = n;
+				}
+				int[] offsets = fwd ? upOffsets : downOffsets;
+				int[] edges = fwd ? upEdges : downEdges;
+				int[] parents = fwd ? forwardEdge : backwardEdge;
+				for (int i = offsets[n]; i < offsets[n + 1]; i++) {
+					int e = edges[i];
+					int next = fwd ? edgeTo[e] : edgeFrom[e];
+					float c = cost + edgeCost[e];
+					if (c < dist[next]) {
+						touch(next);
+						dist[next] = c;
+						parents[next] = e;
+						(fwd ? forward : backward).add(next, c);
+					}
+				}
+			}
+			if (meeting == -1) {
+				return null;
+			}
+			TIntArrayList upPath = new TIntArrayList();
+			int n = meeting;
+			while (n != start) {
+				int e = forwardEdge[n];
+				upPath.add(e);
+				n = edgeFrom[e];
+			}
+			upPath.reverse();
+			n = meeting;
+			while (n != end) {
+				int e = backwardEdge[n];
+				upPath.add(e);
+				n = edgeTo[e];
+			}
+			TIntArrayList result = new TIntArrayList();
+			for (int i = 0; i < upPath.size(); i++) {
+				unpackEdge(upPath.get(i), result);
+			}
+			return result;
+		} finally {
+			forward.clear();
+			backward.clear();
+			for (int i = 0; i < touched.size(); i++) {
+				int t = touched.get(i);
+				forwardDist[t] = Float.POSITIVE_INFINITY;
+				backwardDist[t] = Float.POSITIVE_INFINITY;
+				forwardEdge[t] = NO_EDGE;
+				backwardEdge[t] = NO_EDGE;
+			}
+			touched.clear();
+		}
+	}
+
+	private void touch(int n) {
+		if (forwardDist[n] == Float.POSITIVE_INFINITY && backwardDist[n] == Float.POSITIVE_INFINITY) {
+			touched.add(n);
+		}
+	}
+
+	private void unpackEdge(int e, TIntArrayList result) {
+		if (edgeChildA[e] == NO_EDGE) {
+			result.add(e);
+		} else {
+			unpackEdge(edgeChildA[e], result);
+			unpackEdge(edgeChildB[e], result);
+		}
+	}
+
+	private void initQueryStructures() {
+		int[] upCount = new int[nodesCount + 1];
+		int[] downCount = new int[nodesCount + 1];
+		for (int e = 0; e < edgesCount; e++) {
+			if (nodeRank[edgeTo[e]] > nodeRank[edgeFrom[e]]) {
+				upCount[edgeFrom[e] + 1]++;
+			} else {
+				downCount[edgeTo[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < nodesCount; i++) {
+			upCount[i + 1] += upCount[i];
+			downCount[i + 1] += downCount[i];
+		}
+		upOffsets = upCount;
+		downOffsets = downCount;
+		upEdges = new int[upOffsets[nodesCount]];
+		downEdges = new int[downOffsets[nodesCount]];
+		int[] upFill = Arrays.copyOf(upOffsets, nodesCount);
+		int[] downFill = Arrays.copyOf(downOffsets, nodesCount);
+		for (int e = 0; e < edgesCount; e++) {
+			if (nodeRank[edgeTo[e]] > nodeRank[edgeFrom[e]]) {
+				upEdges[upFill[edgeFrom[e]]++] = e;
+			} else {
+				downEdges[downFill[edgeTo[e]]++] = e;
+			}
+		}
+		nodeIndex = new TLongObjectHashMap<TIntArrayList>();
+		for (int n = 0; n < nodesCount; n++) {
+			long id = tileId(nodeX[n] >> (31 - NODE_INDEX_ZOOM), nodeY[n] >> (31 - NODE_INDEX_ZOOM));
+			TIntArrayList l = nodeIndex.get(id);
+			if (l == null) {
+				l = new TIntArrayList();
+				nodeIndex.put(id, l);
+			}
+			l.add(n);
+		}
+		forwardQueue = new RouteNodeHeap(nodesCount);
+		backwardQueue = new RouteNodeHeap(nodesCount);
+		forwardDist = new float[nodesCount];
+		backwardDist = new float[nodesCount];
+		forwardEdge = new int[nodesCount];
+		backwardEdge = new int[nodesCount];
+		Arrays.fill(forwardDist, Float.POSITIVE_INFINITY);
+		Arrays.fill(backwardDist, Float.POSITIVE_INFINITY);
+		Arrays.fill(forwardEdge, NO_EDGE);
+		Arrays.fill(backwardEdge, NO_EDGE);
+	}
+
+	private static long tileId(int tx, int ty) {
+		return (((long) tx) << 32) | (ty & 0xffffffffL);
+	}
+
+	private static long pointKey(int x31, int y31) {
+		return (((long) x31) << 31) | y31;
+	}
+
+	public void writeToFile(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(profileSignature);
+			out.writeInt(nodesCount);
+			for (int i = 0; i < nodesCount; i++) {
+				out.writeInt(nodeX[i]);
+				out.writeInt(nodeY[i]);
+				out.writeInt(nodeRank[i]);
+			}
+			out.writeInt(edgesCount);
+			for (int i = 0; i < edgesCount; i++) {
+				out.writeInt(edgeFrom[i]);
+				out.writeInt(edgeTo[i]);
+				out.writeFloat(edgeCost[i]);
+				out.writeInt(edgeChildA[i]);
+				out.writeInt(edgeChildB[i]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static RouteContractionHierarchy readFromFile(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Unsupported shortcut overlay file " + file.getName());
+			}
+			String signature = in.readUTF();
+			int nodes = in.readInt();
+			int[] x = new int[nodes];
+			int[] y = new int[nodes];
+			int[] rank = new int[nodes];
+			for (int i = 0; i < nodes; i++) {
+				x[i] = in.readInt();
+				y[i] = in.readInt();
+				rank[i] = in.readInt();
+			}
+			int edges = in.readInt();
+			int[] from = new int[edges];
+			int[] to = new int[edges];
+			float[] cost = new float[edges];
+			int[] childA = new int[edges];
+			int[] childB = new int[edges];
+			for (int i = 0; i < edges; i++) {
+				from[i] = in.readInt();
+				to[i] = in.readInt();
+				cost[i] = in.readFloat();
+				childA[i] = in.readInt();
+				childB[i] = in.readInt();
+			}
+			return new RouteContractionHierarchy(signature, x, y, rank, edges, from, to, cost, childA, childB);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Builds overlay from all route sections of the context maps (offline preprocessing, needs a lot of memory)
+	 */
+	public static RouteContractionHierarchy build(RoutingContext ctx) throws IOException {
+		long time = System.currentTimeMillis();
+		final VehicleRouter router = ctx.getRouter();
+		// 1st pass: road ends and points shared by several roads become nodes
+		final TLongHashSet points = new TLongHashSet();
+		final TLongHashSet junctions = new TLongHashSet();
+		iterateRoads(ctx, new ResultMatcher<RouteDataObject>() {
+
+			@Override
+			public boolean publish(RouteDataObject ro) {
+				int len = ro.getPointsLength();
+				for (int i = 0; i < len; i++) {
+					long key = pointKey(ro.getPoint31XTile(i), ro.getPoint31YTile(i));
+					if (i == 0 || i == len - 1 || !points.add(key)) {
+						junctions.add(key);
+						points.add(key);
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		points.clear();
+		final long[] nodeKeys = junctions.toArray();
+		junctions.clear();
+		Arrays.sort(nodeKeys);
+		final GraphBuilder graph = new GraphBuilder(nodeKeys.length);
+		// 2nd pass: roads between nodes become edges
+		iterateRoads(ctx, new ResultMatcher<RouteDataObject>() {
+
+			@Override
+			public boolean publish(RouteDataObject ro) {
+				addRoadEdges(router, ro, nodeKeys, graph);
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		log.info(String.format("Shortcut overlay graph: %d nodes, %d edges in %d ms", nodeKeys.length,
+				graph.edgesCount, System.currentTimeMillis() - time));
+		int[] x = new int[nodeKeys.length];
+		int[] y = new int[nodeKeys.length];
+		for (int i = 0; i < nodeKeys.length; i++) {
+			x[i] = (int) (nodeKeys[i] >> 31);
+			y[i] = (int) (nodeKeys[i] & Integer.MAX_VALUE);
+		}
+		RouteContractionHierarchy ch = contract(getProfileSignature(ctx.config), x, y, graph);
+		log.info(String.format("Shortcut overlay contracted: %d edges in %d ms", graph.edgesCount,
+				System.currentTimeMillis() - time));
+		return ch;
+	}
+
+	/**
+	 * Builds overlay of the given graph, original edges keep their indexes (0..from.length-1)
+	 */
+	static RouteContractionHierarchy build(String profileSignature, int[] x, int[] y, int[] from, int[] to,
+			float[] cost) {
+		GraphBuilder graph = new GraphBuilder(x.length);
+		for (int e = 0; e < from.length; e++) {
+			graph.addEdge(from[e], to[e], cost[e], NO_EDGE, NO_EDGE);
+		}
+		return contract(profileSignature, x, y, graph);
+	}
+
+	private static RouteContractionHierarchy contract(String profileSignature, int[] x, int[] y, GraphBuilder graph) {
+		int[] rank = graph.contract();
+		return new RouteContractionHierarchy(profileSignature, x, y, rank, graph.edgesCount,
+				graph.edgeFrom, graph.edgeTo, graph.edgeCost, graph.edgeChildA, graph.edgeChildB);
+	}
+
+	private static void iterateRoads(RoutingContext ctx, ResultMatcher<RouteDataObject> matcher) throws IOException {
+		TLongHashSet visited = new TLongHashSet();
+		for (Map.Entry<BinaryMapIndexReader, List<RouteSubregion>> r : ctx.map.entrySet()) {
+			for (RouteSubregion reg : r.getValue()) {
+				for (RoutingSubregionTile tile : ctx.loadAllSubregionTiles(r.getKey(), reg)) {
+					for (RouteDataObject ro : r.getKey().loadRouteIndexData(tile.subregion)) {
+						if (visited.add(ro.getId()) && ro.getPointsLength() > 1 && ctx.getRouter().acceptLine(ro)) {
+							matcher.publish(ro);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// same time calculation as BinaryRoutePlanner.calculateRouteSegmentTime
+	private static void addRoadEdges(VehicleRouter router, RouteDataObject ro, long[] nodeKeys, GraphBuilder graph) {
+		float priority = router.defineSpeedPriority(ro);
+		float speed = router.defineRoutingSpeed(ro) * priority;
+		if (speed == 0) {
+			speed = router.getDefaultSpeed() * priority;
+		}
+		if (speed > router.getMaxSpeed()) {
+			speed = router.getMaxSpeed();
+		}
+		int oneway = router.isOneWay(ro);
+		int len = ro.getPointsLength();
+		int startNode = Arrays.binarySearch(nodeKeys, pointKey(ro.getPoint31XTile(0), ro.getPoint31YTile(0)));
+		boolean forwardAllowed = oneway >= 0;
+		boolean backwardAllowed = oneway <= 0;
+		double forwardTime = 0;
+		double backwardTime = 0;
+		for (int i = 1; i < len; i++) {
+			double time = BinaryRoutePlanner.squareRootDist(ro.getPoint31XTile(i - 1), ro.getPoint31YTile(i - 1),
+					ro.getPoint31XTile(i), ro.getPoint31YTile(i)) / speed;
+			if (forwardAllowed) {
+				double obstacle = router.defineRoutingObstacle(ro, i - 1, true);
+				double heightObstacle = router.defineHeightObstacle(ro, (short) (i - 1), (short) i);
+				forwardAllowed = obstacle >= 0 && heightObstacle >= 0;
+				forwardTime += obstacle + heightObstacle + time;
+			}
+			if (backwardAllowed) {
+				double obstacle = router.defineRoutingObstacle(ro, i, false);
+				double heightObstacle = router.defineHeightObstacle(ro, (short) i, (short) (i - 1));
+				backwardAllowed = obstacle >= 0 && heightObstacle >= 0;
+				backwardTime += obstacle + heightObstacle + time;
+			}
+			int node = Arrays.binarySearch(nodeKeys, pointKey(ro.getPoint31XTile(i), ro.getPoint31YTile(i)));
+			if (node >= 0) {
+				if (node != startNode) {
+					if (forwardAllowed) {
+						graph.addEdge(startNode, node, (float) forwardTime, NO_EDGE, NO_EDGE);
+					}
+					if (backwardAllowed) {
+						graph.addEdge(node, startNode, (float) backwardTime, NO_EDGE, NO_EDGE);
+					}
+				}
+				startNode = node;
+				forwardAllowed = oneway >= 0;
+				backwardAllowed = oneway <= 0;
+				forwardTime = 0;
+				backwardTime = 0;
+			}
+		}
+	}
+
+	private static class GraphBuilder {
+		int nodesCount;
+		int edgesCount;
+		int[] edgeFrom = new int[1024];
+		int[] edgeTo = new int[1024];
+		float[] edgeCost = new float[1024];
+		int[] edgeChildA = new int[1024];
+		int[] edgeChildB = new int[1024];
+		TIntArrayList[] outEdges;
+		TIntArrayList[] inEdges;
+
+		boolean[] contracted;
+		int[] deletedNeighbors;
+		float[] witnessDist;
+		RouteNodeHeap witnessQueue;
+		TIntArrayList witnessTouched = new TIntArrayList();
+
+		GraphBuilder(int nodesCount) {
+			this.nodesCount = nodesCount;
+			outEdges = new TIntArrayList[nodesCount];
+			inEdges = new TIntArrayList[nodesCount];
+			for (int i = 0; i < nodesCount; i++) {
+				outEdges[i] = new TIntArrayList(4);
+				inEdges[i] = new TIntArrayList(4);
+			}
+		}
+
+		int addEdge(int from, int to, float cost, int childA, int childB) {
+			if (edgesCount == edgeFrom.length) {
+				int ns = edgesCount * 3 / 2;
+				edgeFrom = Arrays.copyOf(edgeFrom, ns);
+				edgeTo = Arrays.copyOf(edgeTo, ns);
+				edgeCost = Arrays.copyOf(edgeCost, ns);
+				edgeChildA = Arrays.copyOf(edgeChildA, ns);
+				edgeChildB = Arrays.copyOf(edgeChildB, ns);
+			}
+			int e = edgesCount++;
+			edgeFrom[e] = from;
+			edgeTo[e] = to;
+			edgeCost[e] = cost;
+			edgeChildA[e] = childA;
+			edgeChildB[e] = childB;
+			outEdges[from].add(e);
+			inEdges[to].add(e);
+			return e;
+		}
+
+		/**
+		 * Contracts nodes ordered by edge difference with lazy priority updates
+		 * @return rank of each node
+		 */
+		int[] contract() {
+			contracted = new boolean[nodesCount];
+			deletedNeighbors = new int[nodesCount];
+			witnessDist = new float[nodesCount];
+			Arrays.fill(witnessDist, Float.POSITIVE_INFINITY);
+			witnessQueue = new RouteNodeHeap(nodesCount);
+			int[] rank = new int[nodesCount];
+			RouteNodeHeap queue = new RouteNodeHeap(nodesCount);
+			for (int n = 0; n < nodesCount; n++) {
+				queue.add(n, priority(n));
+			}
+			int order = 0;
+			while (!queue.isEmpty()) {
+				int n = queue.poll();
+				int p = priority(n);
+				if (p > queue.peekKey()) {
+					queue.add(n, p);
+					continue;
+				}
+				contractNode(n, false);
+				contracted[n] = true;
+				rank[n] = order++;
+				TIntArrayList out = outEdges[n];
+				for (int i = 0; i < out.size(); i++) {
+					deletedNeighbors[edgeTo[out.get(i)]]++;
+				}
+				TIntArrayList in = inEdges[n];
+				for (int i = 0; i < in.size(); i++) {
+					deletedNeighbors[edgeFrom[in.get(i)]]++;
+				}
+				if (order % 100000 == 0) {
+					log.info(String.format("Contracted %d of %d nodes, %d edges", order, nodesCount, edgesCount));
+				}
+			}
+			return rank;
+		}
+
+		private int priority(int n) {
+			int shortcuts = contractNode(n, true);
+			int removed = 0;
+			TIntArrayList out = outEdges[n];
+			for (int i = 0; i < out.size(); i++) {
+				if (!contracted[edgeTo[out.get(i)]]) {
+					removed++;
+				}
+			}
+			TIntArrayList in = inEdges[n];
+			for (int i = 0; i < in.size(); i++) {
+				if (!contracted[edgeFrom[in.get(i)]]) {
+					removed++;
+				}
+			}
+			return shortcuts - removed + deletedNeighbors[n];
+		}
+
+		// cheapest edge among parallel edges (edges to contracted nodes are not active)
+		private boolean isActiveEdge(TIntArrayList edges, int e, boolean out) {
+			int other = out ? edgeTo[e] : edgeFrom[e];
+			if (contracted[other]) {
+				return false;
+			}
+			for (int i = 0; i < edges.size(); i++) {
+				int p = edges.get(i);
+				if (p != e && (out ? edgeTo[p] : edgeFrom[p]) == other
+						&& (edgeCost[p] < edgeCost[e] || (edgeCost[p] == edgeCost[e] && p < e))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private int contractNode(int v, boolean simulate) {
+			int shortcuts = 0;
+			TIntArrayList in = inEdges[v];
+			TIntArrayList out = outEdges[v];
+			float maxOut = 0;
+			for (int j = 0; j < out.size(); j++) {
+				maxOut = Math.max(maxOut, edgeCost[out.get(j)]);
+			}
+			for (int i = 0; i < in.size(); i++) {
+				int e1 = in.get(i);
+				if (!isActiveEdge(in, e1, false)) {
+					continue;
+				}
+				int u = edgeFrom[e1];
+				witnessSearch(u, v, edgeCost[e1] + maxOut);
+				for (int j = 0; j < out.size(); j++) {
+					int e2 = out.get(j);
+					int w = edgeTo[e2];
+					if (w == u || !isActiveEdge(out, e2, true)) {
+						continue;
+					}
+					float cost = edgeCost[e1] + edgeCost[e2];
+					if (witnessDist[w] > cost) {
+						shortcuts++;
+						if (!simulate) {
+							addEdge(u, w, cost, e1, e2);
+						}
+					}
+				}
+				clearWitness();
+			}
+			return shortcuts;
+		}
+
+		private void witnessSearch(int source, int skip, float maxCost) {
+			RouteNodeHeap queue = witnessQueue;
+			witnessTouched.add(source);
+			witnessDist[source] = 0;
+			queue.add(source, 0);
+			int settled = 0;
+			while (!queue.isEmpty() && settled++ < WITNESS_SEARCH_LIMIT) {
+				float cost = queue.peekKey();
+				int n = queue.poll();
+				if (cost > maxCost) {
+					break;
+				}
+				TIntArrayList out = outEdges[n];
+				for (int i = 0; i < out.size(); i++) {
+					int e = out.get(i);
+					int next = edgeTo[e];
+					if (next == skip || contracted[next]) {
+						continue;
+					}
+					float c = cost + edgeCost[e];
+					if (c < witnessDist[next]) {
+						if (witnessDist[next] == Float.POSITIVE_INFINITY) {
+							witnessTouched.add(next);
+						}
+						witnessDist[next] = c;
+						queue.add(next, c);
+					}
+				}
+			}
+		}
+
+		private void clearWitness() {
+			witnessQueue.clear();
+			for (int i = 0; i < witnessTouched.size(); i++) {
+				witnessDist[witnessTouched.get(i)] = Float.POSITIVE_INFINITY;
+			}
+			witnessTouched.clear();
+		}
+	}
+
+	/**
+	 * Offline preprocessing: java net.osmand.router.RouteContractionHierarchy profile output.och map1.obf [map2.obf ...]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: <routing profile> <output file> <obf files...>");
+			return;
+		}
+		BinaryMapIndexReader[] readers = new BinaryMapIndexReader[args.length - 2];
+		for (int i = 2; i < args.length; i++) {
+			readers[i - 2] = new BinaryMapIndexReader(new RandomAccessFile(args[i], "r"), new File(args[i]));
+		}
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build(args[0],
+				new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 10,
+						RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT));
+		RoutingContext ctx = new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers,
+				RouteCalculationMode.NORMAL);
+		RouteContractionHierarchy ch = build(ctx);
+		ch.writeToFile(new File(args[1]));
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+		System.out.println(String.format("Shortcut overlay '%s': %d nodes, %d edges", ch.getProfileSignature(),
+				ch.getNodesCount(), ch.getEdgesCount()));
+	}
+}
@@ -0,0 +1,167 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+
+/**
+ * Evaluated router attributes by types signature of road (or point), tables are created per region
+ * as type ids are region local. Signatures of 1 type (most of point types) are stored in dense array
+ * indexed by type id, others in open addressing hash table over int[] signatures.
+ * Lookups don't allocate, missing value is returned as NaN. Not thread safe (as GeneralRouter).
+ */
+class RouteEvaluationCache {
+
+	private final int tablesCount;
+	private final Map<RouteRegion, RegionTables> regions = new IdentityHashMap<RouteRegion, RegionTables>();
+	private RouteRegion lastRegion;
+	private RegionTables lastTables;
+
+	RouteEvaluationCache(int attributes) {
+		// separate tables for extra flag (direction of obstacles)
+		this.tablesCount = attributes * 2;
+	}
+
+	float get(int attribute, RouteRegion reg, int[] types, boolean extra) {
+		RegionTables t = getTables(reg, false);
+		if (t == null) {
+			return Float.NaN;
+		}
+		SignatureTable st = t.tables[attribute * 2 + (extra ? 1 : 0)];
+		return st == null ? Float.NaN : st.get(types);
+	}
+
+	void put(int attribute, RouteRegion reg, int[] types, boolean extra, float value) {
+		RegionTables t = getTables(reg, true);
+		int ind = attribute * 2 + (extra ? 1 : 0);
+		if (t.tables[ind] == null) {
+			t.tables[ind] = new SignatureTable(reg.routeEncodingRules.size());
+		}
+		t.tables[ind].put(types, value);
+	}
+
+	void clear() {
+		regions.clear();
+		lastRegion = null;
+		lastTables = null;
+	}
+
+	private RegionTables getTables(RouteRegion reg, boolean create) {
+		if (reg == lastRegion) {
+			return lastTables;
+		}
+		RegionTables t = regions.get(reg);
+		if (t == null) {
+			if (!create) {
+				return null;
+			}
+			t = new RegionTables(tablesCount);
+			regions.put(reg, t);
+		}
+		lastRegion = reg;
+		lastTables = t;
+		return t;
+	}
+
+	private static class RegionTables {
+		final SignatureTable[] tables;
+
+		RegionTables(int size) {
+			tables = new SignatureTable[size];
+		}
+	}
+
+	static class SignatureTable {
+		// signatures of 1 type by type id
+		private float[] single;
+		// signatures of 0 or more than 1 type
+		private int[][] keys = new int[16][];
+		private float[] values = new float[16];
+		private int size;
+		private float empty = Float.NaN;
+
+		SignatureTable(int typesCount) {
+			single = new float[Math.max(typesCount, 16)];
+			Arrays.fill(single, Float.NaN);
+		}
+
+		float get(int[] types) {
+			if (types.length == 1) {
+				int t = types[0];
+				return t >= 0 && t < single.length ? single[t] : Float.NaN;
+			} else if (types.length == 0) {
+				return empty;
+			}
+			int mask = keys.length - 1;
+			for (int i = hash(types) & mask; ; i = (i + 1) & mask) {
+				int[] k = keys[i];
+				if (k == null) {
+					return Float.NaN;
+				}
+				if (k == types || Arrays.equals(k, types)) {
+					return values[i];
+				}
+			}
+		}
+
+		void put(int[] types, float value) {
+			if (types.length == 1) {
+				int t = types[0];
+				if (t < 0) {
+					return;
+				}
+				if (t >= single.length) {
+					int l = single.length;
+					single = Arrays.copyOf(single, Math.max(t + 1, l * 2));
+					Arrays.fill(single, l, single.length, Float.NaN);
+				}
+				single[t] = value;
+				return;
+			} else if (types.length == 0) {
+				empty = value;
+				return;
+			}
+			if (size * 2 >= keys.length) {
+				rehash(keys.length * 2);
+			}
+			insert(types, value);
+		}
+
+		private boolean insert(int[] types, float value) {
+			int mask = keys.length - 1;
+			for (int i = hash(types) & mask; ; i = (i + 1) & mask) {
+				int[] k = keys[i];
+				if (k == null) {
+					keys[i] = types;
+					values[i] = value;
+					size++;
+					return true;
+				}
+				if (k == types || Arrays.equals(k, types)) {
+					values[i] = value;
+					return false;
+				}
+			}
+		}
+
+		private void rehash(int capacity) {
+			int[][] oldKeys = keys;
+			float[] oldValues = values;
+			keys = new int[capacity][];
+			values = new float[capacity];
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != null) {
+					insert(oldKeys[i], oldValues[i]);
+				}
+			}
+		}
+
+		private static int hash(int[] types) {
+			int h = Arrays.hashCode(types);
+			return h ^ (h >>> 16);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary heap of graph nodes (0..nodesCount-1) with float keys, the same structure as
+ * {@link RouteSegmentHeap} for graphs with numbered nodes. Position of each node is kept in primitive array,
+ * so adding the node that is already queued updates its key instead of creating a duplicate entry.
+ */
+class RouteNodeHeap {
+
+	private final int[] positions;
+	private int[] nodes;
+	private float[] keys;
+	private int size;
+
+	RouteNodeHeap(int nodesCount) {
+		this.positions = new int[nodesCount];
+		Arrays.fill(positions, -1);
+		this.nodes = new int[16];
+		this.keys = new float[nodes.length];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int node) {
+		return positions[node] >= 0;
+	}
+
+	public void add(int node, float key) {
+		int i = positions[node];
+		if (i >= 0) {
+			float old = keys[i];
+			keys[i] = key;
+			if (key < old) {
+				siftUp(i);
+			} else if (key > old) {
+				siftDown(i);
+			}
+			return;
+		}
+		if (size == nodes.length) {
+			int ns = size + (size >> 1);
+			nodes = Arrays.copyOf(nodes, ns);
+			keys = Arrays.copyOf(keys, ns);
+		}
+		nodes[size] = node;
+		keys[size] = key;
+		positions[node] = size;
+		siftUp(size++);
+	}
+
+	public float peekKey() {
+		return size == 0 ? Float.POSITIVE_INFINITY : keys[0];
+	}
+
+	/**
+	 * @return node with minimal key or -1 if heap is empty
+	 */
+	public int poll() {
+		if (size == 0) {
+			return -1;
+		}
+		int top = nodes[0];
+		size--;
+		if (size > 0) {
+			nodes[0] = nodes[size];
+			keys[0] = keys[size];
+			positions[nodes[0]] = 0;
+			siftDown(0);
+		}
+		positions[top] = -1;
+		return top;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			positions[nodes[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int i) {
+		int n = nodes[i];
+		float k = keys[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] <= k) {
+				break;
+			}
+			move(parent, i);
+			i = parent;
+		}
+		nodes[i] = n;
+		keys[i] = k;
+		positions[n] = i;
+	}
+
+	private void siftDown(int i) {
+		int n = nodes[i];
+		float k = keys[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && keys[child + 1] < keys[child]) {
+				child++;
+			}
+			if (k <= keys[child]) {
+				break;
+			}
+			move(child, i);
+			i = child;
+		}
+		nodes[i] = n;
+		keys[i] = k;
+		positions[n] = i;
+	}
+
+	private void move(int from, int to) {
+		nodes[to] = nodes[from];
+		keys[to] = keys[from];
+		positions[nodes[to]] = to;
+	}
+}
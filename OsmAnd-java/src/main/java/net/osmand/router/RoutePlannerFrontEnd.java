@@ -31,6 +31,8 @@ public class RoutePlannerFrontEnd {
 	protected static final Log log = PlatformUtil.getLog(RoutePlannerFrontEnd.class);
 	// Check issue #8649
 	protected static final double GPS_POSSIBLE_ERROR = 7;
+	// meters, resolution of isochrone polygons
+	public static final double ISOCHRONE_CELL_SIZE = 100;
 	public boolean useSmartRouteRecalculation = true;
 	public boolean useNativeApproximation = true;
 
@@ -115,6 +117,117 @@ public class RoutePlannerFrontEnd {
 		}
 	}
 
+	public static class ReachableSegment {
+		public final RouteDataObject road;
+		public final int startPoint;
+		public final int endPoint;
+		// reachable part of the segment [startPart..part] (0 is start point, 1 is end point),
+		// startPart > 0 only on the segment of the search start
+		public final float startPart;
+		public final float part;
+		public final float startTime;
+		public final float endTime;
+		public final float startDistance;
+		public final float endDistance;
+
+		public ReachableSegment(RouteDataObject road, int startPoint, int endPoint, float startPart, float part,
+				float startTime, float endTime, float startDistance, float endDistance) {
+			this.road = road;
+			this.startPoint = startPoint;
+			this.endPoint = endPoint;
+			this.startPart = startPart;
+			this.part = part;
+			this.startTime = startTime;
+			this.endTime = endTime;
+			this.startDistance = startDistance;
+			this.endDistance = endDistance;
+		}
+
+		public int getStartX31() {
+			return getX31(startPart);
+		}
+
+		public int getStartY31() {
+			return getY31(startPart);
+		}
+
+		public int getEndX31() {
+			return getX31(part);
+		}
+
+		public int getEndY31() {
+			return getY31(part);
+		}
+
+		int getX31(float p) {
+			int sx = road.getPoint31XTile(startPoint);
+			return sx + (int) ((road.getPoint31XTile(endPoint) - (long) sx) * p);
+		}
+
+		int getY31(float p) {
+			int sy = road.getPoint31YTile(startPoint);
+			return sy + (int) ((road.getPoint31YTile(endPoint) - (long) sy) * p);
+		}
+	}
+
+	public static class Isochrone {
+		public final LatLon start;
+		public final boolean byDistance;
+		// all reachable segments within the largest budget
+		public final List<ReachableSegment> segments = new ArrayList<ReachableSegment>();
+		// ascending budgets, polygons of the band contain roads reachable within its budget
+		public final List<IsochroneBand> bands = new ArrayList<IsochroneBand>();
+
+		public Isochrone(LatLon start, boolean byDistance) {
+			this.start = start;
+			this.byDistance = byDistance;
+		}
+	}
+
+	public static class IsochroneBand {
+		// seconds or meters
+		public final float budget;
+		// closed rings, the largest first
+		public final List<List<LatLon>> polygons;
+
+		public IsochroneBand(float budget, List<List<LatLon>> polygons) {
+			this.budget = budget;
+			this.polygons = polygons;
+		}
+	}
+
+	public static class RouteMatrix {
+		public final List<LatLon> origins;
+		public final List<LatLon> destinations;
+		// [origin][destination] in seconds and meters, Float.POSITIVE_INFINITY if destination is not reachable
+		public final float[][] times;
+		public final float[][] distances;
+
+		public RouteMatrix(List<LatLon> origins, List<LatLon> destinations) {
+			this.origins = origins;
+			this.destinations = destinations;
+			this.times = new float[origins.size()][destinations.size()];
+			this.distances = new float[origins.size()][destinations.size()];
+			for (int i = 0; i < origins.size(); i++) {
+				Arrays.fill(times[i], Float.POSITIVE_INFINITY);
+				Arrays.fill(distances[i], Float.POSITIVE_INFINITY);
+			}
+		}
+
+		// cost matrix for TspAnt.readGraph / TspHeldKarp.readInput
+		public double[][] getCosts(boolean byTime) {
+			float[][] src = byTime ? times : distances;
+			double[][] costs = new double[src.length][];
+			for (int i = 0; i < src.length; i++) {
+				costs[i] = new double[src[i].length];
+				for (int j = 0; j < src[i].length; j++) {
+					costs[i][j] = src[i][j];
+				}
+			}
+			return costs;
+		}
+	}
+
 	public RoutingContext buildRoutingContext(RoutingConfiguration config, NativeLibrary nativeLibrary, BinaryMapIndexReader[] map, RouteCalculationMode rm) {
 		return new RoutingContext(config, nativeLibrary, map, rm);
 	}
@@ -226,6 +339,84 @@ public class RoutePlannerFrontEnd {
 		return searchRoute(ctx, start, end, intermediates, null);
 	}
 
+	/**
+	 * Calculates time & distance between all origins and destinations with one Dijkstra expansion per origin
+	 * (instead of origins * destinations route calculations). Loaded tiles of the context are shared by all searches.
+	 */
+	public RouteMatrix searchRouteMatrix(final RoutingContext ctx, List<LatLon> origins, List<LatLon> destinations)
+			throws IOException, InterruptedException {
+		long timeToCalculate = System.nanoTime();
+		if (ctx.calculationProgress == null) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		RouteMatrix matrix = new RouteMatrix(origins, destinations);
+		List<RouteSegmentPoint> targets = new ArrayList<RouteSegmentPoint>();
+		for (LatLon l : destinations) {
+			targets.add(findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null));
+		}
+		OneToManyRoutePlanner planner = new OneToManyRoutePlanner(ctx, targets);
+		ctx.calculationProgress.totalIterations = origins.size();
+		for (int i = 0; i < origins.size(); i++) {
+			ctx.calculationProgress.iteration = i;
+			LatLon l = origins.get(i);
+			RouteSegmentPoint start = findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null);
+			if (start != null) {
+				planner.search(start, matrix.times[i], matrix.distances[i]);
+			}
+		}
+		ctx.calculationProgress.timeToCalculate = (System.nanoTime() - timeToCalculate);
+		return matrix;
+	}
+
+	public Isochrone searchIsochrone(final RoutingContext ctx, LatLon start, float[] budgets, boolean byDistance)
+			throws IOException, InterruptedException {
+		return searchIsochrone(ctx, start, budgets, byDistance, ISOCHRONE_CELL_SIZE);
+	}
+
+	/**
+	 * One-to-all search from start bounded by the largest budget (seconds or meters),
+	 * returns reachable segments and concave polygon for each budget band (e.g. 5/10/15 minutes)
+	 */
+	public Isochrone searchIsochrone(final RoutingContext ctx, LatLon start, float[] budgets, boolean byDistance,
+			double cellSizeMeters) throws IOException, InterruptedException {
+		long timeToCalculate = System.nanoTime();
+		if (ctx.calculationProgress == null) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		Isochrone isochrone = new Isochrone(start, byDistance);
+		RouteSegmentPoint startPoint = findRouteSegment(start.getLatitude(), start.getLongitude(), ctx, null);
+		if (startPoint == null || budgets.length == 0) {
+			return isochrone;
+		}
+		float[] sorted = Arrays.copyOf(budgets, budgets.length);
+		Arrays.sort(sorted);
+		OneToManyRoutePlanner planner = new OneToManyRoutePlanner(ctx, Collections.<RouteSegmentPoint>emptyList());
+		isochrone.segments.addAll(planner.searchReachable(startPoint, sorted[sorted.length - 1], byDistance));
+		int cellSize = ReachabilityPolygonBuilder.getCellSize31(startPoint.preciseX, startPoint.preciseY, cellSizeMeters);
+		for (float budget : sorted) {
+			isochrone.bands.add(new IsochroneBand(budget,
+					buildReachablePolygons(isochrone.segments, startPoint, budget, byDistance, cellSize)));
+		}
+		ctx.calculationProgress.timeToCalculate = (System.nanoTime() - timeToCalculate);
+		return isochrone;
+	}
+
+	static List<List<LatLon>> buildReachablePolygons(List<ReachableSegment> segments, RouteSegmentPoint startPoint,
+			float budget, boolean byDistance, int cellSize) {
+		ReachabilityPolygonBuilder builder = new ReachabilityPolygonBuilder(cellSize);
+		builder.addPoint(startPoint.preciseX, startPoint.preciseY);
+		for (ReachableSegment s : segments) {
+			float from = byDistance ? s.startDistance : s.startTime;
+			float to = byDistance ? s.endDistance : s.endTime;
+			if (from >= budget) {
+				continue;
+			}
+			float part = to <= budget ? s.part : s.startPart + (s.part - s.startPart) * (budget - from) / (to - from);
+			builder.addLine(s.getStartX31(), s.getStartY31(), s.getX31(part), s.getY31(part));
+		}
+		return builder.build();
+	}
+
 	public void setUseFastRecalculation(boolean use) {
 		useSmartRouteRecalculation = use;
 	}
@@ -697,6 +888,19 @@ public class RoutePlannerFrontEnd {
 				b = l;
 			}
 		}
+		// overlay replaces only BASE pre-calculation of COMPLEX mode, NORMAL mode isn't directed
+		if (ctx.calculationMode == RouteCalculationMode.COMPLEX && routeDirection == null
+				&& ctx.config.contractionHierarchy != null && maxDistance > RoutingConfiguration.DEVIATION_RADIUS * 6) {
+			List<LatLon> points = new ArrayList<LatLon>();
+			points.add(start);
+			if (!intermediatesEmpty) {
+				points.addAll(intermediates);
+			}
+			points.add(end);
+			// falls back to BASE pre-calculation if points are not connected in overlay
+			routeDirection = ctx.config.contractionHierarchy.buildRouteDirection(ctx.config, points,
+					ctx.getRouter().getMaxSpeed());
+		}
 		if (ctx.calculationMode == RouteCalculationMode.COMPLEX && routeDirection == null
 				&& maxDistance > RoutingConfiguration.DEVIATION_RADIUS * 6) {
 			ctx.calculationProgress.totalIterations++;
@@ -0,0 +1,133 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Indexed binary heap of A* frontier ordered by f(x) = g(x) + heuristicCoefficient * h(x).
+ * Keys are kept in primitive array (comparisons don't touch segments) and each segment
+ * has its position in the heap, so adding the segment that is already queued updates its key
+ * instead of creating a duplicate entry (PriorityQueue kept stale copies with mutated keys).
+ */
+class RouteSegmentHeap {
+
+	private final double heuristicCoefficient;
+	private RouteSegment[] segments;
+	private double[] keys;
+	private int size;
+
+	RouteSegmentHeap(int initialCapacity, double heuristicCoefficient) {
+		this.heuristicCoefficient = heuristicCoefficient;
+		this.segments = new RouteSegment[Math.max(initialCapacity, 2)];
+		this.keys = new double[segments.length];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(RouteSegment segment) {
+		int i = segment.heapIndex;
+		return i >= 0 && i < size && segments[i] == segment;
+	}
+
+	public void add(RouteSegment segment) {
+		double key = segment.distanceFromStart + heuristicCoefficient * segment.distanceToEnd;
+		if (contains(segment)) {
+			int i = segment.heapIndex;
+			double old = keys[i];
+			keys[i] = key;
+			if (key < old) {
+				siftUp(i);
+			} else if (key > old) {
+				siftDown(i);
+			}
+			return;
+		}
+		if (size == segments.length) {
+			int ns = size + (size >> 1);
+			segments = Arrays.copyOf(segments, ns);
+			keys = Arrays.copyOf(keys, ns);
+		}
+		segments[size] = segment;
+		keys[size] = key;
+		segment.heapIndex = size;
+		siftUp(size++);
+	}
+
+	public RouteSegment peek() {
+		return size == 0 ? null : segments[0];
+	}
+
+	public RouteSegment poll() {
+		if (size == 0) {
+			return null;
+		}
+		RouteSegment top = segments[0];
+		size--;
+		if (size > 0) {
+			segments[0] = segments[size];
+			keys[0] = keys[size];
+			segments[0].heapIndex = 0;
+			siftDown(0);
+		}
+		segments[size] = null;
+		top.heapIndex = -1;
+		return top;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			segments[i].heapIndex = -1;
+			segments[i] = null;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int i) {
+		RouteSegment s = segments[i];
+		double k = keys[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] <= k) {
+				break;
+			}
+			move(parent, i);
+			i = parent;
+		}
+		segments[i] = s;
+		keys[i] = k;
+		s.heapIndex = i;
+	}
+
+	private void siftDown(int i) {
+		RouteSegment s = segments[i];
+		double k = keys[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && keys[child + 1] < keys[child]) {
+				child++;
+			}
+			if (k <= keys[child]) {
+				break;
+			}
+			move(child, i);
+			i = child;
+		}
+		segments[i] = s;
+		keys[i] = k;
+		s.heapIndex = i;
+	}
+
+	private void move(int from, int to) {
+		segments[to] = segments[from];
+		keys[to] = keys[from];
+		segments[to].heapIndex = to;
+	}
+}
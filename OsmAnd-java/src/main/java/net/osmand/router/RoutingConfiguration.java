@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Executor;
 
 import gnu.trove.list.array.TIntArrayList;
 
@@ -60,6 +61,17 @@ public class RoutingConfiguration {
 	
 	// 1.6 Time to calculate all access restrictions based on conditions
 	public long routeCalculationTime = 0;
+
+	// 1.7 Run forward and reverse A* (planRoadDirection = 0) in 2 threads
+	public boolean parallelBidirectionalSearch = false;
+	// Runs reverse A* of parallel search (null - shared pool), tasks shouldn't wait for other tasks to start
+	public Executor parallelSearchExecutor;
+
+	// 1.8 Precomputed shortcut overlay used instead of BASE pre-calculation (null if not available)
+	public RouteContractionHierarchy contractionHierarchy;
+
+	// 1.9 Decoded tiles shared between routing contexts (null - each context reads tiles itself)
+	public RoutingTileCache tileCache;
 	
 	
 	// extra points to be inserted in ways (quad tree is based on 31 coords)
@@ -124,6 +136,9 @@ public class RoutingConfiguration {
 		private Map<String, String> attributes = new LinkedHashMap<>();
 		private Set<Long> impassableRoadLocations = new HashSet<>();
 		private QuadTree<Node> directionPointsBuilder;
+		private RouteContractionHierarchy contractionHierarchy;
+		private RoutingTileCache tileCache;
+		private Executor parallelSearchExecutor;
 
 		public Builder() {
 		}
@@ -186,6 +201,12 @@ public class RoutingConfiguration {
 				i.nativeMemoryLimitation = memoryLimits.nativeMemoryLimitMb * (1l << 20);
 			}
 			i.planRoadDirection = parseSilentInt(getAttribute(i.router, "planRoadDirection"), i.planRoadDirection);
+			i.parallelBidirectionalSearch = Boolean.parseBoolean(getAttribute(i.router, "parallelBidirectionalSearch"));
+			i.tileCache = tileCache;
+			i.parallelSearchExecutor = parallelSearchExecutor;
+			if (contractionHierarchy != null && contractionHierarchy.isApplicable(i)) {
+				i.contractionHierarchy = contractionHierarchy;
+			}
 			if (directionPointsBuilder != null) {
 				QuadRect rect = new QuadRect(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
 				List<net.osmand.osm.edit.Node> lst = directionPointsBuilder.queryInBox(rect, new ArrayList<Node>());
@@ -206,6 +227,21 @@ public class RoutingConfiguration {
 			return this;
 		}
 
+		public Builder setContractionHierarchy(RouteContractionHierarchy contractionHierarchy) {
+			this.contractionHierarchy = contractionHierarchy;
+			return this;
+		}
+
+		public Builder setTileCache(RoutingTileCache tileCache) {
+			this.tileCache = tileCache;
+			return this;
+		}
+
+		public Builder setParallelSearchExecutor(Executor parallelSearchExecutor) {
+			this.parallelSearchExecutor = parallelSearchExecutor;
+			return this;
+		}
+
 		public Set<Long> getImpassableRoadLocations() {
 			return impassableRoadLocations;
 		}
@@ -27,6 +27,7 @@ import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
 import net.osmand.binary.BinaryMapRouteReaderAdapter;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.data.QuadPoint;
 import net.osmand.data.QuadRect;
@@ -86,6 +87,9 @@ public class RoutingContext {
 	// 3. Warm object caches
 	ArrayList<RouteSegment> segmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	ArrayList<RouteSegment> segmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	// separate caches for reverse search (parallel bidirectional search runs it in another thread)
+	ArrayList<RouteSegment> reverseSegmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	ArrayList<RouteSegment> reverseSegmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	
 	
 	// 5. debug information (package accessor)
@@ -285,7 +289,10 @@ public class RoutingContext {
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
 				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				// direction points are inserted into objects, so such tiles are not shared
+				boolean cached = config.tileCache != null && points.isEmpty();
+				List<RouteDataObject> res = cached ? config.tileCache.loadRouteIndexData(reader, ts.subregion, global)
+						: reader.loadRouteIndexData(ts.subregion);
 				
 				if (toLoad != null) {
 					toLoad.addAll(res);
@@ -293,6 +300,9 @@ public class RoutingContext {
 					for (RouteDataObject ro : res) {
 						if (ro != null) {
 							if (config.routeCalculationTime != 0) {
+								if (cached) {
+									ro = copyWithConditionalTags(ro);
+								}
 								ro.processConditionalTags(config.routeCalculationTime);
 							}
 							if (config.router.acceptLine(ro)) {
@@ -354,6 +364,36 @@ public class RoutingContext {
 
 	
 
+	// conditional tags are applied in place, copy arrays of shared (cached) object if they would be changed
+	private static RouteDataObject copyWithConditionalTags(RouteDataObject ro) {
+		boolean conditional = false;
+		for (int i = 0; i < ro.types.length && !conditional; i++) {
+			RouteTypeRule r = ro.region.quickGetEncodingRule(ro.types[i]);
+			conditional = r != null && r.conditional();
+		}
+		if (ro.pointTypes != null) {
+			for (int i = 0; i < ro.pointTypes.length && !conditional; i++) {
+				int[] pTypes = ro.pointTypes[i];
+				for (int j = 0; pTypes != null && j < pTypes.length && !conditional; j++) {
+					RouteTypeRule r = ro.region.quickGetEncodingRule(pTypes[j]);
+					conditional = r != null && r.conditional();
+				}
+			}
+		}
+		if (!conditional) {
+			return ro;
+		}
+		RouteDataObject copy = new RouteDataObject(ro);
+		copy.types = ro.types.clone();
+		if (ro.pointTypes != null) {
+			copy.pointTypes = new int[ro.pointTypes.length][];
+			for (int i = 0; i < ro.pointTypes.length; i++) {
+				copy.pointTypes[i] = ro.pointTypes[i] == null ? null : ro.pointTypes[i].clone();
+			}
+		}
+		return copy;
+	}
+
 	private List<RoutingSubregionTile> loadTileHeaders(final int x31, final int y31) {
 		final int zoomToLoad = 31 - config.ZOOM_TO_LOAD_TILES;
 		int tileX = x31 >> zoomToLoad;
@@ -940,12 +980,15 @@ public class RoutingContext {
 		public int size = 0;
 		public int allRoutes = 0;
 		public int coordinates = 0;
+		// shared RoutingTileCache
+		public int cacheHits = 0;
+		public int cacheMisses = 0;
 		
 		@Override
 		public String toString() {
 			return "All routes " + allRoutes + 
 					" size " + (size / 1024f) + " KB coordinates " + coordinates + " ratio coord " + (((float)size) / coordinates)
-					+ " ratio routes " + (((float)size) / allRoutes);
+					+ " ratio routes " + (((float)size) / allRoutes) + " cache hits " + cacheHits + " misses " + cacheMisses;
 		}
 
 		public void addObject(RouteDataObject o) {
@@ -0,0 +1,150 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.RoutingContext.TileStatistics;
+
+/**
+ * Process wide cache of decoded routing tiles shared between RoutingContexts (e.g. concurrent requests on server).
+ * Tiles are keyed by route region (shared by all readers of the same file) and subregion file pointer,
+ * evicted in LRU order when estimated size exceeds the limit.
+ * Cached RouteDataObjects are shared and must not be modified (RoutingContext copies them before
+ * applying conditional tags).
+ * Cache holds route regions of readers, so {@link #clear()} must be called when maps are closed or replaced.
+ */
+public class RoutingTileCache {
+
+	private final long maxSize;
+	private long size;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private final LinkedHashMap<TileKey, CachedTile> tiles = new LinkedHashMap<TileKey, CachedTile>(64, 0.75f, true);
+
+	public RoutingTileCache(long maxSizeBytes) {
+		this.maxSize = maxSizeBytes;
+	}
+
+	public List<RouteDataObject> loadRouteIndexData(BinaryMapIndexReader reader, RouteSubregion subregion,
+			TileStatistics stats) throws IOException {
+		TileKey key = new TileKey(subregion.routeReg, subregion.filePointer);
+		CachedTile tile = get(key);
+		if (tile != null) {
+			if (stats != null) {
+				stats.cacheHits++;
+			}
+			return tile.objects;
+		}
+		if (stats != null) {
+			stats.cacheMisses++;
+		}
+		// decode outside of lock, concurrent misses of the same tile keep the first stored result
+		List<RouteDataObject> objects = Collections.unmodifiableList(reader.loadRouteIndexData(subregion));
+		int sz = 0;
+		for (RouteDataObject ro : objects) {
+			if (ro != null) {
+				sz += RoutingContext.getEstimatedSize(ro);
+			}
+		}
+		return put(key, new CachedTile(objects, sz)).objects;
+	}
+
+	private synchronized CachedTile get(TileKey key) {
+		CachedTile t = tiles.get(key);
+		if (t != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return t;
+	}
+
+	private synchronized CachedTile put(TileKey key, CachedTile tile) {
+		CachedTile existing = tiles.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		tiles.put(key, tile);
+		size += tile.size;
+		Iterator<CachedTile> it = tiles.values().iterator();
+		while (size > maxSize && tiles.size() > 1 && it.hasNext()) {
+			CachedTile eldest = it.next();
+			if (eldest == tile) {
+				continue;
+			}
+			size -= eldest.size;
+			evictions++;
+			it.remove();
+		}
+		return tile;
+	}
+
+	public synchronized void clear() {
+		tiles.clear();
+		size = 0;
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getTilesCount() {
+		return tiles.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Routing tile cache " + tiles.size() + " tiles, " + (size >> 10) + " KB of " + (maxSize >> 10)
+				+ " KB, hits " + hits + ", misses " + misses + ", evictions " + evictions;
+	}
+
+	private static class CachedTile {
+		final List<RouteDataObject> objects;
+		final int size;
+
+		CachedTile(List<RouteDataObject> objects, int size) {
+			this.objects = objects;
+			this.size = size;
+		}
+	}
+
+	private static class TileKey {
+		final RouteRegion region;
+		final int filePointer;
+
+		TileKey(RouteRegion region, int filePointer) {
+			this.region = region;
+			this.filePointer = filePointer;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(region) * 31 + filePointer;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TileKey)) {
+				return false;
+			}
+			TileKey o = (TileKey) obj;
+			return region == o.region && filePointer == o.filePointer;
+		}
+	}
+}
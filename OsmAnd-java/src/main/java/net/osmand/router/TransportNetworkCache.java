@@ -0,0 +1,123 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.TransportStop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Transport stops (with merged and combined routes) of obf files loaded by tiles, shared between
+ * TransportRoutingContext of concurrent route calculations. Loaded tiles are read only, files are read by one
+ * thread at a time, readers shouldn't be used outside of cache. Memory is limited by number of tiles (least
+ * recently used are released) and by number of routes kept to merge stops of new tiles.
+ */
+public class TransportNetworkCache {
+
+	public static final int DEFAULT_MAX_TILES = 4096;
+	public static final int DEFAULT_MAX_ROUTES = 100000;
+
+	private final TransportStopsRouteReader transportStopsReader;
+	private final Object loadLock = new Object();
+	private final Map<Long, Collection<TransportStop>> tiles;
+	private final int maxRoutes;
+
+	// stats
+	private long readTime;
+	private int loadedTiles;
+
+	public TransportNetworkCache(BinaryMapIndexReader... readers) {
+		this(DEFAULT_MAX_TILES, DEFAULT_MAX_ROUTES, readers);
+	}
+
+	public TransportNetworkCache(final int maxTiles, int maxRoutes, BinaryMapIndexReader... readers) {
+		this.maxRoutes = maxRoutes;
+		transportStopsReader = new TransportStopsRouteReader(Arrays.asList(readers));
+		tiles = new LinkedHashMap<Long, Collection<TransportStop>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Collection<TransportStop>> eldest) {
+				return size() > maxTiles;
+			}
+		};
+	}
+
+	private static long getTileId(int zoom, int x, int y) {
+		return (((long) zoom) << 58) | (((long) x) << (zoom + 1)) | y;
+	}
+
+	/**
+	 * @return stops of tile, collection and loaded objects shouldn't be modified
+	 */
+	public Collection<TransportStop> getTileStops(int zoom, int x, int y) throws IOException {
+		long tileId = getTileId(zoom, x, y);
+		Collection<TransportStop> stops;
+		synchronized (tiles) {
+			stops = tiles.get(tileId);
+		}
+		if (stops != null) {
+			return stops;
+		}
+		synchronized (loadLock) {
+			synchronized (tiles) {
+				stops = tiles.get(tileId);
+			}
+			if (stops == null) {
+				long nanoTime = System.nanoTime();
+				stops = loadTile(zoom, x, y);
+				readTime += System.nanoTime() - nanoTime;
+				loadedTiles++;
+				synchronized (tiles) {
+					tiles.put(tileId, stops);
+				}
+			}
+		}
+		return stops;
+	}
+
+	// package visible for tests with generated stops
+	Collection<TransportStop> loadTile(int zoom, int x, int y) throws IOException {
+		if (transportStopsReader.getCachedRoutesCount() > maxRoutes) {
+			// routes of loaded tiles stay valid, only new tiles don't share them anymore
+			transportStopsReader.clearRoutesCache();
+		}
+		int pz = (31 - zoom);
+		BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(
+				x << pz, (x + 1) << pz, y << pz, (y + 1) << pz, -1, null);
+		return Collections.unmodifiableList(
+				new ArrayList<TransportStop>(transportStopsReader.readMergedTransportStops(sr)));
+	}
+
+	public void clear() {
+		synchronized (loadLock) {
+			synchronized (tiles) {
+				tiles.clear();
+			}
+			transportStopsReader.clearRoutesCache();
+		}
+	}
+
+	public int getTilesCount() {
+		synchronized (tiles) {
+			return tiles.size();
+		}
+	}
+
+	public int getLoadedTiles() {
+		synchronized (loadLock) {
+			return loadedTiles;
+		}
+	}
+
+	public long getReadTime() {
+		synchronized (loadLock) {
+			return readTime;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package net.osmand.router;
+
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+import net.osmand.util.MapUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Transport routes and stops as flat arrays for round based search (see TransportRaptorPlanner).
+ * Stops are indexed in order of appearance in routes, stops with the same id are merged.
+ * Travel times along routes are calculated once as in TransportRoutePlanner: by schedule (avgStopIntervals)
+ * or by stop time and speed of route type. Walking transfers are stops within cfg.walkChangeRadius.
+ * Immutable after creation.
+ */
+public class TransportRaptorNetwork {
+
+	final TransportRoutingConfiguration cfg;
+
+	final TransportStop[] stops;
+	final double[] stopLat;
+	final double[] stopLon;
+
+	final TransportRoute[] routes;
+	// route r has stops [routeStart[r], routeStart[r + 1]) of routeStops
+	final int[] routeStart;
+	final int[] routeStops;
+	// travel time (seconds) and distance from first stop of route, same layout as routeStops
+	final double[] routeTime;
+	final double[] routeDist;
+	// schedule mode: sorted departures of trips from first stop (10 seconds of day)
+	final int[][] routeTrips;
+
+	// stop s is served by [stopRouteStart[s], stopRouteStart[s + 1]) routes at positions of route
+	final int[] stopRouteStart;
+	final int[] stopRoute;
+	final int[] stopRoutePos;
+
+	// stop s has walking transfers [transferStart[s], transferStart[s + 1]) (without stop itself)
+	final int[] transferStart;
+	final int[] transferStop;
+	final float[] transferDist;
+
+	public TransportRaptorNetwork(TransportRoutingConfiguration cfg, Collection<TransportRoute> transportRoutes) {
+		this.cfg = cfg;
+		TLongObjectHashMap<Integer> stopIndexes = new TLongObjectHashMap<Integer>();
+		TLongObjectHashMap<TransportRoute> addedRoutes = new TLongObjectHashMap<TransportRoute>();
+		List<TransportStop> stopsList = new ArrayList<TransportStop>();
+		List<TransportRoute> routesList = new ArrayList<TransportRoute>();
+		List<int[]> tripsList = new ArrayList<int[]>();
+		TIntArrayList starts = new TIntArrayList();
+		TIntArrayList routeStopsList = new TIntArrayList();
+		List<double[]> times = new ArrayList<double[]>();
+		List<double[]> dists = new ArrayList<double[]>();
+		for (TransportRoute route : transportRoutes) {
+			List<TransportStop> forwardStops = route.getForwardStops();
+			if (forwardStops.size() < 2 || addedRoutes.containsKey(route.getId())) {
+				continue;
+			}
+			int[] trips = null;
+			if (cfg.useSchedule) {
+				trips = getTrips(route.getSchedule());
+				if (trips == null) {
+					continue;
+				}
+			} else if (cfg.getSpeedByRouteType(route.getType()) == 0) {
+				continue;
+			}
+			addedRoutes.put(route.getId(), route);
+			routesList.add(route);
+			tripsList.add(trips);
+			starts.add(routeStopsList.size());
+			for (TransportStop stop : forwardStops) {
+				Integer ind = stop.getId() == null ? null : stopIndexes.get(stop.getId());
+				if (ind == null) {
+					ind = stopsList.size();
+					stopsList.add(stop);
+					if (stop.getId() != null) {
+						stopIndexes.put(stop.getId(), ind);
+					}
+				}
+				routeStopsList.add(ind);
+			}
+			double[] time = new double[forwardStops.size()];
+			double[] dist = new double[forwardStops.size()];
+			calculateTravelTimes(route, time, dist);
+			times.add(time);
+			dists.add(dist);
+		}
+		starts.add(routeStopsList.size());
+
+		stops = stopsList.toArray(new TransportStop[0]);
+		stopLat = new double[stops.length];
+		stopLon = new double[stops.length];
+		for (int i = 0; i < stops.length; i++) {
+			stopLat[i] = stops[i].getLocation().getLatitude();
+			stopLon[i] = stops[i].getLocation().getLongitude();
+		}
+		routes = routesList.toArray(new TransportRoute[0]);
+		routeTrips = tripsList.toArray(new int[0][]);
+		routeStart = starts.toArray();
+		routeStops = routeStopsList.toArray();
+		routeTime = new double[routeStops.length];
+		routeDist = new double[routeStops.length];
+		for (int r = 0; r < routes.length; r++) {
+			System.arraycopy(times.get(r), 0, routeTime, routeStart[r], routeStart[r + 1] - routeStart[r]);
+			System.arraycopy(dists.get(r), 0, routeDist, routeStart[r], routeStart[r + 1] - routeStart[r]);
+		}
+
+		// stop to routes index by counting sort
+		stopRouteStart = new int[stops.length + 1];
+		for (int stop : routeStops) {
+			stopRouteStart[stop + 1]++;
+		}
+		for (int s = 0; s < stops.length; s++) {
+			stopRouteStart[s + 1] += stopRouteStart[s];
+		}
+		stopRoute = new int[routeStops.length];
+		stopRoutePos = new int[routeStops.length];
+		int[] fill = new int[stops.length];
+		for (int r = 0; r < routes.length; r++) {
+			for (int p = routeStart[r]; p < routeStart[r + 1]; p++) {
+				int s = routeStops[p];
+				int ind = stopRouteStart[s] + fill[s]++;
+				stopRoute[ind] = r;
+				stopRoutePos[ind] = p - routeStart[r];
+			}
+		}
+
+		TIntArrayList transferStarts = new TIntArrayList();
+		TIntArrayList transferStops = new TIntArrayList();
+		TIntArrayList transferDists = new TIntArrayList();
+		calculateTransfers(transferStarts, transferStops, transferDists);
+		transferStart = transferStarts.toArray();
+		transferStop = transferStops.toArray();
+		transferDist = new float[transferDists.size()];
+		for (int i = 0; i < transferDist.length; i++) {
+			transferDist[i] = Float.intBitsToFloat(transferDists.get(i));
+		}
+	}
+
+	private static int[] getTrips(TransportSchedule schedule) {
+		if (schedule == null || schedule.tripIntervals.isEmpty()) {
+			return null;
+		}
+		int[] trips = new int[schedule.tripIntervals.size()];
+		int t = 0;
+		for (int i = 0; i < trips.length; i++) {
+			t += schedule.tripIntervals.getQuick(i);
+			trips[i] = t;
+		}
+		return trips;
+	}
+
+	private void calculateTravelTimes(TransportRoute route, double[] time, double[] dist) {
+		List<TransportStop> forwardStops = route.getForwardStops();
+		float speed = cfg.useSchedule ? 0 : cfg.getSpeedByRouteType(route.getType());
+		TIntArrayList intervals = cfg.useSchedule ? route.getSchedule().avgStopIntervals : null;
+		for (int k = 1; k < forwardStops.size(); k++) {
+			double segmentDist = MapUtils.getDistance(forwardStops.get(k - 1).getLocation(),
+					forwardStops.get(k).getLocation());
+			dist[k] = dist[k - 1] + segmentDist;
+			if (intervals != null) {
+				time[k] = time[k - 1] + (intervals.size() >= k ? intervals.getQuick(k - 1) * 10 : 0);
+			} else {
+				time[k] = time[k - 1] + cfg.stopTime + segmentDist / speed;
+			}
+		}
+	}
+
+	private void calculateTransfers(TIntArrayList starts, TIntArrayList targets, TIntArrayList dists) {
+		// 31 tile units are shorter to the poles, so size of cells is chosen for max latitude
+		double maxLat = 0;
+		for (double lat : stopLat) {
+			maxLat = Math.max(maxLat, Math.min(85, Math.abs(lat)));
+		}
+		double unitDist = MapUtils.getDistance(maxLat, 0, maxLat, 360.0 / (1 << 20)) / (1 << 11);
+		int radius31 = (int) (cfg.walkChangeRadius / unitDist) + 1;
+		int[] x31 = new int[stops.length];
+		int[] y31 = new int[stops.length];
+		// grid of cells with size of transfer radius, transfers are searched in neighbour cells
+		TLongObjectHashMap<TIntArrayList> grid = new TLongObjectHashMap<TIntArrayList>();
+		for (int s = 0; s < stops.length; s++) {
+			x31[s] = MapUtils.get31TileNumberX(stopLon[s]);
+			y31[s] = MapUtils.get31TileNumberY(stopLat[s]);
+			long cell = cellId(x31[s] / radius31, y31[s] / radius31);
+			TIntArrayList list = grid.get(cell);
+			if (list == null) {
+				list = new TIntArrayList();
+				grid.put(cell, list);
+			}
+			list.add(s);
+		}
+		for (int s = 0; s < stops.length; s++) {
+			starts.add(targets.size());
+			int cx = x31[s] / radius31;
+			int cy = y31[s] / radius31;
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					TIntArrayList list = grid.get(cellId(cx + dx, cy + dy));
+					if (list == null) {
+						continue;
+					}
+					for (int i = 0; i < list.size(); i++) {
+						int t = list.getQuick(i);
+						if (t == s) {
+							continue;
+						}
+						double d = MapUtils.getDistance(stopLat[s], stopLon[s], stopLat[t], stopLon[t]);
+						if (d <= cfg.walkChangeRadius) {
+							targets.add(t);
+							dists.add(Float.floatToRawIntBits((float) d));
+						}
+					}
+				}
+			}
+		}
+		starts.add(targets.size());
+	}
+
+	private static long cellId(int x, int y) {
+		return (((long) x) << 32) | (y & 0xffffffffL);
+	}
+
+	public int getStopsCount() {
+		return stops.length;
+	}
+
+	public int getRoutesCount() {
+		return routes.length;
+	}
+
+	/**
+	 * @return indexes of stops within radius (meters)
+	 */
+	TIntArrayList getStopsAround(double lat, double lon, double radius) {
+		TIntArrayList res = new TIntArrayList();
+		for (int s = 0; s < stops.length; s++) {
+			if (MapUtils.getDistance(lat, lon, stopLat[s], stopLon[s]) < radius) {
+				res.add(s);
+			}
+		}
+		return res;
+	}
+}
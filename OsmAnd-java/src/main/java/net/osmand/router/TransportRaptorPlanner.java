@@ -0,0 +1,336 @@
+package net.osmand.router;
+
+import net.osmand.data.LatLon;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
+import net.osmand.util.MapUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Round based public transport search (RAPTOR) over TransportRaptorNetwork of routing context.
+ * Round k finds earliest arrivals to stops with k rides, only routes of stops improved in previous round are
+ * scanned. Result contains route for every number of rides which arrives earlier than routes with less rides
+ * (Pareto optimal by changes and arrival time). Times are the same as in TransportRoutePlanner: walk to first stop,
+ * change and boarding time for next rides, travel time by schedule or route speed.
+ */
+public class TransportRaptorPlanner {
+
+	private static final double INF = Double.POSITIVE_INFINITY;
+
+	public List<TransportRouteResult> buildRoute(TransportRoutingContext ctx, LatLon start, LatLon end)
+			throws IOException, InterruptedException {
+		ctx.startCalcTime = System.currentTimeMillis();
+		TransportRaptorNetwork network = ctx.getRaptorNetwork(start, end);
+		if (network == null) {
+			// area is too big to load network
+			return Collections.<TransportRouteResult>emptyList();
+		}
+		return buildRoute(ctx, network, start, end);
+	}
+
+	public List<TransportRouteResult> buildRoute(TransportRoutingContext ctx, TransportRaptorNetwork network,
+			LatLon start, LatLon end) throws InterruptedException {
+		Search search = new Search(ctx, network);
+		List<TransportRouteResult> results = search.run(start, end);
+		if (results != null) {
+			System.out.println(String.format(Locale.US,
+					"Calculated %.1f seconds (round based), found %d results, visited %d routes / %d stops, network %d routes / %d stops",
+					(System.currentTimeMillis() - ctx.startCalcTime) / 1000.0, results.size(), ctx.visitedRoutesCount,
+					ctx.visitedStops, network.getRoutesCount(), network.getStopsCount()));
+		}
+		return results;
+	}
+
+	private static class Search {
+		final TransportRoutingContext ctx;
+		final TransportRoutingConfiguration cfg;
+		final TransportRaptorNetwork n;
+		final int rides;
+
+		// arrival[k][s] - arrival to stop s by k-th ride, ready[k][s] - time to board (k + 1)-th ride at stop s
+		final double[][] arrival;
+		final double[][] ready;
+		// best values for all rounds (for pruning)
+		final double[] bestArrival;
+		final double[] bestReady;
+		// arrival labels: route, boarding and exit positions in route, trip (schedule)
+		final int[][] arrRoute;
+		final int[][] arrBoardPos;
+		final int[][] arrExitPos;
+		final int[][] arrTrip;
+		// ready labels: stop of arrival (-1 for start) and walk distance
+		final int[][] readyFrom;
+		final float[][] readyWalk;
+
+		final int[] routeFirstPos;
+		final double[] endWalkDist;
+
+		Search(TransportRoutingContext ctx, TransportRaptorNetwork network) {
+			this.ctx = ctx;
+			this.cfg = ctx.cfg;
+			this.n = network;
+			this.rides = cfg.maxNumberOfChanges + 1;
+			int stops = n.stops.length;
+			arrival = new double[rides + 1][];
+			ready = new double[rides + 1][];
+			arrRoute = new int[rides + 1][];
+			arrBoardPos = new int[rides + 1][];
+			arrExitPos = new int[rides + 1][];
+			arrTrip = new int[rides + 1][];
+			readyFrom = new int[rides + 1][];
+			readyWalk = new float[rides + 1][];
+			for (int k = 0; k <= rides; k++) {
+				arrival[k] = newTimes(stops);
+				ready[k] = newTimes(stops);
+				arrRoute[k] = new int[stops];
+				arrBoardPos[k] = new int[stops];
+				arrExitPos[k] = new int[stops];
+				arrTrip[k] = new int[stops];
+				readyFrom[k] = new int[stops];
+				readyWalk[k] = new float[stops];
+			}
+			bestArrival = newTimes(stops);
+			bestReady = newTimes(stops);
+			routeFirstPos = new int[n.routes.length];
+			Arrays.fill(routeFirstPos, -1);
+			endWalkDist = newTimes(stops);
+		}
+
+		private static double[] newTimes(int size) {
+			double[] times = new double[size];
+			Arrays.fill(times, INF);
+			return times;
+		}
+
+		private boolean isCancelled() {
+			return ctx.calculationProgress != null && ctx.calculationProgress.isCancelled;
+		}
+
+		List<TransportRouteResult> run(LatLon start, LatLon end) throws InterruptedException {
+			double totalDistance = MapUtils.getDistance(start, end);
+			// limits are the same as in TransportRoutePlanner
+			double finishTime = cfg.maxRouteTime;
+			ctx.finishTimeSeconds = cfg.finishTimeSeconds;
+			if (totalDistance > cfg.maxRouteDistance && cfg.maxRouteIncreaseSpeed > 0) {
+				int increaseTime = (int) ((totalDistance - cfg.maxRouteDistance) * 3.6 / cfg.maxRouteIncreaseSpeed);
+				finishTime += increaseTime;
+				ctx.finishTimeSeconds += increaseTime / 6;
+			}
+			double maxTime = finishTime + ctx.finishTimeSeconds;
+			double maxTravelTimeCmpToWalk = totalDistance / cfg.walkSpeed - cfg.changeTime / 2;
+
+			TIntArrayList marked = new TIntArrayList();
+			TIntArrayList startStops = n.getStopsAround(start.getLatitude(), start.getLongitude(), cfg.walkRadius);
+			for (int i = 0; i < startStops.size(); i++) {
+				int s = startStops.get(i);
+				double walkDist = MapUtils.getDistance(start.getLatitude(), start.getLongitude(), n.stopLat[s], n.stopLon[s]);
+				ready[0][s] = walkDist / cfg.walkSpeed;
+				bestReady[s] = ready[0][s];
+				readyFrom[0][s] = -1;
+				readyWalk[0][s] = (float) walkDist;
+				marked.add(s);
+			}
+			TIntArrayList endStops = n.getStopsAround(end.getLatitude(), end.getLongitude(), cfg.walkRadius);
+			for (int i = 0; i < endStops.size(); i++) {
+				int s = endStops.get(i);
+				endWalkDist[s] = MapUtils.getDistance(end.getLatitude(), end.getLongitude(), n.stopLat[s], n.stopLon[s]);
+			}
+
+			List<TransportRouteResult> results = new ArrayList<TransportRouteResult>();
+			double bestTarget = maxTime;
+			for (int k = 1; k <= rides && !marked.isEmpty(); k++) {
+				TIntArrayList arrived = scanRoutes(k, marked, bestTarget);
+				if (arrived == null) {
+					return null;
+				}
+				int targetStop = -1;
+				for (int i = 0; i < endStops.size(); i++) {
+					int s = endStops.get(i);
+					double t = arrival[k][s] + endWalkDist[s] / cfg.walkSpeed;
+					if (t < bestTarget) {
+						bestTarget = t;
+						targetStop = s;
+					}
+				}
+				if (targetStop != -1 && (bestTarget < maxTravelTimeCmpToWalk || results.isEmpty())) {
+					results.add(createResult(k, targetStop, bestTarget));
+				}
+				marked = transfers(k, arrived, bestTarget);
+				if (isCancelled()) {
+					return null;
+				}
+			}
+			Collections.sort(results, new Comparator<TransportRouteResult>() {
+				@Override
+				public int compare(TransportRouteResult o1, TransportRouteResult o2) {
+					return Double.compare(o1.routeTime, o2.routeTime);
+				}
+			});
+			return results;
+		}
+
+		/**
+		 * Scans routes of marked stops for k-th ride
+		 * @return stops with improved arrival
+		 */
+		private TIntArrayList scanRoutes(int k, TIntArrayList marked, double bestTarget) {
+			TIntArrayList queue = new TIntArrayList();
+			for (int i = 0; i < marked.size(); i++) {
+				int s = marked.get(i);
+				for (int j = n.stopRouteStart[s]; j < n.stopRouteStart[s + 1]; j++) {
+					int r = n.stopRoute[j];
+					int pos = n.stopRoutePos[j];
+					if (routeFirstPos[r] == -1) {
+						queue.add(r);
+						routeFirstPos[r] = pos;
+					} else if (pos < routeFirstPos[r]) {
+						routeFirstPos[r] = pos;
+					}
+				}
+			}
+			TIntArrayList arrived = new TIntArrayList();
+			double[] prevReady = ready[k - 1];
+			double tod = cfg.scheduleTimeOfDay * 10;
+			for (int i = 0; i < queue.size(); i++) {
+				if (isCancelled()) {
+					return null;
+				}
+				int r = queue.get(i);
+				int first = routeFirstPos[r];
+				routeFirstPos[r] = -1;
+				ctx.visitedRoutesCount++;
+				int base = n.routeStart[r];
+				int length = n.routeStart[r + 1] - base;
+				int[] trips = n.routeTrips[r];
+				// boarded ride: departure from first stop of route (seconds from start of search) and trip
+				double departure = INF;
+				int trip = -1;
+				int boardPos = -1;
+				for (int p = first; p < length; p++) {
+					int s = n.routeStops[base + p];
+					ctx.visitedStops++;
+					if (boardPos != -1) {
+						double t = departure + n.routeTime[base + p];
+						if (t < bestArrival[s] && t < bestTarget) {
+							if (arrival[k][s] == INF) {
+								arrived.add(s);
+							}
+							arrival[k][s] = t;
+							bestArrival[s] = t;
+							arrRoute[k][s] = r;
+							arrBoardPos[k][s] = boardPos;
+							arrExitPos[k][s] = p;
+							arrTrip[k][s] = trip;
+						}
+					}
+					double readyTime = prevReady[s];
+					if (readyTime == INF || p == length - 1) {
+						continue;
+					}
+					if (trips == null) {
+						double d = readyTime - n.routeTime[base + p];
+						if (d < departure) {
+							departure = d;
+							boardPos = p;
+						}
+					} else {
+						// first trip departing from stop after ready time within schedule time
+						double stopOffset = n.routeTime[base + p];
+						int tr = findTrip(trips, (readyTime + tod - stopOffset) / 10);
+						if (tr != -1 && (trip == -1 || tr < trip)
+								&& trips[tr] * 10 + stopOffset - tod <= cfg.scheduleMaxTime * 10) {
+							trip = tr;
+							departure = trips[tr] * 10 - tod;
+							boardPos = p;
+						}
+					}
+				}
+			}
+			return arrived;
+		}
+
+		private static int findTrip(int[] trips, double minStart) {
+			int lo = 0;
+			int hi = trips.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (trips[mid] < minStart) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo < trips.length ? lo : -1;
+		}
+
+		/**
+		 * Changes to rides from stops where k-th ride arrived (including the same stop)
+		 * @return stops with improved ready time
+		 */
+		private TIntArrayList transfers(int k, TIntArrayList arrived, double bestTarget) {
+			TIntArrayList marked = new TIntArrayList();
+			if (k == rides) {
+				return marked;
+			}
+			double changeTime = cfg.getChangeTime() + cfg.getBoardingTime();
+			for (int i = 0; i < arrived.size(); i++) {
+				int s = arrived.get(i);
+				double t = arrival[k][s] + changeTime;
+				updateReady(k, s, s, 0, t, bestTarget, marked);
+				for (int j = n.transferStart[s]; j < n.transferStart[s + 1]; j++) {
+					float walkDist = n.transferDist[j];
+					updateReady(k, n.transferStop[j], s, walkDist, t + walkDist / cfg.walkSpeed, bestTarget, marked);
+				}
+			}
+			return marked;
+		}
+
+		private void updateReady(int k, int s, int from, float walkDist, double t, double bestTarget,
+				TIntArrayList marked) {
+			if (t < bestReady[s] && t < bestTarget) {
+				if (ready[k][s] == INF) {
+					marked.add(s);
+				}
+				ready[k][s] = t;
+				bestReady[s] = t;
+				readyFrom[k][s] = from;
+				readyWalk[k][s] = walkDist;
+			}
+		}
+
+		private TransportRouteResult createResult(int k, int targetStop, double routeTime) {
+			TransportRouteResult route = new TransportRouteResult(ctx);
+			route.routeTime = routeTime;
+			route.finishWalkDist = endWalkDist[targetStop];
+			int s = targetStop;
+			for (int j = k; j > 0; j--) {
+				int r = arrRoute[j][s];
+				int base = n.routeStart[r];
+				int boardPos = arrBoardPos[j][s];
+				int exitPos = arrExitPos[j][s];
+				int boardStop = n.routeStops[base + boardPos];
+				TransportRouteResultSegment sg = new TransportRouteResultSegment();
+				sg.route = n.routes[r];
+				sg.start = boardPos;
+				sg.end = exitPos;
+				sg.walkDist = readyWalk[j - 1][boardStop];
+				sg.walkTime = sg.walkDist / cfg.walkSpeed;
+				int trip = arrTrip[j][s];
+				sg.depTime = trip == -1 ? -1 : n.routeTrips[r][trip] + (int) (n.routeTime[base + boardPos] / 10);
+				sg.travelDistApproximate = n.routeDist[base + exitPos] - n.routeDist[base + boardPos];
+				sg.travelTime = n.routeTime[base + exitPos] - n.routeTime[base + boardPos];
+				route.segments.add(0, sg);
+				s = readyFrom[j - 1][boardStop];
+			}
+			return route;
+		}
+	}
+}
@@ -18,6 +18,7 @@ import net.osmand.data.TransportRoute;
 import net.osmand.data.TransportSchedule;
 import net.osmand.data.TransportStop;
 import net.osmand.data.TransportStopExit;
+import net.osmand.router.TransportRoutingContext.StopTransfers;
 import net.osmand.osm.edit.Node;
 import net.osmand.osm.edit.Way;
 import net.osmand.util.MapUtils;
@@ -31,6 +32,14 @@ public class TransportRoutePlanner {
 	public static final long STOPS_WAY_ID = -2;
 
 	public List<TransportRouteResult> buildRoute(TransportRoutingContext ctx, LatLon start, LatLon end) throws IOException, InterruptedException {
+		if (ctx.cfg.useRoundBasedSearch) {
+			List<TransportRouteResult> res = new TransportRaptorPlanner().buildRoute(ctx, start, end);
+			// network of round based search is limited by area of start and end (see getRaptorNetwork),
+			// route could need changes outside of it
+			if (res == null || !res.isEmpty()) {
+				return res;
+			}
+		}
 		ctx.startCalcTime = System.currentTimeMillis();
 		double totalDistance = MapUtils.getDistance(start, end);
 		List<TransportRouteSegment> startStops = ctx.getTransportStops(start);
@@ -94,7 +103,6 @@ public class TransportRoutePlanner {
 				continue;
 			}
 			TransportStop prevStop = segment.getStop(segment.segStart);
-			List<TransportRouteSegment> sgms = new ArrayList<TransportRouteSegment>();
 			for (int ind = 1 + segment.segStart; ind < segment.getLength(); ind++) {
 				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
 					return null;
@@ -115,20 +123,20 @@ public class TransportRoutePlanner {
 				if(segment.distFromStart + travelTime > finishTime + ctx.finishTimeSeconds) {
 					break;
 				}
-				sgms.clear();
-				sgms = ctx.getTransportStops(stop.x31, stop.y31, true, sgms);
+				StopTransfers transfers = ctx.getTransfers(stop);
 				ctx.visitedStops++;
-				for (TransportRouteSegment sgm : sgms) {
+				for (int k = 0; k < transfers.segments.length; k++) {
 					if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
 						return null;
 					}
+					TransportRouteSegment sgm = transfers.segments[k];
 					if (segment.wasVisited(sgm)) {
 						continue;
 					}
 					TransportRouteSegment nextSegment = new TransportRouteSegment(sgm);
 					nextSegment.parentRoute = segment;
 					nextSegment.parentStop = ind;
-					nextSegment.walkDist = MapUtils.getDistance(nextSegment.getLocation(), stop.getLocation());
+					nextSegment.walkDist = transfers.walkDist[k];
 					nextSegment.parentTravelTime = travelTime;
 					nextSegment.parentTravelDist = travelDist;
 					double walkTime = nextSegment.walkDist / ctx.cfg.walkSpeed
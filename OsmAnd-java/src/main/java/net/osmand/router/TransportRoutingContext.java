@@ -3,6 +3,7 @@ package net.osmand.router;
 import net.osmand.NativeLibrary;
 import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.data.LatLon;
+import net.osmand.data.QuadRect;
 import net.osmand.data.TransportRoute;
 import net.osmand.data.TransportStop;
 import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
@@ -30,10 +31,14 @@ public class TransportRoutingContext {
 	public Map<TransportStop, List<TransportRoute>> missingStopsCache = new HashMap<TransportStop, List<TransportRoute>>();
 
 	public TLongObjectHashMap<List<TransportRouteSegment>> quadTree;
+	// stop id -> segments to change from stop, filled once per stop
+	public TLongObjectHashMap<StopTransfers> transfers = new TLongObjectHashMap<StopTransfers>();
 	// Here we don't limit files by bbox, so it could be an issue while searching for multiple unused files
 	// Incomplete routes usually don't need more files than around Max-BBOX of start/end,
 	// so here an improvement could be introduced
 	final TransportStopsRouteReader transportStopsReader;
+	// shared tiles of stops instead of own reader (could be null)
+	final TransportNetworkCache networkCache;
 	public int finishTimeSeconds;
 
 	// stats
@@ -48,6 +53,13 @@ public class TransportRoutingContext {
 	private final int walkRadiusIn31;
 	private final int walkChangeRadiusIn31;
 
+	private static final int RAPTOR_MAX_TILES_SPAN = 16;
+	// meters, bigger areas are not loaded as one network
+	private static final double RAPTOR_MAX_AREA_SIZE = 200000;
+
+	private TransportRaptorNetwork raptorNetwork;
+	private QuadRect raptorNetworkArea;
+
 	public TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, BinaryMapIndexReader... readers) {
 		this.cfg = cfg;
 		walkRadiusIn31 = (int) (cfg.walkRadius / MapUtils.getTileDistanceWidth(31));
@@ -55,6 +67,20 @@ public class TransportRoutingContext {
 		quadTree = new TLongObjectHashMap<List<TransportRouteSegment>>();
 		this.library = library;
 		transportStopsReader = new TransportStopsRouteReader(Arrays.asList(readers));
+		networkCache = null;
+	}
+
+	/**
+	 * Context reads stops from shared cache, so several contexts could calculate routes concurrently
+	 */
+	public TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, TransportNetworkCache networkCache) {
+		this.cfg = cfg;
+		walkRadiusIn31 = (int) (cfg.walkRadius / MapUtils.getTileDistanceWidth(31));
+		walkChangeRadiusIn31 = (int) (cfg.walkChangeRadius / MapUtils.getTileDistanceWidth(31));
+		quadTree = new TLongObjectHashMap<List<TransportRouteSegment>>();
+		this.library = library;
+		transportStopsReader = null;
+		this.networkCache = networkCache;
 	}
 
 	public List<TransportRouteSegment> getTransportStops(LatLon loc) throws IOException {
@@ -67,6 +93,26 @@ public class TransportRoutingContext {
 		return loadNativeTransportStops(x, y, change, res);
 	}
 
+	/**
+	 * Segments to change from stop (same as getTransportStops(stop.x31, stop.y31, true, ...)) with walk distances,
+	 * calculated on first request for the stop.
+	 */
+	public StopTransfers getTransfers(TransportStop stop) throws IOException {
+		StopTransfers st = stop.getId() == null ? null : transfers.get(stop.getId());
+		if (st == null) {
+			List<TransportRouteSegment> sgms = getTransportStops(stop.x31, stop.y31, true,
+					new ArrayList<TransportRouteSegment>());
+			st = new StopTransfers(sgms.toArray(new TransportRouteSegment[0]), new double[sgms.size()]);
+			for (int i = 0; i < st.segments.length; i++) {
+				st.walkDist[i] = MapUtils.getDistance(st.segments[i].getLocation(), stop.getLocation());
+			}
+			if (stop.getId() != null) {
+				transfers.put(stop.getId(), st);
+			}
+		}
+		return st;
+	}
+
 	private List<TransportRouteSegment> loadNativeTransportStops(int sx, int sy, boolean change, List<TransportRouteSegment> res) throws IOException {
 		long nanoTime = System.nanoTime();
 		int d = change ? walkChangeRadiusIn31 : walkRadiusIn31;
@@ -97,14 +143,74 @@ public class TransportRoutingContext {
 		return res;
 	}
 
+	/**
+	 * Network of all stops and their routes in bbox of start and end extended by walk radius (and 1/4 of distance).
+	 * Routes are complete, but routes without stops in bbox are not in network, so changes to them are not found
+	 * (TransportRoutePlanner calculates route by segments when round based search finds nothing).
+	 * Network is reused while requested area is inside of loaded one, otherwise it's replaced by network of
+	 * requested area.
+	 * @return null if area is bigger than RAPTOR_MAX_AREA_SIZE
+	 */
+	public TransportRaptorNetwork getRaptorNetwork(LatLon start, LatLon end) throws IOException {
+		double ext = Math.max(cfg.walkRadius, MapUtils.getDistance(start, end) / 4) / MapUtils.getTileDistanceWidth(31);
+		int sx = MapUtils.get31TileNumberX(start.getLongitude());
+		int sy = MapUtils.get31TileNumberY(start.getLatitude());
+		int ex = MapUtils.get31TileNumberX(end.getLongitude());
+		int ey = MapUtils.get31TileNumberY(end.getLatitude());
+		QuadRect area = new QuadRect(Math.max(0, Math.min(sx, ex) - ext), Math.max(0, Math.min(sy, ey) - ext),
+				Math.min(Integer.MAX_VALUE, Math.max(sx, ex) + ext), Math.min(Integer.MAX_VALUE, Math.max(sy, ey) + ext));
+		if (raptorNetwork != null && raptorNetworkArea.contains(area)) {
+			return raptorNetwork;
+		}
+		if (Math.max(area.width(), area.height()) * MapUtils.getTileDistanceWidth(31) > RAPTOR_MAX_AREA_SIZE) {
+			return null;
+		}
+		long nanoTime = System.nanoTime();
+		List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		if (networkCache == null) {
+			BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(
+					(int) area.left, (int) area.right, (int) area.top, (int) area.bottom, -1, null);
+			addRoutes(transportStopsReader.readMergedTransportStops(sr), routes);
+		} else {
+			// bigger tiles for big areas, so cache isn't filled by one request
+			int zoom = cfg.ZOOM_TO_LOAD_TILES;
+			long span = (long) Math.max(area.width(), area.height());
+			while (zoom > 1 && (span >> (31 - zoom)) > RAPTOR_MAX_TILES_SPAN) {
+				zoom--;
+			}
+			int pz = 31 - zoom;
+			for (int x = (int) area.left >> pz; x <= (int) area.right >> pz; x++) {
+				for (int y = (int) area.top >> pz; y <= (int) area.bottom >> pz; y++) {
+					addRoutes(networkCache.getTileStops(zoom, x, y), routes);
+				}
+			}
+		}
+		readTime += System.nanoTime() - nanoTime;
+		raptorNetwork = new TransportRaptorNetwork(cfg, routes);
+		raptorNetworkArea = area;
+		return raptorNetwork;
+	}
+
+	private void addRoutes(Collection<TransportStop> stops, List<TransportRoute> routes) {
+		for (TransportStop s : stops) {
+			if (!s.isDeleted() && s.getRoutes() != null) {
+				routes.addAll(s.getRoutes());
+			}
+		}
+	}
 
 	private List<TransportRouteSegment> loadTile(int x, int y) throws IOException {
 		long nanoTime = System.nanoTime();
 		List<TransportRouteSegment> lst = new ArrayList<TransportRouteSegment>();
-		int pz = (31 - cfg.ZOOM_TO_LOAD_TILES);
-		BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz, (x + 1) << pz,
-				y << pz, (y + 1) << pz, -1, null);
-		Collection<TransportStop> stops = transportStopsReader.readMergedTransportStops(sr);
+		Collection<TransportStop> stops;
+		if (networkCache != null) {
+			stops = networkCache.getTileStops(cfg.ZOOM_TO_LOAD_TILES, x, y);
+		} else {
+			int pz = (31 - cfg.ZOOM_TO_LOAD_TILES);
+			BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz, (x + 1) << pz,
+					y << pz, (y + 1) << pz, -1, null);
+			stops = transportStopsReader.readMergedTransportStops(sr);
+		}
 		loadTransportSegments(stops, lst);
 		readTime += System.nanoTime() - nanoTime;
 		return lst;
@@ -168,4 +274,15 @@ public class TransportRoutingContext {
 			}
 		}
 	}
+
+	public static class StopTransfers {
+		public final TransportRouteSegment[] segments;
+		// walk distance from stop to start of segment
+		public final double[] walkDist;
+
+		StopTransfers(TransportRouteSegment[] segments, double[] walkDist) {
+			this.segments = segments;
+			this.walkDist = walkDist;
+		}
+	}
 }
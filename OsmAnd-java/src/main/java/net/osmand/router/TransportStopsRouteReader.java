@@ -37,6 +37,21 @@ public class TransportStopsRouteReader {
 		}
 	}
 	
+	public int getCachedRoutesCount() {
+		int cnt = combinedRoutesCache.size();
+		for (TIntObjectHashMap<TransportRoute> routes : routesFilesCache.values()) {
+			cnt += routes.size();
+		}
+		return cnt;
+	}
+
+	public void clearRoutesCache() {
+		combinedRoutesCache.clear();
+		for (TIntObjectHashMap<TransportRoute> routes : routesFilesCache.values()) {
+			routes.clear();
+		}
+	}
+
 	public Collection<TransportStop> readMergedTransportStops(SearchRequest<TransportStop> sr) throws IOException {
 		TLongObjectHashMap<TransportStop> loadedTransportStops = new TLongObjectHashMap<TransportStop>();
 
@@ -248,7 +263,10 @@ public class TransportStopsRouteReader {
 	private List<Way> getAllWays(List<TransportRoute> parts) {
 		List<Way> w = new ArrayList<Way>();
 		for (TransportRoute t : parts) {
-			w.addAll(t.getForwardWays());
+			// ways are copied, merging of combined route changes them and parts could be merged by other thread
+			for (Way way : t.getForwardWays()) {
+				w.add(new Way(way, way.getId()));
+			}
 		}
 		return w;
 	}
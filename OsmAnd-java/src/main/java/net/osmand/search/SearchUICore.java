@@ -43,6 +43,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -59,6 +60,7 @@ public class SearchUICore {
 
 	private ThreadPoolExecutor singleThreadedExecutor;
 	private LinkedBlockingQueue<Runnable> taskQueue;
+	private ThreadPoolExecutor regionsExecutor;
 	private Runnable onSearchStart = null;
 	private Runnable onResultsComplete = null;
 	private AtomicInteger requestNumber = new AtomicInteger();
@@ -83,6 +85,26 @@ public class SearchUICore {
 		singleThreadedExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, taskQueue);
 	}
 
+	/**
+	 * Regions (map files) are searched in parallel by the given number of threads,
+	 * results are still processed in the order of regions. 0 or 1 - sequential search.
+	 */
+	public synchronized void setRegionsSearchThreads(int threads) {
+		if (regionsExecutor != null) {
+			regionsExecutor.shutdown();
+			regionsExecutor = null;
+		}
+		if (threads > 1) {
+			regionsExecutor = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>());
+			regionsExecutor.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	synchronized ExecutorService getRegionsExecutor() {
+		return regionsExecutor;
+	}
+
 	public static void setDebugMode(boolean debugMode) {
 		SearchUICore.debugMode = debugMode;
 	}
@@ -454,6 +476,7 @@ public class SearchUICore {
 						onSearchStart.run();
 					}
 					final SearchResultMatcher rm = new SearchResultMatcher(matcher, phrase, request, requestNumber, totalLimit);
+					rm.setRegionsExecutor(getRegionsExecutor());
 					if (debugMode) {
 						LOG.info("Starting search <" + phrase.toString() + ">");
 					}
@@ -665,6 +688,7 @@ public class SearchUICore {
 		private SearchPhrase phrase;
 		private List<MapObject> exportedObjects;
 		private List<City> exportedCities;
+		private ExecutorService regionsExecutor;
 
 		public SearchResultMatcher(ResultMatcher<SearchResult> matcher, SearchPhrase phrase, int request,
 								   AtomicInteger requestNumber, int totalLimit) {
@@ -685,6 +709,14 @@ public class SearchUICore {
 			return parentSearchResult;
 		}
 
+		public ExecutorService getRegionsExecutor() {
+			return regionsExecutor;
+		}
+
+		public void setRegionsExecutor(ExecutorService regionsExecutor) {
+			this.regionsExecutor = regionsExecutor;
+		}
+
 		public List<SearchResult> getRequestResults() {
 			return requestResults;
 		}
@@ -788,7 +820,7 @@ public class SearchUICore {
 			return exportedCities;
 		}
 
-		public void exportObject(SearchPhrase phrase, MapObject object) {
+		public synchronized void exportObject(SearchPhrase phrase, MapObject object) {
 			double maxDistance = phrase.getSettings().getExportSettings().getMaxDistance();
 			if (maxDistance > 0) {
 				double distance = MapUtils.getDistance(phrase.getSettings().getOriginalLocation(), object.getLocation());
@@ -802,7 +834,7 @@ public class SearchUICore {
 			exportedObjects.add(object);
 		}
 
-		public void exportCity(SearchPhrase phrase, City city) {
+		public synchronized void exportCity(SearchPhrase phrase, City city) {
 			double maxDistance = phrase.getSettings().getExportSettings().getMaxDistance();
 			if (maxDistance > 0) {
 				double distance = MapUtils.getDistance(phrase.getSettings().getOriginalLocation(), city.getLocation());
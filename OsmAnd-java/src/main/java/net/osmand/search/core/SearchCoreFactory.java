@@ -36,6 +36,7 @@ import net.osmand.util.LocationParser.ParsedOpenLocationCode;
 import net.osmand.util.MapUtils;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
@@ -54,12 +55,22 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class SearchCoreFactory {
 
 	public static boolean DISPLAY_DEFAULT_POI_TYPES = false;
 	public static final int MAX_DEFAULT_SEARCH_RADIUS = 7;
+	// regions decoded in parallel ahead of the processed one
+	private static final int PARALLEL_REGIONS_AHEAD = 8;
+	// decoded objects buffered per region in parallel mode
+	private static final int REGION_BUFFER_LIMIT = 20000;
 	public static final int SEARCH_MAX_PRIORITY = Integer.MAX_VALUE;
 
 	//////////////// CONSTANTS //////////
@@ -126,6 +137,146 @@ public class SearchCoreFactory {
 			return true;
 		}
 
+		/**
+		 * Search of one region is split into decoding of raw objects and processing of decoded objects on the search
+		 * thread. Sequentially objects are processed while region is decoded, in parallel mode each region is
+		 * decoded with own request (objects are buffered) and processed in the order of regions.
+		 */
+		protected interface RegionSearch<T> {
+
+			void searchRegion(BinaryMapIndexReader r, ResultMatcher<T> matcher) throws IOException;
+
+			ResultMatcher<T> getRegionMatcher(BinaryMapIndexReader r);
+
+			void regionFinished(BinaryMapIndexReader r) throws IOException;
+
+			/**
+			 * Called by decoding threads, true if region matchers don't accept objects anymore
+			 */
+			boolean isLimitReached();
+		}
+
+		protected <T> void searchRegions(SearchPhrase phrase, final SearchResultMatcher resultMatcher,
+				Iterator<BinaryMapIndexReader> regions, final RegionSearch<T> search) throws IOException {
+			ExecutorService executor = resultMatcher.getRegionsExecutor();
+			if (executor == null) {
+				while (regions.hasNext()) {
+					BinaryMapIndexReader r = regions.next();
+					search.searchRegion(r, search.getRegionMatcher(r));
+					search.regionFinished(r);
+					resultMatcher.apiSearchRegionFinished(this, r, phrase);
+				}
+				return;
+			}
+			final AtomicBoolean stopped = new AtomicBoolean();
+			List<BinaryMapIndexReader> readers = new ArrayList<>();
+			List<Future<List<T>>> futures = new ArrayList<>();
+			int i = 0;
+			try {
+				while (true) {
+					// regions are submitted ahead of processed one, so decoded objects of few regions are kept
+					while (futures.size() - i < PARALLEL_REGIONS_AHEAD && regions.hasNext()) {
+						BinaryMapIndexReader r = regions.next();
+						readers.add(r);
+						futures.add(executor.submit(createRegionTask(r, resultMatcher, search, stopped)));
+					}
+					if (i == futures.size()) {
+						break;
+					}
+					List<T> objects = getRegionResult(futures.get(i));
+					if (resultMatcher.isCancelled()) {
+						break;
+					}
+					BinaryMapIndexReader r = readers.get(i);
+					ResultMatcher<T> matcher = search.getRegionMatcher(r);
+					if (objects == null) {
+						// too many objects to buffer, region reader is free as its task is finished
+						search.searchRegion(r, matcher);
+					} else {
+						for (T object : objects) {
+							if (matcher.isCancelled()) {
+								break;
+							}
+							matcher.publish(object);
+						}
+					}
+					search.regionFinished(r);
+					resultMatcher.apiSearchRegionFinished(this, r, phrase);
+					i++;
+				}
+			} finally {
+				stopped.set(true);
+				// readers are not thread safe, so running tasks should finish before readers are used by next api
+				for (; i < futures.size(); i++) {
+					try {
+						futures.get(i).get();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					} catch (ExecutionException e) {
+						// ignore, search is already stopped
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return task returning decoded objects of region or null if region has more than
+		 * {@link #REGION_BUFFER_LIMIT} objects to be searched again by search thread
+		 */
+		private static <T> Callable<List<T>> createRegionTask(final BinaryMapIndexReader r,
+				final SearchResultMatcher resultMatcher, final RegionSearch<T> search, final AtomicBoolean stopped) {
+			return new Callable<List<T>>() {
+				@Override
+				public List<T> call() throws Exception {
+					final List<T> objects = new ArrayList<>();
+					final boolean[] overflow = new boolean[1];
+					ResultMatcher<T> matcher = new ResultMatcher<T>() {
+						@Override
+						public boolean publish(T object) {
+							if (objects.size() >= REGION_BUFFER_LIMIT) {
+								overflow[0] = true;
+								return false;
+							}
+							objects.add(object);
+							return false;
+						}
+
+						@Override
+						public boolean isCancelled() {
+							// objects found after limit is reached are not processed by region matcher anyway
+							return overflow[0] || stopped.get() || resultMatcher.isCancelled() || search.isLimitReached();
+						}
+					};
+					if (!matcher.isCancelled()) {
+						search.searchRegion(r, matcher);
+					}
+					return overflow[0] ? null : objects;
+				}
+			};
+		}
+
+		private static <T> T getRegionResult(Future<T> future) throws IOException {
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				InterruptedIOException ex = new InterruptedIOException("Region search is interrupted");
+				ex.initCause(e);
+				throw ex;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IOException(cause);
+			}
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			return 1;
@@ -393,7 +544,7 @@ public class SearchCoreFactory {
 			if (phrase.getRadiusLevel() > 1 || phrase.getUnknownWordToSearch().length() > 3 ||
 					phrase.hasMoreThanOneUnknownSearchWord()|| phrase.isSearchTypeAllowed(ObjectType.POSTCODE, true)) {
 				final boolean locSpecified = phrase.getLastTokenLocation() != null;
-				LatLon loc = phrase.getLastTokenLocation();
+				final LatLon loc = phrase.getLastTokenLocation();
 				final List<SearchResult> immediateResults = new ArrayList<>();
 				final QuadRect streetBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS);
 				final QuadRect postcodeBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5);
@@ -403,8 +554,9 @@ public class SearchCoreFactory {
 						SEARCH_ADDRESS_BY_NAME_PRIORITY : SEARCH_ADDRESS_BY_NAME_PRIORITY_RADIUS2;
 				final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
 
-				ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
-					int limit = 0;
+				// read by region decoding threads in parallel mode
+				final AtomicInteger found = new AtomicInteger();
+				final ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
 					@Override
 					public boolean publish(MapObject object) {
 						if (isCancelled()) {
@@ -489,14 +641,14 @@ public class SearchCoreFactory {
 						} else {
 							return false;
 						}
-						limit ++;
+						found.incrementAndGet();
 						immediateResults.add(sr);
 						return false;
 					}
 
 					@Override
 					public boolean isCancelled() {
-						return limit > LIMIT * phrase.getRadiusLevel() ||
+						return found.get() > LIMIT * phrase.getRadiusLevel() ||
 								resultMatcher.isCancelled();
 					}
 				};
@@ -519,28 +671,49 @@ public class SearchCoreFactory {
 
 				Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(DEFAULT_ADDRESS_BBOX_RADIUS * 5,
 						SearchPhraseDataType.ADDRESS);
-				String wordToSearch = phrase.getUnknownWordToSearch();
-				while (offlineIterator.hasNext() && wordToSearch.length() > 0) {
-					BinaryMapIndexReader r = offlineIterator.next();
-					currentFile[0] = r;
-					immediateResults.clear();
-					SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(rm, rawDataCollector, wordToSearch.toLowerCase(),
-							phrase.isMainUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
-									: StringMatcherMode.CHECK_STARTS_FROM_SPACE);
-					if (locSpecified) {
-						req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
-								phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
+				final String wordToSearch = phrase.getUnknownWordToSearch();
+				if (wordToSearch.length() == 0) {
+					return;
+				}
+				final StringMatcherMode matcherMode = phrase.isMainUnknownSearchWordComplete() ?
+						StringMatcherMode.CHECK_EQUALS_FROM_SPACE : StringMatcherMode.CHECK_STARTS_FROM_SPACE;
+				final int bboxRadius = phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5);
+				final ResultMatcher<MapObject> rawDataMatcher = rawDataCollector;
+				searchRegions(phrase, resultMatcher, offlineIterator, new RegionSearch<MapObject>() {
+
+					@Override
+					public void searchRegion(BinaryMapIndexReader r, ResultMatcher<MapObject> matcher) throws IOException {
+						SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(matcher,
+								rawDataMatcher, wordToSearch.toLowerCase(), matcherMode);
+						if (locSpecified) {
+							req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(), bboxRadius);
+						}
+						r.searchAddressDataByName(req);
 					}
-					r.searchAddressDataByName(req);
-					for (SearchResult res : immediateResults) {
-						if (res.objectType == ObjectType.STREET) {
-							subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
-						} else {
-							subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
+
+					@Override
+					public ResultMatcher<MapObject> getRegionMatcher(BinaryMapIndexReader r) {
+						currentFile[0] = r;
+						immediateResults.clear();
+						return rm;
+					}
+
+					@Override
+					public void regionFinished(BinaryMapIndexReader r) throws IOException {
+						for (SearchResult res : immediateResults) {
+							if (res.objectType == ObjectType.STREET) {
+								subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
+							} else {
+								subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
+							}
 						}
 					}
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
-				}
+
+					@Override
+					public boolean isLimitReached() {
+						return found.get() > LIMIT * phrase.getRadiusLevel();
+					}
+				});
 			}
 		}
 	}
@@ -567,13 +740,8 @@ public class SearchCoreFactory {
 			// Take into account POI [bar] - 'Hospital 512'
 			// BEFORE: it was searching exact match of whole phrase.getUnknownSearchPhrase() [ Check feedback ] 
 
-			final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
 			Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(BBOX_RADIUS,
 					SearchPhraseDataType.POI);
-			String searchWord = phrase.getUnknownWordToSearch();
-			final NameStringMatcher nm = phrase.getMainUnknownNameStringMatcher();
-			QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
-			final Set<String> ids = new HashSet<String>();
 
 			ResultMatcher<Amenity> rawDataCollector = null;
 			if (phrase.getSettings().isExportObjects()) {
@@ -590,14 +758,30 @@ public class SearchCoreFactory {
 					}
 				};
 			}
-			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
-					(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
-					(int) bbox.bottom, new ResultMatcher<Amenity>() {
-						int limit = 0;
+			final String searchWord = phrase.getUnknownWordToSearch();
+			final NameStringMatcher nm = phrase.getMainUnknownNameStringMatcher();
+			final QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
+			final Set<String> ids = new HashSet<String>();
+			// read by region decoding threads in parallel mode
+			final AtomicInteger limit = new AtomicInteger();
+			final ResultMatcher<Amenity> rawDataMatcher = rawDataCollector;
+			searchRegions(phrase, resultMatcher, offlineIterator, new RegionSearch<Amenity>() {
+
+				@Override
+				public void searchRegion(BinaryMapIndexReader r, ResultMatcher<Amenity> matcher) throws IOException {
+					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
+							(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
+							(int) bbox.bottom, matcher, rawDataMatcher);
+					r.searchPoiByName(req);
+				}
+
+				@Override
+				public ResultMatcher<Amenity> getRegionMatcher(final BinaryMapIndexReader r) {
+					return new ResultMatcher<Amenity>() {
 
 						@Override
 						public boolean publish(Amenity object) {
-							if (limit++ > LIMIT) {
+							if (limit.getAndIncrement() > LIMIT) {
 								return false;
 							}
 							String poiID = object.getType().getKeyName() + "_" + object.getId();
@@ -614,7 +798,7 @@ public class SearchCoreFactory {
 							}
 							sr.object = object;
 							sr.preferredZoom = 17;
-							sr.file = currentFile[0];
+							sr.file = r;
 							sr.location = object.getLocation();
 							if (object.getSubType().equals("city") || object.getSubType().equals("country")) {
 								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
@@ -634,17 +818,21 @@ public class SearchCoreFactory {
 
 						@Override
 						public boolean isCancelled() {
-							return resultMatcher.isCancelled() && (limit < LIMIT);
+							return resultMatcher.isCancelled() && (limit.get() < LIMIT);
 						}
-					}, rawDataCollector);
+					};
+				}
 
-			while (offlineIterator.hasNext()) {
-				BinaryMapIndexReader r = offlineIterator.next();
-				currentFile[0] = r;
-				r.searchPoiByName(req);
+				@Override
+				public void regionFinished(BinaryMapIndexReader r) {
+				}
 
-				resultMatcher.apiSearchRegionFinished(this, r, phrase);
-			}
+				@Override
+				public boolean isLimitReached() {
+					// objects are skipped by region matcher
+					return limit.get() > LIMIT;
+				}
+			});
 			return true;
 		}
 
@@ -1022,7 +1210,7 @@ public class SearchCoreFactory {
 			SearchPoiTypeFilter poiTypeFilter = null;
 			String nameFilter = null;
 			int countExtraWords = 0;
-			Set<String> poiAdditionals = new LinkedHashSet<>();
+			final Set<String> poiAdditionals = new LinkedHashSet<>();
 			if (phrase.isLastWord(ObjectType.POI_TYPE)) {
 				Object obj = phrase.getLastSelectedWord().getResult().object;
 				if (obj instanceof AbstractPoiType) {
@@ -1078,20 +1266,40 @@ public class SearchCoreFactory {
 						radius = BBOX_RADIUS_NEAREST;
 					}
 				}
-				QuadRect bbox = phrase.getRadiusBBoxToSearch(radius);
+				final QuadRect bbox = phrase.getRadiusBBoxToSearch(radius);
 				List<BinaryMapIndexReader> offlineIndexes = phrase.getOfflineIndexes();
-				Set<String> searchedPois = new TreeSet<>();
-				for (BinaryMapIndexReader r : offlineIndexes) {
-					ResultMatcher<Amenity> rm = getResultMatcher(phrase, poiTypeFilter, resultMatcher, nameFilter, r,
-							searchedPois, poiAdditionals, countExtraWords);
-					if (poiTypeFilter instanceof CustomSearchPoiFilter) {
-						rm = ((CustomSearchPoiFilter) poiTypeFilter).wrapResultMatcher(rm);
+				final Set<String> searchedPois = new TreeSet<>();
+				final SearchPoiTypeFilter typeFilter = poiTypeFilter;
+				final String nmFilter = nameFilter;
+				final int extraWords = countExtraWords;
+				searchRegions(phrase, resultMatcher, offlineIndexes.iterator(), new RegionSearch<Amenity>() {
+
+					@Override
+					public void searchRegion(BinaryMapIndexReader r, ResultMatcher<Amenity> matcher) throws IOException {
+						SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.left,
+								(int) bbox.right, (int) bbox.top, (int) bbox.bottom, -1, typeFilter, matcher);
+						r.searchPoi(req);
 					}
-					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.left,
-							(int) bbox.right, (int) bbox.top, (int) bbox.bottom, -1, poiTypeFilter, rm);
-					r.searchPoi(req);
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
-				}
+
+					@Override
+					public ResultMatcher<Amenity> getRegionMatcher(BinaryMapIndexReader r) {
+						ResultMatcher<Amenity> rm = getResultMatcher(phrase, typeFilter, resultMatcher, nmFilter, r,
+								searchedPois, poiAdditionals, extraWords);
+						if (typeFilter instanceof CustomSearchPoiFilter) {
+							rm = ((CustomSearchPoiFilter) typeFilter).wrapResultMatcher(rm);
+						}
+						return rm;
+					}
+
+					@Override
+					public void regionFinished(BinaryMapIndexReader r) {
+					}
+
+					@Override
+					public boolean isLimitReached() {
+						return false;
+					}
+				});
 			}
 			return true;
 		}
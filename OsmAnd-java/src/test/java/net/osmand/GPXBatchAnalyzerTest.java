@@ -0,0 +1,153 @@
+package net.osmand;
+
+import net.osmand.GPXBatchAnalyzer.GPXAnalysisListener;
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.util.Algorithms;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class GPXBatchAnalyzerTest {
+
+	private static final int FILES = 6;
+
+	private File dir;
+	private File brokenFile;
+	private GPXBatchAnalyzer analyzer;
+
+	private static class CollectingListener implements GPXAnalysisListener {
+		final Map<File, GPXTrackAnalysis> analyses = new ConcurrentHashMap<File, GPXTrackAnalysis>();
+		final Map<File, GPXFile> files = new ConcurrentHashMap<File, GPXFile>();
+
+		@Override
+		public void onFileAnalyzed(File file, GPXFile gpxFile, GPXTrackAnalysis analysis, int processed, int total) {
+			files.put(file, gpxFile);
+			if (analysis != null) {
+				analyses.put(file, analysis);
+			}
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("gpx", "");
+		dir.delete();
+		File subDir = new File(dir, "sub");
+		subDir.mkdirs();
+		byte[] gpx = GPXUtilitiesTest.createGpx();
+		for (int i = 0; i < FILES; i++) {
+			write(new File(i % 2 == 0 ? dir : subDir, "track" + i + ".gpx"), gpx);
+		}
+		brokenFile = new File(dir, "broken.gpx");
+		write(brokenFile, "<gpx><trk><trkseg><trkpt lat=".getBytes("UTF-8"));
+		write(new File(dir, "notes.txt"), gpx);
+		analyzer = new GPXBatchAnalyzer(3);
+	}
+
+	@After
+	public void tearDown() {
+		analyzer.shutdown();
+		Algorithms.removeAllFiles(dir);
+	}
+
+	private static void write(File file, byte[] bytes) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	@Test
+	public void testAnalyzeFolder() {
+		List<File> files = GPXBatchAnalyzer.collectGpxFiles(dir);
+		Assert.assertEquals(FILES + 1, files.size());
+		CollectingListener listener = new CollectingListener();
+		Assert.assertEquals(FILES + 1, analyzer.analyze(dir, listener));
+		Assert.assertEquals(FILES + 1, listener.files.size());
+		Assert.assertEquals(FILES, listener.analyses.size());
+		Assert.assertNotNull(listener.files.get(brokenFile).error);
+		Assert.assertNull(listener.analyses.get(brokenFile));
+		for (File file : files) {
+			if (file.equals(brokenFile)) {
+				continue;
+			}
+			// same as sequential processing
+			GPXTrackAnalysis expected = GPXUtilities.loadGPXFile(file).getAnalysis(file.lastModified());
+			GPXTrackAnalysis analysis = listener.analyses.get(file);
+			Assert.assertEquals(expected.points, analysis.points);
+			Assert.assertEquals(expected.totalDistance, analysis.totalDistance, 0);
+			Assert.assertEquals(expected.timeMoving, analysis.timeMoving);
+			Assert.assertEquals(expected.diffElevationUp, analysis.diffElevationUp, 0);
+			// track points are loaded in regular lists by default
+			for (Track track : listener.files.get(file).tracks) {
+				for (TrkSegment segment : track.segments) {
+					Assert.assertFalse(segment.isCompact());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCompactTracks() {
+		analyzer.setCompactTracks(true);
+		CollectingListener listener = new CollectingListener();
+		analyzer.analyze(dir, listener);
+		for (GPXFile gpxFile : listener.files.values()) {
+			if (gpxFile.error != null) {
+				// broken file may keep partially read track
+				continue;
+			}
+			for (Track track : gpxFile.tracks) {
+				for (TrkSegment segment : track.segments) {
+					Assert.assertTrue(segment.isCompact());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testListenerExceptionIsNotSwallowed() {
+		final List<File> analyzed = new ArrayList<File>();
+		GPXAnalysisListener listener = new CollectingListener() {
+			@Override
+			public void onFileAnalyzed(File file, GPXFile gpxFile, GPXTrackAnalysis analysis, int processed, int total) {
+				synchronized (analyzed) {
+					analyzed.add(file);
+				}
+				throw new IllegalStateException("listener failed");
+			}
+		};
+		try {
+			analyzer.analyze(dir, listener);
+			Assert.fail("Exception of listener should be rethrown");
+		} catch (IllegalStateException e) {
+			// fork join pool may wrap exception thrown in other thread
+			Throwable cause = e;
+			while (cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			Assert.assertEquals("listener failed", cause.getMessage());
+		}
+		Assert.assertFalse(analyzed.isEmpty());
+	}
+}
@@ -0,0 +1,403 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXPointType;
+import net.osmand.GPXUtilities.GPXPointsListener;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.IncrementalTrackAnalysis;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+public class GPXUtilitiesTest {
+
+	private static final long FILE_TIMESTAMP = 1000;
+
+	static byte[] createGpx() throws UnsupportedEncodingException {
+		StringBuilder sb = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<gpx version=\"1.1\" creator=\"test\">\n");
+		sb.append("<metadata><name>test</name></metadata>\n");
+		sb.append("<wpt lat=\"50.1\" lon=\"10.1\"><name>a</name><type>food</type></wpt>\n");
+		sb.append("<wpt lat=\"50.2\" lon=\"10.2\"><name>b</name></wpt>\n");
+		long time = 1500000000000L;
+		for (int t = 0; t < 2; t++) {
+			sb.append("<trk><name>track</name>\n");
+			for (int s = 0; s < 3; s++) {
+				sb.append("<trkseg>\n");
+				// second segment of second track has 1 point
+				int points = t == 1 && s == 1 ? 1 : 200;
+				for (int i = 0; i < points; i++) {
+					double lon = t == 1 && s == 2 ? (i < 100 ? 179.99 + i * 0.00005 : -179.99 + i * 0.00005) : 10 + i * 0.0003;
+					sb.append("<trkpt lat=\"").append(50 + s * 0.01 + i * 0.0002).append("\" lon=\"").append(lon).append("\">");
+					sb.append("<ele>").append(100 + (i * 37) % 50).append("</ele>");
+					time += 1000 + (i % 7) * 1000;
+					sb.append("<time>").append(GPXUtilities.formatTime(time)).append("</time>");
+					if (i % 3 == 0) {
+						sb.append("<extensions><speed>").append(i % 10).append("</speed><color>#ff0000</color></extensions>");
+					}
+					sb.append("</trkpt>\n");
+				}
+				sb.append("</trkseg>\n");
+			}
+			sb.append("</trk>\n");
+		}
+		sb.append("<rte><rtept lat=\"50.3\" lon=\"10.3\"/><rtept lat=\"50.4\" lon=\"10.4\"/></rte>\n");
+		sb.append("</gpx>\n");
+		return sb.toString().getBytes("UTF-8");
+	}
+
+	@Test
+	public void testStreamAnalysis() throws Exception {
+		byte[] gpx = createGpx();
+		GPXFile file = GPXUtilities.loadGPXFile(new ByteArrayInputStream(gpx));
+		Assert.assertNull(file.error);
+		GPXTrackAnalysis expected = file.getAnalysis(FILE_TIMESTAMP);
+		GPXTrackAnalysis analysis = GPXUtilities.analyzeGPXStream(new ByteArrayInputStream(gpx), FILE_TIMESTAMP, true);
+
+		Assert.assertEquals(expected.totalTracks, analysis.totalTracks);
+		Assert.assertEquals(expected.points, analysis.points);
+		Assert.assertEquals(expected.wptPoints, analysis.wptPoints);
+		Assert.assertEquals(expected.wptCategoryNames, analysis.wptCategoryNames);
+		Assert.assertEquals(expected.totalDistance, analysis.totalDistance, 0);
+		Assert.assertEquals(expected.totalDistanceMoving, analysis.totalDistanceMoving, 0);
+		Assert.assertEquals(expected.startTime, analysis.startTime);
+		Assert.assertEquals(expected.endTime, analysis.endTime);
+		Assert.assertEquals(expected.timeMoving, analysis.timeMoving);
+		Assert.assertEquals(expected.diffElevationUp, analysis.diffElevationUp, 0);
+		Assert.assertEquals(expected.diffElevationDown, analysis.diffElevationDown, 0);
+		Assert.assertEquals(expected.avgElevation, analysis.avgElevation, 0);
+		Assert.assertEquals(expected.avgSpeed, analysis.avgSpeed, 0);
+		Assert.assertEquals(expected.maxSpeed, analysis.maxSpeed, 0);
+		Assert.assertEquals(expected.left, analysis.left, 0);
+		Assert.assertEquals(expected.right, analysis.right, 0);
+		Assert.assertEquals(expected.top, analysis.top, 0);
+		Assert.assertEquals(expected.bottom, analysis.bottom, 0);
+		Assert.assertEquals(expected.elevationData.size(), analysis.elevationData.size());
+		Assert.assertEquals(expected.speedData.size(), analysis.speedData.size());
+
+		GPXTrackAnalysis withoutChart = GPXUtilities.analyzeGPXStream(new ByteArrayInputStream(gpx), FILE_TIMESTAMP, false);
+		Assert.assertEquals(expected.totalDistance, withoutChart.totalDistance, 0);
+		Assert.assertTrue(withoutChart.elevationData.isEmpty());
+	}
+
+	@Test
+	public void testCompactTracks() throws Exception {
+		byte[] gpx = createGpx();
+		GPXFile file = GPXUtilities.loadGPXFile(new ByteArrayInputStream(gpx));
+		GPXFile compactFile = GPXUtilities.loadGPXFile(new ByteArrayInputStream(gpx), null, true);
+		GPXTrackAnalysis expected = file.getAnalysis(FILE_TIMESTAMP);
+		GPXTrackAnalysis analysis = compactFile.getAnalysis(FILE_TIMESTAMP);
+		Assert.assertEquals(expected.points, analysis.points);
+		Assert.assertEquals(expected.totalDistance, analysis.totalDistance, 0);
+		Assert.assertEquals(expected.timeMoving, analysis.timeMoving);
+		Assert.assertEquals(expected.diffElevationUp, analysis.diffElevationUp, 0);
+		Assert.assertEquals(expected.diffElevationDown, analysis.diffElevationDown, 0);
+		Assert.assertEquals(expected.maxSpeed, analysis.maxSpeed, 0);
+
+		Assert.assertEquals(file.tracks.size(), compactFile.tracks.size());
+		for (int i = 0; i < file.tracks.size(); i++) {
+			List<TrkSegment> segments = file.tracks.get(i).segments;
+			List<TrkSegment> compactSegments = compactFile.tracks.get(i).segments;
+			Assert.assertEquals(segments.size(), compactSegments.size());
+			for (int j = 0; j < segments.size(); j++) {
+				List<WptPt> points = segments.get(j).points;
+				List<WptPt> compactPoints = compactSegments.get(j).points;
+				Assert.assertTrue(compactSegments.get(j).isCompact());
+				Assert.assertEquals(points, compactPoints);
+				for (int k = 0; k < points.size(); k++) {
+					WptPt p = points.get(k);
+					WptPt c = compactPoints.get(k);
+					Assert.assertEquals(p.time, c.time);
+					Assert.assertEquals(p.ele, c.ele, 0);
+					Assert.assertEquals(p.speed, c.speed, 0);
+					Assert.assertEquals(p.distance, c.distance, 0);
+					Assert.assertEquals(p.firstPoint, c.firstPoint);
+					Assert.assertEquals(p.getExtensionsToRead(), c.getExtensionsToRead());
+				}
+				Assert.assertEquals(GPXUtilities.calculateBounds(points).toString(),
+						GPXUtilities.calculateBounds(compactPoints).toString());
+			}
+		}
+	}
+
+	@Test
+	public void testReadPoints() throws Exception {
+		byte[] gpx = createGpx();
+		final int[] counts = new int[GPXPointType.values().length];
+		final int[] lastSegment = {-1};
+		Exception error = GPXUtilities.readGPXPoints(new ByteArrayInputStream(gpx), new GPXPointsListener() {
+			@Override
+			public boolean onPoint(GPXPointType type, int track, int segment, WptPt point) {
+				counts[type.ordinal()]++;
+				if (type == GPXPointType.TRACK_POINT) {
+					Assert.assertTrue(segment >= lastSegment[0]);
+					lastSegment[0] = segment;
+				}
+				return true;
+			}
+		});
+		Assert.assertNull(error);
+		Assert.assertEquals(2, counts[GPXPointType.WAYPOINT.ordinal()]);
+		Assert.assertEquals(2, counts[GPXPointType.ROUTE_POINT.ordinal()]);
+		// 5 segments of 200 points, 1 point and 2 artificial points on prime meridian
+		Assert.assertEquals(5 * 200 + 1 + 2, counts[GPXPointType.TRACK_POINT.ordinal()]);
+		Assert.assertEquals(5, lastSegment[0]);
+
+		final int[] read = {0};
+		GPXUtilities.readGPXPoints(new ByteArrayInputStream(gpx), new GPXPointsListener() {
+			@Override
+			public boolean onPoint(GPXPointType type, int track, int segment, WptPt point) {
+				return ++read[0] < 10;
+			}
+		});
+		Assert.assertEquals(10, read[0]);
+	}
+
+	@Test
+	public void testBinaryCache() throws Exception {
+		File source = File.createTempFile("gpx_test", ".gpx");
+		File cache = new File(source.getAbsolutePath() + GPXBinaryCache.CACHE_EXT);
+		try {
+			FileOutputStream out = new FileOutputStream(source);
+			out.write(createGpx());
+			out.close();
+			GPXFile file = GPXUtilities.loadGPXFile(source, null, true);
+			GPXTrackAnalysis expected = GPXBinaryCache.loadGPXFile(source, cache, true).analysis;
+			Assert.assertTrue(cache.exists());
+			GPXBinaryCache.CachedGPX cached = GPXBinaryCache.readCache(source, cache, true);
+			Assert.assertNotNull(cached);
+			Assert.assertEquals(file.getPoints().size(), cached.gpxFile.getPoints().size());
+			Assert.assertEquals(file.tracks.size(), cached.gpxFile.tracks.size());
+			for (int i = 0; i < file.tracks.size(); i++) {
+				List<TrkSegment> segments = file.tracks.get(i).segments;
+				List<TrkSegment> cachedSegments = cached.gpxFile.tracks.get(i).segments;
+				Assert.assertEquals(segments.size(), cachedSegments.size());
+				for (int j = 0; j < segments.size(); j++) {
+					List<WptPt> points = segments.get(j).points;
+					List<WptPt> cachedPoints = cachedSegments.get(j).points;
+					Assert.assertEquals(points, cachedPoints);
+					for (int k = 0; k < points.size(); k++) {
+						Assert.assertEquals(points.get(k).time, cachedPoints.get(k).time);
+						Assert.assertEquals(points.get(k).ele, cachedPoints.get(k).ele, 0);
+						Assert.assertEquals(points.get(k).getExtensionsToRead(), cachedPoints.get(k).getExtensionsToRead());
+					}
+				}
+			}
+			GPXTrackAnalysis analysis = cached.analysis;
+			Assert.assertEquals(expected.totalDistance, analysis.totalDistance, 0);
+			Assert.assertEquals(expected.timeMoving, analysis.timeMoving);
+			Assert.assertEquals(expected.diffElevationUp, analysis.diffElevationUp, 0);
+			Assert.assertEquals(expected.wptCategoryNames, analysis.wptCategoryNames);
+			Assert.assertEquals(expected.elevationData.size(), analysis.elevationData.size());
+
+			source.setLastModified(source.lastModified() - 10000);
+			Assert.assertNull(GPXBinaryCache.readCache(source, cache, true));
+		} finally {
+			source.delete();
+			cache.delete();
+		}
+	}
+
+	@Test
+	public void testIncrementalAnalysis() throws Exception {
+		GPXFile file = GPXUtilities.loadGPXFile(new ByteArrayInputStream(createGpx()));
+		for (TrkSegment segment : file.getGeneralTrack().segments) {
+			TrkSegment recording = new TrkSegment();
+			recording.generalSegment = segment.generalSegment;
+			final IncrementalTrackAnalysis incremental = new IncrementalTrackAnalysis(recording);
+			GPXTrackAnalysis previous = null;
+			for (int i = 0; i < segment.points.size(); i++) {
+				incremental.addPoint(segment.points.get(i));
+				if (i % 50 == 0 || i == segment.points.size() - 1) {
+					GPXTrackAnalysis analysis = incremental.getAnalysis(FILE_TIMESTAMP);
+					final TrkSegment full = new TrkSegment();
+					full.generalSegment = segment.generalSegment;
+					full.points.addAll(recording.points);
+					GPXTrackAnalysis expected = GPXTrackAnalysis.segment(FILE_TIMESTAMP, full);
+					Assert.assertEquals(expected.points, analysis.points);
+					Assert.assertEquals(expected.totalDistance, analysis.totalDistance, 0);
+					Assert.assertEquals(expected.totalDistanceWithoutGaps, analysis.totalDistanceWithoutGaps, 0);
+					Assert.assertEquals(expected.timeMoving, analysis.timeMoving);
+					Assert.assertEquals(expected.timeSpan, analysis.timeSpan);
+					Assert.assertEquals(expected.diffElevationUp, analysis.diffElevationUp, 0);
+					Assert.assertEquals(expected.diffElevationDown, analysis.diffElevationDown, 0);
+					Assert.assertEquals(expected.avgElevation, analysis.avgElevation, 0);
+					Assert.assertEquals(expected.avgSpeed, analysis.avgSpeed, 0);
+					Assert.assertEquals(expected.maxSpeed, analysis.maxSpeed, 0);
+					Assert.assertEquals(expected.top, analysis.top, 0);
+					Assert.assertEquals(expected.bottom, analysis.bottom, 0);
+					Assert.assertEquals(expected.locationEnd, analysis.locationEnd);
+					Assert.assertEquals(expected.speedData.size(), analysis.speedData.size());
+					Assert.assertEquals(expected.elevationData.size(), analysis.elevationData.size());
+					for (int j = 0; j < expected.elevationData.size(); j++) {
+						Assert.assertEquals(expected.elevationData.get(j).distance, analysis.elevationData.get(j).distance, 0);
+						Assert.assertEquals(expected.elevationData.get(j).lastPoint, analysis.elevationData.get(j).lastPoint);
+						Assert.assertEquals(expected.speedData.get(j).speed, analysis.speedData.get(j).speed, 0);
+						Assert.assertEquals(expected.speedData.get(j).lastPoint, analysis.speedData.get(j).lastPoint);
+					}
+					if (previous != null) {
+						// chart data of previous analysis isn't changed by appended points
+						Assert.assertTrue(previous.elevationData.size() < analysis.elevationData.size());
+						Assert.assertSame(analysis.elevationData.get(0), previous.elevationData.get(0));
+						try {
+							previous.speedData.get(previous.speedData.size());
+							Assert.fail();
+						} catch (IndexOutOfBoundsException e) {
+							// expected
+						}
+					}
+					previous = analysis;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testIncrementalAnalysisLongRecording() {
+		TrkSegment recording = new TrkSegment();
+		IncrementalTrackAnalysis incremental = new IncrementalTrackAnalysis(recording);
+		List<GPXTrackAnalysis> snapshots = new ArrayList<>();
+		int count = 5000;
+		for (int i = 0; i < count; i++) {
+			WptPt point = new WptPt(50 + i * 0.00003, 10 + i * 0.00002, 1500000000000L + i * 1000L, 100 + (i * 13) % 40, 1, Double.NaN);
+			incremental.addPoint(point);
+			if ((i + 1) % 1000 == 0 || i == 2500) {
+				snapshots.add(incremental.getAnalysis(FILE_TIMESTAMP));
+			}
+		}
+		GPXTrackAnalysis expected = GPXTrackAnalysis.segment(FILE_TIMESTAMP, recording);
+		GPXTrackAnalysis last = snapshots.get(snapshots.size() - 1);
+		Assert.assertEquals(expected.totalDistance, last.totalDistance, 0);
+		Assert.assertEquals(expected.diffElevationUp, last.diffElevationUp, 0);
+		Assert.assertEquals(expected.diffElevationDown, last.diffElevationDown, 0);
+		for (GPXTrackAnalysis analysis : snapshots) {
+			// all snapshots keep own size and share elements with current chart data
+			Assert.assertEquals(analysis.points, analysis.elevationData.size());
+			for (int j = 0; j < analysis.elevationData.size(); j++) {
+				Assert.assertSame(last.elevationData.get(j), analysis.elevationData.get(j));
+				Assert.assertEquals(expected.elevationData.get(j).elevation, analysis.elevationData.get(j).elevation, 0);
+			}
+		}
+	}
+
+	@Test
+	public void testIncrementalElevationWindow() {
+		TrkSegment recording = new TrkSegment();
+		IncrementalTrackAnalysis incremental = new IncrementalTrackAnalysis(recording);
+		for (int i = 0; i < 600; i++) {
+			// points become sparser, so window of full analysis grows
+			double step = i < 200 ? 0.00002 : 0.0002;
+			WptPt point = new WptPt(50 + i * step, 10, 1500000000000L + i * 1000L, 100 + (i * 17) % 50, 1, Double.NaN);
+			incremental.addPoint(point);
+			if (i % 25 == 0) {
+				TrkSegment full = new TrkSegment();
+				full.points.addAll(recording.points);
+				GPXTrackAnalysis expected = GPXTrackAnalysis.segment(FILE_TIMESTAMP, full);
+				GPXTrackAnalysis analysis = incremental.getAnalysis(FILE_TIMESTAMP);
+				Assert.assertEquals(expected.diffElevationUp, analysis.diffElevationUp, 0);
+				Assert.assertEquals(expected.diffElevationDown, analysis.diffElevationDown, 0);
+			}
+		}
+	}
+
+	// same formats which are used by GPXUtilities for texts not handled by fast parser
+	private static SimpleDateFormat createTimeFormat(String pattern) {
+		SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format;
+	}
+
+	private static final SimpleDateFormat TIME_FORMAT = createTimeFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+	private static final SimpleDateFormat TIME_FORMAT_MILLIS = createTimeFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+
+	private static void assertSameParsedTime(String text) {
+		Assert.assertEquals(text, GPXUtilities.parseTime(text, TIME_FORMAT, TIME_FORMAT_MILLIS),
+				GPXUtilities.parseTime(text));
+	}
+
+	@Test
+	public void testTimeRoundTrip() {
+		Assert.assertEquals("1970-01-01T00:00:00Z", GPXUtilities.formatTime(0));
+		Assert.assertEquals("2017-07-14T02:40:00Z", GPXUtilities.formatTime(1500000000000L));
+		Assert.assertEquals(1500000000000L, GPXUtilities.parseTime("2017-07-14T02:40:00Z"));
+		Assert.assertEquals(951782400000L, GPXUtilities.parseTime("2000-02-29T00:00:00Z"));
+		Random rnd = new Random(3);
+		long min = -12219292800000L; // 1583-01-01
+		long max = 253402300800000L; // 10000-01-01
+		for (int i = 0; i < 20000; i++) {
+			long time = min + (long) (rnd.nextDouble() * (max - min));
+			String text = GPXUtilities.formatTime(time);
+			Assert.assertEquals(TIME_FORMAT.format(new Date(time)), text);
+			// milliseconds are not written
+			Assert.assertEquals(text, Math.floor(time / 1000.0) * 1000, GPXUtilities.parseTime(text), 0);
+			assertSameParsedTime(text);
+		}
+	}
+
+	@Test
+	public void testTimeFractionalSeconds() {
+		Assert.assertEquals(1500000000678L, GPXUtilities.parseTime("2017-07-14T02:40:00.678Z"));
+		Assert.assertEquals(1500000000005L, GPXUtilities.parseTime("2017-07-14T02:40:00.005Z"));
+		Random rnd = new Random(7);
+		for (int i = 0; i < 5000; i++) {
+			long time = (long) (rnd.nextDouble() * 4102444800000L);
+			String text = TIME_FORMAT_MILLIS.format(new Date(time));
+			Assert.assertEquals(text, time, GPXUtilities.parseTime(text));
+			assertSameParsedTime(text);
+		}
+		// other number of digits is parsed as milliseconds by SimpleDateFormat
+		assertSameParsedTime("2017-07-14T02:40:00.5Z");
+		assertSameParsedTime("2017-07-14T02:40:00.12Z");
+		assertSameParsedTime("2017-07-14T02:40:00.1234Z");
+		assertSameParsedTime("2017-07-14T02:40:00,678Z");
+	}
+
+	@Test
+	public void testTimeZoneOffsets() {
+		// only UTC designator is supported, offsets are parsed as before
+		assertSameParsedTime("2017-07-14T02:40:00+02:00");
+		assertSameParsedTime("2017-07-14T02:40:00-0500");
+		assertSameParsedTime("2017-07-14T02:40:00.678+02:00");
+		assertSameParsedTime("2017-07-14T02:40:00z");
+		assertSameParsedTime("2017-07-14T02:40:00");
+		assertSameParsedTime("2017-07-14T02:40:00ZZ");
+	}
+
+	@Test
+	public void testTimeLenientAndOutOfRange() {
+		// day overflow is moved to the next month like lenient calendar does
+		Assert.assertEquals(GPXUtilities.parseTime("2021-03-03T00:00:00Z"), GPXUtilities.parseTime("2021-02-31T00:00:00Z"));
+		String[] texts = {
+				"2021-02-31T00:00:00Z", "2020-02-30T12:00:00Z", "2019-04-31T23:59:59.999Z", "2020-13-01T00:00:00Z",
+				"2020-00-10T00:00:00Z", "2020-01-00T00:00:00Z", "2020-01-32T00:00:00Z", "2020-01-01T24:00:00Z",
+				"2020-01-01T23:60:00Z", "2020-01-01T23:59:60Z", "2020-1-2T3:4:5Z", "2020-01-01T00:00:0xZ",
+				"1582-10-10T00:00:00Z", "1582-12-31T23:59:59Z", "1583-01-01T00:00:00Z", "0001-01-01T00:00:00Z",
+				"9999-12-31T23:59:59Z", "9999-12-31T23:59:59.999Z", "10000-01-01T00:00:00Z", "+2020-01-01T00:00:00Z",
+				" 2020-01-01T00:00:00Z", "2020-01-01 00:00:00Z", "", "time", "2020-01-01T00:00:00.-01Z" };
+		for (String text : texts) {
+			assertSameParsedTime(text);
+		}
+		Assert.assertEquals(0, GPXUtilities.parseTime(null));
+		Assert.assertEquals(0, GPXUtilities.parseTime("time"));
+
+		// times out of fast range are formatted by SimpleDateFormat
+		long[] times = { -12219292800001L, -62135596800000L, 253402300800000L, 253402300800000L * 2, Long.MIN_VALUE / 2,
+				-1, -999, -1000, -1001 };
+		for (long time : times) {
+			Assert.assertEquals(String.valueOf(time), TIME_FORMAT.format(new Date(time)), GPXUtilities.formatTime(time));
+		}
+	}
+}
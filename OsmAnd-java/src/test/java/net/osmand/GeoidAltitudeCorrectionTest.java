@@ -0,0 +1,119 @@
+package net.osmand;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class GeoidAltitudeCorrectionTest {
+
+	private static final int COLUMNS = 360 * 4;
+	private static final int ROWS = 180 * 4 + 1;
+	private static final double EPS = 1e-4;
+
+	private static File dir;
+	private static GeoidAltitudeCorrection geoid;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		dir = File.createTempFile("geoid", "");
+		Assert.assertTrue(dir.delete() && dir.mkdir());
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(new File(dir, "WW15MGH.DAC"))));
+		for (int row = 0; row < ROWS; row++) {
+			for (int column = 0; column < COLUMNS; column++) {
+				out.writeShort(value(row, column));
+			}
+		}
+		out.close();
+		geoid = new GeoidAltitudeCorrection(dir);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		new File(dir, "WW15MGH.DAC").delete();
+		dir.delete();
+	}
+
+	// height in cm
+	private static int value(int row, int column) {
+		return (row * 7 + column * 3) % 4000 - 2000;
+	}
+
+	private static double height(int row, int column) {
+		return value(row, column) / 100d;
+	}
+
+	@Test
+	public void testNodes() {
+		Assert.assertTrue(geoid.isGeoidInformationAvailable());
+		Assert.assertEquals(height(0, 0), geoid.getGeoidHeight(90, 0), EPS);
+		Assert.assertEquals(height(ROWS - 1, 0), geoid.getGeoidHeight(-90, 0), EPS);
+		// 45.25 N, 10.5 E
+		Assert.assertEquals(height(179, 42), geoid.getGeoidHeight(45.25, 10.5), EPS);
+		// negative longitude is counted from 360
+		Assert.assertEquals(height(360, COLUMNS - 4), geoid.getGeoidHeight(0, -1), EPS);
+		Assert.assertEquals(height(360, 0), geoid.getGeoidHeight(0, 360), EPS);
+	}
+
+	@Test
+	public void testMidpoints() {
+		double expected = (height(179, 42) + height(179, 43)) / 2;
+		Assert.assertEquals(expected, geoid.getGeoidHeight(45.25, 10.625), EPS);
+		expected = (height(179, 42) + height(180, 42)) / 2;
+		Assert.assertEquals(expected, geoid.getGeoidHeight(45.125, 10.5), EPS);
+		expected = (height(179, 42) + height(179, 43) + height(180, 42) + height(180, 43)) / 4;
+		Assert.assertEquals(expected, geoid.getGeoidHeight(45.125, 10.625), EPS);
+		// quarter of cell
+		expected = height(179, 42) * 0.75 + height(179, 43) * 0.25;
+		Assert.assertEquals(expected, geoid.getGeoidHeight(45.25, 10.5625), EPS);
+	}
+
+	@Test
+	public void testLongitudeWrap() {
+		// between last column (359.75) and first column (0)
+		double expected = height(360, COLUMNS - 1) * 0.4 + height(360, 0) * 0.6;
+		Assert.assertEquals(expected, geoid.getGeoidHeight(0, 359.9), EPS);
+		Assert.assertEquals(expected, geoid.getGeoidHeight(0, -0.1), EPS);
+		Assert.assertEquals(height(360, 0), geoid.getGeoidHeight(0, 0), EPS);
+	}
+
+	@Test
+	public void testLatitudeClamping() {
+		Assert.assertEquals(height(0, 40), geoid.getGeoidHeight(90, 10), EPS);
+		Assert.assertEquals(height(0, 40), geoid.getGeoidHeight(90.5, 10), EPS);
+		Assert.assertEquals(height(ROWS - 1, 40), geoid.getGeoidHeight(-90, 10), EPS);
+		Assert.assertEquals(height(ROWS - 1, 40), geoid.getGeoidHeight(-90.5, 10), EPS);
+		// last cell before pole
+		double expected = (height(ROWS - 2, 40) + height(ROWS - 1, 40)) / 2;
+		Assert.assertEquals(expected, geoid.getGeoidHeight(-89.875, 10), EPS);
+	}
+
+	@Test
+	public void testCorrectAltitudes() {
+		double[] lats = { 45.25, 45.25, 0 };
+		double[] lons = { 10.5, 10.5, 359.9 };
+		double[] altitudes = { 100, Double.NaN, -50 };
+		geoid.correctAltitudes(lats, lons, altitudes);
+		Assert.assertEquals(100 - geoid.getGeoidHeight(45.25, 10.5), altitudes[0], EPS);
+		Assert.assertTrue(Double.isNaN(altitudes[1]));
+		Assert.assertEquals(-50 - geoid.getGeoidHeight(0, 359.9), altitudes[2], EPS);
+		float[] heights = new float[3];
+		geoid.getGeoidHeights(lats, lons, heights);
+		Assert.assertEquals(height(179, 42), heights[0], EPS);
+
+		// no grid - altitudes are not changed
+		GeoidAltitudeCorrection empty = new GeoidAltitudeCorrection(new File(dir, "missing"));
+		Assert.assertFalse(empty.isGeoidInformationAvailable());
+		double[] alt = { 100 };
+		empty.correctAltitudes(new double[] { 0 }, new double[] { 0 }, alt);
+		Assert.assertEquals(100, alt[0], 0);
+		Assert.assertEquals(0, empty.getGeoidHeight(0, 0), 0);
+	}
+}
@@ -0,0 +1,87 @@
+package net.osmand;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class TspHeldKarpTest {
+
+	private static final int POINTS = 6;
+
+	// points on a line, 100 between neighbors
+	private static double[][] lineCosts() {
+		double[][] costs = new double[POINTS][POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			for (int j = 0; j < POINTS; j++) {
+				costs[i][j] = Math.abs(i - j) * 100;
+			}
+		}
+		return costs;
+	}
+
+	private static double tourCost(int[] order, int skip) {
+		double c = 0;
+		int prev = -1;
+		for (int i = 0; i <= order.length; i++) {
+			int p = order[i % order.length];
+			if (p == skip) {
+				continue;
+			}
+			if (prev != -1) {
+				c += Math.abs(p - prev) * 100;
+			}
+			prev = p;
+		}
+		return c;
+	}
+
+	private static void assertPermutation(int[] order) {
+		Assert.assertEquals(POINTS, order.length);
+		Assert.assertEquals(0, order[0]);
+		int[] sorted = order.clone();
+		Arrays.sort(sorted);
+		for (int i = 0; i < POINTS; i++) {
+			Assert.assertEquals(i, sorted[i]);
+		}
+	}
+
+	@Test
+	public void testConnectedTargets() {
+		int[] order = new TspHeldKarp().readInput(lineCosts(), true).solve();
+		assertPermutation(order);
+		Assert.assertEquals(2 * (POINTS - 1) * 100, tourCost(order, -1), 1e-9);
+	}
+
+	@Test
+	public void testDisconnectedTarget() {
+		int disconnected = 3;
+		double[][] costs = lineCosts();
+		for (int i = 0; i < POINTS; i++) {
+			if (i != disconnected) {
+				costs[i][disconnected] = Double.POSITIVE_INFINITY;
+				costs[disconnected][i] = i % 2 == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+			}
+		}
+		int[] order = new TspHeldKarp().readInput(costs, true).solve();
+		assertPermutation(order);
+		// not reachable target is visited once, other targets keep optimal order
+		Assert.assertEquals(2 * (POINTS - 1) * 100, tourCost(order, disconnected), 1e-9);
+	}
+
+	@Test
+	public void testNotReachableCosts() {
+		double[][] costs = lineCosts();
+		costs[1][2] = Double.POSITIVE_INFINITY;
+		costs[2][1] = Double.NaN;
+		double[][] res = TspAnt.replaceNotReachableCosts(costs);
+		// costs of caller are not modified
+		Assert.assertTrue(Double.isInfinite(costs[1][2]));
+		Assert.assertTrue(Double.isNaN(costs[2][1]));
+		double notReachable = res[1][2];
+		Assert.assertEquals(notReachable, res[2][1], 0);
+		// longer than any tour of reachable costs
+		Assert.assertEquals((POINTS - 1) * 100 * POINTS + 1, notReachable, 0);
+		Assert.assertEquals(costs[0][5], res[0][5], 0);
+	}
+}
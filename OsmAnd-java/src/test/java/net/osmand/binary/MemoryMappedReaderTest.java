@@ -0,0 +1,238 @@
+package net.osmand.binary;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MemoryMappedReaderTest {
+
+	private static final int RECORDS = 500;
+
+	@Test
+	public void testCodedInputStreamParity() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		int[] offsets = new int[RECORDS];
+		for (int i = 0; i < RECORDS; i++) {
+			out.flush();
+			offsets[i] = bytes.size();
+			out.writeInt64NoTag((long) i * i);
+			out.writeStringNoTag("record " + i);
+			// every 10th record is bigger than stream buffer
+			byte[] raw = new byte[i % 10 == 0 ? 10000 : i];
+			for (int j = 0; j < raw.length; j++) {
+				raw[j] = (byte) (i + j);
+			}
+			out.writeRawVarint32(raw.length);
+			out.writeRawBytes(raw);
+		}
+		out.flush();
+		File file = File.createTempFile("coded", ".bin");
+		file.deleteOnExit();
+		FileOutputStream fout = new FileOutputStream(file);
+		fout.write(bytes.toByteArray());
+		fout.close();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		ByteBuffer mapped = BinaryMapIndexReader.mapFile(file);
+		try {
+			CodedInputStream fileIS = CodedInputStream.newInstance(raf);
+			CodedInputStream mappedIS = CodedInputStream.newInstance(mapped);
+			for (int i = 0; i < RECORDS; i++) {
+				assertRecord(i, fileIS, mappedIS);
+			}
+			Assert.assertTrue(fileIS.isAtEnd());
+			Assert.assertTrue(mappedIS.isAtEnd());
+			// random access and skip
+			for (int k = 0; k < RECORDS; k++) {
+				int i = (k * 7919) % RECORDS;
+				fileIS.seek(offsets[i]);
+				mappedIS.seek(offsets[i]);
+				if (k % 2 == 0) {
+					assertRecord(i, fileIS, mappedIS);
+				} else {
+					Assert.assertEquals(fileIS.readInt64(), mappedIS.readInt64());
+					int len = fileIS.readRawVarint32();
+					Assert.assertEquals(len, mappedIS.readRawVarint32());
+					fileIS.skipRawBytes(len);
+					mappedIS.skipRawBytes(len);
+					Assert.assertEquals(fileIS.getTotalBytesRead(), mappedIS.getTotalBytesRead());
+					Assert.assertArrayEquals(fileIS.readBytes().toByteArray(), mappedIS.readBytes().toByteArray());
+				}
+			}
+			// mapping is shared, position of the original buffer is untouched
+			Assert.assertEquals(0, mapped.position());
+		} finally {
+			raf.close();
+		}
+	}
+
+	@Test
+	public void testCodedInputStreamLimits() throws IOException {
+		// messages with int and string fields, prefixed by length
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		int[] offsets = new int[RECORDS];
+		for (int i = 0; i < RECORDS; i++) {
+			ByteArrayOutputStream msg = new ByteArrayOutputStream();
+			CodedOutputStream msgOut = CodedOutputStream.newInstance(msg);
+			msgOut.writeInt64(1, (long) i * i);
+			msgOut.writeString(2, i % 10 == 0 ? new String(new char[7000]).replace('\0', 'a') : "record " + i);
+			msgOut.flush();
+			out.flush();
+			offsets[i] = bytes.size();
+			out.writeRawVarint32(msg.size());
+			out.writeRawBytes(msg.toByteArray());
+		}
+		out.flush();
+		File file = File.createTempFile("coded", ".bin");
+		file.deleteOnExit();
+		FileOutputStream fout = new FileOutputStream(file);
+		fout.write(bytes.toByteArray());
+		fout.close();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			CodedInputStream fileIS = CodedInputStream.newInstance(raf);
+			CodedInputStream mappedIS = CodedInputStream.newInstance(BinaryMapIndexReader.mapFile(file));
+			for (int k = 0; k < RECORDS; k++) {
+				// sequential reads and seeks backward and forward
+				int i = k % 3 == 0 ? k : (k * 7919) % RECORDS;
+				if (k % 3 != 0) {
+					fileIS.seek(offsets[i]);
+					mappedIS.seek(offsets[i]);
+				}
+				Assert.assertEquals(readMessage(fileIS), readMessage(mappedIS));
+				Assert.assertEquals(fileIS.getTotalBytesRead(), mappedIS.getTotalBytesRead());
+				if (k % 3 == 0 && i + 1 < RECORDS) {
+					fileIS.seek(offsets[i + 1]);
+					mappedIS.seek(offsets[i + 1]);
+				}
+			}
+			// reading after limit fails
+			mappedIS.seek(offsets[0]);
+			int oldLimit = mappedIS.pushLimit(mappedIS.readRawVarint32());
+			mappedIS.readTag();
+			mappedIS.readInt64();
+			mappedIS.readTag();
+			mappedIS.readString();
+			Assert.assertTrue(mappedIS.isAtEnd());
+			try {
+				mappedIS.readRawByte();
+				Assert.fail();
+			} catch (InvalidProtocolBufferException e) {
+				// expected
+			}
+			mappedIS.popLimit(oldLimit);
+			Assert.assertFalse(mappedIS.isAtEnd());
+			Assert.assertEquals(offsets[1], mappedIS.getTotalBytesRead());
+			// reading after end of mapping fails
+			mappedIS.seek(bytes.size() - 1);
+			mappedIS.readRawByte();
+			Assert.assertTrue(mappedIS.isAtEnd());
+			mappedIS.seek(bytes.size() - 2);
+			try {
+				mappedIS.readRawBytes(3);
+				Assert.fail();
+			} catch (InvalidProtocolBufferException e) {
+				// expected
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	private String readMessage(CodedInputStream is) throws IOException {
+		int oldLimit = is.pushLimit(is.readRawVarint32());
+		StringBuilder sb = new StringBuilder();
+		int t;
+		while ((t = is.readTag()) != 0) {
+			switch (WireFormat.getTagFieldNumber(t)) {
+			case 1:
+				sb.append(is.readInt64()).append(' ');
+				break;
+			case 2:
+				sb.append(is.readString()).append(' ');
+				break;
+			default:
+				is.skipField(t);
+			}
+		}
+		is.popLimit(oldLimit);
+		return sb.toString();
+	}
+
+	private void assertRecord(int i, CodedInputStream fileIS, CodedInputStream mappedIS) throws IOException {
+		Assert.assertEquals((long) i * i, fileIS.readInt64());
+		Assert.assertEquals((long) i * i, mappedIS.readInt64());
+		Assert.assertEquals("record " + i, fileIS.readString());
+		Assert.assertEquals("record " + i, mappedIS.readString());
+		Assert.assertEquals(fileIS.getTotalBytesRead(), mappedIS.getTotalBytesRead());
+		Assert.assertArrayEquals(fileIS.readBytes().toByteArray(), mappedIS.readBytes().toByteArray());
+	}
+
+	@Test
+	public void testObfParity() throws IOException {
+		File obf = new File("src/test/resources/Routing_test.obf");
+		Assume.assumeTrue("Test map is not available", obf.exists());
+		BinaryMapIndexReader fileReader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+		BinaryMapIndexReader mappedReader = new BinaryMapIndexReader(BinaryMapIndexReader.mapFile(obf), obf);
+		BinaryMapIndexReader copyReader = new BinaryMapIndexReader(mappedReader);
+		try {
+			Assert.assertTrue(mappedReader.isMemoryMapped());
+			Assert.assertTrue(copyReader.isMemoryMapped());
+			Assert.assertEquals(fileReader.getVersion(), mappedReader.getVersion());
+			Assert.assertEquals(fileReader.getDateCreated(), mappedReader.getDateCreated());
+			Assert.assertEquals(fileReader.getIndexes().size(), mappedReader.getIndexes().size());
+			for (int i = 0; i < fileReader.getIndexes().size(); i++) {
+				Assert.assertEquals(fileReader.getIndexes().get(i).getFilePointer(),
+						mappedReader.getIndexes().get(i).getFilePointer());
+				Assert.assertEquals(fileReader.getIndexes().get(i).getLength(),
+						mappedReader.getIndexes().get(i).getLength());
+			}
+			List<Long> expected = readRouteObjects(fileReader);
+			Assert.assertFalse(expected.isEmpty());
+			Assert.assertEquals(expected, readRouteObjects(mappedReader));
+			Assert.assertEquals(expected, readRouteObjects(copyReader));
+		} finally {
+			fileReader.close();
+			mappedReader.close();
+			copyReader.close();
+		}
+	}
+
+	private List<Long> readRouteObjects(BinaryMapIndexReader reader) throws IOException {
+		List<Long> res = new ArrayList<Long>();
+		for (RouteRegion region : reader.getRoutingIndexes()) {
+			BinaryMapIndexReader.SearchRequest<RouteDataObject> req = BinaryMapIndexReader.buildSearchRouteRequest(
+					0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
+			List<RouteSubregion> subregions = reader.searchRouteIndexTree(req, region.getSubregions());
+			for (RouteSubregion sub : subregions) {
+				for (RouteDataObject o : reader.loadRouteIndexData(sub)) {
+					res.add(o.getId());
+					res.add((long) o.getPointsLength());
+					res.add((long) o.getPoint31XTile(0));
+					res.add((long) o.getPoint31YTile(o.getPointsLength() - 1));
+				}
+			}
+		}
+		return res;
+	}
+}
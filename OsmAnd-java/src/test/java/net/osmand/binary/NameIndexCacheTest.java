@@ -0,0 +1,242 @@
+package net.osmand.binary;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.Collator;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.OsmAndCollator;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.IndexedStringTableCache.StringTableLevel;
+import net.osmand.data.Amenity;
+import net.osmand.data.MapObject;
+import net.osmand.util.Algorithms;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+import gnu.trove.list.array.TIntArrayList;
+
+public class NameIndexCacheTest {
+
+	private static final String[] NAMES = { "Haupt", "Hafen", "Bahnhof", "Berg", "Kirch", "Schul" };
+	private static final String[] SUFFIXES = { "", "str", "straße", "weg", "platz", "gasse" };
+
+	@Test
+	public void testCachedStringTableMatches() throws IOException {
+		List<String> words = new ArrayList<>();
+		for (String n : NAMES) {
+			for (String s : SUFFIXES) {
+				words.add(n + s);
+			}
+		}
+		Collections.sort(words);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		writeLevel(out, words, "");
+		out.flush();
+		File file = File.createTempFile("names", ".obf");
+		file.deleteOnExit();
+		FileOutputStream fout = new FileOutputStream(file);
+		fout.write(bytes.toByteArray());
+		fout.close();
+
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file, false);
+		BinaryMapIndexReader cachedReader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file, false);
+		cachedReader.setNameIndexCacheSize(1 << 20);
+		Collator collator = OsmAndCollator.primaryCollator();
+		try {
+			// next typed characters reuse decoded levels
+			String[][] queries = { { "Haupt" }, { "Hauptstr" }, { "Hauptstraße" }, { "H" }, { "Ha", "Berg" },
+					{ "Kirchgasse" }, { "Zoo" }, { "Hauptstr" } };
+			for (String[] q : queries) {
+				List<String> ql = Arrays.asList(q);
+				Assert.assertEquals(ql.toString(), search(reader, collator, ql, bytes.size()),
+						search(cachedReader, collator, ql, bytes.size()));
+			}
+			Assert.assertFalse(search(reader, collator, Collections.singletonList("Hauptstr"), bytes.size()).isEmpty());
+			Assert.assertTrue(cachedReader.codedIS.getTotalBytesRead() <= bytes.size());
+		} finally {
+			reader.close();
+			cachedReader.close();
+		}
+	}
+
+	@Test
+	public void testEviction() {
+		StringTableLevel level = new StringTableLevel(new String[] { "key" },
+				new int[] { IndexedStringTableCache.KEY, 0, IndexedStringTableCache.VAL, 1 });
+		IndexedStringTableCache cache = new IndexedStringTableCache(level.size * 3);
+		for (int i = 0; i < 3; i++) {
+			cache.put(i, level);
+		}
+		Assert.assertEquals(level.size * 3, cache.getSize());
+		// level 0 becomes recently used, so level 1 is the eldest one
+		Assert.assertNotNull(cache.get(0));
+		for (int i = 3; i < 20; i++) {
+			cache.put(i, level);
+			Assert.assertTrue(cache.getSize() <= level.size * 3);
+		}
+		Assert.assertNull(cache.get(1));
+		Assert.assertNotNull(cache.get(19));
+		// replaced level is counted once
+		cache.put(19, level);
+		Assert.assertEquals(level.size * 3, cache.getSize());
+		// level bigger than limit is kept alone
+		String[] keys = new String[100];
+		Arrays.fill(keys, "long key");
+		StringTableLevel big = new StringTableLevel(keys, new int[0]);
+		cache.put(100, big);
+		Assert.assertEquals(big.size, cache.getSize());
+		Assert.assertNotNull(cache.get(100));
+		cache.clear();
+		Assert.assertEquals(0, cache.getSize());
+		Assert.assertNull(cache.get(100));
+	}
+
+	@Test
+	public void testSearchByNameWithCache() throws IOException {
+		File[] files = new File("src/test/resources/search/").listFiles();
+		File obfZipFile = null;
+		if (files != null) {
+			for (File f : files) {
+				if (f.getName().endsWith(".obf.gz")) {
+					obfZipFile = f;
+					break;
+				}
+			}
+		}
+		Assume.assumeTrue("Test map is not available", obfZipFile != null);
+		File obf = File.createTempFile("search", ".obf");
+		obf.deleteOnExit();
+		GZIPInputStream gzin = new GZIPInputStream(new FileInputStream(obfZipFile));
+		FileOutputStream fous = new FileOutputStream(obf);
+		Algorithms.streamCopy(gzin, fous);
+		fous.close();
+		gzin.close();
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+		BinaryMapIndexReader cachedReader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+		cachedReader.setNameIndexCacheSize(1 << 22);
+		try {
+			for (String q : new String[] { "Haupt", "Hauptstr", "Ha", "Hauptstr" }) {
+				Assert.assertEquals(q, searchAddress(reader, q), searchAddress(cachedReader, q));
+				Assert.assertEquals(q, searchPoi(reader, q), searchPoi(cachedReader, q));
+			}
+		} finally {
+			reader.close();
+			cachedReader.close();
+		}
+	}
+
+	// keys are split by 2 characters, values are indexes of words
+	private static void writeLevel(CodedOutputStream out, List<String> words, String prefix) throws IOException {
+		Map<String, List<String>> groups = new TreeMap<>();
+		for (String w : words) {
+			String chunk = w.substring(prefix.length(), Math.min(w.length(), prefix.length() + 2));
+			List<String> l = groups.get(chunk);
+			if (l == null) {
+				l = new ArrayList<>();
+				groups.put(chunk, l);
+			}
+			l.add(w);
+		}
+		for (Map.Entry<String, List<String>> e : groups.entrySet()) {
+			String key = prefix + e.getKey();
+			out.writeString(OsmandOdb.IndexedStringTable.KEY_FIELD_NUMBER, e.getKey());
+			List<String> longer = new ArrayList<>();
+			for (String w : e.getValue()) {
+				if (w.equals(key)) {
+					out.writeTag(OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+					int val = words.indexOf(w) + prefix.length() * 1000;
+					out.writeRawByte(val >>> 24);
+					out.writeRawByte(val >>> 16);
+					out.writeRawByte(val >>> 8);
+					out.writeRawByte(val);
+				} else {
+					longer.add(w);
+				}
+			}
+			if (!longer.isEmpty()) {
+				ByteArrayOutputStream sub = new ByteArrayOutputStream();
+				CodedOutputStream subOut = CodedOutputStream.newInstance(sub);
+				writeLevel(subOut, longer, key);
+				subOut.flush();
+				out.writeTag(OsmandOdb.IndexedStringTable.SUBTABLES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+				out.writeRawVarint32(sub.size());
+				out.writeRawBytes(sub.toByteArray());
+			}
+		}
+	}
+
+	private static List<String> search(BinaryMapIndexReader reader, Collator collator, List<String> queries,
+			int length) throws IOException {
+		List<TIntArrayList> listOffsets = new ArrayList<>();
+		TIntArrayList matchedCharacters = new TIntArrayList();
+		for (int i = 0; i < queries.size(); i++) {
+			listOffsets.add(new TIntArrayList());
+			matchedCharacters.add(0);
+		}
+		reader.codedIS.seek(0);
+		int oldLimit = reader.codedIS.pushLimit(length);
+		reader.readIndexedStringTable(collator, queries, "", listOffsets, matchedCharacters);
+		reader.codedIS.popLimit(oldLimit);
+		List<String> res = new ArrayList<>();
+		for (int i = 0; i < queries.size(); i++) {
+			res.add(matchedCharacters.get(i) + ":" + listOffsets.get(i));
+		}
+		return res;
+	}
+
+	private static List<String> searchAddress(BinaryMapIndexReader reader, String name) throws IOException {
+		final List<String> res = new ArrayList<>();
+		SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(new ResultMatcher<MapObject>() {
+			@Override
+			public boolean publish(MapObject object) {
+				res.add(object.getClass().getSimpleName() + " " + object.getId() + " " + object.getName());
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		}, name, StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+		reader.searchAddressDataByName(req);
+		return res;
+	}
+
+	private static List<String> searchPoi(BinaryMapIndexReader reader, String name) throws IOException {
+		final List<String> res = new ArrayList<>();
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(0, 0, name, 0, Integer.MAX_VALUE,
+				0, Integer.MAX_VALUE, new ResultMatcher<Amenity>() {
+					@Override
+					public boolean publish(Amenity object) {
+						res.add(object.getId() + " " + object.getName());
+						return false;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return false;
+					}
+				});
+		reader.searchPoiByName(req);
+		return res;
+	}
+}
@@ -0,0 +1,154 @@
+package net.osmand.data;
+
+import net.osmand.osm.edit.Node;
+import net.osmand.osm.edit.Way;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class MultipolygonBuilderTest {
+
+	private long nextId = 1;
+
+	// nodes on circle, last node is the first one
+	private List<Node> createCircle(int nodes, double lat, double lon, double r) {
+		List<Node> circle = new ArrayList<Node>();
+		for (int i = 0; i < nodes; i++) {
+			double angle = 2 * Math.PI * i / nodes;
+			circle.add(new Node(lat + r * Math.sin(angle), lon + r * Math.cos(angle), nextId++));
+		}
+		circle.add(circle.get(0));
+		return circle;
+	}
+
+	// pieces of line with common end nodes, every second piece is reversed
+	private List<Way> split(List<Node> nodes, int pieces, boolean reverse) {
+		List<Way> ways = new ArrayList<Way>();
+		int len = (nodes.size() - 1) / pieces;
+		for (int k = 0; k < pieces; k++) {
+			int end = k == pieces - 1 ? nodes.size() : (k + 1) * len + 1;
+			List<Node> piece = new ArrayList<Node>(nodes.subList(k * len, end));
+			if (reverse && k % 2 == 1) {
+				Collections.reverse(piece);
+			}
+			ways.add(new Way(nextId++, piece));
+		}
+		return ways;
+	}
+
+	// nodes follow the line in one of directions
+	private static void assertSameLine(List<Node> expected, List<Node> border) {
+		Assert.assertEquals(expected.size(), border.size());
+		List<Node> reversed = new ArrayList<Node>(expected);
+		Collections.reverse(reversed);
+		Assert.assertTrue(expected.equals(border) || reversed.equals(border));
+	}
+
+	// nodes follow the closed line in one of directions starting from any node
+	private static void assertSameRing(List<Node> expected, List<Node> border) {
+		Assert.assertEquals(expected.size(), border.size());
+		Assert.assertSame(border.get(0), border.get(border.size() - 1));
+		int n = expected.size() - 1;
+		int start = expected.indexOf(border.get(0));
+		Assert.assertTrue(start >= 0);
+		int dir = expected.get((start + 1) % n) == border.get(1) ? 1 : -1;
+		for (int i = 0; i < n; i++) {
+			Assert.assertSame(expected.get(((start + dir * i) % n + n) % n), border.get(i));
+		}
+	}
+
+	@Test
+	public void testCombineReversedAndUnorderedWays() {
+		List<Node> circle = createCircle(400, 52.0, 13.0, 0.05);
+		List<Way> ways = split(circle, 20, true);
+		Collections.shuffle(ways, new Random(1));
+		List<Ring> rings = new MultipolygonBuilder().combineToRings(ways);
+		Assert.assertEquals(1, rings.size());
+		Assert.assertTrue(rings.get(0).isClosed());
+		assertSameRing(circle, rings.get(0).getBorder());
+		// original ways are not changed
+		Assert.assertEquals(21, ways.get(0).getNodes().size());
+
+		// closed way is a ring itself
+		Way closed = new Way(nextId++, circle);
+		rings = new MultipolygonBuilder().combineToRings(Collections.singletonList(closed));
+		Assert.assertEquals(1, rings.size());
+		Assert.assertTrue(rings.get(0).isClosed());
+		Assert.assertEquals(circle, rings.get(0).getBorder());
+	}
+
+	@Test
+	public void testCombineUnclosedWays() {
+		List<Node> circle = createCircle(400, 52.0, 13.0, 0.05);
+		List<Way> ways = split(circle, 20, true);
+		// ring without last piece isn't closed
+		Way missing = ways.remove(ways.size() - 1);
+		Collections.shuffle(ways, new Random(2));
+		List<Ring> rings = new MultipolygonBuilder().combineToRings(ways);
+		Assert.assertEquals(1, rings.size());
+		Assert.assertFalse(rings.get(0).isClosed());
+		assertSameLine(circle.subList(0, circle.size() - missing.getNodes().size() + 1), rings.get(0).getBorder());
+
+		// two gaps split ring in two lines
+		ways.remove(9);
+		rings = new MultipolygonBuilder().combineToRings(ways);
+		Assert.assertEquals(2, rings.size());
+		int nodes = 0;
+		for (Ring r : rings) {
+			Assert.assertFalse(r.isClosed());
+			nodes += r.getBorder().size();
+		}
+		Assert.assertEquals(circle.size() - 2 * 20 + 1, nodes);
+
+		// ways with less than 2 nodes are skipped
+		Way single = new Way(nextId++);
+		single.addNode(new Node(52.0, 13.0, nextId++));
+		Assert.assertTrue(new MultipolygonBuilder().combineToRings(Collections.singletonList(single)).isEmpty());
+	}
+
+	@Test
+	public void testSplitPerOuterRing() {
+		MultipolygonBuilder builder = new MultipolygonBuilder();
+		List<Node> first = createCircle(300, 52.0, 13.0, 0.05);
+		List<Node> second = createCircle(300, 52.0, 13.2, 0.05);
+		for (Way w : split(first, 6, true)) {
+			builder.addOuterWay(w);
+		}
+		for (Way w : split(second, 5, false)) {
+			builder.addOuterWay(w);
+		}
+		// inner rings of both outers in mixed order
+		List<Way> inners = new ArrayList<Way>();
+		inners.addAll(split(createCircle(200, 52.0, 13.0, 0.02), 4, true));
+		inners.addAll(split(createCircle(200, 52.01, 13.21, 0.01), 4, true));
+		inners.addAll(split(createCircle(200, 51.99, 13.19, 0.01), 4, true));
+		Collections.shuffle(inners, new Random(3));
+		for (Way w : inners) {
+			builder.addInnerWay(w);
+		}
+		List<Multipolygon> polygons = builder.splitPerOuterRing(null);
+		Assert.assertEquals(2, polygons.size());
+		int innerRings = 0;
+		for (Multipolygon mp : polygons) {
+			Assert.assertEquals(1, mp.getOuterRings().size());
+			Ring outer = mp.getOuterRings().get(0);
+			Assert.assertTrue(outer.isClosed());
+			boolean firstOuter = outer.getBorder().contains(first.get(0));
+			Assert.assertEquals(firstOuter ? 1 : 2, mp.getInnerRings().size());
+			for (Ring inner : mp.getInnerRings()) {
+				Assert.assertTrue(inner.isClosed());
+				Assert.assertTrue(inner.isIn(outer));
+			}
+			innerRings += mp.getInnerRings().size();
+			Assert.assertTrue(mp.areRingsComplete());
+			Assert.assertFalse(mp.containsPoint(52.0, firstOuter ? 13.0 : 13.21));
+			Assert.assertTrue(mp.containsPoint(52.0, firstOuter ? 13.04 : 13.16));
+		}
+		Assert.assertEquals(3, innerRings);
+	}
+}
@@ -0,0 +1,104 @@
+package net.osmand.data;
+
+import net.osmand.osm.edit.Node;
+import net.osmand.osm.edit.Way;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RingTest {
+
+	private static final double CENTER_LAT = 52.0;
+	private static final double CENTER_LON = 13.0;
+
+	private long nextId = 1;
+
+	private Ring createRing(int nodes, double r1, double r2) {
+		return createRing(nodes, CENTER_LAT, CENTER_LON, r1, r2);
+	}
+
+	// closed way around center, radius changes between r1 and r2 on every node (star for r1 != r2)
+	private Ring createRing(int nodes, double lat, double lon, double r1, double r2) {
+		List<Node> border = new ArrayList<Node>();
+		for (int i = 0; i < nodes; i++) {
+			double r = i % 2 == 0 ? r1 : r2;
+			double angle = 2 * Math.PI * i / nodes;
+			border.add(new Node(lat + r * Math.sin(angle), lon + r * Math.cos(angle), nextId++));
+		}
+		border.add(border.get(0));
+		return new Ring(new Way(nextId++, border));
+	}
+
+	// crossing number check over all segments of border
+	private static boolean containsPointBruteForce(List<Node> border, double lat, double lon) {
+		boolean inside = false;
+		for (int i = 0, j = border.size() - 1; i < border.size(); j = i++) {
+			Node a = border.get(i);
+			Node b = border.get(j);
+			if ((a.getLatitude() > lat) != (b.getLatitude() > lat)
+					&& lon < (b.getLongitude() - a.getLongitude()) * (lat - a.getLatitude())
+							/ (b.getLatitude() - a.getLatitude()) + a.getLongitude()) {
+				inside = !inside;
+			}
+		}
+		return inside;
+	}
+
+	private static int assertContainsPoints(Ring ring, Random rnd, int count) {
+		QuadRect bbox = ring.getBBox();
+		int inside = 0;
+		for (int i = 0; i < count; i++) {
+			// points around bbox too
+			double lat = bbox.bottom - 0.01 + rnd.nextDouble() * (bbox.top - bbox.bottom + 0.02);
+			double lon = bbox.left - 0.01 + rnd.nextDouble() * (bbox.right - bbox.left + 0.02);
+			boolean expected = containsPointBruteForce(ring.getBorder(), lat, lon);
+			Assert.assertEquals(lat + " " + lon, expected, ring.containsPoint(lat, lon));
+			inside += expected ? 1 : 0;
+		}
+		return inside;
+	}
+
+	@Test
+	public void testContainsPoint() {
+		Random rnd = new Random(1);
+		// small ring is checked without index
+		Ring small = createRing(40, 0.05, 0.03);
+		Assert.assertTrue(assertContainsPoints(small, rnd, 5000) > 0);
+		// big rings are checked by index of latitude intervals
+		Ring star = createRing(1000, 0.05, 0.03);
+		Assert.assertTrue(assertContainsPoints(star, rnd, 20000) > 0);
+		Ring circle = createRing(5000, 0.05, 0.05);
+		Assert.assertTrue(assertContainsPoints(circle, rnd, 20000) > 0);
+
+		Assert.assertTrue(star.containsPoint(CENTER_LAT, CENTER_LON));
+		Assert.assertTrue(star.containsNode(new Node(CENTER_LAT + 0.029, CENTER_LON, -1)));
+		Assert.assertFalse(star.containsPoint(CENTER_LAT + 0.06, CENTER_LON));
+		Assert.assertFalse(star.containsPoint(CENTER_LAT, CENTER_LON - 0.06));
+	}
+
+	@Test
+	public void testIsIn() {
+		Ring star = createRing(1000, 0.05, 0.03);
+		// inside of star
+		Ring inner = createRing(500, 0.029, 0.029);
+		Ring smallInner = createRing(20, 0.01, 0.01);
+		// tips of star are outside
+		Ring crossing = createRing(500, 0.04, 0.04);
+		// ring in bbox of star, but outside of it
+		Ring between = createRing(300, CENTER_LAT + 0.045, CENTER_LON + 0.045, 0.004, 0.004);
+		Assert.assertTrue(between.isInBBox(star));
+
+		Assert.assertTrue(inner.isIn(star));
+		Assert.assertTrue(smallInner.isIn(star));
+		Assert.assertTrue(smallInner.isIn(inner));
+		Assert.assertFalse(crossing.isIn(star));
+		Assert.assertFalse(star.isIn(crossing));
+		Assert.assertFalse(between.isIn(star));
+		Assert.assertFalse(star.isIn(inner));
+		Assert.assertFalse(inner.isIn(smallInner));
+	}
+}
@@ -0,0 +1,169 @@
+package net.osmand.render;
+
+import net.osmand.binary.BinaryMapDataObject;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.TagValuePair;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class RenderingObjectStyleCacheTest {
+
+	private static final String[][] TYPES = {
+			{ "highway", "primary" }, { "highway", "track" }, { "highway", "service" }, { "natural", "water" },
+			{ "natural", "wood" }, { "building", "yes" } };
+	private static final String[][] ADDITIONAL_TYPES = {
+			{ "bridge", "yes" }, { "tunnel", "yes" }, { "tracktype", "grade1" }, { "surface", "gravel" } };
+	private static final int[] STATES = { RenderingRulesStorage.ORDER_RULES, RenderingRulesStorage.LINE_RULES,
+			RenderingRulesStorage.POLYGON_RULES };
+
+	private RenderingRulesStorage storage;
+	private MapIndex mapIndex;
+
+	@Before
+	public void setUp() throws Exception {
+		storage = RenderingRuleProgramTest.parseStorage(RenderingRuleProgramTest.TEST_STYLE);
+		mapIndex = new MapIndex();
+		int id = 1;
+		for (String[] tv : TYPES) {
+			mapIndex.initMapEncodingRule(0, id++, tv[0], tv[1]);
+		}
+		for (String[] tv : ADDITIONAL_TYPES) {
+			mapIndex.initMapEncodingRule(0, id++, tv[0], tv[1]);
+		}
+		mapIndex.finishInitializingTags();
+	}
+
+	private List<BinaryMapDataObject> createObjects(Random rnd, int count) {
+		List<BinaryMapDataObject> objects = new ArrayList<BinaryMapDataObject>();
+		for (int i = 0; i < count; i++) {
+			int[] types = new int[1 + rnd.nextInt(2)];
+			for (int j = 0; j < types.length; j++) {
+				types[j] = 1 + rnd.nextInt(TYPES.length);
+			}
+			int[] additionalTypes = new int[rnd.nextInt(3)];
+			for (int j = 0; j < additionalTypes.length; j++) {
+				additionalTypes[j] = 1 + TYPES.length + rnd.nextInt(ADDITIONAL_TYPES.length);
+			}
+			// point, line or closed way
+			int kind = rnd.nextInt(3);
+			int[] coordinates = kind == 0 ? new int[] { 10, 10 }
+					: kind == 1 ? new int[] { 10, 10, 20, 20 } : new int[] { 10, 10, 20, 10, 20, 20, 10, 10 };
+			BinaryMapDataObject obj = new BinaryMapDataObject(i, coordinates, null, RenderingRulesStorage.LINE_RULES,
+					kind == 2 && rnd.nextBoolean(), types, additionalTypes, 0, 0);
+			obj.setMapIndex(mapIndex);
+			objects.add(obj);
+		}
+		return objects;
+	}
+
+	// search without cache as it was done by renderer
+	private static boolean searchUncached(RenderingRuleSearchRequest req, int state, BinaryMapDataObject obj,
+			int typeInd, int zoom) {
+		TagValuePair pair = obj.getMapIndex().decodeType(obj.getTypes()[typeInd]);
+		req.setInitialTagValueZoom(pair.tag, pair.value, zoom, obj);
+		if (state != RenderingRulesStorage.POLYGON_RULES) {
+			req.setIntFilter(req.ALL.R_LAYER, obj.getPointsLength() > 1 ? obj.getSimpleLayer() : 0);
+		}
+		if (state == RenderingRulesStorage.ORDER_RULES) {
+			req.setBooleanFilter(req.ALL.R_AREA, obj.isArea());
+			req.setBooleanFilter(req.ALL.R_POINT, obj.getPointsLength() == 1);
+			req.setBooleanFilter(req.ALL.R_CYCLE, obj.isCycle());
+		}
+		return req.search(state);
+	}
+
+	private static int assertSameStyles(RenderingObjectStyleCache cache, RenderingRuleSearchRequest cached,
+			RenderingRuleSearchRequest uncached, List<BinaryMapDataObject> objects) {
+		int found = 0;
+		for (int zoom = 8; zoom <= 17; zoom += 3) {
+			for (BinaryMapDataObject obj : objects) {
+				for (int typeInd = 0; typeInd < obj.getTypes().length; typeInd++) {
+					for (int state : STATES) {
+						String message = "object " + obj.getId() + " type " + typeInd + " state " + state + " zoom "
+								+ zoom;
+						boolean res = cache.search(cached, state, obj, typeInd, zoom);
+						Assert.assertEquals(message, searchUncached(uncached, state, obj, typeInd, zoom), res);
+						Assert.assertEquals(message, uncached.isFound(), cached.isFound());
+						Assert.assertArrayEquals(message, uncached.values, cached.values);
+						Assert.assertArrayEquals(message, uncached.fvalues, cached.fvalues, 0);
+						Assert.assertSame(obj, cached.getObject());
+						found += res ? 1 : 0;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	@Test
+	public void testCachedStylesMatchUncached() {
+		Random rnd = new Random(5);
+		List<BinaryMapDataObject> objects = createObjects(rnd, 300);
+		RenderingObjectStyleCache cache = new RenderingObjectStyleCache(1000);
+		RenderingRuleSearchRequest cached = new RenderingRuleSearchRequest(storage);
+		RenderingRuleSearchRequest uncached = new RenderingRuleSearchRequest(storage);
+		cache.validate(cached);
+		Assert.assertTrue(assertSameStyles(cache, cached, uncached, objects) > 0);
+		int size = cache.size();
+		Assert.assertTrue(size > 0);
+		// results are reused by objects with the same types
+		int searches = 0;
+		for (BinaryMapDataObject obj : objects) {
+			searches += obj.getTypes().length * STATES.length * 4;
+		}
+		Assert.assertTrue(size + " of " + searches, size < searches / 2);
+		assertSameStyles(cache, cached, uncached, objects);
+		Assert.assertEquals(size, cache.size());
+
+		// small cache evicts results
+		RenderingObjectStyleCache smallCache = new RenderingObjectStyleCache(10);
+		smallCache.validate(cached);
+		assertSameStyles(smallCache, cached, uncached, objects);
+		Assert.assertEquals(10, smallCache.size());
+	}
+
+	@Test
+	public void testCustomInputsInvalidateCache() {
+		Random rnd = new Random(11);
+		List<BinaryMapDataObject> objects = createObjects(rnd, 50);
+		RenderingObjectStyleCache cache = new RenderingObjectStyleCache(1000);
+		RenderingRuleSearchRequest cached = new RenderingRuleSearchRequest(storage);
+		cache.validate(cached);
+		assertSameStyles(cache, cached, new RenderingRuleSearchRequest(storage), objects);
+		Assert.assertTrue(cache.size() > 0);
+
+		// requests with same inputs keep results
+		RenderingRuleSearchRequest next = new RenderingRuleSearchRequest(storage);
+		cache.validate(next);
+		Assert.assertTrue(cache.size() > 0);
+
+		// night mode and custom properties are part of saved state
+		RenderingRuleSearchRequest night = new RenderingRuleSearchRequest(storage);
+		night.setBooleanFilter(night.ALL.R_NIGHT_MODE, true);
+		night.setStringFilter(storage.PROPS.get("roadStyle"), "bold");
+		night.saveState();
+		cache.validate(night);
+		Assert.assertEquals(0, cache.size());
+		RenderingRuleSearchRequest uncached = new RenderingRuleSearchRequest(storage);
+		uncached.setBooleanFilter(uncached.ALL.R_NIGHT_MODE, true);
+		uncached.setStringFilter(storage.PROPS.get("roadStyle"), "bold");
+		uncached.saveState();
+		assertSameStyles(cache, night, uncached, objects);
+
+		// change of rules clears cache
+		int size = cache.size();
+		Assert.assertTrue(size > 0);
+		RenderingRule primary = storage.getRule(RenderingRulesStorage.LINE_RULES,
+				storage.getTagValueKey("highway", "primary"));
+		primary.addIfElseChildren(new RenderingRule(new HashMap<String, String>(), false, storage));
+		cache.validate(night);
+		Assert.assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,272 @@
+package net.osmand.render;
+
+import net.osmand.PlatformUtil;
+import net.osmand.render.RenderingRulesStorage.RenderingRulesStorageResolver;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class RenderingRuleProgramTest {
+
+	static final String TEST_STYLE = "<renderingStyle name=\"test\" depends=\"\" version=\"1\">"
+			+ "<renderingProperty attr=\"roadStyle\" name=\"Road style\" type=\"string\" possibleValues=\"default,bold\"/>"
+			+ "<renderingProperty attr=\"hideTracks\" name=\"Hide tracks\" type=\"boolean\" possibleValues=\"\"/>"
+			+ "<renderingConstant name=\"primaryColor\" value=\"#ff0000\"/>"
+			+ "<renderingAttribute name=\"defaultColor\">"
+			+ "<case nightMode=\"true\" attrColorValue=\"#000000\"/>"
+			+ "<case attrColorValue=\"#f1eee8\"/>"
+			+ "</renderingAttribute>"
+			+ "<renderingAttribute name=\"roadWidth\">"
+			+ "<case maxzoom=\"12\" attrIntValue=\"2\"/>"
+			+ "<case roadStyle=\"bold\" attrIntValue=\"8\"/>"
+			+ "<case attrIntValue=\"4\"/>"
+			+ "</renderingAttribute>"
+			+ "<order>"
+			+ "<switch>"
+			+ "<case tag=\"highway\" value=\"primary\" order=\"60\"/>"
+			+ "<case tag=\"highway\" value=\"track\" order=\"30\"/>"
+			+ "<case tag=\"natural\" value=\"\" point=\"true\" order=\"70\" objectType=\"1\"/>"
+			+ "<case tag=\"natural\" value=\"\" area=\"true\" order=\"10\" objectType=\"3\"/>"
+			+ "<case tag=\"natural\" value=\"\" cycle=\"true\" order=\"15\" objectType=\"2\"/>"
+			+ "<apply_if layer=\"1\" order=\"90\"/>"
+			+ "</switch>"
+			+ "</order>"
+			+ "<line>"
+			+ "<case tag=\"highway\" value=\"primary\" minzoom=\"8\">"
+			+ "<case nightMode=\"true\" color=\"#880000\"/>"
+			+ "<case color=\"$primaryColor\"/>"
+			+ "<apply strokeWidth=\"$roadWidth\"/>"
+			+ "<apply_if minzoom=\"15\" color_2=\"#ffffff\" strokeWidth_2=\"1.5\"/>"
+			+ "</case>"
+			+ "<switch tag=\"highway\" value=\"track\" minzoom=\"12\">"
+			+ "<case hideTracks=\"true\" disable=\"true\"/>"
+			+ "<case additional=\"tracktype=grade1\" color=\"#996600\"/>"
+			+ "<case color=\"#aa8800\" strokeWidth=\"1\"/>"
+			+ "<apply pathEffect=\"4_2\"/>"
+			+ "</switch>"
+			+ "<case tag=\"highway\" value=\"\" minzoom=\"14\" color=\"#cccccc\" strokeWidth=\"1\"/>"
+			+ "</line>"
+			+ "<polygon>"
+			+ "<case tag=\"natural\" value=\"water\" color=\"#aad3df\"/>"
+			+ "<case tag=\"natural\" value=\"\" maxzoom=\"10\" color=\"#c0d0c0\"/>"
+			+ "</polygon>"
+			+ "</renderingStyle>";
+
+	private static final String[][] TAG_VALUES = {
+			{ "highway", "primary" }, { "highway", "track" }, { "highway", "service" }, { "natural", "water" },
+			{ "natural", "wood" }, { "building", "yes" } };
+	private static final int[] STATES = { RenderingRulesStorage.ORDER_RULES, RenderingRulesStorage.LINE_RULES,
+			RenderingRulesStorage.POLYGON_RULES, RenderingRulesStorage.POINT_RULES, RenderingRulesStorage.TEXT_RULES };
+
+	private final boolean useCompiledRules = RenderingRuleSearchRequest.USE_COMPILED_RULES;
+
+	@After
+	public void tearDown() {
+		RenderingRuleSearchRequest.USE_COMPILED_RULES = useCompiledRules;
+	}
+
+	static RenderingRulesStorage parseStorage(String xml) throws XmlPullParserException, IOException {
+		RenderingRulesStorage storage = new RenderingRulesStorage("test", null);
+		storage.parseRulesFromXmlInputStream(new ByteArrayInputStream(xml.getBytes("UTF-8")),
+				new RenderingRulesStorageResolver() {
+					@Override
+					public RenderingRulesStorage resolve(String name, RenderingRulesStorageResolver ref) {
+						throw new UnsupportedOperationException();
+					}
+				});
+		return storage;
+	}
+
+	private static RenderingRulesStorage loadDefaultStorage() throws XmlPullParserException, IOException {
+		final Map<String, String> renderingConstants = new LinkedHashMap<String, String>();
+		InputStream is = RenderingRulesStorage.class.getResourceAsStream("default.render.xml");
+		if (is == null) {
+			return null;
+		}
+		try {
+			XmlPullParser parser = PlatformUtil.newXMLPullParser();
+			parser.setInput(is, "UTF-8");
+			int tok;
+			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if (tok == XmlPullParser.START_TAG && parser.getName().equals("renderingConstant")) {
+					if (!renderingConstants.containsKey(parser.getAttributeValue("", "name"))) {
+						renderingConstants.put(parser.getAttributeValue("", "name"),
+								parser.getAttributeValue("", "value"));
+					}
+				}
+			}
+		} finally {
+			is.close();
+		}
+		RenderingRulesStorage storage = new RenderingRulesStorage("default", renderingConstants);
+		storage.parseRulesFromXmlInputStream(RenderingRulesStorage.class.getResourceAsStream("default.render.xml"),
+				new RenderingRulesStorageResolver() {
+					@Override
+					public RenderingRulesStorage resolve(String name, RenderingRulesStorageResolver ref)
+							throws XmlPullParserException, IOException {
+						RenderingRulesStorage depends = new RenderingRulesStorage(name, renderingConstants);
+						depends.parseRulesFromXmlInputStream(
+								RenderingRulesStorage.class.getResourceAsStream(name + ".render.xml"), ref);
+						return depends;
+					}
+				});
+		return storage;
+	}
+
+	private static class SearchInput {
+		int state;
+		String tag;
+		String value;
+		int zoom;
+		int layer;
+		boolean nightMode;
+		String additional;
+
+		@Override
+		public String toString() {
+			return "state=" + state + " " + tag + "=" + value + " zoom=" + zoom + " layer=" + layer + " night="
+					+ nightMode + " additional=" + additional;
+		}
+	}
+
+	// search with compiled rules and interpreter, compiled request is reused to check memoised results
+	private static int assertSameSearch(RenderingRuleSearchRequest compiled, RenderingRuleSearchRequest interpreted,
+			SearchInput in) {
+		String message = in.toString();
+		boolean found = false;
+		for (RenderingRuleSearchRequest req : new RenderingRuleSearchRequest[] { compiled, interpreted }) {
+			RenderingRuleSearchRequest.USE_COMPILED_RULES = req == compiled;
+			req.setInitialTagValueZoom(in.tag, in.value, in.zoom, null);
+			req.setIntFilter(req.ALL.R_LAYER, in.layer);
+			req.setBooleanFilter(req.ALL.R_NIGHT_MODE, in.nightMode);
+			if (in.additional != null) {
+				req.setStringFilter(req.ALL.R_ADDITIONAL, in.additional);
+			}
+			found = req.search(in.state);
+		}
+		Assert.assertEquals(message, interpreted.isFound(), compiled.isFound());
+		for (RenderingRuleProperty p : interpreted.props) {
+			if (p.isOutputProperty()) {
+				Assert.assertEquals(message + " " + p.getAttrName(), interpreted.values[p.getId()],
+						compiled.values[p.getId()]);
+				Assert.assertEquals(message + " " + p.getAttrName(), interpreted.fvalues[p.getId()],
+						compiled.fvalues[p.getId()], 0);
+			}
+		}
+		return found ? 1 : 0;
+	}
+
+	private static int compareSearches(RenderingRulesStorage storage, String[][] tagValues) {
+		RenderingRuleSearchRequest compiled = new RenderingRuleSearchRequest(storage);
+		RenderingRuleSearchRequest interpreted = new RenderingRuleSearchRequest(storage);
+		int found = 0;
+		SearchInput in = new SearchInput();
+		// repeat to check memoised results
+		for (int repeat = 0; repeat < 2; repeat++) {
+			for (String[] tv : tagValues) {
+				for (int state : STATES) {
+					for (int zoom = 5; zoom <= 19; zoom += 2) {
+						in.state = state;
+						in.tag = tv[0];
+						in.value = tv[1];
+						in.zoom = zoom;
+						in.layer = zoom % 3 == 0 ? 1 : 0;
+						in.nightMode = zoom % 4 == 1;
+						in.additional = zoom % 5 == 0 ? "tracktype=grade1" : null;
+						found += assertSameSearch(compiled, interpreted, in);
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	private static void assertSameAttributes(RenderingRulesStorage storage) {
+		RenderingRuleSearchRequest compiled = new RenderingRuleSearchRequest(storage);
+		RenderingRuleSearchRequest interpreted = new RenderingRuleSearchRequest(storage);
+		for (String attribute : storage.getRenderingAttributeNames()) {
+			for (int zoom = 5; zoom <= 19; zoom += 7) {
+				for (RenderingRuleSearchRequest req : new RenderingRuleSearchRequest[] { compiled, interpreted }) {
+					RenderingRuleSearchRequest.USE_COMPILED_RULES = req == compiled;
+					req.clearState();
+					req.setIntFilter(req.ALL.R_MINZOOM, zoom);
+					req.setIntFilter(req.ALL.R_MAXZOOM, zoom);
+					req.searchRenderingAttribute(attribute);
+				}
+				Assert.assertEquals(attribute, interpreted.isFound(), compiled.isFound());
+				Assert.assertArrayEquals(attribute, interpreted.values, compiled.values);
+			}
+		}
+	}
+
+	@Test
+	public void testCompiledRulesOfTestStyle() throws Exception {
+		RenderingRulesStorage storage = parseStorage(TEST_STYLE);
+		Assert.assertTrue(compareSearches(storage, TAG_VALUES) > 0);
+		assertSameAttributes(storage);
+
+		RenderingRuleSearchRequest req = new RenderingRuleSearchRequest(storage);
+		req.setStringFilter(storage.PROPS.get("roadStyle"), "bold");
+		req.saveState();
+		req.setInitialTagValueZoom("highway", "primary", 14, null);
+		Assert.assertTrue(req.search(RenderingRulesStorage.LINE_RULES));
+		Assert.assertEquals(0xffff0000, req.getIntPropertyValue(storage.PROPS.R_COLOR));
+		Assert.assertEquals(8, req.getIntPropertyValue(storage.PROPS.get(RenderingRuleStorageProperties.STROKE_WIDTH)));
+		req.setInitialTagValueZoom("highway", "track", 14, null);
+		Assert.assertTrue(req.search(RenderingRulesStorage.LINE_RULES));
+		Assert.assertEquals(0xffaa8800, req.getIntPropertyValue(storage.PROPS.R_COLOR));
+		// disabled tag/value rule falls back to the tag rule
+		req.setInitialTagValueZoom("highway", "track", 14, null);
+		req.setBooleanFilter(storage.PROPS.get("hideTracks"), true);
+		Assert.assertTrue(req.search(RenderingRulesStorage.LINE_RULES));
+		Assert.assertEquals(0xffcccccc, req.getIntPropertyValue(storage.PROPS.R_COLOR));
+	}
+
+	@Test
+	public void testCompiledRulesOfDefaultStyle() throws Exception {
+		RenderingRulesStorage storage = loadDefaultStorage();
+		Assume.assumeTrue("Default rendering style is not available", storage != null);
+		String[][] tagValues = {
+				{ "highway", "motorway" }, { "highway", "primary" }, { "highway", "residential" },
+				{ "highway", "track" }, { "highway", "footway" }, { "highway", "bus_stop" },
+				{ "railway", "rail" }, { "waterway", "river" }, { "natural", "water" }, { "natural", "wood" },
+				{ "landuse", "residential" }, { "building", "yes" }, { "amenity", "restaurant" },
+				{ "place", "city" }, { "boundary", "administrative" }, { "leisure", "park" } };
+		Assert.assertTrue(compareSearches(storage, tagValues) > 0);
+		assertSameAttributes(storage);
+	}
+
+	@Test
+	public void testRulesChangeInvalidatesPrograms() throws Exception {
+		RenderingRulesStorage storage = parseStorage(TEST_STYLE);
+		RenderingRulesStorage copy = storage.copy();
+		RenderingRulesStorage other = parseStorage(TEST_STYLE);
+		RenderingRuleSearchRequest req = new RenderingRuleSearchRequest(copy);
+		req.setInitialTagValueZoom("highway", "primary", 14, null);
+		Assert.assertTrue(req.search(RenderingRulesStorage.LINE_RULES));
+		Assert.assertEquals(0xffff0000, req.getIntPropertyValue(copy.PROPS.R_COLOR));
+		int otherVersion = other.getRulesVersion();
+
+		// rules are shared with copy of storage
+		RenderingRule primary = storage.getRule(RenderingRulesStorage.LINE_RULES,
+				storage.getTagValueKey("highway", "primary"));
+		primary.addToBeginIfElseChildren(new RenderingRule(Collections.singletonMap("color", "#0000ff"), false,
+				storage));
+		req.setInitialTagValueZoom("highway", "primary", 14, null);
+		Assert.assertTrue(req.search(RenderingRulesStorage.LINE_RULES));
+		Assert.assertEquals(0xff0000ff, req.getIntPropertyValue(copy.PROPS.R_COLOR));
+		// programs of not related storage are kept
+		Assert.assertEquals(otherVersion, other.getRulesVersion());
+	}
+}
@@ -0,0 +1,89 @@
+package net.osmand.router;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ParallelRouteSearchTest {
+
+	@Test
+	public void testParallelSearchFindsSameRoute() throws Exception {
+		File obf = new File("src/test/resources/Routing_test.obf");
+		InputStream is = ParallelRouteSearchTest.class.getResourceAsStream("/test_routing.json");
+		Assume.assumeTrue("Test map is not available", obf.exists() && is != null);
+		Reader reader = new InputStreamReader(is);
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		TestEntry[] testEntries = gson.fromJson(reader, TestEntry[].class);
+		reader.close();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			for (TestEntry te : testEntries) {
+				Map<String, String> params = te.getParams();
+				if (te.isIgnore() || te.getExpectedResults() == null || params.containsKey("map")) {
+					continue;
+				}
+				RoutingContext sequential = buildContext(obf, te, false, null);
+				RoutingContext parallel = buildContext(obf, te, true, executor);
+				List<RouteSegmentResult> expected = new RoutePlannerFrontEnd().searchRoute(sequential,
+						te.getStartPoint(), te.getEndPoint(), te.getTransitPoint());
+				List<RouteSegmentResult> actual = new RoutePlannerFrontEnd().searchRoute(parallel,
+						te.getStartPoint(), te.getEndPoint(), te.getTransitPoint());
+				Assert.assertNotNull(te.getTestName(), expected);
+				Assert.assertNotNull(te.getTestName(), actual);
+				Assert.assertEquals(te.getTestName(), getSegments(expected), getSegments(actual));
+				Assert.assertEquals(te.getTestName(), sequential.routingTime, parallel.routingTime, 0.01);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static RoutingContext buildContext(File obf, TestEntry te, boolean parallel, ExecutorService executor)
+			throws Exception {
+		Map<String, String> params = te.getParams();
+		RoutingConfiguration.Builder builder = RoutingConfiguration.getDefault();
+		builder.setParallelSearchExecutor(executor);
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT
+		);
+		RoutingConfiguration config = builder.build(params.containsKey("vehicle") ? params.get("vehicle") : "car",
+				memoryLimits, params);
+		if (params.containsKey("heuristicCoefficient")) {
+			config.heuristicCoefficient = Float.parseFloat(params.get("heuristicCoefficient"));
+		}
+		config.planRoadDirection = 0;
+		config.parallelBidirectionalSearch = parallel;
+		BinaryMapIndexReader[] readers = {new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf)};
+		RoutingContext ctx = new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers,
+				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+		ctx.leftSideNavigation = false;
+		return ctx;
+	}
+
+	private static List<String> getSegments(List<RouteSegmentResult> route) {
+		List<String> segments = new ArrayList<String>();
+		for (RouteSegmentResult r : route) {
+			segments.add((r.getObject().getId() >> RouteResultPreparation.SHIFT_ID) + ":"
+					+ r.getStartPointIndex() + "-" + r.getEndPointIndex());
+		}
+		return segments;
+	}
+}
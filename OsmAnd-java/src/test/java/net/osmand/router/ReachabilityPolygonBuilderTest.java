@@ -0,0 +1,121 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.ReachableSegment;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ReachabilityPolygonBuilderTest {
+
+	// every road is passable with 36 km/h
+	private static final String ROUTING_CONFIG = "<osmand_routing_config defaultProfile=\"car\">"
+			+ "<routingProfile name=\"car\" baseProfile=\"car\" minDefaultSpeed=\"36\" maxDefaultSpeed=\"36\">"
+			+ "<way attribute=\"access\"><select value=\"1\" t=\"highway\"/></way>"
+			+ "</routingProfile></osmand_routing_config>";
+	private static final double SPEED = 10;
+	private static final double CELL_SIZE_METERS = 10;
+
+	private RoutingContext ctx;
+	private RouteDataObject road;
+	private double roadLength;
+
+	@Before
+	public void setUp() throws Exception {
+		RoutingConfiguration config = RoutingConfiguration.parseFromInputStream(
+				new ByteArrayInputStream(ROUTING_CONFIG.getBytes("UTF-8"))).build("car",
+				new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+						RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT));
+		ctx = new RoutingContext(config, null, new BinaryMapIndexReader[0], RouteCalculationMode.NORMAL);
+		RouteRegion region = new RouteRegion();
+		region.initRouteEncodingRule(0, "highway", "primary");
+		// single west-east road (about 2 km) without connections
+		road = new RouteDataObject(region);
+		road.id = 1000;
+		road.types = new int[] { 0 };
+		road.pointsX = new int[] { MapUtils.get31TileNumberX(13.0), MapUtils.get31TileNumberX(13.03) };
+		road.pointsY = new int[] { MapUtils.get31TileNumberY(52.0), MapUtils.get31TileNumberY(52.0) };
+		roadLength = BinaryRoutePlanner.squareRootDist(road.pointsX[0], road.pointsY[0], road.pointsX[1],
+				road.pointsY[1]);
+	}
+
+	private RouteSegmentPoint pointOnRoad(double part) {
+		RouteSegmentPoint p = new RouteSegmentPoint(road, 1, 0);
+		p.preciseX = road.pointsX[0] + (int) ((road.pointsX[1] - road.pointsX[0]) * part);
+		p.preciseY = road.pointsY[0];
+		return p;
+	}
+
+	@Test
+	public void testStartInMiddleOfSegment() throws Exception {
+		RouteSegmentPoint start = pointOnRoad(0.25);
+		OneToManyRoutePlanner planner = new OneToManyRoutePlanner(ctx, Collections.<RouteSegmentPoint>emptyList());
+		float budget = 30;
+		List<ReachableSegment> segments = planner.searchReachable(start, budget, false);
+		Assert.assertEquals(2, segments.size());
+		for (ReachableSegment s : segments) {
+			// both directions start at the start point
+			Assert.assertEquals(start.preciseX, s.getStartX31(), 2);
+			Assert.assertEquals(0, s.startTime, 1e-3);
+			Assert.assertEquals(0, s.startDistance, 1e-3);
+			Assert.assertEquals(budget, s.endTime, 1e-2);
+			Assert.assertEquals(budget * SPEED, s.endDistance, 0.5);
+			double dist = BinaryRoutePlanner.squareRootDist(start.preciseX, start.preciseY, s.getEndX31(),
+					s.getEndY31());
+			Assert.assertEquals(budget * SPEED, dist, 0.5);
+		}
+
+		int cellSize = ReachabilityPolygonBuilder.getCellSize31(start.preciseX, start.preciseY, CELL_SIZE_METERS);
+		List<List<LatLon>> polygons = RoutePlannerFrontEnd.buildReachablePolygons(segments, start, budget, false,
+				cellSize);
+		Assert.assertEquals(1, polygons.size());
+		double west = Double.POSITIVE_INFINITY;
+		double east = Double.NEGATIVE_INFINITY;
+		for (LatLon l : polygons.get(0)) {
+			west = Math.min(west, l.getLongitude());
+			east = Math.max(east, l.getLongitude());
+		}
+		// polygon covers 300 m in both directions from the start point, not the road behind the start
+		LatLon startLatLon = start.getPreciseLatLon();
+		double toWest = MapUtils.getDistance(startLatLon, startLatLon.getLatitude(), west);
+		double toEast = MapUtils.getDistance(startLatLon, startLatLon.getLatitude(), east);
+		Assert.assertEquals(budget * SPEED, toWest, 3 * CELL_SIZE_METERS);
+		Assert.assertEquals(budget * SPEED, toEast, 3 * CELL_SIZE_METERS);
+
+		// smaller band is cut inside of the start segment too
+		polygons = RoutePlannerFrontEnd.buildReachablePolygons(segments, start, budget / 2, false, cellSize);
+		east = Double.NEGATIVE_INFINITY;
+		for (LatLon l : polygons.get(0)) {
+			east = Math.max(east, l.getLongitude());
+		}
+		Assert.assertEquals(budget * SPEED / 2, MapUtils.getDistance(startLatLon, startLatLon.getLatitude(), east),
+				3 * CELL_SIZE_METERS);
+	}
+
+	@Test
+	public void testTargetsOnStartSegment() throws Exception {
+		RouteSegmentPoint start = pointOnRoad(0.25);
+		OneToManyRoutePlanner planner = new OneToManyRoutePlanner(ctx,
+				Arrays.asList(pointOnRoad(0.75), pointOnRoad(0.1)));
+		float[] times = new float[2];
+		float[] distances = new float[2];
+		planner.search(start, times, distances);
+		Assert.assertEquals(roadLength / 2, distances[0], 0.5);
+		Assert.assertEquals(roadLength / 2 / SPEED, times[0], 0.05);
+		Assert.assertEquals(roadLength * 0.15, distances[1], 0.5);
+		Assert.assertEquals(roadLength * 0.15 / SPEED, times[1], 0.05);
+	}
+}
@@ -0,0 +1,158 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class RouteContractionHierarchyTest {
+
+	private static final int NODES = 300;
+
+	@Test
+	public void testShortestPathsOfRandomGraph() {
+		Random rnd = new Random(17);
+		int[] x = new int[NODES];
+		int[] y = new int[NODES];
+		for (int i = 0; i < NODES; i++) {
+			x[i] = (1 << 30) + rnd.nextInt(1 << 20);
+			y[i] = (1 << 30) + rnd.nextInt(1 << 20);
+		}
+		TIntArrayList from = new TIntArrayList();
+		TIntArrayList to = new TIntArrayList();
+		TIntArrayList costs = new TIntArrayList();
+		for (int i = 0; i < NODES; i++) {
+			for (int k = 0; k < 3; k++) {
+				int j = rnd.nextInt(NODES);
+				if (j == i) {
+					continue;
+				}
+				int cost = 1 + rnd.nextInt(100);
+				// one way roads and parallel roads with different costs
+				int direction = rnd.nextInt(4);
+				if (direction != 1) {
+					from.add(i);
+					to.add(j);
+					costs.add(cost);
+				}
+				if (direction != 0) {
+					from.add(j);
+					to.add(i);
+					costs.add(direction == 3 ? cost + rnd.nextInt(10) : cost);
+				}
+			}
+		}
+		float[] cost = new float[costs.size()];
+		for (int e = 0; e < cost.length; e++) {
+			cost[e] = costs.get(e);
+		}
+		RouteContractionHierarchy ch = RouteContractionHierarchy.build("test", x, y, from.toArray(), to.toArray(),
+				cost);
+		Assert.assertEquals(NODES, ch.getNodesCount());
+		for (int k = 0; k < 300; k++) {
+			int start = rnd.nextInt(NODES);
+			int end = rnd.nextInt(NODES);
+			float expected = dijkstra(start, end, from, to, cost);
+			TIntArrayList path = ch.findPath(start, end);
+			if (expected == Float.POSITIVE_INFINITY) {
+				Assert.assertNull(path);
+				continue;
+			}
+			Assert.assertNotNull(path);
+			float actual = 0;
+			int n = start;
+			for (int i = 0; i < path.size(); i++) {
+				int e = path.get(i);
+				// path consists of original edges
+				Assert.assertTrue(e < cost.length);
+				Assert.assertEquals(n, from.get(e));
+				n = to.get(e);
+				actual += cost[e];
+			}
+			Assert.assertEquals(end, n);
+			Assert.assertEquals(expected, actual, 1e-3);
+		}
+	}
+
+	private static float dijkstra(int start, int end, TIntArrayList from, TIntArrayList to, float[] cost) {
+		float[] dist = new float[NODES];
+		boolean[] settled = new boolean[NODES];
+		Arrays.fill(dist, Float.POSITIVE_INFINITY);
+		dist[start] = 0;
+		while (true) {
+			int n = -1;
+			for (int i = 0; i < NODES; i++) {
+				if (!settled[i] && dist[i] < Float.POSITIVE_INFINITY && (n == -1 || dist[i] < dist[n])) {
+					n = i;
+				}
+			}
+			if (n == -1 || n == end) {
+				return dist[end];
+			}
+			settled[n] = true;
+			for (int e = 0; e < cost.length; e++) {
+				if (from.get(e) == n && dist[n] + cost[e] < dist[to.get(e)]) {
+					dist[to.get(e)] = dist[n] + cost[e];
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBinaryRoutePlannerParity() throws Exception {
+		File obf = new File("src/test/resources/Routing_test.obf");
+		Assume.assumeTrue("Test map is not available", obf.exists());
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+		try {
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			RoutingMemoryLimits limits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+					RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+			RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", limits);
+			RoutingContext buildCtx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+					RouteCalculationMode.NORMAL);
+			RouteContractionHierarchy ch = RouteContractionHierarchy.build(buildCtx);
+			Assert.assertTrue(ch.isApplicable(config));
+			Random rnd = new Random(3);
+			int compared = 0;
+			for (int k = 0; k < 20; k++) {
+				int start = rnd.nextInt(ch.getNodesCount());
+				int end = rnd.nextInt(ch.getNodesCount());
+				TIntArrayList path = ch.findPath(start, end);
+				if (path == null || start == end) {
+					continue;
+				}
+				float chTime = 0;
+				for (int i = 0; i < path.size(); i++) {
+					chTime += ch.getEdgeCost(path.get(i));
+				}
+				LatLon startPoint = new LatLon(MapUtils.get31LatitudeY(ch.getNodeY(start)),
+						MapUtils.get31LongitudeX(ch.getNodeX(start)));
+				LatLon endPoint = new LatLon(MapUtils.get31LatitudeY(ch.getNodeY(end)),
+						MapUtils.get31LongitudeX(ch.getNodeX(end)));
+				RoutingContext ctx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+						RouteCalculationMode.NORMAL);
+				List<RouteSegmentResult> route = fe.searchRoute(ctx, startPoint, endPoint, null);
+				Assert.assertNotNull(route);
+				// overlay ignores turn costs and restrictions, so it's a lower bound of detailed route
+				Assert.assertTrue(chTime + " > " + ctx.routingTime, chTime <= ctx.routingTime * 1.001f + 1);
+				compared++;
+			}
+			Assert.assertTrue(compared > 0);
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RouteEvaluationCacheTest {
+
+	private static final int ATTRIBUTES = 3;
+
+	private static RouteRegion createRegion(int types) {
+		RouteRegion reg = new RouteRegion();
+		for (int i = 0; i < types; i++) {
+			reg.initRouteEncodingRule(i, "highway", "type" + i);
+		}
+		return reg;
+	}
+
+	@Test
+	public void testSingleTypeGrowth() {
+		RouteRegion reg = createRegion(4);
+		RouteEvaluationCache cache = new RouteEvaluationCache(ATTRIBUTES);
+		cache.put(0, reg, new int[] { 1 }, false, 1f);
+		// type ids of other regions or added later are beyond encoding rules
+		cache.put(0, reg, new int[] { 100 }, false, 100f);
+		cache.put(0, reg, new int[] { 1000 }, false, 1000f);
+		Assert.assertEquals(1f, cache.get(0, reg, new int[] { 1 }, false), 0);
+		Assert.assertEquals(100f, cache.get(0, reg, new int[] { 100 }, false), 0);
+		Assert.assertEquals(1000f, cache.get(0, reg, new int[] { 1000 }, false), 0);
+		// grown part is filled with misses
+		Assert.assertTrue(Float.isNaN(cache.get(0, reg, new int[] { 99 }, false)));
+		Assert.assertTrue(Float.isNaN(cache.get(0, reg, new int[] { 999 }, false)));
+		Assert.assertTrue(Float.isNaN(cache.get(0, reg, new int[] { 5000 }, false)));
+		// negative ids are not cached
+		cache.put(0, reg, new int[] { -1 }, false, 5f);
+		Assert.assertTrue(Float.isNaN(cache.get(0, reg, new int[] { -1 }, false)));
+	}
+
+	@Test
+	public void testRehash() {
+		RouteRegion reg = createRegion(16);
+		RouteEvaluationCache cache = new RouteEvaluationCache(ATTRIBUTES);
+		Random rnd = new Random(11);
+		int count = 1000;
+		int[][] signatures = new int[count][];
+		for (int i = 0; i < count; i++) {
+			signatures[i] = new int[] { i, rnd.nextInt(16), 2 + rnd.nextInt(3) };
+			cache.put(1, reg, signatures[i], false, i);
+		}
+		for (int i = 0; i < count; i++) {
+			// lookups by equal (not same) arrays after table was grown many times
+			Assert.assertEquals(i, cache.get(1, reg, signatures[i].clone(), false), 0);
+		}
+		Assert.assertTrue(Float.isNaN(cache.get(1, reg, new int[] { count, 0, 0 }, false)));
+		// overwrite keeps single entry
+		cache.put(1, reg, new int[] { 5, signatures[5][1], signatures[5][2] }, false, -5f);
+		Assert.assertEquals(-5f, cache.get(1, reg, signatures[5], false), 0);
+		Assert.assertEquals(6f, cache.get(1, reg, signatures[6], false), 0);
+	}
+
+	@Test
+	public void testEmptyTypes() {
+		RouteRegion reg = createRegion(4);
+		RouteEvaluationCache cache = new RouteEvaluationCache(ATTRIBUTES);
+		Assert.assertTrue(Float.isNaN(cache.get(0, reg, new int[0], false)));
+		cache.put(0, reg, new int[0], false, 7f);
+		Assert.assertEquals(7f, cache.get(0, reg, new int[0], false), 0);
+		// empty signature doesn't collide with single type 0 and isn't shared by attributes
+		Assert.assertTrue(Float.isNaN(cache.get(0, reg, new int[] { 0 }, false)));
+		Assert.assertTrue(Float.isNaN(cache.get(1, reg, new int[0], false)));
+	}
+
+	@Test
+	public void testSeparateTables() {
+		RouteRegion reg = createRegion(4);
+		RouteRegion otherReg = createRegion(4);
+		RouteEvaluationCache cache = new RouteEvaluationCache(ATTRIBUTES);
+		int[] single = { 2 };
+		int[] multi = { 1, 3 };
+		cache.put(2, reg, single, false, 1f);
+		cache.put(2, reg, single, true, 2f);
+		cache.put(2, reg, multi, true, 3f);
+		// direction (extra) tables
+		Assert.assertEquals(1f, cache.get(2, reg, single, false), 0);
+		Assert.assertEquals(2f, cache.get(2, reg, single, true), 0);
+		Assert.assertEquals(3f, cache.get(2, reg, multi, true), 0);
+		Assert.assertTrue(Float.isNaN(cache.get(2, reg, multi, false)));
+		// attributes
+		Assert.assertTrue(Float.isNaN(cache.get(1, reg, single, false)));
+		Assert.assertTrue(Float.isNaN(cache.get(1, reg, single, true)));
+		// type ids are region local
+		Assert.assertTrue(Float.isNaN(cache.get(2, otherReg, single, false)));
+		cache.put(2, otherReg, single, false, 4f);
+		Assert.assertEquals(4f, cache.get(2, otherReg, single, false), 0);
+		Assert.assertEquals(1f, cache.get(2, reg, single, false), 0);
+		cache.clear();
+		Assert.assertTrue(Float.isNaN(cache.get(2, reg, single, false)));
+		Assert.assertTrue(Float.isNaN(cache.get(2, otherReg, single, false)));
+	}
+
+	@Test
+	public void testNaNIsMiss() {
+		RouteRegion reg = createRegion(4);
+		RouteEvaluationCache cache = new RouteEvaluationCache(ATTRIBUTES);
+		int[] multi = { 0, 1 };
+		// stored NaN can't be distinguished from missing value, so it's evaluated again
+		cache.put(0, reg, new int[] { 1 }, false, Float.NaN);
+		cache.put(0, reg, multi, false, Float.NaN);
+		cache.put(0, reg, new int[0], false, Float.NaN);
+		Assert.assertTrue(Float.isNaN(cache.get(0, reg, new int[] { 1 }, false)));
+		Assert.assertTrue(Float.isNaN(cache.get(0, reg, multi, false)));
+		Assert.assertTrue(Float.isNaN(cache.get(0, reg, new int[0], false)));
+		// and could be replaced by evaluated value
+		cache.put(0, reg, new int[] { 1 }, false, 0f);
+		cache.put(0, reg, multi, false, 0f);
+		Assert.assertEquals(0f, cache.get(0, reg, new int[] { 1 }, false), 0);
+		Assert.assertEquals(0f, cache.get(0, reg, multi, false), 0);
+	}
+}
@@ -0,0 +1,141 @@
+package net.osmand.router;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class RouteSegmentHeapTest {
+
+	private static final double HEURISTIC_COEFFICIENT = 1.5;
+
+	private static RouteSegment segment(float distanceFromStart, float distanceToEnd) {
+		RouteSegment s = new RouteSegment(null, 0, 1);
+		s.distanceFromStart = distanceFromStart;
+		s.distanceToEnd = distanceToEnd;
+		return s;
+	}
+
+	private static double key(RouteSegment s) {
+		return s.distanceFromStart + HEURISTIC_COEFFICIENT * s.distanceToEnd;
+	}
+
+	@Test
+	public void testOrdering() {
+		Random rnd = new Random(1);
+		RouteSegmentHeap heap = new RouteSegmentHeap(2, HEURISTIC_COEFFICIENT);
+		List<RouteSegment> segments = new ArrayList<RouteSegment>();
+		for (int i = 0; i < 1000; i++) {
+			RouteSegment s = segment(rnd.nextInt(500), rnd.nextInt(500));
+			segments.add(s);
+			heap.add(s);
+		}
+		Assert.assertEquals(segments.size(), heap.size());
+		Collections.sort(segments, new Comparator<RouteSegment>() {
+			@Override
+			public int compare(RouteSegment o1, RouteSegment o2) {
+				return Double.compare(key(o1), key(o2));
+			}
+		});
+		for (RouteSegment expected : segments) {
+			Assert.assertSame(heap.peek(), heap.peek());
+			RouteSegment s = heap.poll();
+			Assert.assertEquals(key(expected), key(s), 0);
+			Assert.assertFalse(heap.contains(s));
+		}
+		Assert.assertTrue(heap.isEmpty());
+		Assert.assertNull(heap.peek());
+		Assert.assertNull(heap.poll());
+	}
+
+	@Test
+	public void testDecreaseAndIncreaseKey() {
+		RouteSegmentHeap heap = new RouteSegmentHeap(4, HEURISTIC_COEFFICIENT);
+		RouteSegment a = segment(10, 0);
+		RouteSegment b = segment(20, 0);
+		RouteSegment c = segment(30, 0);
+		heap.add(a);
+		heap.add(b);
+		heap.add(c);
+		Assert.assertSame(a, heap.peek());
+
+		// segment reached by shorter path is not duplicated
+		c.distanceFromStart = 5;
+		heap.add(c);
+		Assert.assertEquals(3, heap.size());
+		Assert.assertSame(c, heap.peek());
+
+		// key is recalculated with heuristic when segment is added again
+		c.distanceToEnd = 20;
+		heap.add(c);
+		Assert.assertEquals(3, heap.size());
+		Assert.assertSame(a, heap.poll());
+		Assert.assertSame(b, heap.poll());
+		Assert.assertSame(c, heap.poll());
+		Assert.assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void testRandomUpdates() {
+		Random rnd = new Random(7);
+		RouteSegmentHeap heap = new RouteSegmentHeap(8, HEURISTIC_COEFFICIENT);
+		List<RouteSegment> queued = new ArrayList<RouteSegment>();
+		for (int i = 0; i < 5000; i++) {
+			int op = rnd.nextInt(3);
+			if (op == 0 || queued.isEmpty()) {
+				RouteSegment s = segment(rnd.nextFloat() * 1000, rnd.nextFloat() * 1000);
+				queued.add(s);
+				heap.add(s);
+			} else if (op == 1) {
+				RouteSegment s = queued.get(rnd.nextInt(queued.size()));
+				s.distanceFromStart = rnd.nextFloat() * 1000;
+				heap.add(s);
+			} else {
+				RouteSegment min = queued.get(0);
+				for (RouteSegment s : queued) {
+					if (key(s) < key(min)) {
+						min = s;
+					}
+				}
+				RouteSegment s = heap.poll();
+				Assert.assertEquals(key(min), key(s), 0);
+				queued.remove(s);
+			}
+			Assert.assertEquals(queued.size(), heap.size());
+		}
+	}
+
+	@Test
+	public void testRemoval() {
+		RouteSegmentHeap heap = new RouteSegmentHeap(4, HEURISTIC_COEFFICIENT);
+		RouteSegmentHeap opposite = new RouteSegmentHeap(4, HEURISTIC_COEFFICIENT);
+		RouteSegment a = segment(1, 0);
+		RouteSegment b = segment(2, 0);
+		heap.add(a);
+		heap.add(b);
+		Assert.assertTrue(heap.contains(a));
+		Assert.assertFalse(opposite.contains(a));
+
+		// polled segment could be queued again (e.g. in other heap)
+		Assert.assertSame(a, heap.poll());
+		Assert.assertFalse(heap.contains(a));
+		opposite.add(a);
+		Assert.assertTrue(opposite.contains(a));
+		Assert.assertFalse(heap.contains(a));
+		Assert.assertEquals(1, heap.size());
+
+		heap.clear();
+		Assert.assertTrue(heap.isEmpty());
+		Assert.assertFalse(heap.contains(b));
+		heap.add(b);
+		Assert.assertEquals(1, heap.size());
+		Assert.assertSame(b, heap.poll());
+		Assert.assertSame(a, opposite.poll());
+	}
+}
@@ -0,0 +1,184 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.RoutingContext.TileStatistics;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class RoutingTileCacheTest {
+
+	private static final int POINTS_PER_OBJECT = 10;
+	private static final int OBJECTS_PER_TILE = 5;
+
+	private File file;
+	private RouteRegion region;
+	private List<TestReader> readers = new ArrayList<TestReader>();
+
+	// reader of the same file (shares route region), decodes synthetic tiles and counts decoding
+	private static class TestReader extends BinaryMapIndexReader {
+		RouteRegion region;
+		int loads;
+
+		TestReader(File file, RouteRegion region) throws IOException {
+			super(new RandomAccessFile(file, "r"), file, false);
+			this.region = region;
+		}
+
+		@Override
+		public List<RouteDataObject> loadRouteIndexData(RouteSubregion rs) throws IOException {
+			loads++;
+			List<RouteDataObject> res = new ArrayList<RouteDataObject>();
+			for (int i = 0; i < OBJECTS_PER_TILE; i++) {
+				RouteDataObject ro = new RouteDataObject(rs.routeReg);
+				ro.id = rs.filePointer * 100 + i;
+				ro.pointsX = new int[POINTS_PER_OBJECT];
+				ro.pointsY = new int[POINTS_PER_OBJECT];
+				res.add(ro);
+			}
+			return res;
+		}
+
+		@Override
+		public List<RouteRegion> getRoutingIndexes() {
+			return Collections.singletonList(region);
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("routing", ".obf");
+		file.deleteOnExit();
+		region = new RouteRegion();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (TestReader r : readers) {
+			r.close();
+		}
+		file.delete();
+	}
+
+	private TestReader createReader() throws IOException {
+		TestReader reader = new TestReader(file, region);
+		readers.add(reader);
+		return reader;
+	}
+
+	private static RouteSubregion subregion(RouteRegion region, int filePointer) {
+		RouteSubregion s = new RouteSubregion(region);
+		s.filePointer = filePointer;
+		return s;
+	}
+
+	private static int tileSize() {
+		RouteDataObject ro = new RouteDataObject((RouteRegion) null);
+		ro.pointsX = new int[POINTS_PER_OBJECT];
+		ro.pointsY = new int[POINTS_PER_OBJECT];
+		return RoutingContext.getEstimatedSize(ro) * OBJECTS_PER_TILE;
+	}
+
+	@Test
+	public void testTileReuse() throws IOException {
+		RoutingTileCache cache = new RoutingTileCache(10L * tileSize());
+		TestReader reader = createReader();
+		TestReader otherReader = createReader();
+		TileStatistics stats = new TileStatistics();
+
+		List<RouteDataObject> tile = cache.loadRouteIndexData(reader, subregion(region, 1), stats);
+		Assert.assertEquals(OBJECTS_PER_TILE, tile.size());
+		Assert.assertEquals(1, reader.loads);
+		Assert.assertEquals(1, stats.cacheMisses);
+
+		// same tile is decoded once and shared between readers of the same file
+		Assert.assertSame(tile, cache.loadRouteIndexData(reader, subregion(region, 1), stats));
+		Assert.assertSame(tile, cache.loadRouteIndexData(otherReader, subregion(region, 1), stats));
+		Assert.assertEquals(1, reader.loads);
+		Assert.assertEquals(0, otherReader.loads);
+		Assert.assertEquals(2, stats.cacheHits);
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(tileSize(), cache.getSize());
+		try {
+			tile.add(null);
+			Assert.fail("Cached tiles are shared and must not be modified");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		// tiles of other region are not mixed up
+		otherReader.region = new RouteRegion();
+		List<RouteDataObject> otherTile = cache.loadRouteIndexData(otherReader, subregion(otherReader.region, 1), stats);
+		Assert.assertNotSame(tile, otherTile);
+		Assert.assertEquals(1, otherReader.loads);
+		Assert.assertEquals(2, cache.getTilesCount());
+
+		// maps are changed
+		cache.clear();
+		Assert.assertEquals(0, cache.getTilesCount());
+		Assert.assertEquals(0, cache.getSize());
+		Assert.assertNotSame(tile, cache.loadRouteIndexData(reader, subregion(region, 1), stats));
+		Assert.assertEquals(2, reader.loads);
+	}
+
+	@Test
+	public void testLruEviction() throws IOException {
+		int tileSize = tileSize();
+		RoutingTileCache cache = new RoutingTileCache(3L * tileSize);
+		TestReader reader = createReader();
+		cache.loadRouteIndexData(reader, subregion(region, 1), null);
+		cache.loadRouteIndexData(reader, subregion(region, 2), null);
+		cache.loadRouteIndexData(reader, subregion(region, 3), null);
+		Assert.assertEquals(3, cache.getTilesCount());
+		Assert.assertEquals(3L * tileSize, cache.getSize());
+
+		// tile 1 becomes recently used, so tile 2 is the eldest one
+		cache.loadRouteIndexData(reader, subregion(region, 1), null);
+		cache.loadRouteIndexData(reader, subregion(region, 4), null);
+		Assert.assertEquals(3, cache.getTilesCount());
+		Assert.assertEquals(3L * tileSize, cache.getSize());
+		Assert.assertEquals(4, reader.loads);
+
+		cache.loadRouteIndexData(reader, subregion(region, 1), null);
+		cache.loadRouteIndexData(reader, subregion(region, 3), null);
+		cache.loadRouteIndexData(reader, subregion(region, 4), null);
+		Assert.assertEquals(4, reader.loads);
+		cache.loadRouteIndexData(reader, subregion(region, 2), null);
+		Assert.assertEquals(5, reader.loads);
+		// tile 1 was the eldest one
+		cache.loadRouteIndexData(reader, subregion(region, 3), null);
+		Assert.assertEquals(5, reader.loads);
+		cache.loadRouteIndexData(reader, subregion(region, 1), null);
+		Assert.assertEquals(6, reader.loads);
+
+		cache.clear();
+		Assert.assertEquals(0, cache.getTilesCount());
+		Assert.assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testTileBiggerThanCache() throws IOException {
+		RoutingTileCache cache = new RoutingTileCache(tileSize() / 2);
+		TestReader reader = createReader();
+		List<RouteDataObject> tile = cache.loadRouteIndexData(reader, subregion(region, 1), null);
+		// the newest tile is kept even if it doesn't fit
+		Assert.assertEquals(1, cache.getTilesCount());
+		Assert.assertSame(tile, cache.loadRouteIndexData(reader, subregion(region, 1), null));
+		cache.loadRouteIndexData(reader, subregion(region, 2), null);
+		Assert.assertEquals(1, cache.getTilesCount());
+		Assert.assertEquals(2, reader.loads);
+	}
+}
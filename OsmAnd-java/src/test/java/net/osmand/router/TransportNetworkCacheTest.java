@@ -0,0 +1,275 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.osm.edit.Node;
+import net.osmand.osm.edit.Way;
+import net.osmand.util.MapUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TransportNetworkCacheTest {
+
+	private static final String ROUTING_CONFIG = "<osmand_routing_config defaultProfile=\"public_transport\">"
+			+ "<routingProfile name=\"public_transport\" baseProfile=\"public_transport\" minDefaultSpeed=\"3.6\" "
+			+ "maxDefaultSpeed=\"36\"/></osmand_routing_config>";
+	private static final int THREADS = 8;
+	private static final int LINES = 6;
+	private static final int LINE_STOPS = 10;
+	// about 750 meters between stops
+	private static final int STEP_31 = 1 << 16;
+	private static final int BASE_X = MapUtils.get31TileNumberX(13.0);
+	private static final int BASE_Y = MapUtils.get31TileNumberY(52.0);
+
+	private GeneralRouter router;
+	private List<TransportStop> stops;
+	private ExecutorService executor;
+
+	/**
+	 * Generated stops are returned by tiles instead of obf files, loads of tiles are counted
+	 */
+	private static class GeneratedNetworkCache extends TransportNetworkCache {
+		private final List<TransportStop> stops;
+		final ConcurrentHashMap<Long, AtomicInteger> loads = new ConcurrentHashMap<Long, AtomicInteger>();
+
+		GeneratedNetworkCache(int maxTiles, List<TransportStop> stops) {
+			super(maxTiles, DEFAULT_MAX_ROUTES, new BinaryMapIndexReader[0]);
+			this.stops = stops;
+		}
+
+		@Override
+		Collection<TransportStop> loadTile(int zoom, int x, int y) {
+			AtomicInteger cnt = new AtomicInteger();
+			AtomicInteger prev = loads.putIfAbsent(((long) zoom << 58) | ((long) x << 29) | y, cnt);
+			(prev == null ? cnt : prev).incrementAndGet();
+			// slow loading, so other threads request tile meanwhile
+			Thread.yield();
+			List<TransportStop> res = new ArrayList<TransportStop>();
+			int pz = 31 - zoom;
+			for (TransportStop s : stops) {
+				if (s.x31 >> pz == x && s.y31 >> pz == y) {
+					res.add(s);
+				}
+			}
+			return Collections.unmodifiableList(res);
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		router = RoutingConfiguration.parseFromInputStream(
+				new ByteArrayInputStream(ROUTING_CONFIG.getBytes("UTF-8"))).getRouter("public_transport");
+		stops = new ArrayList<TransportStop>();
+		// horizontal and vertical lines in both directions
+		long routeId = 1;
+		TransportStop[][] grid = new TransportStop[LINE_STOPS][LINE_STOPS];
+		for (int i = 0; i < LINE_STOPS; i++) {
+			for (int j = 0; j < LINE_STOPS; j++) {
+				TransportStop stop = new TransportStop();
+				stop.setId((long) stops.size() + 1);
+				stop.setName("stop " + stop.getId());
+				stop.x31 = BASE_X + j * STEP_31;
+				stop.y31 = BASE_Y + i * STEP_31;
+				stop.setLocation(MapUtils.get31LatitudeY(stop.y31), MapUtils.get31LongitudeX(stop.x31));
+				stop.setRoutes(new ArrayList<TransportRoute>());
+				stops.add(stop);
+				grid[i][j] = stop;
+			}
+		}
+		for (int l = 0; l < LINES; l++) {
+			int line = l * (LINE_STOPS - 1) / (LINES - 1);
+			for (int dir = 0; dir < 4; dir++) {
+				List<TransportStop> routeStops = new ArrayList<TransportStop>();
+				for (int k = 0; k < LINE_STOPS; k++) {
+					int p = dir % 2 == 0 ? k : LINE_STOPS - 1 - k;
+					routeStops.add(dir < 2 ? grid[line][p] : grid[p][line]);
+				}
+				TransportRoute route = new TransportRoute();
+				route.setId(routeId++);
+				route.setRef(String.valueOf(route.getId()));
+				route.setType("bus");
+				route.setForwardStops(routeStops);
+				for (TransportStop s : routeStops) {
+					s.getRoutes().add(route);
+				}
+			}
+		}
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testConcurrentTileLoading() throws Exception {
+		final GeneratedNetworkCache cache = new GeneratedNetworkCache(TransportNetworkCache.DEFAULT_MAX_TILES, stops);
+		final int zoom = 15;
+		final int x0 = BASE_X >> (31 - zoom);
+		final int y0 = BASE_Y >> (31 - zoom);
+		final int tiles = (LINE_STOPS * STEP_31 >> (31 - zoom)) + 1;
+		List<Future<Map<Long, Collection<TransportStop>>>> futures = new ArrayList<Future<Map<Long, Collection<TransportStop>>>>();
+		for (int t = 0; t < THREADS; t++) {
+			final Random rnd = new Random(t);
+			futures.add(executor.submit(new Callable<Map<Long, Collection<TransportStop>>>() {
+				@Override
+				public Map<Long, Collection<TransportStop>> call() throws Exception {
+					Map<Long, Collection<TransportStop>> res = new HashMap<Long, Collection<TransportStop>>();
+					for (int i = 0; i < tiles * tiles * 3; i++) {
+						int x = x0 + rnd.nextInt(tiles);
+						int y = y0 + rnd.nextInt(tiles);
+						res.put(((long) x << 32) | y, cache.getTileStops(zoom, x, y));
+					}
+					return res;
+				}
+			}));
+		}
+		Map<Long, Collection<TransportStop>> first = null;
+		int stopsCount = 0;
+		for (Future<Map<Long, Collection<TransportStop>>> f : futures) {
+			Map<Long, Collection<TransportStop>> res = f.get();
+			if (first == null) {
+				first = res;
+				continue;
+			}
+			// all threads get the same loaded objects
+			for (Map.Entry<Long, Collection<TransportStop>> e : res.entrySet()) {
+				if (first.containsKey(e.getKey())) {
+					Assert.assertSame(first.get(e.getKey()), e.getValue());
+				}
+			}
+		}
+		for (Collection<TransportStop> c : first.values()) {
+			stopsCount += c.size();
+		}
+		Assert.assertTrue(stopsCount > 0);
+		// every tile is read once
+		for (AtomicInteger cnt : cache.loads.values()) {
+			Assert.assertEquals(1, cnt.get());
+		}
+		Assert.assertEquals(cache.loads.size(), cache.getLoadedTiles());
+		Assert.assertEquals(cache.loads.size(), cache.getTilesCount());
+
+		cache.clear();
+		Assert.assertEquals(0, cache.getTilesCount());
+	}
+
+	@Test
+	public void testConcurrentRouteCalculation() throws Exception {
+		final List<LatLon[]> requests = new ArrayList<LatLon[]>();
+		Random rnd = new Random(3);
+		for (int i = 0; i < 40; i++) {
+			requests.add(new LatLon[] { randomLocation(rnd), randomLocation(rnd) });
+		}
+		for (final boolean roundBased : new boolean[] { false, true }) {
+			// expected results are calculated with own cache for every request
+			List<List<TransportRouteResult>> expected = new ArrayList<List<TransportRouteResult>>();
+			for (LatLon[] r : requests) {
+				expected.add(buildRoute(new GeneratedNetworkCache(TransportNetworkCache.DEFAULT_MAX_TILES, stops),
+						roundBased, r[0], r[1]));
+			}
+			// small cache, so tiles are released and loaded again during calculations
+			final GeneratedNetworkCache shared = new GeneratedNetworkCache(8, stops);
+			List<Future<List<TransportRouteResult>>> futures = new ArrayList<Future<List<TransportRouteResult>>>();
+			for (final LatLon[] r : requests) {
+				futures.add(executor.submit(new Callable<List<TransportRouteResult>>() {
+					@Override
+					public List<TransportRouteResult> call() throws Exception {
+						return buildRoute(shared, roundBased, r[0], r[1]);
+					}
+				}));
+			}
+			int found = 0;
+			for (int i = 0; i < requests.size(); i++) {
+				List<TransportRouteResult> res = futures.get(i).get();
+				List<TransportRouteResult> exp = expected.get(i);
+				Assert.assertEquals(exp.size(), res.size());
+				for (int j = 0; j < exp.size(); j++) {
+					Assert.assertEquals(exp.get(j).getRouteTime(), res.get(j).getRouteTime(), 1e-6);
+					Assert.assertEquals(exp.get(j).getSegments().size(), res.get(j).getSegments().size());
+				}
+				found += res.isEmpty() ? 0 : 1;
+			}
+			Assert.assertTrue(found > 0);
+		}
+	}
+
+	@Test
+	public void testConcurrentMergeOfWays() throws Exception {
+		final TransportRoute route = new TransportRoute();
+		route.setId(1000L);
+		route.setForwardStops(new ArrayList<TransportStop>(stops.subList(0, LINE_STOPS)));
+		List<Way> ways = new ArrayList<Way>();
+		// pieces of line along stops in random order and direction
+		for (int k = 0; k < LINE_STOPS - 1; k++) {
+			List<Node> nodes = new ArrayList<Node>();
+			for (int i = 0; i <= 4; i++) {
+				double x = BASE_X + (k + i / 4d) * STEP_31;
+				nodes.add(new Node(MapUtils.get31LatitudeY(BASE_Y), MapUtils.get31LongitudeX((int) x), k * 10 + i));
+			}
+			if (k % 2 == 1) {
+				Collections.reverse(nodes);
+			}
+			ways.add(new Way(-k - 1, nodes));
+		}
+		Collections.shuffle(ways, new Random(1));
+		for (Way w : ways) {
+			route.addWay(w);
+		}
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					route.mergeForwardWays();
+				}
+			}));
+		}
+		for (Future<?> f : futures) {
+			f.get();
+		}
+		// ways are merged once into one line
+		Assert.assertEquals(1, route.getForwardWays().size());
+		List<Node> nodes = route.getForwardWays().get(0).getNodes();
+		Assert.assertEquals((LINE_STOPS - 1) * 5 - (LINE_STOPS - 2), nodes.size());
+		for (int i = 1; i < nodes.size(); i++) {
+			Assert.assertTrue(nodes.get(i).getLongitude() > nodes.get(i - 1).getLongitude());
+		}
+	}
+
+	private LatLon randomLocation(Random rnd) {
+		int x = BASE_X + (int) (rnd.nextDouble() * (LINE_STOPS - 1) * STEP_31);
+		int y = BASE_Y + (int) (rnd.nextDouble() * (LINE_STOPS - 1) * STEP_31);
+		return new LatLon(MapUtils.get31LatitudeY(y), MapUtils.get31LongitudeX(x));
+	}
+
+	private List<TransportRouteResult> buildRoute(TransportNetworkCache cache, boolean roundBased, LatLon start,
+			LatLon end) throws Exception {
+		TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(router, new HashMap<String, String>());
+		cfg.useRoundBasedSearch = roundBased;
+		cfg.walkRadius = 1000;
+		TransportRoutingContext ctx = new TransportRoutingContext(cfg, null, cache);
+		return new TransportRoutePlanner().buildRoute(ctx, start, end);
+	}
+}
@@ -0,0 +1,227 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class TransportRaptorPlannerTest {
+
+	private static final String ROUTING_CONFIG = "<osmand_routing_config defaultProfile=\"public_transport\">"
+			+ "<routingProfile name=\"public_transport\" baseProfile=\"public_transport\" minDefaultSpeed=\"3.6\" "
+			+ "maxDefaultSpeed=\"36\"/></osmand_routing_config>";
+	private static final int GRID = 8;
+	// about 750 meters between stops
+	private static final int STEP_31 = 1 << 16;
+	private static final int BASE_X = MapUtils.get31TileNumberX(13.0);
+	private static final int BASE_Y = MapUtils.get31TileNumberY(52.0);
+
+	private GeneralRouter router;
+	private List<TransportStop> stops;
+	private List<TransportRoute> routes;
+	private long nextRouteId;
+
+	/**
+	 * Generated stops are returned by tiles instead of obf files
+	 */
+	private static class GeneratedNetworkCache extends TransportNetworkCache {
+		private final List<TransportStop> stops;
+
+		GeneratedNetworkCache(List<TransportStop> stops) {
+			super(new BinaryMapIndexReader[0]);
+			this.stops = stops;
+		}
+
+		@Override
+		Collection<TransportStop> loadTile(int zoom, int x, int y) {
+			List<TransportStop> res = new ArrayList<TransportStop>();
+			int pz = 31 - zoom;
+			for (TransportStop s : stops) {
+				if (s.x31 >> pz == x && s.y31 >> pz == y) {
+					res.add(s);
+				}
+			}
+			return res;
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		router = RoutingConfiguration.parseFromInputStream(
+				new ByteArrayInputStream(ROUTING_CONFIG.getBytes("UTF-8"))).getRouter("public_transport");
+		stops = new ArrayList<TransportStop>();
+		routes = new ArrayList<TransportRoute>();
+		nextRouteId = 1;
+	}
+
+	private TransportRoutingConfiguration createConfig(boolean roundBased) {
+		TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(router,
+				new HashMap<String, String>());
+		cfg.useRoundBasedSearch = roundBased;
+		cfg.walkRadius = 1000;
+		return cfg;
+	}
+
+	private TransportStop createStop(int x31, int y31) {
+		TransportStop stop = new TransportStop();
+		stop.setId((long) stops.size() + 1);
+		stop.setName("stop " + stop.getId());
+		stop.setLocation(MapUtils.get31LatitudeY(y31), MapUtils.get31LongitudeX(x31));
+		stop.x31 = x31;
+		stop.y31 = y31;
+		stop.setRoutes(new ArrayList<TransportRoute>());
+		stops.add(stop);
+		return stop;
+	}
+
+	private TransportRoute createRoute(String type, List<TransportStop> routeStops) {
+		TransportRoute route = new TransportRoute();
+		route.setId(nextRouteId++);
+		route.setRef(type + " " + route.getId());
+		route.setType(type);
+		route.setForwardStops(routeStops);
+		for (TransportStop stop : routeStops) {
+			stop.getRoutes().add(route);
+		}
+		routes.add(route);
+		return route;
+	}
+
+	// grid of stops with bus routes in both directions along rows and tram routes along columns
+	private void createGrid() {
+		TransportStop[][] grid = new TransportStop[GRID][GRID];
+		for (int i = 0; i < GRID; i++) {
+			for (int j = 0; j < GRID; j++) {
+				grid[i][j] = createStop(BASE_X + j * STEP_31, BASE_Y + i * STEP_31);
+			}
+		}
+		for (int i = 0; i < GRID; i++) {
+			List<TransportStop> row = new ArrayList<TransportStop>();
+			List<TransportStop> column = new ArrayList<TransportStop>();
+			for (int j = 0; j < GRID; j++) {
+				row.add(grid[i][j]);
+				column.add(grid[j][i]);
+			}
+			createRoute("bus", row);
+			createRoute("tram", column);
+			row = new ArrayList<TransportStop>(row);
+			Collections.reverse(row);
+			column = new ArrayList<TransportStop>(column);
+			Collections.reverse(column);
+			createRoute("bus", row);
+			createRoute("tram", column);
+		}
+	}
+
+	private List<TransportRouteResult> buildRoute(boolean roundBased, LatLon start, LatLon end) throws Exception {
+		TransportRoutingContext ctx = new TransportRoutingContext(createConfig(roundBased), null,
+				new GeneratedNetworkCache(stops));
+		return new TransportRoutePlanner().buildRoute(ctx, start, end);
+	}
+
+	private static double getBestTime(List<TransportRouteResult> results) {
+		double best = Double.POSITIVE_INFINITY;
+		for (TransportRouteResult r : results) {
+			best = Math.min(best, r.getRouteTime());
+		}
+		return best;
+	}
+
+	private static LatLon getLatLon(double x31, double y31) {
+		return new LatLon(MapUtils.get31LatitudeY((int) y31), MapUtils.get31LongitudeX((int) x31));
+	}
+
+	@Test
+	public void testSameBestRouteAsSegmentsSearch() throws Exception {
+		createGrid();
+		// network of all routes, so round based search isn't limited by area of start and end
+		TransportRoutingConfiguration cfg = createConfig(true);
+		TransportRaptorNetwork network = new TransportRaptorNetwork(cfg, routes);
+		Random rnd = new Random(7);
+		int found = 0;
+		int same = 0;
+		for (int i = 0; i < 30; i++) {
+			LatLon start = getLatLon(BASE_X + rnd.nextDouble() * (GRID - 1) * STEP_31,
+					BASE_Y + rnd.nextDouble() * (GRID - 1) * STEP_31);
+			LatLon end = getLatLon(BASE_X + rnd.nextDouble() * (GRID - 1) * STEP_31,
+					BASE_Y + rnd.nextDouble() * (GRID - 1) * STEP_31);
+			List<TransportRouteResult> expected = buildRoute(false, start, end);
+			TransportRoutingContext ctx = new TransportRoutingContext(cfg, null, new GeneratedNetworkCache(stops));
+			ctx.startCalcTime = System.currentTimeMillis();
+			List<TransportRouteResult> results = new TransportRaptorPlanner().buildRoute(ctx, network, start, end);
+			String message = start + " -> " + end;
+			Assert.assertEquals(message, expected.isEmpty(), results.isEmpty());
+			if (!expected.isEmpty()) {
+				// segments search leaves route at stop closest to end, round based search at stop with earliest arrival
+				Assert.assertTrue(message, getBestTime(results) <= getBestTime(expected) + 1e-3);
+				same += Math.abs(getBestTime(results) - getBestTime(expected)) < 1e-3 ? 1 : 0;
+				found++;
+			}
+			for (TransportRouteResult r : results) {
+				Assert.assertTrue(message, r.getSegments().size() <= cfg.maxNumberOfChanges + 1);
+			}
+		}
+		Assert.assertTrue(found > 0);
+		Assert.assertTrue(same + " of " + found, same > found / 2);
+	}
+
+	@Test
+	public void testChangeOutsideOfNetworkArea() throws Exception {
+		// start and end are connected only by route without stops in area of network (walk radius around them)
+		TransportStop start = createStop(BASE_X, BASE_Y);
+		TransportStop startFar = createStop(BASE_X, BASE_Y + 6 * STEP_31);
+		TransportStop endFar = createStop(BASE_X + 4 * STEP_31, BASE_Y + 6 * STEP_31);
+		TransportStop end = createStop(BASE_X + 4 * STEP_31, BASE_Y);
+		createRoute("bus", new ArrayList<TransportStop>(Arrays.asList(start, startFar)));
+		createRoute("bus", new ArrayList<TransportStop>(Arrays.asList(startFar, endFar)));
+		createRoute("bus", new ArrayList<TransportStop>(Arrays.asList(endFar, end)));
+		LatLon startLatLon = start.getLocation();
+		LatLon endLatLon = end.getLocation();
+
+		TransportRoutingContext ctx = new TransportRoutingContext(createConfig(true), null,
+				new GeneratedNetworkCache(stops));
+		Assert.assertTrue(new TransportRaptorPlanner().buildRoute(ctx, startLatLon, endLatLon).isEmpty());
+		// planner calculates route by segments when round based search finds nothing in network area
+		List<TransportRouteResult> results = buildRoute(true, startLatLon, endLatLon);
+		Assert.assertFalse(results.isEmpty());
+		Assert.assertEquals(getBestTime(buildRoute(false, startLatLon, endLatLon)), getBestTime(results), 1e-6);
+		Assert.assertEquals(3, results.get(0).getSegments().size());
+	}
+
+	@Test
+	public void testNetworkAreaIsBounded() throws Exception {
+		createGrid();
+		TransportRoutingContext ctx = new TransportRoutingContext(createConfig(true), null,
+				new GeneratedNetworkCache(stops));
+		LatLon first = getLatLon(BASE_X, BASE_Y);
+		LatLon second = getLatLon(BASE_X + (GRID - 1) * STEP_31, BASE_Y + (GRID - 1) * STEP_31);
+		LatLon near = getLatLon(BASE_X + STEP_31, BASE_Y);
+		TransportRaptorNetwork network = ctx.getRaptorNetwork(first, near);
+		// request inside of loaded area reuses network
+		Assert.assertSame(network, ctx.getRaptorNetwork(near, first));
+		// network of other area doesn't keep previous one
+		TransportRaptorNetwork other = ctx.getRaptorNetwork(second, second);
+		Assert.assertNotSame(network, other);
+		Assert.assertTrue(other.getStopsCount() < stops.size());
+		Assert.assertNotSame(other, ctx.getRaptorNetwork(first, near));
+
+		// too big area isn't loaded, segments search is used
+		LatLon far = getLatLon(BASE_X, BASE_Y + (1 << 24));
+		Assert.assertNull(ctx.getRaptorNetwork(first, far));
+		Assert.assertTrue(new TransportRaptorPlanner().buildRoute(ctx, first, far).isEmpty());
+	}
+}
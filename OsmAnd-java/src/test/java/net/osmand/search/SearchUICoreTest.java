@@ -152,6 +152,10 @@ public class SearchUICoreTest {
 
 		final SearchUICore core = new SearchUICore(MapPoiTypes.getDefault(), "en", false);
 		core.init();
+		// regions are decoded in parallel, results should be the same as in sequential search
+		final SearchUICore parallelCore = new SearchUICore(MapPoiTypes.getDefault(), "en", false);
+		parallelCore.init();
+		parallelCore.setRegionsSearchThreads(4);
 
 		ResultMatcher<SearchResult> rm = new ResultMatcher<SearchResult>() {
 			@Override
@@ -170,29 +174,11 @@ public class SearchUICoreTest {
 		for (int k = 0; k < phrases.size(); k++) {
 			String text = phrases.get(k);
 			List<String> result = results.get(k);
-			List<SearchResult> searchResults;
-			SearchPhrase phrase;
-			String[] arr = text.split("[\\\\{}]");
-			if (arr.length > 0 && arr[0].equals("POI_TYPE:")) {
-				SearchCoreFactory.DISPLAY_DEFAULT_POI_TYPES = true;
-				phrase = emptyPhrase.generateNewPhrase("", s);
-				searchResults = getSearchResult(phrase, rm, core);
-				for (SearchResult searchResult : searchResults) {
-					if (arr.length > 1 && arr[1].equals(searchResult.localeName)) {
-						String fullText = "";
-						if (arr.length > 2) {
-							fullText = arr[2];
-						}
-						phrase = emptyPhrase.generateNewPhrase(fullText, s);
-						phrase.getWords().add(new SearchWord(searchResult.localeName, searchResult));
-						searchResults = getSearchResult(phrase, rm, core);
-						break;
-					}
-				}
-			} else {
-				phrase = emptyPhrase.generateNewPhrase(text, s);
-				searchResults = getSearchResult(phrase, rm, core);
-			}
+			SearchPhrase[] searchedPhrase = new SearchPhrase[1];
+			List<SearchResult> searchResults = searchPhrase(text, emptyPhrase, s, rm, core, searchedPhrase);
+			SearchPhrase phrase = searchedPhrase[0];
+			List<SearchResult> parallelResults = searchPhrase(text, emptyPhrase, s, rm, parallelCore, searchedPhrase);
+			Assert.assertEquals(formatResults(searchResults, phrase), formatResults(parallelResults, searchedPhrase[0]));
 
 			for (int i = 0; i < result.size(); i++) {
 				String expected = result.get(i);
@@ -219,11 +205,50 @@ public class SearchUICoreTest {
 			}
 		}
 
+		parallelCore.setRegionsSearchThreads(0);
 		obfFile.delete();
 	}
 
+	private List<SearchResult> searchPhrase(String text, SearchPhrase emptyPhrase, SearchSettings s,
+			ResultMatcher<SearchResult> rm, SearchUICore core, SearchPhrase[] searchedPhrase) {
+		List<SearchResult> searchResults;
+		SearchPhrase phrase;
+		String[] arr = text.split("[\\\\{}]");
+		if (arr.length > 0 && arr[0].equals("POI_TYPE:")) {
+			SearchCoreFactory.DISPLAY_DEFAULT_POI_TYPES = true;
+			phrase = emptyPhrase.generateNewPhrase("", s);
+			searchResults = getSearchResult(phrase, rm, core);
+			for (SearchResult searchResult : searchResults) {
+				if (arr.length > 1 && arr[1].equals(searchResult.localeName)) {
+					String fullText = "";
+					if (arr.length > 2) {
+						fullText = arr[2];
+					}
+					phrase = emptyPhrase.generateNewPhrase(fullText, s);
+					phrase.getWords().add(new SearchWord(searchResult.localeName, searchResult));
+					searchResults = getSearchResult(phrase, rm, core);
+					break;
+				}
+			}
+		} else {
+			phrase = emptyPhrase.generateNewPhrase(text, s);
+			searchResults = getSearchResult(phrase, rm, core);
+		}
+		searchedPhrase[0] = phrase;
+		return searchResults;
+	}
+
+	private List<String> formatResults(List<SearchResult> searchResults, SearchPhrase phrase) {
+		List<String> res = new ArrayList<>();
+		for (SearchResult r : searchResults) {
+			res.add(formatResult(false, r, phrase));
+		}
+		return res;
+	}
+
 	private List<SearchResult> getSearchResult(SearchPhrase phrase, ResultMatcher<SearchResult> rm, SearchUICore core){
 		SearchResultMatcher matcher = new SearchResultMatcher(rm, phrase, 1, new AtomicInteger(1), -1);
+		matcher.setRegionsExecutor(core.getRegionsExecutor());
 		core.searchInternal(phrase, matcher);
 		SearchResultCollection collection = new SearchResultCollection(phrase);
 		collection.addSearchResults(matcher.getRequestResults(), true, true);
@@ -20,6 +20,7 @@ import net.osmand.data.QuadRect;
 import net.osmand.data.QuadTree;
 import net.osmand.map.MapTileDownloader;
 import net.osmand.plus.render.TextRenderer.TextDrawInfo;
+import net.osmand.render.RenderingObjectStyleCache;
 import net.osmand.render.RenderingRuleProperty;
 import net.osmand.render.RenderingRuleSearchRequest;
 import net.osmand.render.RenderingRulesStorage;
@@ -67,10 +68,13 @@ public class OsmandRenderer {
 	public static final int TILE_SIZE = 256; 
 	private static final int MAX_V = 10;
 	private static final int MAX_V_AREA = 2000;
+	private static final int STYLE_CACHE_SIZE = 8192;
 
 	private Map<float[], PathEffect> dashEffect = new LinkedHashMap<float[], PathEffect>();
 	private Map<String, float[]> parsedDashEffects = new LinkedHashMap<String, float[]>();
 	private Map<String, Shader> shaders = new LinkedHashMap<String, Shader>();
+	// search results by object types, lives between renderings while style and custom properties are the same
+	private RenderingObjectStyleCache styleCache = new RenderingObjectStyleCache(STYLE_CACHE_SIZE);
 
 	private final Context context;
 
@@ -234,9 +238,9 @@ public class OsmandRenderer {
 					}
 					// polygon
 					
-					drawPolygon(mObj, req, cv, rc, pair, array.get(i).area);
+					drawPolygon(mObj, req, cv, rc, pair, array.get(i).typeInd, array.get(i).area);
 				} else if (array.get(i).objectType == 2) {
-					drawPolyline(mObj, req, cv, rc, pair, mObj.getSimpleLayer(), objOrder == 1);
+					drawPolyline(mObj, req, cv, rc, pair, array.get(i).typeInd, objOrder == 1);
 				} else if (array.get(i).objectType == 1) {
 					drawPoint(mObj, req, cv, rc, pair, array.get(i).typeInd == 0);
 				}
@@ -257,6 +261,9 @@ public class OsmandRenderer {
 		if (objects != null && !objects.isEmpty() && rc.width > 0 && rc.height > 0) {
 			rc.cosRotateTileSize = (float) (Math.cos((float) Math.toRadians(rc.rotate)) * TILE_SIZE);
 			rc.sinRotateTileSize = (float) (Math.sin((float) Math.toRadians(rc.rotate)) * TILE_SIZE);
+			if (render != null) {
+				styleCache.validate(render);
+			}
 			
 			// put in order map
 			List<MapDataObjectPrimitive>  pointsArray = new ArrayList<OsmandRenderer.MapDataObjectPrimitive>();
@@ -448,61 +455,49 @@ public class OsmandRenderer {
 			for (int i = 0; i < sz; i++) {
 				BinaryMapDataObject o = objects.get(i);
 				for (int j = 0; j < o.getTypes().length; j++) {
-					int wholeType = o.getTypes()[j];
-					int layer = 0;
-					if (o.getPointsLength() > 1) {
-						layer = o.getSimpleLayer();
-					}
-
-					TagValuePair pair = o.getMapIndex().decodeType(wholeType);
-					if (pair != null) {
-						render.setTagValueZoomLayer(pair.tag, pair.value, rc.zoom, layer, o);
-						render.setBooleanFilter(render.ALL.R_AREA, o.isArea());
-						render.setBooleanFilter(render.ALL.R_POINT, o.getPointsLength() == 1);
-						render.setBooleanFilter(render.ALL.R_CYCLE, o.isCycle());
-						if (render.search(RenderingRulesStorage.ORDER_RULES)) {
-							int objectType = render.getIntPropertyValue(render.ALL.R_OBJECT_TYPE);
-							boolean ignorePointArea = render.getIntPropertyValue(render.ALL.R_IGNORE_POLYGON_AS_POINT_AREA) != 0;
-							int order = render.getIntPropertyValue(render.ALL.R_ORDER);
-							int priority = render.getIntPropertyValue(render.ALL.R_DENSITY_PRIORITY);
-							MapDataObjectPrimitive mapObj = new MapDataObjectPrimitive();
-							mapObj.objectType = objectType;
-							mapObj.order = order;
-							mapObj.typeInd = j;
-							mapObj.obj = o;
-							mapObj.priority = priority;
-							if(objectType == 3) {
-								MapDataObjectPrimitive pointObj = new MapDataObjectPrimitive();
-								pointObj.order = order;
-								pointObj.typeInd = j;
-								pointObj.obj = o;
-								pointObj.objectType = 1;
-								double area = polygonArea(mapObj, mult);
-								mapObj.area = area;
-								if(area > MAX_V) { 
-									mapObj.order = mapObj.order + (1. / area);
-									if(order < DEFAULT_POLYGON_MAX) {
-										polygonsArray.add(mapObj);	
-									} else {
-										linesArray.add(mapObj);
-									}
-									
-									if(area > MAX_V_AREA || ignorePointArea) {
-										pointsArray.add(pointObj);
-									}
+					// layer, area, point and cycle filters are set by style cache, state is reset before search
+					// (setTagValueZoomLayer kept output values of previous object when rules didn't set them)
+					if (styleCache.search(render, RenderingRulesStorage.ORDER_RULES, o, j, rc.zoom)) {
+						int objectType = render.getIntPropertyValue(render.ALL.R_OBJECT_TYPE);
+						boolean ignorePointArea = render.getIntPropertyValue(render.ALL.R_IGNORE_POLYGON_AS_POINT_AREA) != 0;
+						int order = render.getIntPropertyValue(render.ALL.R_ORDER);
+						int priority = render.getIntPropertyValue(render.ALL.R_DENSITY_PRIORITY);
+						MapDataObjectPrimitive mapObj = new MapDataObjectPrimitive();
+						mapObj.objectType = objectType;
+						mapObj.order = order;
+						mapObj.typeInd = j;
+						mapObj.obj = o;
+						mapObj.priority = priority;
+						if(objectType == 3) {
+							MapDataObjectPrimitive pointObj = new MapDataObjectPrimitive();
+							pointObj.order = order;
+							pointObj.typeInd = j;
+							pointObj.obj = o;
+							pointObj.objectType = 1;
+							double area = polygonArea(mapObj, mult);
+							mapObj.area = area;
+							if(area > MAX_V) { 
+								mapObj.order = mapObj.order + (1. / area);
+								if(order < DEFAULT_POLYGON_MAX) {
+									polygonsArray.add(mapObj);	
+								} else {
+									linesArray.add(mapObj);
+								}
+								
+								if(area > MAX_V_AREA || ignorePointArea) {
+									pointsArray.add(pointObj);
 								}
-							} else if(objectType == 1) {
-								pointsArray.add(mapObj);
-							} else {
-								linesArray.add(mapObj);
-							}
-							if (render.isSpecified(render.ALL.R_SHADOW_LEVEL)) {
-								rc.shadowLevelMin = Math.min(rc.shadowLevelMin, order);
-								rc.shadowLevelMax = Math.max(rc.shadowLevelMax, order);
-								render.clearValue(render.ALL.R_SHADOW_LEVEL);
 							}
+						} else if(objectType == 1) {
+							pointsArray.add(mapObj);
+						} else {
+							linesArray.add(mapObj);
+						}
+						if (render.isSpecified(render.ALL.R_SHADOW_LEVEL)) {
+							rc.shadowLevelMin = Math.min(rc.shadowLevelMin, order);
+							rc.shadowLevelMax = Math.max(rc.shadowLevelMax, order);
+							render.clearValue(render.ALL.R_SHADOW_LEVEL);
 						}
-
 					}
 				}
 
@@ -604,10 +599,11 @@ public class OsmandRenderer {
 
 	public void clearCachedResources(){
 		shaders.clear();
+		styleCache.clear();
 	}
 	
 	private void drawPolygon(BinaryMapDataObject obj, RenderingRuleSearchRequest render, Canvas canvas, RenderingContext rc, TagValuePair pair, 
-			double area) {
+			int typeInd, double area) {
 		if(render == null || pair == null){
 			return;
 		}
@@ -617,8 +613,7 @@ public class OsmandRenderer {
 		Path path = null;
 		
 		// rc.main.color = Color.rgb(245, 245, 245);
-		render.setInitialTagValueZoom(pair.tag, pair.value, zoom, obj);
-		boolean rendered = render.search(RenderingRulesStorage.POLYGON_RULES);
+		boolean rendered = styleCache.search(render, RenderingRulesStorage.POLYGON_RULES, obj, typeInd, zoom);
 		if(!rendered || !updatePaint(render, paint, 0, true, rc)){
 			return;
 		}
@@ -868,7 +863,7 @@ public class OsmandRenderer {
 	}
 
 	
-	private void drawPolyline(BinaryMapDataObject obj, RenderingRuleSearchRequest render, Canvas canvas, RenderingContext rc, TagValuePair pair, int layer,
+	private void drawPolyline(BinaryMapDataObject obj, RenderingRuleSearchRequest render, Canvas canvas, RenderingContext rc, TagValuePair pair, int typeInd,
 			boolean drawOnlyShadow) {
 		if(render == null || pair == null){
 			return;
@@ -877,9 +872,7 @@ public class OsmandRenderer {
 		if(length < 2){
 			return;
 		}
-		render.setInitialTagValueZoom(pair.tag, pair.value, rc.zoom, obj);
-		render.setIntFilter(render.ALL.R_LAYER, layer);
-		boolean rendered = render.search(RenderingRulesStorage.LINE_RULES);
+		boolean rendered = styleCache.search(render, RenderingRulesStorage.LINE_RULES, obj, typeInd, rc.zoom);
 		if(!rendered || !updatePaint(render, paint, 0, false, rc)){
 			return;
 		}
@@ -6,6 +6,7 @@ import android.content.res.AssetManager;
 import android.database.sqlite.SQLiteException;
 import android.os.AsyncTask;
 import android.os.HandlerThread;
+import android.os.Process;
 import android.text.format.DateFormat;
 import android.util.DisplayMetrics;
 import android.view.WindowManager;
@@ -64,7 +65,6 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -78,10 +78,12 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -98,6 +100,8 @@ import static net.osmand.IndexConstants.VOICE_INDEX_DIR;
 public class ResourceManager {
 
 	private static final String INDEXES_CACHE = "ind.cache";
+	private static final int INDEXING_THREADS = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+	private static final int SLOWEST_MAPS_TO_LOG = 10;
 	public static final String DEFAULT_WIKIVOYAGE_TRAVEL_OBF = "Default_wikivoyage.travel.obf";
 
 	private static final Log log = PlatformUtil.getLog(ResourceManager.class);
@@ -145,6 +149,9 @@ public class ResourceManager {
 	}
 
 	public static class BinaryMapReaderResource {
+		// per file, quick search repeats name index lookups for every typed character
+		private static final long QUICK_SEARCH_NAME_INDEX_CACHE_SIZE = 256 * 1024;
+
 		private BinaryMapIndexReader initialReader;
 		private final File filename;
 		private final List<BinaryMapIndexReader> readers = new ArrayList<>(BinaryMapReaderResourceType.values().length);
@@ -165,8 +172,11 @@ public class ResourceManager {
 			BinaryMapIndexReader initialReader = this.initialReader;
 			if (r == null && initialReader != null) {
 				try {
-					RandomAccessFile raf = new RandomAccessFile(filename, "r");
-					r = new BinaryMapIndexReader(raf, initialReader);
+					// memory mapped readers share mapping of initial reader, others open own file
+					r = new BinaryMapIndexReader(initialReader);
+					if (type == BinaryMapReaderResourceType.QUICK_SEARCH) {
+						r.setNameIndexCacheSize(QUICK_SEARCH_NAME_INDEX_CACHE_SIZE);
+					}
 					readers.set(type.ordinal(), r);
 				} catch (IOException e) {
 					log.error("Fail to initialize " + filename.getName(), e);
@@ -791,6 +801,8 @@ public class ResourceManager {
 		List<String> warnings = new ArrayList<>();
 		renderer.clearAllResources();
 		CachedOsmandIndexes cachedOsmandIndexes = new CachedOsmandIndexes();
+		// 32-bit address space is too small to map all files
+		cachedOsmandIndexes.setMemoryMapped(Process.is64Bit());
 		File indCache = context.getAppPath(INDEXES_CACHE);
 		if (indCache.exists()) {
 			try {
@@ -829,86 +841,107 @@ public class ResourceManager {
 		}
 
 		java.text.DateFormat dateFormat = getDateFormat();
+		// files are opened in parallel and registered in the original order as soon as they're ready
+		Map<String, Long> openTimes = new ConcurrentHashMap<>();
+		ExecutorService indexingExecutor = Executors.newFixedThreadPool(INDEXING_THREADS);
+		List<Future<BinaryMapIndexReader>> readers = new ArrayList<>();
 		for (File f : files) {
-			String fileName = f.getName();
-			if (progress != null) {
-				progress.startTask(context.getString(R.string.indexing_map) + " " + fileName, -1);
-			}
-			try {
-				BinaryMapIndexReader mapReader = null;
-				try {
-					mapReader = cachedOsmandIndexes.getReader(f, !filesToReindex.contains(f));
-					if (mapReader.getVersion() != IndexConstants.BINARY_MAP_VERSION) {
-						mapReader = null;
-					}
-				} catch (IOException e) {
-					log.error(String.format("File %s could not be read", fileName), e);
+			readers.add(indexingExecutor.submit(new OpenMapReaderTask(cachedOsmandIndexes, f,
+					!filesToReindex.contains(f), openTimes)));
+		}
+		indexingExecutor.shutdown();
+		int consumedReaders = 0;
+		try {
+			for (int i = 0; i < files.size(); i++) {
+				consumedReaders = i + 1;
+				File f = files.get(i);
+				String fileName = f.getName();
+				if (progress != null) {
+					progress.startTask(context.getString(R.string.indexing_map) + " " + fileName, -1);
 				}
-				boolean wikiMap = WikipediaPlugin.containsWikipediaExtension(fileName);
-				boolean srtmMap = SrtmDownloadItem.containsSrtmExtension(fileName);
-				if (mapReader == null || (!Version.isPaidVersion(context) && wikiMap && !fileName.equals(DEFAULT_WIKIVOYAGE_TRAVEL_OBF))) {
-					warnings.add(MessageFormat.format(context.getString(R.string.version_index_is_not_supported), fileName)); //$NON-NLS-1$
-				} else {
-					if (mapReader.isBasemap()) {
-						basemapFileNames.put(fileName, fileName);
-					}
-					long dateCreated = mapReader.getDateCreated();
-					if (dateCreated == 0) {
-						dateCreated = f.lastModified();
+				try {
+					BinaryMapIndexReader mapReader = null;
+					try {
+						mapReader = readers.get(i).get();
+						if (mapReader.getVersion() != IndexConstants.BINARY_MAP_VERSION) {
+							mapReader = null;
+						}
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof OutOfMemoryError) {
+							throw (OutOfMemoryError) e.getCause();
+						}
+						log.error(String.format("File %s could not be read", fileName), e.getCause());
+					} catch (InterruptedException e) {
+						log.error(String.format("File %s could not be read", fileName), e);
 					}
-					if (f.getParentFile().getName().equals(liveDir.getName())) {
-						boolean toUse = changesManager.index(f, dateCreated, mapReader);
-						if (!toUse) {
-							try {
-								mapReader.close();
-							} catch (IOException e) {
-								log.error(e.getMessage(), e);
+					boolean wikiMap = WikipediaPlugin.containsWikipediaExtension(fileName);
+					boolean srtmMap = SrtmDownloadItem.containsSrtmExtension(fileName);
+					if (mapReader == null || (!Version.isPaidVersion(context) && wikiMap && !fileName.equals(DEFAULT_WIKIVOYAGE_TRAVEL_OBF))) {
+						warnings.add(MessageFormat.format(context.getString(R.string.version_index_is_not_supported), fileName)); //$NON-NLS-1$
+					} else {
+						if (mapReader.isBasemap()) {
+							basemapFileNames.put(fileName, fileName);
+						}
+						long dateCreated = mapReader.getDateCreated();
+						if (dateCreated == 0) {
+							dateCreated = f.lastModified();
+						}
+						if (f.getParentFile().getName().equals(liveDir.getName())) {
+							boolean toUse = changesManager.index(f, dateCreated, mapReader);
+							if (!toUse) {
+								try {
+									mapReader.close();
+								} catch (IOException e) {
+									log.error(e.getMessage(), e);
+								}
+								continue;
 							}
+						} else if (!wikiMap && !srtmMap) {
+							changesManager.indexMainMap(f, dateCreated);
+						}
+						indexFileNames.put(fileName, dateFormat.format(dateCreated));
+						indexFiles.put(fileName, f);
+						if (!depthContours && fileName.toLowerCase().startsWith("depth_")) {
+							depthContours = true;
+						}
+						renderer.initializeNewResource(f, mapReader);
+						BinaryMapReaderResource resource = new BinaryMapReaderResource(f, mapReader);
+						if (mapReader.containsPoiData()) {
+							amenityRepositories.put(fileName, new AmenityIndexRepositoryBinary(resource, context));
+						}
+						fileReaders.put(fileName, resource);
+						if (resource.getFileName().endsWith(IndexConstants.BINARY_TRAVEL_GUIDE_MAP_INDEX_EXT)) {
+							travelRepositories.put(resource.getFileName(), resource);
+							// travel files should be indexed separately (so it's possible to turn on / off)
 							continue;
 						}
-					} else if (!wikiMap && !srtmMap) {
-						changesManager.indexMainMap(f, dateCreated);
-					}
-					indexFileNames.put(fileName, dateFormat.format(dateCreated));
-					indexFiles.put(fileName, f);
-					if (!depthContours && fileName.toLowerCase().startsWith("depth_")) {
-						depthContours = true;
-					}
-					renderer.initializeNewResource(f, mapReader);
-					BinaryMapReaderResource resource = new BinaryMapReaderResource(f, mapReader);
-					if (mapReader.containsPoiData()) {
-						amenityRepositories.put(fileName, new AmenityIndexRepositoryBinary(resource, context));
-					}
-					fileReaders.put(fileName, resource);
-					if (resource.getFileName().endsWith(IndexConstants.BINARY_TRAVEL_GUIDE_MAP_INDEX_EXT)) {
-						travelRepositories.put(resource.getFileName(), resource);
-						// travel files should be indexed separately (so it's possible to turn on / off)
-						continue;
-					}
-					if (!mapReader.getRegionNames().isEmpty()) {
-						RegionAddressRepositoryBinary rarb = new RegionAddressRepositoryBinary(this, resource);
-						addressMap.put(fileName, rarb);
-					}
-					if (mapReader.hasTransportData()) {
-						transportRepositories.put(fileName, resource);
-					}
-					// disable osmc for routing temporarily due to some bugs
-					if (mapReader.containsRouteData() && (!f.getParentFile().equals(liveDir) ||
-							context.getSettings().USE_OSM_LIVE_FOR_ROUTING.get())) {
-						resource.setUseForRouting(true);
-					}
-					if (mapReader.hasTransportData() && (!f.getParentFile().equals(liveDir) ||
-							context.getSettings().USE_OSM_LIVE_FOR_PUBLIC_TRANSPORT.get())) {
-						resource.setUseForPublicTransport(true);
+						if (!mapReader.getRegionNames().isEmpty()) {
+							RegionAddressRepositoryBinary rarb = new RegionAddressRepositoryBinary(this, resource);
+							addressMap.put(fileName, rarb);
+						}
+						if (mapReader.hasTransportData()) {
+							transportRepositories.put(fileName, resource);
+						}
+						// disable osmc for routing temporarily due to some bugs
+						if (mapReader.containsRouteData() && (!f.getParentFile().equals(liveDir) ||
+								context.getSettings().USE_OSM_LIVE_FOR_ROUTING.get())) {
+							resource.setUseForRouting(true);
+						}
+						if (mapReader.hasTransportData() && (!f.getParentFile().equals(liveDir) ||
+								context.getSettings().USE_OSM_LIVE_FOR_PUBLIC_TRANSPORT.get())) {
+							resource.setUseForPublicTransport(true);
+						}
 					}
+				} catch (SQLiteException e) {
+					log.error("Exception reading " + f.getAbsolutePath(), e);
+					warnings.add(MessageFormat.format(context.getString(R.string.version_index_is_not_supported), fileName));
+				} catch (OutOfMemoryError oome) {
+					log.error("Exception reading " + f.getAbsolutePath(), oome);
+					warnings.add(MessageFormat.format(context.getString(R.string.version_index_is_big_for_memory), fileName));
 				}
-			} catch (SQLiteException e) {
-				log.error("Exception reading " + f.getAbsolutePath(), e);
-				warnings.add(MessageFormat.format(context.getString(R.string.version_index_is_not_supported), fileName));
-			} catch (OutOfMemoryError oome) {
-				log.error("Exception reading " + f.getAbsolutePath(), oome);
-				warnings.add(MessageFormat.format(context.getString(R.string.version_index_is_big_for_memory), fileName));
 			}
+		} finally {
+			closeUnusedReaders(readers.subList(consumedReaders, readers.size()));
 		}
 		Map<PoiCategory, Map<String, PoiType>> toAddPoiTypes = new HashMap<>();
 		for (AmenityIndexRepository repo : amenityRepositories.values()) {
@@ -938,7 +971,8 @@ public class ResourceManager {
 			PoiCategory category = next.getKey();
 			category.addExtraPoiTypes(next.getValue());
 		}
-		log.debug("All map files initialized " + (System.currentTimeMillis() - val) + " ms");
+		log.info("All map files initialized " + (System.currentTimeMillis() - val) + " ms");
+		logSlowestMaps(openTimes);
 		if (files.size() > 0 && (!indCache.exists() || indCache.canWrite())) {
 			try {
 				cachedOsmandIndexes.writeToFile(indCache);
@@ -946,12 +980,64 @@ public class ResourceManager {
 				log.error("Index file could not be written", e);
 			}
 		}
+		// transport stops of previous files are not needed anymore
+		context.getTransportRoutingHelper().clearNetworkCache();
 		for (ResourceListener l : resourceListeners) {
 			l.onMapsIndexed();
 		}
 		return warnings;
 	}
 
+	private void closeUnusedReaders(@NonNull List<Future<BinaryMapIndexReader>> readers) {
+		for (Future<BinaryMapIndexReader> future : readers) {
+			if (future.cancel(false)) {
+				continue;
+			}
+			try {
+				future.get().close();
+			} catch (Exception e) {
+				log.error(e.getMessage(), e);
+			}
+		}
+	}
+
+	private void logSlowestMaps(@NonNull Map<String, Long> openTimes) {
+		List<Entry<String, Long>> times = new ArrayList<>(openTimes.entrySet());
+		Collections.sort(times, (o1, o2) -> Long.compare(o2.getValue(), o1.getValue()));
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < times.size() && i < SLOWEST_MAPS_TO_LOG; i++) {
+			Entry<String, Long> e = times.get(i);
+			sb.append(i == 0 ? "" : ", ").append(e.getKey()).append(" ").append(e.getValue()).append(" ms");
+		}
+		log.info("Slowest map files to open: " + sb);
+	}
+
+	private static class OpenMapReaderTask implements Callable<BinaryMapIndexReader> {
+
+		private final CachedOsmandIndexes cachedOsmandIndexes;
+		private final File file;
+		private final boolean useStoredIndex;
+		private final Map<String, Long> openTimes;
+
+		OpenMapReaderTask(CachedOsmandIndexes cachedOsmandIndexes, File file, boolean useStoredIndex,
+		                  Map<String, Long> openTimes) {
+			this.cachedOsmandIndexes = cachedOsmandIndexes;
+			this.file = file;
+			this.useStoredIndex = useStoredIndex;
+			this.openTimes = openTimes;
+		}
+
+		@Override
+		public BinaryMapIndexReader call() throws IOException {
+			long time = System.currentTimeMillis();
+			try {
+				return cachedOsmandIndexes.getReader(file, useStoredIndex);
+			} finally {
+				openTimes.put(file.getName(), System.currentTimeMillis() - time);
+			}
+		}
+	}
+
 	public List<String> getTravelRepositoryNames() {
 		List<String> fileNames = new ArrayList<>(travelRepositories.keySet());
 		Collections.sort(fileNames, Algorithms.getStringVersionComparator());
@@ -1276,6 +1362,7 @@ public class ResourceManager {
 		if (resource != null) {
 			resource.close();
 		}
+		context.getTransportRoutingHelper().clearNetworkCache();
 	}
 
 	public synchronized void close() {
@@ -1392,6 +1479,7 @@ public class ResourceManager {
 			r.clearCache();
 		}
 		renderer.clearCache();
+		context.getTransportRoutingHelper().clearNetworkCache();
 
 		System.gc();
 	}
@@ -26,6 +26,7 @@ import net.osmand.router.GeneralRouter;
 import net.osmand.router.NativeTransportRoutingResult;
 import net.osmand.router.RouteCalculationProgress;
 import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.TransportNetworkCache;
 import net.osmand.router.TransportRoutePlanner;
 import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
 import net.osmand.router.TransportRouteResult;
@@ -35,6 +36,7 @@ import net.osmand.util.MapUtils;
 
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -58,6 +60,10 @@ public class TransportRoutingHelper {
 
 	public static final String PUBLIC_TRANSPORT_KEY = "public_transport";
 
+	// shared stops of previous routes (tiles of zoom 15 are about 1 km), released on low memory
+	private static final int NETWORK_CACHE_MAX_TILES = 512;
+	private static final int NETWORK_CACHE_MAX_ROUTES = 20000;
+
 	private List<WeakReference<IRouteInformationListener>> listeners = new LinkedList<>();
 
 	private final OsmandApplication app;
@@ -72,6 +78,9 @@ public class TransportRoutingHelper {
 	private Map<Pair<TransportRouteResultSegment, TransportRouteResultSegment>, RouteCalculationResult> walkingRouteSegments;
 	private int currentRoute = -1;
 
+	private TransportNetworkCache networkCache;
+	private BinaryMapIndexReader[] networkCacheFiles;
+
 	private LatLon startLocation;
 	private LatLon endLocation;
 
@@ -443,6 +452,23 @@ public class TransportRoutingHelper {
 		}
 	}
 
+	private synchronized TransportNetworkCache getNetworkCache(BinaryMapIndexReader[] files) {
+		// stops loaded for previous routes are reused while transport files are the same
+		if (networkCache == null || !Arrays.equals(networkCacheFiles, files)) {
+			networkCache = new TransportNetworkCache(NETWORK_CACHE_MAX_TILES, NETWORK_CACHE_MAX_ROUTES, files);
+			networkCacheFiles = files;
+		}
+		return networkCache;
+	}
+
+	/**
+	 * Releases stops loaded for previous routes, calculations in progress keep their cache
+	 */
+	public synchronized void clearNetworkCache() {
+		networkCache = null;
+		networkCacheFiles = null;
+	}
+
 	private static class RouteRecalculationTask implements Runnable {
 
 		private final TransportRoutingHelper transportRoutingHelper;
@@ -504,7 +530,8 @@ public class TransportRoutingHelper {
 			GeneralRouter prouter = config.getRouter(params.mode.getRoutingProfile());
 			TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(prouter, params.params);
 
-			TransportRoutingContext ctx = new TransportRoutingContext(cfg, library, files);
+			TransportNetworkCache networkCache = transportRoutingHelper.getNetworkCache(files);
+			TransportRoutingContext ctx = new TransportRoutingContext(cfg, library, networkCache);
 			ctx.calculationProgress = params.calculationProgress;
 			if (ctx.library != null && !settings.PT_SAFE_MODE.get()) {
 				NativeTransportRoutingResult[] nativeRes = library.runNativePTRouting(